@@ -4,6 +4,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
@@ -34,16 +36,30 @@ public class AppKeySecretFilter implements GlobalFilter, Ordered {
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
         ServerHttpRequest request = exchange.getRequest();
         ServerHttpResponse response = exchange.getResponse();
+        AppSignCheckEvent event = new AppSignCheckEvent();
+        event.begin();
         try {
             accessAppSignCheck.validAccessAppSign(request);
         } catch (InvalidAccessTokenException e) {
+            commitEvent(event, exchange, false);
             log.warn("invalid access token warn", e);
             response.setStatusCode(HttpStatus.UNAUTHORIZED);
             return response.setComplete();
         }
+        commitEvent(event, exchange, true);
         return chain.filter(exchange);
     }
 
+    private void commitEvent(AppSignCheckEvent event, ServerWebExchange exchange, boolean valid) {
+        event.end();
+        if (event.shouldCommit()) {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            event.routeId = route != null ? route.getId() : null;
+            event.valid = valid;
+            event.commit();
+        }
+    }
+
     @Override
     public int getOrder() {
         return APP_KEY_SECRET_FILTER_ORDER;
@@ -0,0 +1,24 @@
+package ti.gateway.base.core.filter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the app key signature check done by {@link AppKeySecretFilter}
+ */
+@Name("ti.gateway.AppSignCheck")
+@Label("App Sign Check")
+@Description("Lookup of the app secret and verification of the request signature")
+@Category({"TiGateway", "Security"})
+@StackTrace(false)
+class AppSignCheckEvent extends Event {
+    @Label("Route Id")
+    String routeId;
+
+    @Label("Valid")
+    boolean valid;
+}
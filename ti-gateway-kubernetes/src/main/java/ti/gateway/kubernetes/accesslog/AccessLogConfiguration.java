@@ -0,0 +1,47 @@
+package ti.gateway.kubernetes.accesslog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Access log configuration
+ *
+ * Only active with {@code spring.cloud.gateway.k8s.access-log.enabled=true}, otherwise no filter is registered.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(
+        value = {"spring.cloud.gateway.k8s.access-log.enabled"},
+        havingValue = "true"
+)
+@EnableConfigurationProperties({AccessLogProperties.class})
+public class AccessLogConfiguration {
+
+    @Bean
+    AccessLogWriter accessLogWriter(AccessLogProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        AccessLogWriter writer = new AccessLogWriter(properties);
+        meterRegistry.ifAvailable((registry) -> {
+            FunctionCounter.builder("spring.cloud.gateway.accesslog.dropped", writer, AccessLogWriter::getDropped)
+                    .description("Access log records dropped because the buffer was full")
+                    .register(registry);
+            FunctionCounter.builder("spring.cloud.gateway.accesslog.written", writer, AccessLogWriter::getWritten)
+                    .description("Access log records written")
+                    .register(registry);
+        });
+        return writer;
+    }
+
+    @Bean
+    AccessLogGlobalFilter accessLogGlobalFilter(AccessLogWriter accessLogWriter) {
+        return new AccessLogGlobalFilter(accessLogWriter);
+    }
+
+    @Bean
+    AccessLogUpstreamTimingFilter accessLogUpstreamTimingFilter() {
+        return new AccessLogUpstreamTimingFilter();
+    }
+}
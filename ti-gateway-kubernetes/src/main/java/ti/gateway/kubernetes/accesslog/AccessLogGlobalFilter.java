@@ -0,0 +1,97 @@
+package ti.gateway.kubernetes.accesslog;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Captures one {@link AccessLogRecord} per exchange and hands it to the {@link AccessLogWriter}.
+ *
+ * Nothing is formatted here: the filter only collects references and counters, and the record is offered
+ * to the writer's ring buffer once the exchange completes.
+ */
+class AccessLogGlobalFilter implements GlobalFilter, Ordered {
+    static final String ACCESS_LOG_TIMING_ATTR = AccessLogGlobalFilter.class.getName() + ".timing";
+    private final AccessLogWriter writer;
+    private final List<String> attributeNames;
+
+    AccessLogGlobalFilter(AccessLogWriter writer) {
+        this.writer = writer;
+        this.attributeNames = writer.getAttributeNames();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        long timestamp = System.currentTimeMillis();
+        Timing timing = new Timing();
+        exchange.getAttributes().put(ACCESS_LOG_TIMING_ATTR, timing);
+        CountingResponse response = new CountingResponse(exchange.getResponse());
+        return chain.filter(exchange.mutate().response(response).build()).doFinally((signal) -> {
+            this.writer.offer(this.record(exchange, response, timing, timestamp, System.nanoTime() - start));
+        });
+    }
+
+    private AccessLogRecord record(ServerWebExchange exchange, CountingResponse response, Timing timing, long timestamp, long duration) {
+        ServerHttpRequest request = exchange.getRequest();
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        HttpStatusCode status = response.getStatusCode();
+        Object[] attributes = new Object[this.attributeNames.size()];
+        for (int i = 0; i < attributes.length; ++i) {
+            attributes[i] = exchange.getAttribute(this.attributeNames.get(i));
+        }
+
+        long upstream = timing.upstreamEnd > 0L ? timing.upstreamEnd - timing.upstreamStart : -1L;
+        return new AccessLogRecord(timestamp, route != null ? route.getId() : null, request.getMethod().name(), request.getPath().value(), status != null ? status.value() : 0, request.getHeaders().getContentLength(), response.bytes, upstream, duration, attributes);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    /**
+     * Upstream timestamps, written by {@link AccessLogUpstreamTimingFilter}.
+     */
+    static final class Timing {
+        volatile long upstreamStart;
+        volatile long upstreamEnd;
+    }
+
+    private static final class CountingResponse extends ServerHttpResponseDecorator {
+        private volatile long bytes;
+
+        private CountingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.from(body).doOnNext(this::count));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map((inner) -> {
+                return Flux.from(inner).doOnNext(this::count);
+            }));
+        }
+
+        private void count(DataBuffer buffer) {
+            this.bytes += buffer.readableByteCount();
+        }
+    }
+}
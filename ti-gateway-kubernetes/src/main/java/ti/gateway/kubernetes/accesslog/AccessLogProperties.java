@@ -0,0 +1,78 @@
+package ti.gateway.kubernetes.accesslog;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(
+        prefix = "spring.cloud.gateway.k8s.access-log"
+)
+class AccessLogProperties {
+    public static final String PREFIX = "spring.cloud.gateway.k8s.access-log";
+    private boolean enabled = false;
+    private int bufferSize = 8192;
+    private int batchSize = 256;
+    private Duration flushInterval = Duration.ofMillis(200L);
+    private String loggerName = "ti.gateway.accesslog";
+    private List<String> attributes = new ArrayList<>();
+
+    AccessLogProperties() {
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+        return this.flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public String getLoggerName() {
+        return this.loggerName;
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    /**
+     * Exchange attributes to copy into each record, e.g. the names used by {@code StoreHeader} or {@code StoreIpAddress}.
+     */
+    public List<String> getAttributes() {
+        return this.attributes;
+    }
+
+    public void setAttributes(List<String> attributes) {
+        this.attributes = attributes;
+    }
+
+    public String toString() {
+        return "AccessLogProperties{enabled=" + this.enabled + ", bufferSize=" + this.bufferSize + ", batchSize=" + this.batchSize + ", flushInterval=" + this.flushInterval + ", loggerName=" + this.loggerName + ", attributes=" + this.attributes + "}";
+    }
+}
@@ -0,0 +1,31 @@
+package ti.gateway.kubernetes.accesslog;
+
+/**
+ * One access log entry. Only references and primitives are captured on the request thread; all formatting
+ * happens on the writer thread.
+ */
+class AccessLogRecord {
+    final long timestamp;
+    final String routeId;
+    final String method;
+    final String path;
+    final int status;
+    final long requestBytes;
+    final long responseBytes;
+    final long upstreamNanos;
+    final long durationNanos;
+    final Object[] attributes;
+
+    AccessLogRecord(long timestamp, String routeId, String method, String path, int status, long requestBytes, long responseBytes, long upstreamNanos, long durationNanos, Object[] attributes) {
+        this.timestamp = timestamp;
+        this.routeId = routeId;
+        this.method = method;
+        this.path = path;
+        this.status = status;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.upstreamNanos = upstreamNanos;
+        this.durationNanos = durationNanos;
+        this.attributes = attributes;
+    }
+}
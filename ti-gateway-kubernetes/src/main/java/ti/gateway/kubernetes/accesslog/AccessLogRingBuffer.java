@@ -0,0 +1,71 @@
+package ti.gateway.kubernetes.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer ring buffer.
+ *
+ * Each slot carries a sequence number: producers claim a position with a CAS on the tail and publish by
+ * advancing the slot sequence, the single consumer releases the slot by moving its sequence one lap ahead.
+ * {@link #offer} never blocks and returns {@code false} when the buffer is full.
+ */
+class AccessLogRingBuffer {
+    private final AtomicReferenceArray<AccessLogRecord> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    AccessLogRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; ++i) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return this.mask + 1;
+    }
+
+    boolean offer(AccessLogRecord record) {
+        long position = this.tail.get();
+        while (true) {
+            int index = (int) (position & this.mask);
+            long difference = this.sequences.get(index) - position;
+            if (difference == 0L) {
+                if (this.tail.compareAndSet(position, position + 1L)) {
+                    this.slots.lazySet(index, record);
+                    this.sequences.lazySet(index, position + 1L);
+                    return true;
+                }
+
+                position = this.tail.get();
+            } else if (difference < 0L) {
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * Must only be called from the single consumer thread.
+     */
+    AccessLogRecord poll() {
+        int index = (int) (this.head & this.mask);
+        if (this.sequences.get(index) != this.head + 1L) {
+            return null;
+        }
+
+        AccessLogRecord record = this.slots.get(index);
+        this.slots.lazySet(index, null);
+        this.sequences.lazySet(index, this.head + this.mask + 1L);
+        ++this.head;
+        return record;
+    }
+}
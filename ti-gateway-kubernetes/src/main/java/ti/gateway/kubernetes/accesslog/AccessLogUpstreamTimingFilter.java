@@ -0,0 +1,39 @@
+package ti.gateway.kubernetes.accesslog;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stamps the start and end of the upstream call, just around the routing filter.
+ *
+ * The end is stamped on the terminal signal itself rather than in {@code doFinally}, which would run only
+ * after the access log filter has already emitted its record.
+ */
+class AccessLogUpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    AccessLogUpstreamTimingFilter() {
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        AccessLogGlobalFilter.Timing timing = exchange.getAttribute(AccessLogGlobalFilter.ACCESS_LOG_TIMING_ATTR);
+        if (timing == null) {
+            return chain.filter(exchange);
+        }
+
+        timing.upstreamStart = System.nanoTime();
+        Runnable end = () -> {
+            timing.upstreamEnd = System.nanoTime();
+        };
+        return chain.filter(exchange).doOnTerminate(end).doOnCancel(end);
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyRoutingFilter.ORDER - 1;
+    }
+}
@@ -0,0 +1,194 @@
+package ti.gateway.kubernetes.accesslog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drains the {@link AccessLogRingBuffer} on a single background thread and writes records as compact
+ * JSON lines, one logger call per record so that appenders and log shippers see one event each. Records are
+ * drained in batches, reusing one line buffer. Request threads only ever {@link #offer} a record; when the
+ * buffer is full the record is dropped and counted instead of blocking.
+ */
+class AccessLogWriter implements SmartLifecycle, Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(AccessLogWriter.class);
+    private final AccessLogRingBuffer buffer;
+    private final Logger accessLog;
+    private final List<String> attributeNames;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final StringBuilder line = new StringBuilder(4096);
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    AccessLogWriter(AccessLogProperties properties) {
+        this.buffer = new AccessLogRingBuffer(properties.getBufferSize());
+        this.accessLog = LoggerFactory.getLogger(properties.getLoggerName());
+        this.attributeNames = List.copyOf(properties.getAttributes());
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+    }
+
+    AccessLogRingBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    List<String> getAttributeNames() {
+        return this.attributeNames;
+    }
+
+    boolean offer(AccessLogRecord record) {
+        if (this.buffer.offer(record)) {
+            return true;
+        }
+
+        this.dropped.increment();
+        return false;
+    }
+
+    long getDropped() {
+        return this.dropped.sum();
+    }
+
+    long getWritten() {
+        return this.written.sum();
+    }
+
+    @Override
+    public void start() {
+        Thread writer = new Thread(this, "access-log-writer");
+        writer.setDaemon(true);
+        this.running = true;
+        this.thread = writer;
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+        Thread writer = this.thread;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        this.thread = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            if (this.drain() == 0) {
+                LockSupport.parkNanos(this.flushIntervalNanos);
+            }
+        }
+
+        int remaining;
+        do {
+            remaining = this.drain();
+        } while (remaining > 0);
+    }
+
+    /**
+     * Writes at most one batch and returns the number of records written. Only called from the writer thread.
+     */
+    int drain() {
+        int count = 0;
+        AccessLogRecord record;
+        while (count < this.batchSize && (record = this.buffer.poll()) != null) {
+            this.line.setLength(0);
+            this.format(record, this.line);
+            try {
+                this.accessLog.info(this.line.toString());
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to write access log record", e);
+            }
+
+            ++count;
+        }
+
+        this.written.add(count);
+        return count;
+    }
+
+    void format(AccessLogRecord record, StringBuilder out) {
+        out.append("{\"time\":\"").append(Instant.ofEpochMilli(record.timestamp)).append('"');
+        appendString(out, "route", record.routeId);
+        appendString(out, "method", record.method);
+        appendString(out, "path", record.path);
+        out.append(",\"status\":").append(record.status);
+        out.append(",\"requestBytes\":").append(record.requestBytes);
+        out.append(",\"responseBytes\":").append(record.responseBytes);
+        if (record.upstreamNanos >= 0L) {
+            out.append(",\"upstreamMicros\":").append(record.upstreamNanos / 1000L);
+        }
+
+        out.append(",\"durationMicros\":").append(record.durationNanos / 1000L);
+        for (int i = 0; i < this.attributeNames.size(); ++i) {
+            Object value = record.attributes[i];
+            if (value != null) {
+                appendString(out, this.attributeNames.get(i), String.valueOf(value));
+            }
+        }
+
+        out.append('}');
+    }
+
+    private static void appendString(StringBuilder out, String name, String value) {
+        if (value == null) {
+            return;
+        }
+
+        out.append(",\"");
+        escape(out, name);
+        out.append("\":\"");
+        escape(out, value);
+        out.append('"');
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+}
@@ -4,14 +4,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+/**
+ * Rejects requests without a valid {@code X-Api-Key}. It runs after the route filters but ahead of the global
+ * filters that answer requests locally, such as the response cache.
+ */
 @Component
 @ApiKeyRequired
-public class ApiKeyGlobalFilter implements GlobalFilter {
+public class ApiKeyGlobalFilter implements GlobalFilter, Ordered {
+    public static final int ORDER = NettyRoutingFilter.ORDER - 100;
     private static final Logger LOGGER = LoggerFactory.getLogger(ApiKeyGlobalFilter.class);
     private final ApiKeyValidator apiKeyValidator;
 
@@ -32,4 +39,9 @@ public class ApiKeyGlobalFilter implements GlobalFilter {
             }
         });
     }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
 }
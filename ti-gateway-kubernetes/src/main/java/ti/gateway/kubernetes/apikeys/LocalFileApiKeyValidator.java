@@ -99,13 +99,17 @@ public class LocalFileApiKeyValidator implements ApiKeyValidator {
     @Override
     public Mono<Boolean> keyIsValid(String token) {
         LOGGER.trace("Validating API ke");
-        String selector = this.getSelector(token);
+        String selector = getSelector(token);
         String verifier = this.getVerifier(token);
         String hashedApiKey = selector != null ? (String) this.knownKeys.get(selector) : null;
         return Mono.just(hashedApiKey != null && this.hashKey(verifier).equals(hashedApiKey));
     }
 
-    private String getSelector(String token) {
+    /**
+     * Returns the selector of an API key, the part that identifies it without being secret, or {@code null} if
+     * the token is not an API key.
+     */
+    public static String getSelector(String token) {
         return token != null && token.length() == 64 ? token.substring(0, 32) : null;
     }
 
@@ -3,6 +3,7 @@ package ti.gateway.kubernetes.body;
 import ti.gateway.kubernetes.core.KeyValue;
 import ti.gateway.kubernetes.core.KeyValueConfig;
 import ti.gateway.kubernetes.core.KeyValueGatewayFilterFactory;
+import ti.gateway.kubernetes.jfr.GatewayEvents;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.rewrite.ModifyResponseBodyGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.rewrite.RewriteFunction;
@@ -37,7 +38,7 @@ public class RewriteResponseBodyGatewayFilterFactory extends KeyValueGatewayFilt
             return Mono.just(body);
         };
 
-        modifyResponseBodyConfig.setRewriteFunction(rewriteFunction);
+        modifyResponseBodyConfig.setRewriteFunction(GatewayEvents.bodyRewrite("RewriteResponseBody", rewriteFunction));
 
         return this.modifyResponseBodyGatewayFilterFactory.apply(modifyResponseBodyConfig);
     }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import ti.gateway.kubernetes.jfr.GatewayEvents;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.rewrite.ModifyResponseBodyGatewayFilterFactory;
@@ -96,7 +97,7 @@ public class RemoveJsonAttributesResponseBodyGatewayFilterFactory extends Abstra
             return Mono.just(body);
         };
 
-        modifyResponseBodyConfig.setRewriteFunction(rewriteFunction);
+        modifyResponseBodyConfig.setRewriteFunction(GatewayEvents.bodyRewrite("RemoveJsonAttributesResponseBody", rewriteFunction));
 
         return this.modifyResponseBodyGatewayFilterFactory.apply(modifyResponseBodyConfig);
     }
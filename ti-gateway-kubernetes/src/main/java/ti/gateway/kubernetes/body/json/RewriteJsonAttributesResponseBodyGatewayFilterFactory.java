@@ -7,6 +7,7 @@ import com.jayway.jsonpath.Predicate;
 import ti.gateway.kubernetes.core.KeyValue;
 import ti.gateway.kubernetes.core.KeyValueConfig;
 import ti.gateway.kubernetes.core.KeyValueGatewayFilterFactory;
+import ti.gateway.kubernetes.jfr.GatewayEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
@@ -47,7 +48,7 @@ public class RewriteJsonAttributesResponseBodyGatewayFilterFactory extends KeyVa
             return Mono.just(jsonBody.jsonString());
         };
 
-        modifyResponseBodyConfig.setRewriteFunction(rewriteFunction);
+        modifyResponseBodyConfig.setRewriteFunction(GatewayEvents.bodyRewrite("RewriteJsonAttributesResponseBody", rewriteFunction));
 
         return this.modifyResponseBodyGatewayFilterFactory.apply(modifyResponseBodyConfig);
     }
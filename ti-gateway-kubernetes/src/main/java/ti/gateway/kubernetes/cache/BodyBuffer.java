@@ -0,0 +1,59 @@
+package ti.gateway.kubernetes.cache;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Copies the chunks of a response body up to a size limit. Once the limit is exceeded the copied bytes are
+ * dropped and further chunks are ignored.
+ */
+final class BodyBuffer {
+    private final int limit;
+    private byte[] bytes = new byte[1024];
+    private int length;
+    private boolean overflow;
+
+    BodyBuffer(int limit) {
+        this.limit = limit;
+    }
+
+    void append(DataBuffer buffer) {
+        int readable = buffer.readableByteCount();
+        if (this.overflow) {
+            return;
+        }
+
+        if (this.length + readable > this.limit) {
+            this.overflow = true;
+            this.bytes = null;
+            return;
+        }
+
+        if (this.length + readable > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.min(this.limit, Math.max(this.length + readable, this.bytes.length * 2)));
+        }
+
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer chunk = iterator.next();
+                int remaining = chunk.remaining();
+                chunk.get(this.bytes, this.length, remaining);
+                this.length += remaining;
+            }
+        }
+    }
+
+    boolean isOverflow() {
+        return this.overflow;
+    }
+
+    byte[] getBytes() {
+        return this.bytes;
+    }
+
+    int getLength() {
+        return this.length;
+    }
+}
@@ -0,0 +1,107 @@
+package ti.gateway.kubernetes.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+
+/**
+ * The {@code Cache-Control} directives relevant for a shared cache, parsed from request or response headers.
+ */
+final class CacheControlDirectives {
+    static final CacheControlDirectives NONE = new CacheControlDirectives(false, false, false, -1L, -1L, -1L);
+    private final boolean noStore;
+    private final boolean noCache;
+    private final boolean isPrivate;
+    private final long maxAge;
+    private final long sharedMaxAge;
+    private final long staleWhileRevalidate;
+
+    private CacheControlDirectives(boolean noStore, boolean noCache, boolean isPrivate, long maxAge, long sharedMaxAge, long staleWhileRevalidate) {
+        this.noStore = noStore;
+        this.noCache = noCache;
+        this.isPrivate = isPrivate;
+        this.maxAge = maxAge;
+        this.sharedMaxAge = sharedMaxAge;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    static CacheControlDirectives parse(HttpHeaders headers) {
+        List<String> values = headers.get(HttpHeaders.CACHE_CONTROL);
+        if (values == null || values.isEmpty()) {
+            return NONE;
+        }
+
+        boolean noStore = false;
+        boolean noCache = false;
+        boolean isPrivate = false;
+        long maxAge = -1L;
+        long sharedMaxAge = -1L;
+        long staleWhileRevalidate = -1L;
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                String name = directive.trim();
+                String argument = null;
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    argument = name.substring(equals + 1).trim();
+                    name = name.substring(0, equals).trim();
+                }
+
+                if ("no-store".equalsIgnoreCase(name)) {
+                    noStore = true;
+                } else if ("no-cache".equalsIgnoreCase(name)) {
+                    noCache = true;
+                } else if ("private".equalsIgnoreCase(name)) {
+                    isPrivate = true;
+                } else if ("max-age".equalsIgnoreCase(name)) {
+                    maxAge = seconds(argument);
+                } else if ("s-maxage".equalsIgnoreCase(name)) {
+                    sharedMaxAge = seconds(argument);
+                } else if ("stale-while-revalidate".equalsIgnoreCase(name)) {
+                    staleWhileRevalidate = seconds(argument);
+                }
+            }
+        }
+
+        return new CacheControlDirectives(noStore, noCache, isPrivate, maxAge, sharedMaxAge, staleWhileRevalidate);
+    }
+
+    private static long seconds(String argument) {
+        if (argument == null) {
+            return -1L;
+        }
+
+        try {
+            return Long.parseLong(argument.startsWith("\"") ? argument.substring(1, argument.length() - 1) : argument);
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return -1L;
+        }
+    }
+
+    boolean isNoStore() {
+        return this.noStore;
+    }
+
+    boolean isNoCache() {
+        return this.noCache;
+    }
+
+    boolean isPrivate() {
+        return this.isPrivate;
+    }
+
+    /**
+     * Freshness lifetime in seconds for a shared cache, {@code -1} when not specified.
+     */
+    long getFreshness() {
+        return this.sharedMaxAge >= 0L ? this.sharedMaxAge : this.maxAge;
+    }
+
+    long getMaxAge() {
+        return this.maxAge;
+    }
+
+    long getStaleWhileRevalidate() {
+        return this.staleWhileRevalidate;
+    }
+}
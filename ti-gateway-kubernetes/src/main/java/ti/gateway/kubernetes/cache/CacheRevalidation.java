@@ -0,0 +1,156 @@
+package ti.gateway.kubernetes.cache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Exchange used to revalidate a stale entry in the background, detached from the client exchange.
+ *
+ * The request is a copy of the client request without body and with conditional headers for the cached entry.
+ * The response only records status, headers and body, nothing is written to the client.
+ */
+final class CacheRevalidation extends ServerWebExchangeDecorator {
+    private final ServerHttpRequest request;
+    private final RevalidationResponse response;
+    private final Map<String, Object> attributes;
+
+    CacheRevalidation(ServerWebExchange exchange, CachedResponse stale, int maxEntrySize) {
+        super(exchange);
+        ServerHttpRequest copy = exchange.getRequest().mutate().headers((headers) -> {
+            headers.remove(HttpHeaders.IF_NONE_MATCH);
+            headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+            headers.remove(HttpHeaders.CACHE_CONTROL);
+            if (stale.getUpstreamEtag() != null) {
+                headers.setIfNoneMatch(stale.getUpstreamEtag());
+            }
+
+            String lastModified = stale.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+            if (lastModified != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        }).build();
+        this.request = new ServerHttpRequestDecorator(copy) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.empty();
+            }
+        };
+        this.response = new RevalidationResponse(exchange.getResponse(), maxEntrySize);
+        this.attributes = new ConcurrentHashMap<>(exchange.getAttributes());
+    }
+
+    @Override
+    public ServerHttpRequest getRequest() {
+        return this.request;
+    }
+
+    @Override
+    public ServerHttpResponse getResponse() {
+        return this.response;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return this.attributes;
+    }
+
+    HttpStatusCode getStatus() {
+        return this.response.statusCode;
+    }
+
+    HttpHeaders getHeaders() {
+        return this.response.headers;
+    }
+
+    BodyBuffer getBody() {
+        return this.response.body;
+    }
+
+    private static final class RevalidationResponse extends ServerHttpResponseDecorator {
+        private final HttpHeaders headers = new HttpHeaders();
+        private final MultiValueMap<String, ResponseCookie> cookies = new LinkedMultiValueMap<>();
+        private final BodyBuffer body;
+        private HttpStatusCode statusCode;
+
+        private RevalidationResponse(ServerHttpResponse delegate, int maxEntrySize) {
+            super(delegate);
+            this.body = new BodyBuffer(maxEntrySize);
+        }
+
+        @Override
+        public boolean setStatusCode(HttpStatusCode status) {
+            this.statusCode = status;
+            return true;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return this.statusCode;
+        }
+
+        @Override
+        public boolean setRawStatusCode(Integer value) {
+            return this.setStatusCode(value != null ? HttpStatusCode.valueOf(value) : null);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> getCookies() {
+            return this.cookies;
+        }
+
+        @Override
+        public void addCookie(ResponseCookie cookie) {
+            this.cookies.add(cookie.getName(), cookie);
+        }
+
+        @Override
+        public void beforeCommit(Supplier<? extends Mono<Void>> action) {
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return Flux.from(body).doOnNext((buffer) -> {
+                this.body.append(buffer);
+                DataBufferUtils.release(buffer);
+            }).then();
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return this.writeWith(Flux.from(body).concatMap(Flux::from));
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return Mono.empty();
+        }
+    }
+}
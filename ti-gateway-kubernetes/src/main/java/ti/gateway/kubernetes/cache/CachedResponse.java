@@ -0,0 +1,159 @@
+package ti.gateway.kubernetes.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * A cached response. The body is a heap array trimmed to its length; every write wraps it in a read-only buffer,
+ * so serving a hit does not copy the body.
+ */
+final class CachedResponse {
+    private static final int ENTRY_OVERHEAD = 256;
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final String etag;
+    private final boolean upstreamEtag;
+    private final long storedAt;
+    private final long freshNanos;
+    private final long staleNanos;
+    private final int weight;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    private CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body, String etag, boolean upstreamEtag, long storedAt, long freshNanos, long staleNanos) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.etag = etag;
+        this.upstreamEtag = upstreamEtag;
+        this.storedAt = storedAt;
+        this.freshNanos = freshNanos;
+        this.staleNanos = staleNanos;
+        this.weight = weigh(headers, body);
+    }
+
+    /**
+     * Creates an entry, adding a weak ETag derived from the body when the upstream did not send one.
+     */
+    static CachedResponse of(HttpStatusCode status, HttpHeaders upstreamHeaders, byte[] body, int length, long now, long freshNanos, long staleNanos) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(upstreamHeaders);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.remove(HttpHeaders.CONNECTION);
+        headers.remove("Keep-Alive");
+        headers.remove(HttpHeaders.AGE);
+        String etag = headers.getETag();
+        boolean upstreamEtag = etag != null;
+        if (!upstreamEtag) {
+            CRC32C crc = new CRC32C();
+            crc.update(body, 0, length);
+            etag = "W/\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(length) + "\"";
+            headers.setETag(etag);
+        }
+
+        return new CachedResponse(status, HttpHeaders.readOnlyHttpHeaders(headers), Arrays.copyOf(body, length), etag, upstreamEtag, now, freshNanos, staleNanos);
+    }
+
+    /**
+     * Returns a copy of this entry that is fresh again, after the upstream confirmed it with a 304.
+     */
+    CachedResponse revalidated(long now, long freshNanos, long staleNanos) {
+        return new CachedResponse(this.status, this.headers, this.body, this.etag, this.upstreamEtag, now, freshNanos, staleNanos);
+    }
+
+    HttpStatusCode getStatus() {
+        return this.status;
+    }
+
+    HttpHeaders getHeaders() {
+        return this.headers;
+    }
+
+    ByteBuffer getBody() {
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
+    int getContentLength() {
+        return this.body.length;
+    }
+
+    String getEtag() {
+        return this.etag;
+    }
+
+    /**
+     * Returns the ETag the upstream sent, {@code null} if the ETag was derived from the body.
+     */
+    String getUpstreamEtag() {
+        return this.upstreamEtag ? this.etag : null;
+    }
+
+    int getWeight() {
+        return this.weight;
+    }
+
+    boolean isFresh(long now) {
+        return now - this.storedAt < this.freshNanos;
+    }
+
+    boolean isUsable(long now) {
+        return now - this.storedAt < this.freshNanos + this.staleNanos;
+    }
+
+    long getAgeSeconds(long now) {
+        return TimeUnit.NANOSECONDS.toSeconds(now - this.storedAt);
+    }
+
+    /**
+     * Returns {@code true} for the one caller that should revalidate this stale entry.
+     */
+    boolean beginRevalidation() {
+        return this.revalidating.compareAndSet(false, true);
+    }
+
+    void endRevalidation() {
+        this.revalidating.set(false);
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header with the entity tag of this entry.
+     */
+    boolean matches(List<String> ifNoneMatch) {
+        String opaque = opaqueTag(this.etag);
+        for (String value : ifNoneMatch) {
+            for (String tag : value.split(",")) {
+                String trimmed = tag.trim();
+                if ("*".equals(trimmed) || opaque.equals(opaqueTag(trimmed))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static int weigh(HttpHeaders headers, byte[] body) {
+        long weight = ENTRY_OVERHEAD + body.length;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            weight += header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += value.length();
+            }
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+}
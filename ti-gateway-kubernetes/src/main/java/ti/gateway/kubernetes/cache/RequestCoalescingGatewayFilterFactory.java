@@ -0,0 +1,373 @@
+package ti.gateway.kubernetes.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent identical {@code GET} requests into a single upstream call.
+ *
+ * Requests are identical when route, method, URI and the configured request headers match. The first request
+ * is proxied and its response is buffered while it is written; requests arriving meanwhile wait for it and get
+ * a copy. Waiters beyond the limit, waiters that time out and waiters of a response that cannot be shared
+ * (streamed, too large, setting cookies, private, {@code no-store} or failed) are proxied on their own.
+ *
+ * Requests are coalesced by {@link RequestCoalescingGlobalFilter} after every route filter, so waiters pass
+ * authentication as the leader does. Requests with an {@code Authorization}, {@code Cookie} or {@code X-Api-Key}
+ * header are not coalesced unless the header is part of the key. The filter itself runs before {@link NettyWriteResponseFilter} so that it sees the response body as it is written.
+ */
+@Component
+public class RequestCoalescingGatewayFilterFactory extends AbstractGatewayFilterFactory<RequestCoalescingGatewayFilterFactory.Config> {
+    static final String REQUESTS_METRIC = "spring.cloud.gateway.coalescing.requests";
+    static final String LOOKUP_ATTR = RequestCoalescingGatewayFilterFactory.class.getName() + ".lookup";
+    private final MeterRegistry meterRegistry;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public RequestCoalescingGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(RequestCoalescingGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("timeout", "maxWaiters");
+    }
+
+    public GatewayFilter apply(RequestCoalescingGatewayFilterFactory.Config config) {
+        RouteCoalescing route = new RouteCoalescing(config, this.meterRegistry);
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            if (exchange.getRequest().getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+
+            LeaderResponse response = new LeaderResponse(exchange.getResponse(), route.maxBodySize);
+            exchange.getAttributes().put(LOOKUP_ATTR, new Lookup(route, response));
+            return chain.filter(exchange.mutate().response(response).build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    private Mono<Void> coalesce(ServerWebExchange exchange, GatewayFilterChain chain, Lookup lookup) {
+        RouteCoalescing route = lookup.route;
+        if (!route.isKeyed(exchange.getRequest().getHeaders())) {
+            return chain.filter(exchange);
+        }
+
+        String key = route.key(exchange.getRequest());
+        InFlight created = new InFlight();
+        InFlight existing = this.inFlight.putIfAbsent(key, created);
+        if (existing == null) {
+            route.leaders.increment();
+            lookup.response.arm(key, created);
+            return chain.filter(exchange).doFinally((signal) -> {
+                lookup.response.complete(SharedResponse.FAILED);
+            });
+        }
+
+        if (existing.waiters.incrementAndGet() > route.maxWaiters) {
+            route.bypassed.increment();
+            return chain.filter(exchange);
+        }
+
+        return existing.result.asMono()
+                .timeout(route.timeout, Mono.just(SharedResponse.FAILED))
+                .flatMap((shared) -> {
+                    if (shared == SharedResponse.FAILED) {
+                        route.fallbacks.increment();
+                        return chain.filter(exchange);
+                    }
+
+                    route.coalesced.increment();
+                    return shared.writeTo(exchange.getResponse());
+                });
+    }
+
+    /**
+     * Where the filter left the exchange, for {@link RequestCoalescingGlobalFilter} to coalesce the request once
+     * every other route filter has run.
+     */
+    final class Lookup {
+        private final RouteCoalescing route;
+        private final LeaderResponse response;
+
+        private Lookup(RouteCoalescing route, LeaderResponse response) {
+            this.route = route;
+            this.response = response;
+        }
+
+        Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return RequestCoalescingGatewayFilterFactory.this.coalesce(exchange, chain, this);
+        }
+    }
+
+    /**
+     * Response of an upstream call, shared with the waiting requests.
+     */
+    static final class SharedResponse {
+        static final SharedResponse FAILED = new SharedResponse(null, null, null, 0);
+        private final HttpStatusCode status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final int length;
+
+        private SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body, int length) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.length = length;
+        }
+
+        private Mono<Void> writeTo(ServerHttpResponse response) {
+            response.setStatusCode(this.status);
+            HttpHeaders headers = response.getHeaders();
+            for (Map.Entry<String, List<String>> header : this.headers.entrySet()) {
+                headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+
+            headers.setContentLength(this.length);
+            if (this.length == 0) {
+                return response.setComplete();
+            }
+
+            return response.writeWith(Mono.fromSupplier(() -> {
+                return response.bufferFactory().wrap(ByteBuffer.wrap(this.body, 0, this.length).asReadOnlyBuffer());
+            }));
+        }
+    }
+
+    private static final class InFlight {
+        private final Sinks.One<SharedResponse> result = Sinks.one();
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+
+    /**
+     * Response of the leading request; buffers the body while it is written and hands it to the waiters. Until
+     * the request is found to lead, it passes the response through.
+     */
+    private final class LeaderResponse extends ServerHttpResponseDecorator {
+        private final int maxBodySize;
+        private String key;
+        private InFlight flight;
+        private boolean completed;
+
+        private LeaderResponse(ServerHttpResponse delegate, int maxBodySize) {
+            super(delegate);
+            this.maxBodySize = maxBodySize;
+        }
+
+        private void arm(String key, InFlight flight) {
+            this.key = key;
+            this.flight = flight;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (this.flight == null) {
+                return super.writeWith(body);
+            }
+
+            HttpStatusCode status = this.getStatusCode();
+            HttpHeaders headers = this.shareableHeaders();
+            if (status == null || headers == null || this.getHeaders().getContentLength() > this.maxBodySize) {
+                this.complete(SharedResponse.FAILED);
+                return super.writeWith(body);
+            }
+
+            BodyBuffer buffer = new BodyBuffer(this.maxBodySize);
+            return super.writeWith(Flux.from(body).doOnNext(buffer::append).doOnComplete(() -> {
+                this.complete(buffer.isOverflow() ? SharedResponse.FAILED : new SharedResponse(status, headers, buffer.getBytes(), buffer.getLength()));
+            }));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            this.complete(SharedResponse.FAILED);
+            return super.writeAndFlushWith(body);
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            if (this.flight == null) {
+                return super.setComplete();
+            }
+
+            HttpStatusCode status = this.getStatusCode();
+            HttpHeaders headers = this.shareableHeaders();
+            this.complete(status != null && headers != null ? new SharedResponse(status, headers, null, 0) : SharedResponse.FAILED);
+            return super.setComplete();
+        }
+
+        private HttpHeaders shareableHeaders() {
+            HttpHeaders headers = this.getHeaders();
+            if (headers.containsKey(HttpHeaders.SET_COOKIE) || !this.getCookies().isEmpty()) {
+                return null;
+            }
+
+            CacheControlDirectives directives = CacheControlDirectives.parse(headers);
+            if (directives.isPrivate() || directives.isNoStore()) {
+                return null;
+            }
+
+            HttpHeaders snapshot = new HttpHeaders();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                snapshot.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+
+            snapshot.remove(HttpHeaders.CONTENT_LENGTH);
+            snapshot.remove(HttpHeaders.TRANSFER_ENCODING);
+            snapshot.remove(HttpHeaders.CONNECTION);
+            return snapshot;
+        }
+
+        private void complete(SharedResponse response) {
+            synchronized (this) {
+                if (this.flight == null || this.completed) {
+                    return;
+                }
+
+                this.completed = true;
+            }
+
+            RequestCoalescingGatewayFilterFactory.this.inFlight.remove(this.key, this.flight);
+            this.flight.result.tryEmitValue(response);
+        }
+    }
+
+    private static final class RouteCoalescing {
+        private final String routeId;
+        private final List<String> headers;
+        private final int maxWaiters;
+        private final Duration timeout;
+        private final int maxBodySize;
+        private final Counter leaders;
+        private final Counter coalesced;
+        private final Counter bypassed;
+        private final Counter fallbacks;
+
+        private RouteCoalescing(Config config, MeterRegistry meterRegistry) {
+            this.routeId = config.getRouteId() != null ? config.getRouteId() : "";
+            this.headers = new ArrayList<>(config.getHeaders());
+            this.maxWaiters = config.getMaxWaiters();
+            this.timeout = config.getTimeout();
+            this.maxBodySize = (int) Math.min(Integer.MAX_VALUE, config.getMaxBodySize().toBytes());
+            this.leaders = requests(meterRegistry, this.routeId, "leader");
+            this.coalesced = requests(meterRegistry, this.routeId, "coalesced");
+            this.bypassed = requests(meterRegistry, this.routeId, "bypassed");
+            this.fallbacks = requests(meterRegistry, this.routeId, "fallback");
+        }
+
+        private static Counter requests(MeterRegistry meterRegistry, String routeId, String result) {
+            return Counter.builder(REQUESTS_METRIC)
+                    .description("Coalescable requests by outcome")
+                    .tag("routeId", routeId)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Returns {@code false} for requests with credentials that are not part of the key, which are proxied on
+         * their own.
+         */
+        private boolean isKeyed(HttpHeaders requestHeaders) {
+            if (requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) && this.headers.stream().noneMatch(HttpHeaders.AUTHORIZATION::equalsIgnoreCase)) {
+                return false;
+            }
+
+            return ResponseCacheGatewayFilterFactory.isKeyed(requestHeaders, this.headers);
+        }
+
+        private String key(ServerHttpRequest request) {
+            String key = ResponseCacheGatewayFilterFactory.key(ResponseCacheGatewayFilterFactory.resourceKey(this.routeId, request), this.headers, request);
+            return request.getMethod().name() + " " + key;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private List<String> headers = new ArrayList<>();
+        private int maxWaiters = 1000;
+        private Duration timeout = Duration.ofSeconds(5L);
+        private DataSize maxBodySize = DataSize.ofMegabytes(1L);
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Request headers that are part of the coalescing key, in addition to method and URI.
+         */
+        public List<String> getHeaders() {
+            return this.headers;
+        }
+
+        public void setHeaders(List<String> headers) {
+            this.headers = headers;
+        }
+
+        public int getMaxWaiters() {
+            return this.maxWaiters;
+        }
+
+        public void setMaxWaiters(int maxWaiters) {
+            this.maxWaiters = maxWaiters;
+        }
+
+        /**
+         * How long a request waits for the coalesced response before it is proxied on its own.
+         */
+        public Duration getTimeout() {
+            return this.timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public DataSize getMaxBodySize() {
+            return this.maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ti.gateway.kubernetes.cache;
+
+import ti.gateway.kubernetes.apikeys.ApiKeyGlobalFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces the requests of routes with {@link RequestCoalescingGatewayFilterFactory} once every route filter has
+ * run. Requests of other routes only pay for an attribute lookup.
+ *
+ * It runs after {@link ApiKeyGlobalFilter} and every route filter, so a waiter only gets the shared response if it
+ * passed authentication and rate limiting itself, and after {@link ResponseCacheGlobalFilter}, so cache hits are
+ * never held back.
+ */
+@Component
+class RequestCoalescingGlobalFilter implements GlobalFilter, Ordered {
+    static final int ORDER = NettyRoutingFilter.ORDER - 20;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        RequestCoalescingGatewayFilterFactory.Lookup lookup = exchange.getAttribute(RequestCoalescingGatewayFilterFactory.LOOKUP_ATTR);
+        return lookup != null ? lookup.filter(exchange, chain) : chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
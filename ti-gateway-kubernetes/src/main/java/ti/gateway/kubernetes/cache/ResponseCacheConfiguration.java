@@ -0,0 +1,33 @@
+package ti.gateway.kubernetes.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Response cache configuration
+ *
+ * The store is shared by all routes using the {@code ResponseCache} filter, so its memory limit is global.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties({ResponseCacheProperties.class})
+public class ResponseCacheConfiguration {
+
+    @Bean
+    ResponseCacheStore responseCacheStore(ResponseCacheProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        ResponseCacheStore store = new ResponseCacheStore(properties);
+        meterRegistry.ifAvailable((registry) -> {
+            Gauge.builder("spring.cloud.gateway.cache.size", store, ResponseCacheStore::getWeightedSize)
+                    .description("Memory used by cached responses")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("spring.cloud.gateway.cache.entries", store, ResponseCacheStore::getEntryCount)
+                    .description("Number of cached responses")
+                    .register(registry);
+        });
+        return store;
+    }
+}
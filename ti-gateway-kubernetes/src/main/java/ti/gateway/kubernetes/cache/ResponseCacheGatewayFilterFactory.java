@@ -0,0 +1,387 @@
+package ti.gateway.kubernetes.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches {@code GET} responses of a route in the shared {@link ResponseCacheStore}.
+ *
+ * Freshness follows {@code Cache-Control} ({@code s-maxage}, {@code max-age}, {@code stale-while-revalidate})
+ * and falls back to the route configuration; {@code no-store}, {@code no-cache}, {@code private} and responses
+ * setting cookies are not stored, and {@code Vary} selects the entry by the named request headers.
+ * {@code If-None-Match} is answered locally with 304. A stale entry within its stale-while-revalidate window is
+ * served while a single background request revalidates it upstream.
+ *
+ * Requests are looked up by {@link ResponseCacheGlobalFilter} after every route filter, so authentication and
+ * rate limiting apply to cache hits as they do to forwarded requests. Requests with {@code Authorization} are
+ * not cached, nor are those with a cookie or API key unless the response varies by it. The filter itself runs
+ * before {@link NettyWriteResponseFilter} so that it sees the response body as it is written.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+    static final String REQUESTS_METRIC = "spring.cloud.gateway.cache.requests";
+    static final String SERVED_METRIC = "spring.cloud.gateway.cache.served";
+    static final String LOOKUP_ATTR = ResponseCacheGatewayFilterFactory.class.getName() + ".lookup";
+    private static final String[] CREDENTIAL_HEADERS = {HttpHeaders.COOKIE, "X-Api-Key"};
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCacheGatewayFilterFactory.class);
+    private static final String[] NOT_MODIFIED_HEADERS = {HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL, HttpHeaders.VARY, HttpHeaders.EXPIRES, HttpHeaders.CONTENT_LOCATION};
+    private final ResponseCacheStore store;
+    private final MeterRegistry meterRegistry;
+
+    public ResponseCacheGatewayFilterFactory(ResponseCacheStore store, MeterRegistry meterRegistry) {
+        super(ResponseCacheGatewayFilterFactory.Config.class);
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("timeToLive", "staleWhileRevalidate");
+    }
+
+    public GatewayFilter apply(ResponseCacheGatewayFilterFactory.Config config) {
+        RouteCache routeCache = new RouteCache(config, this.meterRegistry);
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            if (exchange.getRequest().getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+
+            CachingResponse response = new CachingResponse(exchange.getResponse(), routeCache);
+            exchange.getAttributes().put(LOOKUP_ATTR, new Lookup(exchange, chain, response));
+            return chain.filter(exchange.mutate().response(response).build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> lookup(ServerWebExchange exchange, GatewayFilterChain chain, Lookup lookup) {
+        ServerHttpRequest request = exchange.getRequest();
+        RouteCache routeCache = lookup.response.routeCache;
+        if (request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+            return chain.filter(exchange);
+        }
+
+        CacheControlDirectives requestDirectives = CacheControlDirectives.parse(request.getHeaders());
+        if (requestDirectives.isNoStore()) {
+            return chain.filter(exchange);
+        }
+
+        String resourceKey = resourceKey(routeCache.routeId, request);
+        List<String> varyHeaders = this.store.getVaryHeaders(resourceKey);
+        if (!requestDirectives.isNoCache() && requestDirectives.getMaxAge() != 0L && isKeyed(request.getHeaders(), varyHeaders)) {
+            String key = key(resourceKey, varyHeaders, request);
+            CachedResponse cached = this.store.get(key);
+            long now = System.nanoTime();
+            if (cached != null && cached.isFresh(now)) {
+                routeCache.hits.increment();
+                return this.serve(exchange, cached, now, routeCache);
+            }
+
+            if (cached != null && cached.isUsable(now)) {
+                routeCache.staleHits.increment();
+                this.revalidate(lookup, key, cached, routeCache);
+                return this.serve(exchange, cached, now, routeCache);
+            }
+        }
+
+        routeCache.misses.increment();
+        lookup.response.arm(resourceKey, request);
+        return chain.filter(exchange);
+    }
+
+    /**
+     * Returns {@code true} unless the request carries a cookie or API key that the cache key, made of the headers
+     * the response varies by, does not include. Responses to such requests are neither served nor stored.
+     */
+    static boolean isKeyed(HttpHeaders requestHeaders, List<String> varyHeaders) {
+        for (String credential : CREDENTIAL_HEADERS) {
+            if (requestHeaders.containsKey(credential) && (varyHeaders == null || varyHeaders.stream().noneMatch(credential::equalsIgnoreCase))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Mono<Void> serve(ServerWebExchange exchange, CachedResponse cached, long now, RouteCache routeCache) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        List<String> ifNoneMatch = exchange.getRequest().getHeaders().get(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && cached.matches(ifNoneMatch)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            for (String name : NOT_MODIFIED_HEADERS) {
+                List<String> values = cached.getHeaders().get(name);
+                if (values != null) {
+                    headers.put(name, new ArrayList<>(values));
+                }
+            }
+
+            headers.set(HttpHeaders.AGE, Long.toString(cached.getAgeSeconds(now)));
+            return response.setComplete();
+        }
+
+        response.setStatusCode(cached.getStatus());
+        for (Map.Entry<String, List<String>> header : cached.getHeaders().entrySet()) {
+            headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+
+        headers.setContentLength(cached.getContentLength());
+        headers.set(HttpHeaders.AGE, Long.toString(cached.getAgeSeconds(now)));
+        routeCache.servedBytes.increment(cached.getContentLength());
+        return response.writeWith(Mono.fromSupplier(() -> {
+            return response.bufferFactory().wrap(cached.getBody());
+        }));
+    }
+
+    private void revalidate(Lookup lookup, String key, CachedResponse stale, RouteCache routeCache) {
+        if (!stale.beginRevalidation()) {
+            return;
+        }
+
+        CacheRevalidation revalidation = new CacheRevalidation(lookup.exchange, stale, this.store.getMaxEntrySize());
+        revalidation.getAttributes().remove(LOOKUP_ATTR);
+        lookup.chain.filter(revalidation)
+                .doFinally((signal) -> {
+                    stale.endRevalidation();
+                })
+                .subscribe(null, (error) -> {
+                    LOG.debug("Revalidation of {} failed: {}", key, error.toString());
+                }, () -> {
+                    this.revalidated(key, stale, revalidation, routeCache);
+                });
+    }
+
+    private void revalidated(String key, CachedResponse stale, CacheRevalidation revalidation, RouteCache routeCache) {
+        long now = System.nanoTime();
+        HttpStatusCode status = revalidation.getStatus();
+        if (status != null && status.value() == HttpStatus.NOT_MODIFIED.value()) {
+            HttpHeaders headers = revalidation.getHeaders().containsKey(HttpHeaders.CACHE_CONTROL) ? revalidation.getHeaders() : stale.getHeaders();
+            long[] freshness = routeCache.freshness(HttpStatus.OK, headers);
+            if (freshness != null) {
+                this.store.put(key, stale.revalidated(now, freshness[0], freshness[1]));
+                return;
+            }
+        } else if (status != null) {
+            long[] freshness = routeCache.freshness(status, revalidation.getHeaders());
+            BodyBuffer body = revalidation.getBody();
+            if (freshness != null && !body.isOverflow() && revalidation.getHeaders().getVary().equals(stale.getHeaders().getVary())) {
+                this.store.put(key, CachedResponse.of(status, revalidation.getHeaders(), body.getBytes(), body.getLength(), now, freshness[0], freshness[1]));
+                return;
+            }
+        }
+
+        this.store.invalidate(key);
+    }
+
+    static String resourceKey(String routeId, ServerHttpRequest request) {
+        String query = request.getURI().getRawQuery();
+        String path = request.getURI().getRawPath();
+        return query != null ? routeId + " " + path + "?" + query : routeId + " " + path;
+    }
+
+    static String key(String resourceKey, List<String> varyHeaders, ServerHttpRequest request) {
+        if (varyHeaders == null || varyHeaders.isEmpty()) {
+            return resourceKey;
+        }
+
+        StringBuilder key = new StringBuilder(resourceKey);
+        for (String name : varyHeaders) {
+            key.append('\n').append(name).append(':');
+            List<String> values = request.getHeaders().get(name);
+            if (values != null) {
+                key.append(String.join(",", values));
+            }
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Where the filter left the exchange, for {@link ResponseCacheGlobalFilter} to look the request up once every
+     * other route filter has run.
+     */
+    final class Lookup {
+        private final ServerWebExchange exchange;
+        private final GatewayFilterChain chain;
+        private final CachingResponse response;
+
+        private Lookup(ServerWebExchange exchange, GatewayFilterChain chain, CachingResponse response) {
+            this.exchange = exchange;
+            this.chain = chain;
+            this.response = response;
+        }
+
+        Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return ResponseCacheGatewayFilterFactory.this.lookup(exchange, chain, this);
+        }
+    }
+
+    /**
+     * Stores the response body as it is written to the client, if the lookup missed and the response is
+     * cacheable. Until then it passes the response through.
+     */
+    private final class CachingResponse extends ServerHttpResponseDecorator {
+        private final RouteCache routeCache;
+        private String resourceKey;
+        private ServerHttpRequest request;
+
+        private CachingResponse(ServerHttpResponse delegate, RouteCache routeCache) {
+            super(delegate);
+            this.routeCache = routeCache;
+        }
+
+        private void arm(String resourceKey, ServerHttpRequest request) {
+            this.resourceKey = resourceKey;
+            this.request = request;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (this.resourceKey == null) {
+                return super.writeWith(body);
+            }
+
+            HttpStatusCode status = this.getStatusCode();
+            HttpHeaders headers = this.getHeaders();
+            long[] freshness = this.routeCache.freshness(status, headers);
+            int maxEntrySize = ResponseCacheGatewayFilterFactory.this.store.getMaxEntrySize();
+            if (freshness == null || headers.getContentLength() > maxEntrySize || !isKeyed(this.request.getHeaders(), headers.getVary())) {
+                return super.writeWith(body);
+            }
+
+            HttpHeaders snapshot = new HttpHeaders();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                snapshot.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+
+            List<String> varyHeaders = snapshot.getVary();
+            BodyBuffer buffer = new BodyBuffer(maxEntrySize);
+            return super.writeWith(Flux.from(body).doOnNext(buffer::append).doOnComplete(() -> {
+                if (!buffer.isOverflow()) {
+                    ResponseCacheStore store = ResponseCacheGatewayFilterFactory.this.store;
+                    store.putVaryHeaders(this.resourceKey, varyHeaders);
+                    String key = key(this.resourceKey, varyHeaders, this.request);
+                    store.put(key, CachedResponse.of(status, snapshot, buffer.getBytes(), buffer.getLength(), System.nanoTime(), freshness[0], freshness[1]));
+                }
+            }));
+        }
+    }
+
+    private static final class RouteCache {
+        private final String routeId;
+        private final long timeToLiveNanos;
+        private final long staleWhileRevalidateNanos;
+        private final Counter hits;
+        private final Counter staleHits;
+        private final Counter misses;
+        private final Counter servedBytes;
+
+        private RouteCache(Config config, MeterRegistry meterRegistry) {
+            this.routeId = config.getRouteId() != null ? config.getRouteId() : "";
+            this.timeToLiveNanos = config.getTimeToLive().toNanos();
+            this.staleWhileRevalidateNanos = config.getStaleWhileRevalidate().toNanos();
+            this.hits = requests(meterRegistry, this.routeId, "hit");
+            this.staleHits = requests(meterRegistry, this.routeId, "stale");
+            this.misses = requests(meterRegistry, this.routeId, "miss");
+            this.servedBytes = Counter.builder(SERVED_METRIC)
+                    .description("Response body bytes served from the cache")
+                    .baseUnit("bytes")
+                    .tag("routeId", this.routeId)
+                    .register(meterRegistry);
+        }
+
+        private static Counter requests(MeterRegistry meterRegistry, String routeId, String result) {
+            return Counter.builder(REQUESTS_METRIC)
+                    .description("Cacheable requests by cache result")
+                    .tag("routeId", routeId)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Returns fresh and stale-while-revalidate periods in nanoseconds, or {@code null} if the response must
+         * not be stored.
+         */
+        private long[] freshness(HttpStatusCode status, HttpHeaders headers) {
+            if (status == null || status.value() != 200 || headers.containsKey(HttpHeaders.SET_COOKIE) || headers.getVary().contains("*")) {
+                return null;
+            }
+
+            CacheControlDirectives directives = CacheControlDirectives.parse(headers);
+            if (directives.isNoStore() || directives.isNoCache() || directives.isPrivate()) {
+                return null;
+            }
+
+            long fresh = directives.getFreshness() >= 0L ? Duration.ofSeconds(directives.getFreshness()).toNanos() : this.timeToLiveNanos;
+            long stale = directives.getStaleWhileRevalidate() >= 0L ? Duration.ofSeconds(directives.getStaleWhileRevalidate()).toNanos() : this.staleWhileRevalidateNanos;
+            return fresh > 0L ? new long[]{fresh, stale} : null;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private Duration timeToLive = Duration.ZERO;
+        private Duration staleWhileRevalidate = Duration.ZERO;
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Freshness of responses without {@code max-age} or {@code s-maxage}; zero only caches responses that
+         * declare their freshness.
+         */
+        public Duration getTimeToLive() {
+            return this.timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        /**
+         * How long a stale response may be served while it is revalidated, unless the response declares
+         * {@code stale-while-revalidate}.
+         */
+        public Duration getStaleWhileRevalidate() {
+            return this.staleWhileRevalidate;
+        }
+
+        public void setStaleWhileRevalidate(Duration staleWhileRevalidate) {
+            this.staleWhileRevalidate = staleWhileRevalidate;
+        }
+    }
+}
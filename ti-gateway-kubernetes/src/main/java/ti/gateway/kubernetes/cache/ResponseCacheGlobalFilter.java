@@ -0,0 +1,33 @@
+package ti.gateway.kubernetes.cache;
+
+import ti.gateway.kubernetes.apikeys.ApiKeyGlobalFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Looks up the requests of routes with {@link ResponseCacheGatewayFilterFactory} once every route filter has run,
+ * serving hits without forwarding them. Requests of other routes only pay for an attribute lookup.
+ *
+ * It runs after {@link ApiKeyGlobalFilter} and every route filter, so a hit is only served to a request that
+ * passed authentication and rate limiting.
+ */
+@Component
+class ResponseCacheGlobalFilter implements GlobalFilter, Ordered {
+    static final int ORDER = NettyRoutingFilter.ORDER - 30;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ResponseCacheGatewayFilterFactory.Lookup lookup = exchange.getAttribute(ResponseCacheGatewayFilterFactory.LOOKUP_ATTR);
+        return lookup != null ? lookup.filter(exchange, chain) : chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,46 @@
+package ti.gateway.kubernetes.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(
+        prefix = "spring.cloud.gateway.k8s.response-cache"
+)
+class ResponseCacheProperties {
+    private DataSize maxMemory = DataSize.ofMegabytes(64L);
+    private DataSize maxEntrySize = DataSize.ofMegabytes(1L);
+    private int maxVaryKeys = 10000;
+
+    ResponseCacheProperties() {
+    }
+
+    /**
+     * Memory shared by the cached responses of all routes.
+     */
+    public DataSize getMaxMemory() {
+        return this.maxMemory;
+    }
+
+    public void setMaxMemory(DataSize maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Responses with a larger body are passed through without being cached.
+     */
+    public DataSize getMaxEntrySize() {
+        return this.maxEntrySize;
+    }
+
+    public void setMaxEntrySize(DataSize maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    public int getMaxVaryKeys() {
+        return this.maxVaryKeys;
+    }
+
+    public void setMaxVaryKeys(int maxVaryKeys) {
+        this.maxVaryKeys = maxVaryKeys;
+    }
+}
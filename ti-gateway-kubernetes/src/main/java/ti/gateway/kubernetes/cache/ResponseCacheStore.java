@@ -0,0 +1,70 @@
+package ti.gateway.kubernetes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.List;
+
+/**
+ * Cached responses of all routes, bounded by the total size of the entries.
+ *
+ * Eviction is size-aware: entries are weighed by body and header size and the cache keeps the total weight
+ * below the configured memory. Keys of resources whose responses vary by request headers map to the list of
+ * those header names in a separate, count-bounded index.
+ */
+class ResponseCacheStore {
+    private final Cache<String, CachedResponse> responses;
+    private final Cache<String, List<String>> varyHeaders;
+    private final int maxEntrySize;
+
+    ResponseCacheStore(ResponseCacheProperties properties) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxMemory().toBytes())
+                .weigher((String key, CachedResponse response) -> {
+                    return response.getWeight() + key.length();
+                })
+                .build();
+        this.varyHeaders = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxVaryKeys())
+                .build();
+        this.maxEntrySize = (int) Math.min(Integer.MAX_VALUE, properties.getMaxEntrySize().toBytes());
+    }
+
+    CachedResponse get(String key) {
+        return this.responses.getIfPresent(key);
+    }
+
+    void put(String key, CachedResponse response) {
+        this.responses.put(key, response);
+    }
+
+    void invalidate(String key) {
+        this.responses.invalidate(key);
+    }
+
+    List<String> getVaryHeaders(String resourceKey) {
+        return this.varyHeaders.getIfPresent(resourceKey);
+    }
+
+    void putVaryHeaders(String resourceKey, List<String> headerNames) {
+        if (headerNames.isEmpty()) {
+            this.varyHeaders.invalidate(resourceKey);
+        } else {
+            this.varyHeaders.put(resourceKey, headerNames);
+        }
+    }
+
+    int getMaxEntrySize() {
+        return this.maxEntrySize;
+    }
+
+    long getWeightedSize() {
+        return this.responses.policy().eviction().map((eviction) -> {
+            return eviction.weightedSize().orElse(0L);
+        }).orElse(0L);
+    }
+
+    long getEntryCount() {
+        return this.responses.estimatedSize();
+    }
+}
@@ -1,10 +1,8 @@
 package ti.gateway.kubernetes.circuitbreaker;
 
-import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
-import io.github.resilience4j.core.IntervalFunction;
 import org.springframework.beans.factory.ObjectProvider;
-import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
-import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
@@ -17,17 +15,25 @@ import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Resilience4J circuit breaker filter whose breakers come from the {@link SharedCircuitBreakerRegistry}.
+ *
+ * Breakers are looked up by name, so routes sharing a name share one breaker whose state survives route
+ * refreshes. The settings of a route are only applied when they differ from the ones the breaker was built with.
+ */
 @Component
 @SuppressWarnings("rawtypes")
 public class CircuitBreakerGatewayFilterFactory extends AbstractGatewayFilterFactory<CircuitBreakerGatewayFilterFactory.Resilience4JExtendedConfig> {
-    private final ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory;
-    private final ObjectProvider<DispatcherHandler> dispatcherHandlerProvider;
+    private final SharedCircuitBreakerRegistry circuitBreakerRegistry;
+    private final SpringCloudCircuitBreakerResilience4JFilterFactory filterFactory;
 
-    public CircuitBreakerGatewayFilterFactory(ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory, ObjectProvider<DispatcherHandler> dispatcherHandlerProvider) {
-        this.reactiveCircuitBreakerFactory = reactiveCircuitBreakerFactory;
-        this.dispatcherHandlerProvider = dispatcherHandlerProvider;
+    CircuitBreakerGatewayFilterFactory(SharedCircuitBreakerRegistry circuitBreakerRegistry, ObjectProvider<DispatcherHandler> dispatcherHandlerProvider) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.filterFactory = new SpringCloudCircuitBreakerResilience4JFilterFactory(new RegistryCircuitBreakerFactory(circuitBreakerRegistry), dispatcherHandlerProvider);
     }
 
     public List<String> shortcutFileOrder() {
@@ -40,33 +46,12 @@ public class CircuitBreakerGatewayFilterFactory extends AbstractGatewayFilterFac
         );
     }
 
-    public Customizer<ReactiveResilience4JCircuitBreakerFactory> customizer(CircuitBreakerGatewayFilterFactory.Resilience4JExtendedConfig config) {
-        return (factory) -> {
-            factory.configure((builder) -> {
-                CircuitBreakerConfig.Builder custom = CircuitBreakerConfig.custom();
-                if (config.getFailureRateThreshold() != null) {
-                    custom.failureRateThreshold(config.getFailureRateThreshold());
-                }
-
-                if (config.getWaitIntervalInOpenState() != null) {
-                    custom.waitIntervalFunctionInOpenState(IntervalFunction.of(config.getWaitIntervalInOpenState()));
-                }
-
-                builder.circuitBreakerConfig(custom.build());
-            }, new String[]{config.getId()});
-        };
-    }
-
     @Override
     public GatewayFilter apply(Resilience4JExtendedConfig config) {
-        if (config.hasResilience4JCustomizations()) {
-            this.customizer(config).customize((ReactiveResilience4JCircuitBreakerFactory) this.reactiveCircuitBreakerFactory);
-        }
-
-        SpringCloudCircuitBreakerResilience4JFilterFactory filterFactory = new SpringCloudCircuitBreakerResilience4JFilterFactory(this.reactiveCircuitBreakerFactory, this.dispatcherHandlerProvider);
+        this.circuitBreakerRegistry.configure(config.getId(), config.getRouteId(), config.toSettings());
         this.updateStatusCodes(config);
 
-        return filterFactory.apply(config);
+        return this.filterFactory.apply(config);
     }
 
     private void updateStatusCodes(Resilience4JExtendedConfig config) {
@@ -95,6 +80,8 @@ public class CircuitBreakerGatewayFilterFactory extends AbstractGatewayFilterFac
     static class Resilience4JExtendedConfig extends SpringCloudCircuitBreakerFilterFactory.Config {
         private Float failureRateThreshold;
         private Duration waitIntervalInOpenState;
+        private Float slowCallRateThreshold;
+        private Duration slowCallDurationThreshold;
 
         public Resilience4JExtendedConfig() {
         }
@@ -115,8 +102,67 @@ public class CircuitBreakerGatewayFilterFactory extends AbstractGatewayFilterFac
             this.waitIntervalInOpenState = waitIntervalInOpenState;
         }
 
+        public Float getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(Float slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public Duration getSlowCallDurationThreshold() {
+            return slowCallDurationThreshold;
+        }
+
+        public void setSlowCallDurationThreshold(Duration slowCallDurationThreshold) {
+            this.slowCallDurationThreshold = slowCallDurationThreshold;
+        }
+
         public boolean hasResilience4JCustomizations() {
-            return this.failureRateThreshold != null || this.waitIntervalInOpenState != null;
+            return this.failureRateThreshold != null || this.waitIntervalInOpenState != null || this.slowCallRateThreshold != null || this.slowCallDurationThreshold != null;
+        }
+
+        SharedCircuitBreakerRegistry.Settings toSettings() {
+            return this.hasResilience4JCustomizations() ? new SharedCircuitBreakerRegistry.Settings(this.failureRateThreshold, this.waitIntervalInOpenState, this.slowCallRateThreshold, this.slowCallDurationThreshold) : SharedCircuitBreakerRegistry.Settings.DEFAULT;
+        }
+    }
+
+    /**
+     * Hands the breakers of the shared registry to the Spring Cloud circuit breaker filter. Configurations are
+     * applied to the shared registry, so they reach breakers already built.
+     */
+    private static final class RegistryCircuitBreakerFactory extends ReactiveCircuitBreakerFactory<Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration, Resilience4JConfigBuilder> {
+        private final SharedCircuitBreakerRegistry circuitBreakerRegistry;
+
+        private RegistryCircuitBreakerFactory(SharedCircuitBreakerRegistry circuitBreakerRegistry) {
+            this.circuitBreakerRegistry = circuitBreakerRegistry;
+        }
+
+        @Override
+        public ReactiveCircuitBreaker create(String id) {
+            return this.circuitBreakerRegistry.get(id);
+        }
+
+        @Override
+        protected Resilience4JConfigBuilder configBuilder(String id) {
+            Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration configuration = this.circuitBreakerRegistry.getConfiguration(id);
+            return new Resilience4JConfigBuilder(id)
+                    .circuitBreakerConfig(configuration.getCircuitBreakerConfig())
+                    .timeLimiterConfig(configuration.getTimeLimiterConfig());
+        }
+
+        @Override
+        public void configure(Consumer<Resilience4JConfigBuilder> consumer, String... ids) {
+            for (String id : ids) {
+                Resilience4JConfigBuilder builder = this.configBuilder(id);
+                consumer.accept(builder);
+                this.circuitBreakerRegistry.configure(id, builder.build());
+            }
+        }
+
+        @Override
+        public void configureDefault(Function<String, Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration> defaultConfiguration) {
+            this.circuitBreakerRegistry.configureDefault(defaultConfiguration);
         }
     }
 
@@ -0,0 +1,264 @@
+package ti.gateway.kubernetes.circuitbreaker;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Named circuit breakers shared by all routes, configured once and reused across route refreshes.
+ *
+ * A breaker is only rebuilt when the route that configured it changes its settings; a route that uses the same
+ * name with different settings gets the existing breaker and a warning. The Resilience4J circuit breaker and time
+ * limiter are resolved when the breaker is built, so running a request does not look anything up. Their base
+ * configuration is the one registered for the name in the Resilience4J registries, or else the default
+ * configuration, which can be replaced like that of the Spring Cloud circuit breaker factory. Breakers are
+ * registered in the Resilience4J registry, which exports their state, failure and slow call rates; state
+ * transitions are counted in addition.
+ */
+@Component
+@SuppressWarnings("rawtypes")
+class SharedCircuitBreakerRegistry {
+    static final String TRANSITIONS_METRIC = "spring.cloud.gateway.circuitbreaker.transitions";
+    private static final Logger LOG = LoggerFactory.getLogger(SharedCircuitBreakerRegistry.class);
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, NamedCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private volatile Function<String, Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration> defaultConfiguration;
+
+    @Autowired
+    SharedCircuitBreakerRegistry(ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory, MeterRegistry meterRegistry) {
+        this(((ReactiveResilience4JCircuitBreakerFactory) reactiveCircuitBreakerFactory).getCircuitBreakerRegistry(), ((ReactiveResilience4JCircuitBreakerFactory) reactiveCircuitBreakerFactory).getTimeLimiterRegistry(), meterRegistry);
+    }
+
+    SharedCircuitBreakerRegistry(CircuitBreakerRegistry circuitBreakerRegistry, TimeLimiterRegistry timeLimiterRegistry, MeterRegistry meterRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+        this.meterRegistry = meterRegistry;
+        this.defaultConfiguration = (name) -> {
+            return new Resilience4JConfigBuilder(name)
+                    .circuitBreakerConfig(circuitBreakerRegistry.getDefaultConfig())
+                    .timeLimiterConfig(timeLimiterRegistry.getDefaultConfig())
+                    .build();
+        };
+    }
+
+    /**
+     * Returns the base configuration of the breaker with the given name, before route settings are applied.
+     */
+    Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration getConfiguration(String name) {
+        Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration defaults = this.defaultConfiguration.apply(name);
+        return new Resilience4JConfigBuilder(name)
+                .circuitBreakerConfig(this.circuitBreakerRegistry.getConfiguration(name).orElse(defaults.getCircuitBreakerConfig()))
+                .timeLimiterConfig(this.timeLimiterRegistry.getConfiguration(name).orElse(defaults.getTimeLimiterConfig()))
+                .build();
+    }
+
+    /**
+     * Replaces the base configuration of breakers without one of their own, rebuilding those already built.
+     */
+    synchronized void configureDefault(Function<String, Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration> defaultConfiguration) {
+        this.defaultConfiguration = defaultConfiguration;
+        for (NamedCircuitBreaker existing : this.circuitBreakers.values()) {
+            this.rebuild(existing.name);
+        }
+    }
+
+    /**
+     * Sets the base configuration of the breaker with the given name, rebuilding it if already built.
+     */
+    synchronized void configure(String name, Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration configuration) {
+        this.circuitBreakerRegistry.addConfiguration(name, configuration.getCircuitBreakerConfig());
+        this.timeLimiterRegistry.addConfiguration(name, configuration.getTimeLimiterConfig());
+        this.rebuild(name);
+    }
+
+    private void rebuild(String name) {
+        NamedCircuitBreaker existing = this.circuitBreakers.get(name);
+        if (existing != null) {
+            this.circuitBreakers.put(name, this.build(name, existing.routeId, existing.settings));
+        }
+    }
+
+    /**
+     * Returns the breaker with the given name, building it if it does not exist or if its owning route changed
+     * the settings.
+     */
+    synchronized NamedCircuitBreaker configure(String name, String routeId, Settings settings) {
+        NamedCircuitBreaker existing = this.circuitBreakers.get(name);
+        if (existing != null) {
+            if (existing.settings.equals(settings)) {
+                return existing;
+            }
+
+            if (!Objects.equals(existing.routeId, routeId)) {
+                LOG.warn("Circuit breaker '{}' of route '{}' is already configured by route '{}' with different settings, ignoring them", name, routeId, existing.routeId);
+                return existing;
+            }
+        }
+
+        NamedCircuitBreaker created = this.build(name, routeId, settings);
+        this.circuitBreakers.put(name, created);
+        return created;
+    }
+
+    /**
+     * Returns the breaker with the given name, building it with default settings if needed.
+     */
+    NamedCircuitBreaker get(String name) {
+        NamedCircuitBreaker existing = this.circuitBreakers.get(name);
+        return existing != null ? existing : this.configure(name, null, Settings.DEFAULT);
+    }
+
+    private NamedCircuitBreaker build(String name, String routeId, Settings settings) {
+        Resilience4JConfigBuilder.Resilience4JCircuitBreakerConfiguration base = this.getConfiguration(name);
+        CircuitBreakerConfig config = settings.apply(base.getCircuitBreakerConfig());
+        CircuitBreaker circuitBreaker;
+        if (this.circuitBreakerRegistry.find(name).isPresent()) {
+            circuitBreaker = CircuitBreaker.of(name, config);
+            this.circuitBreakerRegistry.replace(name, circuitBreaker);
+        } else {
+            circuitBreaker = this.circuitBreakerRegistry.circuitBreaker(name, config);
+        }
+
+        circuitBreaker.getEventPublisher().onStateTransition((event) -> {
+            Counter.builder(TRANSITIONS_METRIC)
+                    .description("Circuit breaker state transitions")
+                    .tag("name", name)
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(this.meterRegistry)
+                    .increment();
+        });
+        TimeLimiterConfig timeLimiterConfig = base.getTimeLimiterConfig();
+        TimeLimiter timeLimiter;
+        if (this.timeLimiterRegistry.find(name).isPresent()) {
+            timeLimiter = TimeLimiter.of(name, timeLimiterConfig);
+            this.timeLimiterRegistry.replace(name, timeLimiter);
+        } else {
+            timeLimiter = this.timeLimiterRegistry.timeLimiter(name, timeLimiterConfig);
+        }
+
+        return new NamedCircuitBreaker(name, routeId, settings, circuitBreaker, timeLimiter);
+    }
+
+    /**
+     * Runs requests through the time limiter and then the circuit breaker, so timeouts are recorded as failures
+     * like any other error.
+     */
+    static final class NamedCircuitBreaker implements ReactiveCircuitBreaker {
+        private final String name;
+        private final String routeId;
+        private final Settings settings;
+        private final CircuitBreaker circuitBreaker;
+        private final CircuitBreakerOperator operator;
+        private final TimeLimiter timeLimiter;
+
+        private NamedCircuitBreaker(String name, String routeId, Settings settings, CircuitBreaker circuitBreaker, TimeLimiter timeLimiter) {
+            this.name = name;
+            this.routeId = routeId;
+            this.settings = settings;
+            this.circuitBreaker = circuitBreaker;
+            this.operator = CircuitBreakerOperator.of(circuitBreaker);
+            this.timeLimiter = timeLimiter;
+        }
+
+        CircuitBreaker getCircuitBreaker() {
+            return this.circuitBreaker;
+        }
+
+        @Override
+        public <T> Mono<T> run(Mono<T> toRun, Function<Throwable, Mono<T>> fallback) {
+            Mono<T> result = toRun.transform(TimeLimiterOperator.of(this.timeLimiter)).transform(this.operator);
+            return fallback != null ? result.onErrorResume(fallback) : result;
+        }
+
+        @Override
+        public <T> Flux<T> run(Flux<T> toRun, Function<Throwable, Flux<T>> fallback) {
+            Flux<T> result = toRun.transform(TimeLimiterOperator.of(this.timeLimiter)).transform(this.operator);
+            return fallback != null ? result.onErrorResume(fallback) : result;
+        }
+    }
+
+    /**
+     * Circuit breaker settings of a route, applied on top of the configured Resilience4J defaults.
+     */
+    static final class Settings {
+        static final Settings DEFAULT = new Settings(null, null, null, null);
+        private final Float failureRateThreshold;
+        private final Duration waitIntervalInOpenState;
+        private final Float slowCallRateThreshold;
+        private final Duration slowCallDurationThreshold;
+
+        Settings(Float failureRateThreshold, Duration waitIntervalInOpenState, Float slowCallRateThreshold, Duration slowCallDurationThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            this.waitIntervalInOpenState = waitIntervalInOpenState;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDurationThreshold = slowCallDurationThreshold;
+        }
+
+        CircuitBreakerConfig apply(CircuitBreakerConfig base) {
+            CircuitBreakerConfig.Builder builder = CircuitBreakerConfig.from(base);
+            if (this.failureRateThreshold != null) {
+                builder.failureRateThreshold(this.failureRateThreshold);
+            }
+
+            if (this.waitIntervalInOpenState != null) {
+                builder.waitIntervalFunctionInOpenState(IntervalFunction.of(this.waitIntervalInOpenState));
+            }
+
+            if (this.slowCallRateThreshold != null) {
+                builder.slowCallRateThreshold(this.slowCallRateThreshold);
+            }
+
+            if (this.slowCallDurationThreshold != null) {
+                builder.slowCallDurationThreshold(this.slowCallDurationThreshold);
+            }
+
+            return builder.build();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Settings)) {
+                return false;
+            }
+
+            Settings settings = (Settings) o;
+            return Objects.equals(this.failureRateThreshold, settings.failureRateThreshold) && Objects.equals(this.waitIntervalInOpenState, settings.waitIntervalInOpenState) && Objects.equals(this.slowCallRateThreshold, settings.slowCallRateThreshold) && Objects.equals(this.slowCallDurationThreshold, settings.slowCallDurationThreshold);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.failureRateThreshold, this.waitIntervalInOpenState, this.slowCallRateThreshold, this.slowCallDurationThreshold);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package ti.gateway.kubernetes.compression;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses response bodies of a route with gzip or zstd, as negotiated with {@code Accept-Encoding}.
+ *
+ * Only responses with an allowed content type that are not already encoded, not marked {@code no-transform} and
+ * not known to be smaller than the minimum size are compressed. The filter runs before
+ * {@link NettyWriteResponseFilter} so that it sees the response body as it is written. Bytes before and after
+ * compression and the time spent compressing are recorded per route and encoding.
+ */
+@Component
+public class CompressionGatewayFilterFactory extends AbstractGatewayFilterFactory<CompressionGatewayFilterFactory.Config> {
+    static final String BYTES_METRIC = "spring.cloud.gateway.compression.bytes";
+    static final String TIME_METRIC = "spring.cloud.gateway.compression.time";
+    static final String GZIP = "gzip";
+    static final String ZSTD = "zstd";
+    private static final Logger LOG = LoggerFactory.getLogger(CompressionGatewayFilterFactory.class);
+    private final MeterRegistry meterRegistry;
+    private final boolean zstdAvailable;
+
+    public CompressionGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(CompressionGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+        this.zstdAvailable = ZstdContentEncoder.isAvailable();
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("encodings", "minResponseSize");
+    }
+
+    public GatewayFilter apply(CompressionGatewayFilterFactory.Config config) {
+        RouteCompression route = new RouteCompression(config);
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            if (exchange.getRequest().getMethod() == HttpMethod.HEAD) {
+                return chain.filter(exchange);
+            }
+
+            Encoding encoding = route.negotiate(exchange.getRequest().getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+            if (encoding == null) {
+                return chain.filter(exchange);
+            }
+
+            return chain.filter(exchange.mutate().response(new CompressingResponse(exchange.getResponse(), route, encoding)).build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    /**
+     * Returns the quality of an encoding in an {@code Accept-Encoding} header, or 0 if it is not acceptable.
+     */
+    static double quality(List<String> acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return 0.0;
+        }
+
+        double wildcard = 0.0;
+        for (String header : acceptEncoding) {
+            for (String item : header.split(",")) {
+                String[] parts = item.split(";");
+                String name = parts[0].trim();
+                double quality = 1.0;
+                for (int i = 1; i < parts.length; ++i) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2));
+                        } catch (NumberFormatException e) {
+                            quality = 0.0;
+                        }
+                    }
+                }
+
+                if (name.equalsIgnoreCase(encoding)) {
+                    return quality;
+                }
+
+                if ("*".equals(name)) {
+                    wildcard = quality;
+                }
+            }
+        }
+
+        return wildcard;
+    }
+
+    private final class Encoding {
+        private final String name;
+        private final int level;
+        private final Counter bytesIn;
+        private final Counter bytesOut;
+        private final Timer time;
+
+        private Encoding(String routeId, String name, int level) {
+            this.name = name;
+            this.level = level;
+            this.bytesIn = bytes(routeId, name, "in");
+            this.bytesOut = bytes(routeId, name, "out");
+            this.time = Timer.builder(TIME_METRIC)
+                    .description("Time spent compressing response bodies")
+                    .tag("routeId", routeId)
+                    .tag("encoding", name)
+                    .register(CompressionGatewayFilterFactory.this.meterRegistry);
+        }
+
+        private Counter bytes(String routeId, String encoding, String direction) {
+            return Counter.builder(BYTES_METRIC)
+                    .description("Response body bytes before and after compression")
+                    .baseUnit("bytes")
+                    .tag("routeId", routeId)
+                    .tag("encoding", encoding)
+                    .tag("direction", direction)
+                    .register(CompressionGatewayFilterFactory.this.meterRegistry);
+        }
+
+        private ContentEncoder newEncoder() {
+            return ZSTD.equals(this.name) ? new ZstdContentEncoder(this.level) : new GzipContentEncoder(this.level);
+        }
+    }
+
+    private final class RouteCompression {
+        private final List<Encoding> encodings = new ArrayList<>();
+        private final long minResponseSize;
+        private final List<MediaType> mimeTypes = new ArrayList<>();
+
+        private RouteCompression(Config config) {
+            String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+            Map<String, Encoding> encodings = new LinkedHashMap<>();
+            for (String name : config.getEncodings()) {
+                String encoding = name.trim().toLowerCase(Locale.ROOT);
+                if (ZSTD.equals(encoding) && !CompressionGatewayFilterFactory.this.zstdAvailable) {
+                    LOG.warn("zstd compression of route '{}' is not available on this platform, ignoring it", routeId);
+                } else if (ZSTD.equals(encoding)) {
+                    encodings.putIfAbsent(encoding, new Encoding(routeId, encoding, config.getZstdLevel()));
+                } else if (GZIP.equals(encoding)) {
+                    encodings.putIfAbsent(encoding, new Encoding(routeId, encoding, config.getGzipLevel()));
+                } else {
+                    LOG.warn("Unsupported compression '{}' of route '{}', ignoring it", name, routeId);
+                }
+            }
+
+            this.encodings.addAll(encodings.values());
+            this.minResponseSize = config.getMinResponseSize().toBytes();
+            for (String mimeType : config.getMimeTypes()) {
+                this.mimeTypes.add(MediaType.parseMediaType(mimeType));
+            }
+        }
+
+        /**
+         * Picks the configured encoding with the highest quality, preferring the configured order on ties.
+         */
+        private Encoding negotiate(List<String> acceptEncoding) {
+            Encoding selected = null;
+            double selectedQuality = 0.0;
+            for (Encoding encoding : this.encodings) {
+                double quality = quality(acceptEncoding, encoding.name);
+                if (quality > selectedQuality) {
+                    selected = encoding;
+                    selectedQuality = quality;
+                }
+            }
+
+            return selected;
+        }
+
+        private boolean isCompressible(ServerHttpResponse response) {
+            HttpStatusCode status = response.getStatusCode();
+            if (status != null && (status.value() == 204 || status.value() == 304 || status.is1xxInformational())) {
+                return false;
+            }
+
+            HttpHeaders headers = response.getHeaders();
+            if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || headers.containsKey(HttpHeaders.CONTENT_RANGE)) {
+                return false;
+            }
+
+            String cacheControl = headers.getCacheControl();
+            if (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-transform")) {
+                return false;
+            }
+
+            long contentLength = headers.getContentLength();
+            if (contentLength >= 0 && contentLength < this.minResponseSize) {
+                return false;
+            }
+
+            MediaType contentType;
+            try {
+                contentType = headers.getContentType();
+            } catch (RuntimeException e) {
+                return false;
+            }
+
+            if (contentType == null) {
+                return false;
+            }
+
+            for (MediaType mimeType : this.mimeTypes) {
+                if (mimeType.includes(contentType)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Response that compresses the body if it qualifies once the upstream headers are known.
+     */
+    private static final class CompressingResponse extends ServerHttpResponseDecorator {
+        private final RouteCompression route;
+        private final Encoding encoding;
+
+        private CompressingResponse(ServerHttpResponse delegate, RouteCompression route, Encoding encoding) {
+            super(delegate);
+            this.route = route;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!this.route.isCompressible(this.getDelegate())) {
+                return super.writeWith(body);
+            }
+
+            this.prepareHeaders();
+            return super.writeWith(Flux.defer(() -> {
+                EncodingSession session = new EncodingSession(this.encoding);
+                return Flux.from(body).map(session::encode).concatWith(Mono.fromSupplier(session::finish)).doFinally((signal) -> {
+                    session.close();
+                });
+            }));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            if (!this.route.isCompressible(this.getDelegate())) {
+                return super.writeAndFlushWith(body);
+            }
+
+            this.prepareHeaders();
+            return super.writeAndFlushWith(Flux.defer(() -> {
+                EncodingSession session = new EncodingSession(this.encoding);
+                Flux<Publisher<DataBuffer>> chunks = Flux.from(body).map((publisher) -> {
+                    return Flux.from(publisher).map(session::encode);
+                });
+                return chunks.concatWith(Mono.fromSupplier(() -> {
+                    return Mono.fromSupplier(session::finish);
+                })).doFinally((signal) -> {
+                    session.close();
+                });
+            }));
+        }
+
+        private void prepareHeaders() {
+            HttpHeaders headers = this.getDelegate().getHeaders();
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.set(HttpHeaders.CONTENT_ENCODING, this.encoding.name);
+            List<String> vary = headers.getVary();
+            if (!vary.contains("*") && vary.stream().noneMatch(HttpHeaders.ACCEPT_ENCODING::equalsIgnoreCase)) {
+                headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+
+            String etag = headers.getETag();
+            if (etag != null && !etag.startsWith("W/")) {
+                headers.setETag("W/" + etag);
+            }
+        }
+    }
+
+    /**
+     * Encoder of one response body that records the bytes and time spent once it is closed.
+     */
+    private static final class EncodingSession {
+        private final Encoding encoding;
+        private final ContentEncoder encoder;
+        private long bytesIn;
+        private long bytesOut;
+        private long nanos;
+        private boolean closed;
+
+        private EncodingSession(Encoding encoding) {
+            this.encoding = encoding;
+            this.encoder = encoding.newEncoder();
+        }
+
+        private DataBuffer encode(DataBuffer chunk) {
+            long start = System.nanoTime();
+            this.bytesIn += chunk.readableByteCount();
+            DataBuffer output = this.encoder.encode(chunk);
+            this.bytesOut += output.readableByteCount();
+            this.nanos += System.nanoTime() - start;
+            return output;
+        }
+
+        private DataBuffer finish() {
+            long start = System.nanoTime();
+            DataBuffer output = this.encoder.finish();
+            this.bytesOut += output.readableByteCount();
+            this.nanos += System.nanoTime() - start;
+            return output;
+        }
+
+        private synchronized void close() {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+            this.encoder.close();
+            this.encoding.bytesIn.increment((double) this.bytesIn);
+            this.encoding.bytesOut.increment((double) this.bytesOut);
+            this.encoding.time.record(this.nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private List<String> encodings = new ArrayList<>(Arrays.asList(ZSTD, GZIP));
+        private int gzipLevel = 6;
+        private int zstdLevel = 3;
+        private DataSize minResponseSize = DataSize.ofKilobytes(1L);
+        private List<String> mimeTypes = new ArrayList<>(Arrays.asList("text/*", "application/json", "application/*+json", "application/javascript",
+                "application/xml", "application/*+xml", "image/svg+xml"));
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Supported encodings in order of preference when the client accepts several with the same quality.
+         */
+        public List<String> getEncodings() {
+            return this.encodings;
+        }
+
+        public void setEncodings(List<String> encodings) {
+            this.encodings = encodings;
+        }
+
+        public int getGzipLevel() {
+            return this.gzipLevel;
+        }
+
+        public void setGzipLevel(int gzipLevel) {
+            this.gzipLevel = gzipLevel;
+        }
+
+        public int getZstdLevel() {
+            return this.zstdLevel;
+        }
+
+        public void setZstdLevel(int zstdLevel) {
+            this.zstdLevel = zstdLevel;
+        }
+
+        /**
+         * Responses declaring a smaller {@code Content-Length} are not compressed.
+         */
+        public DataSize getMinResponseSize() {
+            return this.minResponseSize;
+        }
+
+        public void setMinResponseSize(DataSize minResponseSize) {
+            this.minResponseSize = minResponseSize;
+        }
+
+        public List<String> getMimeTypes() {
+            return this.mimeTypes;
+        }
+
+        public void setMimeTypes(List<String> mimeTypes) {
+            this.mimeTypes = mimeTypes;
+        }
+    }
+}
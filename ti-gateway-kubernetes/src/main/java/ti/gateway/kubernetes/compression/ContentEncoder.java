@@ -0,0 +1,57 @@
+package ti.gateway.kubernetes.compression;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming encoder of one response body.
+ *
+ * Every chunk is flushed, so a streamed response is not held back by the encoder. Output is written to pooled
+ * direct buffers, which the server releases once they are written. An encoder is not thread-safe and must be
+ * closed, also when the response is cancelled.
+ */
+interface ContentEncoder extends AutoCloseable {
+    NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    /**
+     * Encodes and releases the given chunk.
+     */
+    DataBuffer encode(DataBuffer chunk);
+
+    /**
+     * Ends the encoded stream.
+     */
+    DataBuffer finish();
+
+    @Override
+    void close();
+
+    static DataBuffer allocate(int capacity) {
+        return BUFFER_FACTORY.wrap(PooledByteBufAllocator.DEFAULT.directBuffer(Math.max(capacity, 64)));
+    }
+
+    /**
+     * Runs one step of an encoder against the writable bytes of the given buffer and advances its write position.
+     * Returns whether the step filled the buffer, in which case it has to be called again.
+     */
+    static boolean write(DataBuffer output, int minWritable, Step step) {
+        output.ensureWritable(minWritable);
+        try (DataBuffer.ByteBufferIterator iterator = output.writableByteBuffers()) {
+            ByteBuffer target = iterator.next();
+            int start = target.position();
+            boolean more = step.write(target);
+            output.writePosition(output.writePosition() + target.position() - start);
+            return more || !target.hasRemaining();
+        }
+    }
+
+    interface Step {
+        /**
+         * Writes to the target and returns whether the encoder has more output pending.
+         */
+        boolean write(ByteBuffer target);
+    }
+}
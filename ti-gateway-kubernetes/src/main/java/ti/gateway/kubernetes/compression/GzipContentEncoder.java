@@ -0,0 +1,93 @@
+package ti.gateway.kubernetes.compression;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip encoder on top of a raw {@link Deflater}, which reads and writes the buffers in place.
+ */
+final class GzipContentEncoder implements ContentEncoder {
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private boolean headerWritten;
+
+    GzipContentEncoder(int level) {
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public DataBuffer encode(DataBuffer chunk) {
+        DataBuffer output = this.allocate(chunk.readableByteCount() / 2 + 64);
+        try (DataBuffer.ByteBufferIterator iterator = chunk.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer input = iterator.next();
+                this.crc.update(input.duplicate());
+                this.deflater.setInput(input);
+                while (!this.deflater.needsInput()) {
+                    ContentEncoder.write(output, 256, (target) -> {
+                        this.deflater.deflate(target, Deflater.NO_FLUSH);
+                        return false;
+                    });
+                }
+            }
+
+            while (ContentEncoder.write(output, 256, (target) -> {
+                this.deflater.deflate(target, Deflater.SYNC_FLUSH);
+                return false;
+            })) {
+                // drain the flushed block
+            }
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(output);
+            throw e;
+        } finally {
+            DataBufferUtils.release(chunk);
+        }
+
+        return output;
+    }
+
+    @Override
+    public DataBuffer finish() {
+        DataBuffer output = this.allocate(64);
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            ContentEncoder.write(output, 256, (target) -> {
+                this.deflater.deflate(target, Deflater.NO_FLUSH);
+                return false;
+            });
+        }
+
+        output.ensureWritable(8);
+        writeIntLittleEndian(output, (int) this.crc.getValue());
+        writeIntLittleEndian(output, (int) this.deflater.getBytesRead());
+        return output;
+    }
+
+    @Override
+    public void close() {
+        this.deflater.end();
+    }
+
+    private DataBuffer allocate(int capacity) {
+        DataBuffer output = ContentEncoder.allocate(capacity);
+        if (!this.headerWritten) {
+            this.headerWritten = true;
+            output.write(HEADER);
+        }
+
+        return output;
+    }
+
+    private static void writeIntLittleEndian(DataBuffer output, int value) {
+        output.write((byte) value);
+        output.write((byte) (value >>> 8));
+        output.write((byte) (value >>> 16));
+        output.write((byte) (value >>> 24));
+    }
+}
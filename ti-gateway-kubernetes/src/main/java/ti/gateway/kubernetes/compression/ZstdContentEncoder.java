@@ -0,0 +1,94 @@
+package ti.gateway.kubernetes.compression;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.util.Native;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zstandard encoder streaming between direct buffers; heap chunks are copied to a pooled direct buffer first.
+ */
+final class ZstdContentEncoder implements ContentEncoder {
+    private final ZstdCompressCtx context;
+
+    ZstdContentEncoder(int level) {
+        this.context = new ZstdCompressCtx().setLevel(level);
+    }
+
+    /**
+     * Returns whether the native library can be loaded on this platform.
+     */
+    static boolean isAvailable() {
+        try {
+            Native.load();
+            return Native.isLoaded();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    @Override
+    public DataBuffer encode(DataBuffer chunk) {
+        DataBuffer direct = chunk;
+        DataBuffer output = ContentEncoder.allocate(chunk.readableByteCount() / 2 + 64);
+        try {
+            if (!isDirect(chunk)) {
+                direct = ContentEncoder.allocate(chunk.readableByteCount());
+                direct.write(chunk);
+            }
+
+            try (DataBuffer.ByteBufferIterator iterator = direct.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer input = iterator.next();
+                    this.compress(output, input, iterator.hasNext() ? EndDirective.CONTINUE : EndDirective.FLUSH);
+                }
+            }
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(output);
+            throw e;
+        } finally {
+            DataBufferUtils.release(chunk);
+            if (direct != chunk) {
+                DataBufferUtils.release(direct);
+            }
+        }
+
+        return output;
+    }
+
+    @Override
+    public DataBuffer finish() {
+        DataBuffer output = ContentEncoder.allocate(64);
+        this.compress(output, ByteBuffer.allocateDirect(0), EndDirective.END);
+        return output;
+    }
+
+    @Override
+    public void close() {
+        this.context.close();
+    }
+
+    private void compress(DataBuffer output, ByteBuffer input, EndDirective directive) {
+        while (ContentEncoder.write(output, 256, (target) -> {
+            boolean flushed = this.context.compressDirectByteBufferStream(target, input, directive);
+            return directive == EndDirective.CONTINUE ? input.hasRemaining() : !flushed;
+        })) {
+            // the output was full, continue with more room
+        }
+    }
+
+    private static boolean isDirect(DataBuffer chunk) {
+        try (DataBuffer.ByteBufferIterator iterator = chunk.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                if (!iterator.next().isDirect()) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+}
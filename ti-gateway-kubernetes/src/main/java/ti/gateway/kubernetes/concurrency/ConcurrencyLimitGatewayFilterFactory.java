@@ -0,0 +1,219 @@
+package ti.gateway.kubernetes.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the number of in-flight requests of a route to a value that adapts to the upstream latency.
+ *
+ * Requests over the limit are rejected immediately with 503 and a {@code Retry-After} header instead of queueing.
+ * The limit state is kept per route id, so it survives route refreshes; a changed configuration is applied to
+ * the existing limit. The limits and meters of routes that no longer exist are removed once a refresh completes.
+ */
+@Component
+public class ConcurrencyLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<ConcurrencyLimitGatewayFilterFactory.Config> implements ApplicationListener<RefreshRoutesResultEvent> {
+    static final String LIMIT_METRIC = "spring.cloud.gateway.concurrency.limit";
+    static final String IN_FLIGHT_METRIC = "spring.cloud.gateway.concurrency.inflight";
+    static final String REJECTED_METRIC = "spring.cloud.gateway.concurrency.rejected";
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteLimit> routeLimits = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(ConcurrencyLimitGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("initialLimit", "maxLimit");
+    }
+
+    public GatewayFilter apply(ConcurrencyLimitGatewayFilterFactory.Config config) {
+        RouteLimit routeLimit = this.routeLimitFor(config);
+        GradientConcurrencyLimit limit = routeLimit.limit;
+        String retryAfter = String.valueOf(Math.max(1L, (config.getRetryAfter().toMillis() + 999L) / 1000L));
+        return (exchange, chain) -> {
+            if (!limit.tryAcquire()) {
+                routeLimit.rejected.increment();
+                exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+                return exchange.getResponse().setComplete();
+            }
+
+            long start = System.nanoTime();
+            return chain.filter(exchange).doFinally((signal) -> {
+                if (signal == SignalType.CANCEL) {
+                    limit.release();
+                } else {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    limit.release(System.nanoTime() - start, signal == SignalType.ON_ERROR || status != null && status.is5xxServerError());
+                }
+            });
+        };
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
+    }
+
+    void retainRoutes(Set<String> routeIds) {
+        this.routeLimits.entrySet().removeIf((entry) -> {
+            if (routeIds.contains(entry.getKey())) {
+                return false;
+            }
+
+            for (Meter meter : entry.getValue().meters) {
+                this.meterRegistry.remove(meter);
+            }
+
+            return true;
+        });
+    }
+
+    GradientConcurrencyLimit getLimit(String routeId) {
+        RouteLimit routeLimit = this.routeLimits.get(routeId);
+        return routeLimit != null ? routeLimit.limit : null;
+    }
+
+    private RouteLimit routeLimitFor(Config config) {
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+        RouteLimit existing = this.routeLimits.get(routeId);
+        if (existing != null) {
+            existing.limit.configure(config.getMinLimit(), config.getMaxLimit(), config.getSmoothing(), config.getRttTolerance());
+            return existing;
+        }
+
+        return this.routeLimits.computeIfAbsent(routeId, (id) -> {
+            GradientConcurrencyLimit limit = new GradientConcurrencyLimit(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(), config.getSmoothing(), config.getRttTolerance());
+            Gauge limitGauge = Gauge.builder(LIMIT_METRIC, limit, GradientConcurrencyLimit::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            Gauge inFlightGauge = Gauge.builder(IN_FLIGHT_METRIC, limit, GradientConcurrencyLimit::getInFlight)
+                    .description("Requests currently in flight")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            Counter rejected = Counter.builder(REJECTED_METRIC)
+                    .description("Requests rejected by the adaptive concurrency limit")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            return new RouteLimit(limit, rejected, List.of(limitGauge, inFlightGauge, rejected));
+        });
+    }
+
+    private static final class RouteLimit {
+        private final GradientConcurrencyLimit limit;
+        private final Counter rejected;
+        private final List<Meter> meters;
+
+        private RouteLimit(GradientConcurrencyLimit limit, Counter rejected, List<Meter> meters) {
+            this.limit = limit;
+            this.rejected = rejected;
+            this.meters = meters;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private double smoothing = 0.2;
+        private double rttTolerance = 1.5;
+        private Duration retryAfter = Duration.ofSeconds(1L);
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public int getInitialLimit() {
+            return this.initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return this.minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return this.maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        /**
+         * Weight of a new limit estimate, between 0 and 1.
+         */
+        public double getSmoothing() {
+            return this.smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        /**
+         * How much the short term RTT may exceed the long term RTT before the limit is reduced.
+         */
+        public double getRttTolerance() {
+            return this.rttTolerance;
+        }
+
+        public void setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+        }
+
+        public Duration getRetryAfter() {
+            return this.retryAfter;
+        }
+
+        public void setRetryAfter(Duration retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+    }
+}
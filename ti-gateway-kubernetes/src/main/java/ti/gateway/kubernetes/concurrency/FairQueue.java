@@ -0,0 +1,290 @@
+package ti.gateway.kubernetes.concurrency;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admits requests into a fixed number of concurrency slots, queueing the others per priority class and tenant.
+ *
+ * A free slot goes to the highest priority class with queued requests; within a class tenants are served by
+ * deficit round robin, each tenant getting as many slots per round as its weight. Tenant queues are bounded, so a
+ * tenant that floods the route fills its own queue without delaying the requests of the others. The queue of the
+ * route as a whole is bounded too, so many tenants queueing at once cannot hold unbounded memory. The number of
+ * classes can change in place, so the slots held by admitted requests keep counting against the new limits.
+ */
+final class FairQueue {
+    private ClassQueue[] classes;
+    private int maxConcurrency;
+    private int maxQueuePerTenant;
+    private int maxQueued;
+    private int inFlight;
+    private int queued;
+
+    FairQueue(int classes, int maxConcurrency, int maxQueuePerTenant, int maxQueued) {
+        this.classes = new ClassQueue[classes];
+        for (int i = 0; i < classes; ++i) {
+            this.classes[i] = new ClassQueue();
+        }
+
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueuePerTenant = maxQueuePerTenant;
+        this.maxQueued = maxQueued;
+    }
+
+    void configure(int classes, int maxConcurrency, int maxQueuePerTenant, int maxQueued) {
+        List<Waiter> admitted;
+        synchronized (this) {
+            this.resize(classes);
+            this.maxConcurrency = maxConcurrency;
+            this.maxQueuePerTenant = maxQueuePerTenant;
+            this.maxQueued = maxQueued;
+            admitted = this.dispatch();
+        }
+
+        succeed(admitted);
+    }
+
+    synchronized int getClassCount() {
+        return this.classes.length;
+    }
+
+    synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    synchronized int getQueued(int priorityClass) {
+        return priorityClass < this.classes.length ? this.classes[priorityClass].queued : 0;
+    }
+
+    synchronized int getQueued() {
+        return this.queued;
+    }
+
+    /**
+     * Returns a {@link Mono} that completes once the request holds a slot, or fails with {@link QueueFullException}
+     * if the queue of the tenant or of the route is full. Cancelling it gives up the queued request or the slot it
+     * was given. Classes past the current number of classes are queued in the lowest priority class.
+     */
+    Mono<Void> acquire(int priorityClass, String tenant, int weight) {
+        return Mono.create((sink) -> {
+            Waiter waiter = new Waiter(sink);
+            boolean admitted;
+            synchronized (this) {
+                if (this.inFlight < this.maxConcurrency) {
+                    ++this.inFlight;
+                    waiter.admitted = true;
+                    admitted = true;
+                } else if (this.queued >= this.maxQueued) {
+                    sink.error(new QueueFullException(true));
+                    return;
+                } else {
+                    ClassQueue queue = this.classes[Math.min(priorityClass, this.classes.length - 1)];
+                    TenantQueue tenantQueue = queue.tenants.get(tenant);
+                    if (tenantQueue == null) {
+                        tenantQueue = new TenantQueue(tenant);
+                        queue.tenants.put(tenant, tenantQueue);
+                        queue.active.addLast(tenantQueue);
+                    } else if (tenantQueue.waiters.size() >= this.maxQueuePerTenant) {
+                        sink.error(new QueueFullException(false));
+                        return;
+                    }
+
+                    tenantQueue.weight = Math.max(1, weight);
+                    tenantQueue.waiters.addLast(waiter);
+                    waiter.queue = queue;
+                    waiter.tenantQueue = tenantQueue;
+                    ++queue.queued;
+                    ++this.queued;
+                    admitted = false;
+                }
+            }
+
+            sink.onCancel(() -> {
+                this.cancel(waiter);
+            });
+            if (admitted) {
+                sink.success();
+            }
+        });
+    }
+
+    /**
+     * Gives a slot back and hands it to the next queued request.
+     */
+    void release() {
+        List<Waiter> admitted;
+        synchronized (this) {
+            --this.inFlight;
+            admitted = this.dispatch();
+        }
+
+        succeed(admitted);
+    }
+
+    private void cancel(Waiter waiter) {
+        boolean release;
+        synchronized (this) {
+            release = waiter.admitted;
+            if (!release && waiter.tenantQueue != null && waiter.tenantQueue.waiters.remove(waiter)) {
+                --waiter.queue.queued;
+                --this.queued;
+                if (waiter.tenantQueue.waiters.isEmpty()) {
+                    waiter.queue.remove(waiter.tenantQueue);
+                }
+            }
+        }
+
+        if (release) {
+            this.release();
+        }
+    }
+
+    /**
+     * Changes the number of classes, moving the requests queued in dropped classes to the new lowest priority class.
+     */
+    private void resize(int classes) {
+        if (classes == this.classes.length) {
+            return;
+        }
+
+        ClassQueue[] resized = new ClassQueue[classes];
+        for (int i = 0; i < classes; ++i) {
+            resized[i] = i < this.classes.length ? this.classes[i] : new ClassQueue();
+        }
+
+        ClassQueue lowest = resized[classes - 1];
+        for (int i = classes; i < this.classes.length; ++i) {
+            for (TenantQueue dropped : this.classes[i].active) {
+                TenantQueue tenantQueue = lowest.tenants.get(dropped.tenant);
+                if (tenantQueue == null) {
+                    tenantQueue = new TenantQueue(dropped.tenant);
+                    tenantQueue.weight = dropped.weight;
+                    lowest.tenants.put(dropped.tenant, tenantQueue);
+                    lowest.active.addLast(tenantQueue);
+                }
+
+                for (Waiter waiter : dropped.waiters) {
+                    waiter.queue = lowest;
+                    waiter.tenantQueue = tenantQueue;
+                    tenantQueue.waiters.addLast(waiter);
+                    ++lowest.queued;
+                }
+            }
+        }
+
+        this.classes = resized;
+    }
+
+    private List<Waiter> dispatch() {
+        List<Waiter> admitted = null;
+        while (this.inFlight < this.maxConcurrency) {
+            Waiter waiter = null;
+            for (ClassQueue queue : this.classes) {
+                waiter = queue.next();
+                if (waiter != null) {
+                    break;
+                }
+            }
+
+            if (waiter == null) {
+                break;
+            }
+
+            --this.queued;
+            ++this.inFlight;
+            waiter.admitted = true;
+            if (admitted == null) {
+                admitted = new ArrayList<>(1);
+            }
+
+            admitted.add(waiter);
+        }
+
+        return admitted;
+    }
+
+    private static void succeed(List<Waiter> admitted) {
+        if (admitted != null) {
+            for (Waiter waiter : admitted) {
+                waiter.sink.success();
+            }
+        }
+    }
+
+    static final class QueueFullException extends RuntimeException {
+        private final boolean route;
+
+        QueueFullException(boolean route) {
+            super(route ? "Route queue is full" : "Tenant queue is full", null, false, false);
+            this.route = route;
+        }
+
+        /**
+         * Returns {@code true} if the queue of the route is full, {@code false} if only that of the tenant is.
+         */
+        boolean isRoute() {
+            return this.route;
+        }
+    }
+
+    private static final class ClassQueue {
+        private final Map<String, TenantQueue> tenants = new HashMap<>();
+        private final ArrayDeque<TenantQueue> active = new ArrayDeque<>();
+        private int queued;
+
+        private Waiter next() {
+            TenantQueue tenantQueue = this.active.peekFirst();
+            if (tenantQueue == null) {
+                return null;
+            }
+
+            if (tenantQueue.deficit < 1) {
+                tenantQueue.deficit += tenantQueue.weight;
+            }
+
+            Waiter waiter = tenantQueue.waiters.pollFirst();
+            --tenantQueue.deficit;
+            --this.queued;
+            if (tenantQueue.waiters.isEmpty()) {
+                this.remove(tenantQueue);
+            } else if (tenantQueue.deficit < 1) {
+                this.active.addLast(this.active.pollFirst());
+            }
+
+            return waiter;
+        }
+
+        private void remove(TenantQueue tenantQueue) {
+            this.active.remove(tenantQueue);
+            this.tenants.remove(tenantQueue.tenant);
+        }
+    }
+
+    private static final class TenantQueue {
+        private final String tenant;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int weight = 1;
+        private int deficit;
+
+        private TenantQueue(String tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Void> sink;
+        private ClassQueue queue;
+        private TenantQueue tenantQueue;
+        private boolean admitted;
+
+        private Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package ti.gateway.kubernetes.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Admits the requests of a route into a fixed upstream concurrency, queueing the others fairly between tenants.
+ *
+ * Requests are assigned a priority class from a request header and a tenant from a JWT claim, an API key selector
+ * or a header such as the app id. Higher priority classes are always served first; within a class tenants share
+ * the free slots in proportion to their weights, see {@link FairQueue}. A request is rejected with 429 when the
+ * queue of its tenant or the queue of the whole route is full, and a request that waits longer than the queue
+ * timeout is shed with 503 and a {@code Retry-After} header. The queue state is kept per route id, so it survives
+ * route refreshes; the queues and meters of routes that no longer exist are removed once a refresh completes.
+ */
+@Component
+public class FairQueueGatewayFilterFactory extends AbstractGatewayFilterFactory<FairQueueGatewayFilterFactory.Config> implements ApplicationListener<RefreshRoutesResultEvent> {
+    static final String IN_FLIGHT_METRIC = "spring.cloud.gateway.fairqueue.inflight";
+    static final String DEPTH_METRIC = "spring.cloud.gateway.fairqueue.depth";
+    static final String WAIT_METRIC = "spring.cloud.gateway.fairqueue.wait";
+    static final String REJECTED_METRIC = "spring.cloud.gateway.fairqueue.rejected";
+    private static final String DEFAULT_TENANT = "";
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteQueue> queues = new ConcurrentHashMap<>();
+
+    public FairQueueGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(FairQueueGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("maxConcurrency", "tenant");
+    }
+
+    public GatewayFilter apply(FairQueueGatewayFilterFactory.Config config) {
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+        List<String> classes = config.getClasses().isEmpty() ? List.of("default") : config.getClasses();
+        Map<String, Integer> classIndexes = new HashMap<>();
+        for (int i = 0; i < classes.size(); ++i) {
+            classIndexes.put(classes.get(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        Integer defaultClass = config.getDefaultClass() != null ? classIndexes.get(config.getDefaultClass().toLowerCase(Locale.ROOT)) : Integer.valueOf(0);
+        if (defaultClass == null) {
+            throw new IllegalArgumentException("Default class '" + config.getDefaultClass() + "' of route '" + routeId + "' is not one of " + classes);
+        }
+
+        RouteQueue routeQueue = this.queueFor(routeId, classes.size(), config);
+        FairQueue queue = routeQueue.queue;
+        List<ClassMeters> meters = new ArrayList<>(classes.size());
+        for (String priorityClass : classes) {
+            meters.add(new ClassMeters(routeId, priorityClass, this.meterRegistry));
+        }
+
+        this.registerMeters(routeQueue, routeId, classes, meters);
+
+        TenantKey tenantKey = config.getTenant() != null ? TenantKey.parse(config.getTenant()) : null;
+        Map<String, Integer> weights = new HashMap<>(config.getWeights());
+        String classHeader = config.getClassHeader();
+        Duration queueTimeout = config.getQueueTimeout();
+        String retryAfter = String.valueOf(Math.max(1L, (config.getRetryAfter().toMillis() + 999L) / 1000L));
+        return (exchange, chain) -> {
+            String requestedClass = classHeader != null ? exchange.getRequest().getHeaders().getFirst(classHeader) : null;
+            Integer index = requestedClass != null ? classIndexes.get(requestedClass.trim().toLowerCase(Locale.ROOT)) : null;
+            int priorityClass = index != null ? index : defaultClass;
+            String tenant = tenantKey != null ? tenantKey.tenant(exchange.getRequest()) : null;
+            if (tenant == null) {
+                tenant = DEFAULT_TENANT;
+            }
+
+            ClassMeters classMeters = meters.get(priorityClass);
+            long start = System.nanoTime();
+            return queue.acquire(priorityClass, tenant, weights.getOrDefault(tenant, config.getDefaultWeight()))
+                    .timeout(queueTimeout)
+                    .materialize()
+                    .flatMap((signal) -> {
+                        if (signal.isOnError()) {
+                            return reject(exchange, classMeters, signal.getThrowable(), retryAfter);
+                        }
+
+                        classMeters.wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        return chain.filter(exchange).doFinally((type) -> {
+                            queue.release();
+                        });
+                    });
+        };
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
+    }
+
+    void retainRoutes(Set<String> routeIds) {
+        this.queues.entrySet().removeIf((entry) -> {
+            if (routeIds.contains(entry.getKey())) {
+                return false;
+            }
+
+            synchronized (entry.getValue()) {
+                entry.getValue().meters.forEach(this.meterRegistry::remove);
+                entry.getValue().meters = Set.of();
+            }
+
+            return true;
+        });
+    }
+
+    FairQueue getQueue(String routeId) {
+        RouteQueue routeQueue = this.queues.get(routeId);
+        return routeQueue != null ? routeQueue.queue : null;
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, ClassMeters meters, Throwable error, String retryAfter) {
+        if (error instanceof FairQueue.QueueFullException) {
+            (((FairQueue.QueueFullException) error).isRoute() ? meters.routeQueueFull : meters.queueFull).increment();
+            exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            return exchange.getResponse().setComplete();
+        }
+
+        if (error instanceof TimeoutException) {
+            meters.timeout.increment();
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+            return exchange.getResponse().setComplete();
+        }
+
+        return Mono.error(error);
+    }
+
+    private RouteQueue queueFor(String routeId, int classes, Config config) {
+        RouteQueue existing = this.queues.get(routeId);
+        if (existing != null) {
+            existing.queue.configure(classes, config.getMaxConcurrency(), config.getMaxQueuePerTenant(), config.getMaxQueued());
+            return existing;
+        }
+
+        return this.queues.computeIfAbsent(routeId, (id) -> {
+            return new RouteQueue(new FairQueue(classes, config.getMaxConcurrency(), config.getMaxQueuePerTenant(), config.getMaxQueued()));
+        });
+    }
+
+    /**
+     * Registers the meters of the current classes of a route and removes those of classes it no longer has.
+     */
+    private void registerMeters(RouteQueue routeQueue, String routeId, List<String> classes, List<ClassMeters> classMeters) {
+        Set<Meter> meters = new HashSet<>();
+        meters.add(Gauge.builder(IN_FLIGHT_METRIC, routeQueue.queue, FairQueue::getInFlight)
+                .description("Requests of the route holding a fair queue slot")
+                .tag("routeId", routeId)
+                .register(this.meterRegistry));
+        for (int i = 0; i < classes.size(); ++i) {
+            int priorityClass = i;
+            meters.add(Gauge.builder(DEPTH_METRIC, routeQueue.queue, (queue) -> {
+                        return queue.getQueued(priorityClass);
+                    })
+                    .description("Requests waiting in the fair queue")
+                    .tag("routeId", routeId)
+                    .tag("class", classes.get(i))
+                    .register(this.meterRegistry));
+            meters.addAll(classMeters.get(i).meters());
+        }
+
+        synchronized (routeQueue) {
+            for (Meter meter : routeQueue.meters) {
+                if (!meters.contains(meter)) {
+                    this.meterRegistry.remove(meter);
+                }
+            }
+
+            routeQueue.meters = meters;
+        }
+    }
+
+    private static final class RouteQueue {
+        private final FairQueue queue;
+        private Set<Meter> meters = Set.of();
+
+        private RouteQueue(FairQueue queue) {
+            this.queue = queue;
+        }
+    }
+
+    private static final class ClassMeters {
+        private final Timer wait;
+        private final Counter queueFull;
+        private final Counter routeQueueFull;
+        private final Counter timeout;
+
+        private ClassMeters(String routeId, String priorityClass, MeterRegistry meterRegistry) {
+            this.wait = Timer.builder(WAIT_METRIC)
+                    .description("Time requests waited in the fair queue before being admitted")
+                    .tag("routeId", routeId)
+                    .tag("class", priorityClass)
+                    .register(meterRegistry);
+            this.queueFull = rejected(routeId, priorityClass, "queue-full", meterRegistry);
+            this.routeQueueFull = rejected(routeId, priorityClass, "route-queue-full", meterRegistry);
+            this.timeout = rejected(routeId, priorityClass, "timeout", meterRegistry);
+        }
+
+        private List<Meter> meters() {
+            return List.of(this.wait, this.queueFull, this.routeQueueFull, this.timeout);
+        }
+
+        private static Counter rejected(String routeId, String priorityClass, String reason, MeterRegistry meterRegistry) {
+            return Counter.builder(REJECTED_METRIC)
+                    .description("Requests rejected by the fair queue")
+                    .tag("routeId", routeId)
+                    .tag("class", priorityClass)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private int maxConcurrency = 50;
+        private int maxQueuePerTenant = 100;
+        private int maxQueued = 1000;
+        private Duration queueTimeout = Duration.ofSeconds(1L);
+        private String tenant;
+        private Map<String, Integer> weights = new HashMap<>();
+        private int defaultWeight = 1;
+        private List<String> classes = new ArrayList<>(Arrays.asList("interactive", "batch"));
+        private String classHeader = "X-Priority-Class";
+        private String defaultClass;
+        private Duration retryAfter = Duration.ofSeconds(1L);
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Maximum number of requests of the route that are forwarded at once.
+         */
+        public int getMaxConcurrency() {
+            return this.maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getMaxQueuePerTenant() {
+            return this.maxQueuePerTenant;
+        }
+
+        public void setMaxQueuePerTenant(int maxQueuePerTenant) {
+            this.maxQueuePerTenant = maxQueuePerTenant;
+        }
+
+        /**
+         * Maximum number of requests of the route waiting for a slot, whatever their tenant.
+         */
+        public int getMaxQueued() {
+            return this.maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public Duration getQueueTimeout() {
+            return this.queueTimeout;
+        }
+
+        public void setQueueTimeout(Duration queueTimeout) {
+            this.queueTimeout = queueTimeout;
+        }
+
+        /**
+         * Where the tenant is taken from: {@code api-key} for the API key selector, or
+         * {@code header:}, {@code cookie:}, {@code query:} or {@code claim:} followed by a name. Requests without
+         * a tenant share one queue.
+         */
+        public String getTenant() {
+            return this.tenant;
+        }
+
+        public void setTenant(String tenant) {
+            this.tenant = tenant;
+        }
+
+        /**
+         * Share of the slots of each tenant relative to the others, as a whole number.
+         */
+        public Map<String, Integer> getWeights() {
+            return this.weights;
+        }
+
+        public void setWeights(Map<String, Integer> weights) {
+            this.weights = weights;
+        }
+
+        public int getDefaultWeight() {
+            return this.defaultWeight;
+        }
+
+        public void setDefaultWeight(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+
+        /**
+         * Priority classes, highest priority first.
+         */
+        public List<String> getClasses() {
+            return this.classes;
+        }
+
+        public void setClasses(List<String> classes) {
+            this.classes = classes;
+        }
+
+        public String getClassHeader() {
+            return this.classHeader;
+        }
+
+        public void setClassHeader(String classHeader) {
+            this.classHeader = classHeader;
+        }
+
+        /**
+         * Class of requests without a known class header; the highest priority class if not set.
+         */
+        public String getDefaultClass() {
+            return this.defaultClass;
+        }
+
+        public void setDefaultClass(String defaultClass) {
+            this.defaultClass = defaultClass;
+        }
+
+        public Duration getRetryAfter() {
+            return this.retryAfter;
+        }
+
+        public void setRetryAfter(Duration retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+    }
+}
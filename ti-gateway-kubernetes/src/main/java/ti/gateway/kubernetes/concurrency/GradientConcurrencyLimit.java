@@ -0,0 +1,109 @@
+package ti.gateway.kubernetes.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to the observed round trip time, following the gradient algorithm.
+ *
+ * A short and a long exponentially weighted moving average of the RTT are tracked. While the short term RTT
+ * stays close to the long term one the limit grows by a queue allowance of {@code sqrt(limit)}; when latency
+ * rises the ratio {@code long / short} drops below one and the limit shrinks proportionally. Dropped requests
+ * (errors and upstream 5xx) back the limit off multiplicatively. Samples taken while less than half of the
+ * limit is used are ignored for growth so that an idle route does not inflate its limit.
+ */
+class GradientConcurrencyLimit {
+    private static final double SHORT_WINDOW_SMOOTHING = 2.0 / (10 + 1);
+    private static final double LONG_WINDOW_SMOOTHING = 2.0 / (600 + 1);
+    private static final double DROP_BACKOFF_RATIO = 0.9;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+    private int minLimit;
+    private int maxLimit;
+    private double smoothing;
+    private double rttTolerance;
+
+    GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance) {
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+        this.configure(minLimit, maxLimit, smoothing, rttTolerance);
+    }
+
+    synchronized void configure(int minLimit, int maxLimit, double smoothing, double rttTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.smoothing = smoothing;
+        this.rttTolerance = Math.max(1.0, rttTolerance);
+        this.estimatedLimit = Math.max(this.minLimit, Math.min(this.maxLimit, this.estimatedLimit));
+        this.limit = (int) this.estimatedLimit;
+    }
+
+    int getLimit() {
+        return this.limit;
+    }
+
+    int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = this.inFlight.get();
+            if (current >= this.limit) {
+                return false;
+            }
+        } while (!this.inFlight.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    /**
+     * Releases an acquired slot without taking a sample, e.g. when the client cancelled.
+     */
+    void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    void release(long rttNanos, boolean dropped) {
+        int inFlightAtCompletion = this.inFlight.getAndDecrement();
+        this.onSample(rttNanos, inFlightAtCompletion, dropped);
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtCompletion, boolean dropped) {
+        if (dropped) {
+            this.update(this.estimatedLimit * DROP_BACKOFF_RATIO);
+            return;
+        }
+
+        double rtt = (double) rttNanos;
+        if (this.longRtt == 0.0) {
+            this.shortRtt = rtt;
+            this.longRtt = rtt;
+            return;
+        }
+
+        this.shortRtt += (rtt - this.shortRtt) * SHORT_WINDOW_SMOOTHING;
+        this.longRtt += (rtt - this.longRtt) * LONG_WINDOW_SMOOTHING;
+        if (this.longRtt / this.shortRtt > 2.0) {
+            // Recover faster after a latency spike has passed
+            this.longRtt *= 0.95;
+        }
+
+        if (inFlightAtCompletion < this.estimatedLimit / 2.0) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, this.rttTolerance * this.longRtt / this.shortRtt));
+        double queueSize = Math.sqrt(this.estimatedLimit);
+        double newLimit = this.estimatedLimit * gradient + queueSize;
+        this.update(this.estimatedLimit * (1.0 - this.smoothing) + newLimit * this.smoothing);
+    }
+
+    private void update(double newLimit) {
+        this.estimatedLimit = Math.max(this.minLimit, Math.min(this.maxLimit, newLimit));
+        this.limit = (int) this.estimatedLimit;
+    }
+}
@@ -0,0 +1,77 @@
+package ti.gateway.kubernetes.concurrency;
+
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import ti.gateway.kubernetes.apikeys.LocalFileApiKeyValidator;
+import ti.gateway.kubernetes.jwt.JwtHelper;
+
+import java.util.Locale;
+
+/**
+ * Extracts the tenant of a request.
+ */
+abstract class TenantKey {
+    static final String API_KEY_HEADER = "X-Api-Key";
+
+    /**
+     * Returns the tenant of the request, or {@code null} if it has none.
+     */
+    abstract String tenant(ServerHttpRequest request);
+
+    static TenantKey parse(String source) {
+        if (source != null && "api-key".equalsIgnoreCase(source.trim())) {
+            return new TenantKey() {
+                @Override
+                String tenant(ServerHttpRequest request) {
+                    return LocalFileApiKeyValidator.getSelector(request.getHeaders().getFirst(API_KEY_HEADER));
+                }
+            };
+        }
+
+        int separator = source != null ? source.indexOf(':') : -1;
+        if (separator <= 0 || separator == source.length() - 1) {
+            throw new IllegalArgumentException("Invalid tenant key '" + source + "', expected api-key or <header|cookie|query|claim>:<name>");
+        }
+
+        String name = source.substring(separator + 1).trim();
+        switch (source.substring(0, separator).trim().toLowerCase(Locale.ROOT)) {
+            case "header":
+                return new TenantKey() {
+                    @Override
+                    String tenant(ServerHttpRequest request) {
+                        return request.getHeaders().getFirst(name);
+                    }
+                };
+            case "cookie":
+                return new TenantKey() {
+                    @Override
+                    String tenant(ServerHttpRequest request) {
+                        HttpCookie cookie = request.getCookies().getFirst(name);
+                        return cookie != null ? cookie.getValue() : null;
+                    }
+                };
+            case "query":
+                return new TenantKey() {
+                    @Override
+                    String tenant(ServerHttpRequest request) {
+                        return request.getQueryParams().getFirst(name);
+                    }
+                };
+            case "claim":
+                return new TenantKey() {
+                    @Override
+                    String tenant(ServerHttpRequest request) {
+                        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+                        if (authorization == null || !authorization.regionMatches(true, 0, "bearer ", 0, 7)) {
+                            return null;
+                        }
+
+                        return JwtHelper.getClaimAsString(JwtHelper.cleanupHeaderValue(authorization), name);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Invalid tenant key '" + source + "', expected api-key or <header|cookie|query|claim>:<name>");
+        }
+    }
+}
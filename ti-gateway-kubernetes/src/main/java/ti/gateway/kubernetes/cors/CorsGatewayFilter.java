@@ -0,0 +1,35 @@
+package ti.gateway.kubernetes.cors;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsProcessor;
+import org.springframework.web.cors.reactive.DefaultCorsProcessor;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies the route CORS configuration to actual requests. Preflight requests never reach the filter, they
+ * are answered by the handler mapping from the {@link RouteCorsProcessor} index.
+ */
+class CorsGatewayFilter implements GatewayFilter {
+    private static final CorsProcessor CORS_PROCESSOR = new DefaultCorsProcessor();
+    private final CorsConfiguration corsConfiguration;
+
+    CorsGatewayFilter(CorsConfiguration corsConfiguration) {
+        this.corsConfiguration = corsConfiguration;
+    }
+
+    CorsConfiguration getCorsConfiguration() {
+        return this.corsConfiguration;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!CORS_PROCESSOR.process(this.corsConfiguration, exchange)) {
+            return exchange.getResponse().setComplete();
+        }
+
+        return chain.filter(exchange);
+    }
+}
@@ -1,77 +1,75 @@
 package ti.gateway.kubernetes.cors;
 
-import org.springframework.cloud.gateway.config.GlobalCorsProperties;
-import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import ti.gateway.kubernetes.metrics.TimedGatewayFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
-import org.springframework.cloud.gateway.route.RouteDefinition;
-import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.cors.CorsConfiguration;
 
 import java.util.HashMap;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
-@Component
-@SuppressWarnings("unused")
-public class CorsGatewayFilterApplicationListener implements ApplicationListener<RefreshRoutesEvent> {
-    private final GlobalCorsProperties globalCorsProperties;
-    private final RoutePredicateHandlerMapping routePredicateHandlerMapping;
-    private final RouteDefinitionLocator routeDefinitionLocator;
-    @SuppressWarnings("unused")
-    private static final String PATH_PREDICATE_NAME = "Path";
-    @SuppressWarnings("unused")
-    private static final String CORS_FILTER_NAME = "Cors";
-    @SuppressWarnings("unused")
-    private static final String ALL_PATHS = "/**";
+/**
+ * Rebuilds the route CORS index of the {@link RouteCorsProcessor} from the compiled routes once a route
+ * refresh completes.
+ *
+ * The bean has its own name so it is not overridden by the Spring Cloud Gateway listener of the same class name,
+ * which keeps maintaining the path based (global) CORS configurations of the handler mapping.
+ */
+@Component("routeCorsGatewayFilterApplicationListener")
+public class CorsGatewayFilterApplicationListener implements ApplicationListener<RefreshRoutesResultEvent> {
+    private final Logger logger = LoggerFactory.getLogger(CorsGatewayFilterApplicationListener.class);
+    private final RouteCorsProcessor routeCorsProcessor;
 
-    public CorsGatewayFilterApplicationListener(GlobalCorsProperties globalCorsProperties, RoutePredicateHandlerMapping routePredicateHandlerMapping, RouteDefinitionLocator routeDefinitionLocator) {
-        this.globalCorsProperties = globalCorsProperties;
-        this.routePredicateHandlerMapping = routePredicateHandlerMapping;
-        this.routeDefinitionLocator = routeDefinitionLocator;
+    public CorsGatewayFilterApplicationListener(RoutePredicateHandlerMapping routePredicateHandlerMapping) {
+        this.routeCorsProcessor = new RouteCorsProcessor();
+        routePredicateHandlerMapping.setCorsProcessor(this.routeCorsProcessor);
     }
 
     @Override
-    public void onApplicationEvent(RefreshRoutesEvent event) {
-        this.routeDefinitionLocator.getRouteDefinitions().collectList().subscribe((routeDefinitions) -> {
-            HashMap<String, CorsConfiguration> corsConfigurations = new HashMap<>(this.globalCorsProperties.getCorsConfigurations());
-            routeDefinitions.forEach(routeDefinition -> {
-                String pathPredicate = this.getPathPredicate(routeDefinition);
-                Optional<CorsConfiguration> corsConfiguration = this.getCorsConfiguration(routeDefinition);
-                corsConfiguration.ifPresent(configuration -> {
-                    corsConfigurations.put(pathPredicate, configuration);
-                });
-            });
-            this.routePredicateHandlerMapping.setCorsConfigurations(corsConfigurations);
-        });
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().collectList().subscribe(this::update);
     }
 
-    private String getPathPredicate(RouteDefinition routeDefinition) {
-        return routeDefinition.getPredicates().stream()
-                .filter(predicate -> {
-                    return "Path".equals(predicate.getName());
-                })
-                .findFirst().flatMap(predicate -> {
-                    return predicate.getArgs().values().stream().findFirst();
-                })
-                .orElse("/**");
+    void update(List<Route> routes) {
+        Map<String, CorsConfiguration> corsConfigurations = new HashMap<>();
+        routes.forEach((route) -> {
+            for (GatewayFilter filter : route.getFilters()) {
+                GatewayFilter delegate = unwrap(filter);
+                if (delegate instanceof CorsGatewayFilter) {
+                    CorsConfiguration configuration = ((CorsGatewayFilter) delegate).getCorsConfiguration();
+                    try {
+                        configuration.validateAllowCredentials();
+                        corsConfigurations.put(route.getId(), configuration);
+                    } catch (IllegalArgumentException e) {
+                        this.logger.warn("Ignoring invalid CORS configuration of route {}: {}", route.getId(), e.getMessage());
+                    }
+
+                    break;
+                }
+            }
+        });
+        this.routeCorsProcessor.update(corsConfigurations);
     }
 
-    private Optional<CorsConfiguration> getCorsConfiguration(RouteDefinition routeDefinition) {
-        return  routeDefinition.getFilters().stream()
-                .filter(filter -> {
-                    return "Cors".equals(filter.getName());
-                })
-                .findFirst()
-                .map(filter -> {
-                    return String.join(",", filter.getArgs().values());
-                })
-                .map(filterArgs -> {
-                    CorsGatewayFilterConfig filterConfig = new CorsGatewayFilterConfig();
-                    filterConfig.setCors(filterArgs);
-                    return filterConfig.getCorsConfiguration();
-                })
-                .or(Optional::empty);
+    RouteCorsProcessor getRouteCorsProcessor() {
+        return this.routeCorsProcessor;
     }
 
+    private static GatewayFilter unwrap(GatewayFilter filter) {
+        GatewayFilter delegate = filter instanceof TimedGatewayFilter ? ((TimedGatewayFilter) filter).getDelegate() : filter;
+        return delegate instanceof OrderedGatewayFilter ? ((OrderedGatewayFilter) delegate).getDelegate() : delegate;
+    }
 }
@@ -14,9 +14,7 @@ public class CorsGatewayFilterFactory implements GatewayFilterFactory<CorsGatewa
 
     @Override
     public GatewayFilter apply(CorsGatewayFilterConfig config) {
-        return (exchange, chain) -> {
-            return chain.filter(exchange);
-        };
+        return new CorsGatewayFilter(config.getCorsConfiguration());
     }
 
     @Override
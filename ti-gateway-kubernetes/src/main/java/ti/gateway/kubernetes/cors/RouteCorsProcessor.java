@@ -0,0 +1,46 @@
+package ti.gateway.kubernetes.cors;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.DefaultCorsProcessor;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.Map;
+
+/**
+ * Applies route CORS configurations from an immutable index keyed by route id.
+ *
+ * The gateway handler mapping has already matched the route when it processes CORS, so the lookup is a
+ * single map access instead of a path pattern scan, and preflight requests are answered before the route
+ * filter chain runs. Routes without their own configuration use the configuration resolved by the handler
+ * mapping, i.e. the global CORS configuration. A new index is published atomically on every route refresh.
+ */
+class RouteCorsProcessor extends DefaultCorsProcessor {
+    private volatile Map<String, CorsConfiguration> routeConfigurations = Map.of();
+
+    RouteCorsProcessor() {
+    }
+
+    void update(Map<String, CorsConfiguration> routeConfigurations) {
+        this.routeConfigurations = Map.copyOf(routeConfigurations);
+    }
+
+    Map<String, CorsConfiguration> getRouteConfigurations() {
+        return this.routeConfigurations;
+    }
+
+    @Override
+    public boolean process(@Nullable CorsConfiguration config, ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route != null) {
+            CorsConfiguration routeConfiguration = this.routeConfigurations.get(route.getId());
+            if (routeConfiguration != null) {
+                return super.process(routeConfiguration, exchange);
+            }
+        }
+
+        return super.process(config, exchange);
+    }
+}
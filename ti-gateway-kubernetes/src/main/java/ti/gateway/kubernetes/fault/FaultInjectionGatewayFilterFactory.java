@@ -0,0 +1,413 @@
+package ti.gateway.kubernetes.fault;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injects delays, aborts, connection resets and response bandwidth limits into a sample of the requests of a route.
+ *
+ * Each fault applies to its own percentage of the requests and, when a header is configured, only to requests that
+ * carry it. The faults are decided when the filter runs but emulate the upstream: delays, aborts and resets are
+ * applied by {@link FaultInjectionGlobalFilter} right before the request is forwarded, after every other route
+ * filter, and the bandwidth limit paces the upstream response body of forwarded requests. Faults are only counted
+ * once applied, so requests rejected by a later filter are not. Delays are scheduled on timers. Requests that are
+ * not selected pass through untouched.
+ *
+ * The filter runs before {@link NettyWriteResponseFilter} so that it can pace the response body as it is written.
+ */
+@Component
+public class FaultInjectionGatewayFilterFactory extends AbstractGatewayFilterFactory<FaultInjectionGatewayFilterFactory.Config> {
+    static final String FAULT_ATTR = FaultInjectionGatewayFilterFactory.class.getName() + ".fault";
+    static final String INJECTED_METRIC = "spring.cloud.gateway.fault.injected";
+    private final MeterRegistry meterRegistry;
+
+    public FaultInjectionGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(FaultInjectionGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("delay", "abortStatus", "header");
+    }
+
+    public GatewayFilter apply(FaultInjectionGatewayFilterFactory.Config config) {
+        RouteFaults faults = new RouteFaults(config, this.meterRegistry);
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            if (faults.header != null) {
+                String value = exchange.getRequest().getHeaders().getFirst(faults.header);
+                if (value == null || faults.headerValue != null && !faults.headerValue.equals(value)) {
+                    return chain.filter(exchange);
+                }
+            }
+
+            ThrottledResponse throttled = faults.bytesPerSecond > 0L && selected(faults.bandwidthPercent) ? new ThrottledResponse(exchange.getResponse(), faults.bytesPerSecond) : null;
+            Fault fault = faults.select(throttled);
+            if (fault == null) {
+                return chain.filter(exchange);
+            }
+
+            exchange.getAttributes().put(FAULT_ATTR, fault);
+            return chain.filter(throttled != null ? exchange.mutate().response(throttled).build() : exchange);
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private static boolean selected(double percent) {
+        return percent >= 100.0 || percent > 0.0 && ThreadLocalRandom.current().nextDouble(100.0) < percent;
+    }
+
+    /**
+     * Distribution of the injected delays.
+     */
+    public enum DelayDistribution {
+        /**
+         * Always the configured delay.
+         */
+        FIXED,
+        /**
+         * Uniform between the configured delay and the maximum delay.
+         */
+        UNIFORM,
+        /**
+         * Exponential with the configured delay as mean, capped at the maximum delay if set.
+         */
+        EXPONENTIAL
+    }
+
+    /**
+     * Faults selected for one request, applied and counted by {@link FaultInjectionGlobalFilter}.
+     */
+    static final class Fault {
+        private final Duration delay;
+        private final Integer abortStatus;
+        private final boolean reset;
+        private final ThrottledResponse throttled;
+        private final RouteFaults faults;
+
+        Fault(Duration delay, Integer abortStatus, boolean reset) {
+            this(delay, abortStatus, reset, null, null);
+        }
+
+        private Fault(Duration delay, Integer abortStatus, boolean reset, ThrottledResponse throttled, RouteFaults faults) {
+            this.delay = delay;
+            this.abortStatus = abortStatus;
+            this.reset = reset;
+            this.throttled = throttled;
+            this.faults = faults;
+        }
+
+        Duration getDelay() {
+            return this.delay;
+        }
+
+        Integer getAbortStatus() {
+            return this.abortStatus;
+        }
+
+        boolean isReset() {
+            return this.reset;
+        }
+
+        void delayed() {
+            if (this.faults != null) {
+                this.faults.delayed.increment();
+            }
+        }
+
+        void aborted() {
+            if (this.faults != null) {
+                this.faults.aborted.increment();
+            }
+        }
+
+        void resetConnection() {
+            if (this.faults != null) {
+                this.faults.reset.increment();
+            }
+        }
+
+        /**
+         * Starts pacing the response body, if the bandwidth limit was selected, as the request is forwarded.
+         */
+        void forwarded() {
+            if (this.throttled != null) {
+                this.throttled.active = true;
+                if (this.faults != null) {
+                    this.faults.throttled.increment();
+                }
+            }
+        }
+    }
+
+    private static final class RouteFaults {
+        private final String header;
+        private final String headerValue;
+        private final Duration delay;
+        private final Duration maxDelay;
+        private final DelayDistribution delayDistribution;
+        private final double delayPercent;
+        private final Integer abortStatus;
+        private final double abortPercent;
+        private final double resetPercent;
+        private final long bytesPerSecond;
+        private final double bandwidthPercent;
+        private final Counter delayed;
+        private final Counter aborted;
+        private final Counter reset;
+        private final Counter throttled;
+
+        private RouteFaults(Config config, MeterRegistry meterRegistry) {
+            String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+            this.header = config.getHeader();
+            this.headerValue = config.getHeaderValue();
+            this.delay = config.getDelay();
+            this.maxDelay = config.getMaxDelay();
+            this.delayDistribution = config.getDelayDistribution();
+            this.delayPercent = config.getDelayPercent();
+            this.abortStatus = config.getAbortStatus();
+            this.abortPercent = config.getAbortPercent();
+            this.resetPercent = config.getResetPercent();
+            this.bytesPerSecond = config.getBandwidth() != null ? config.getBandwidth().toBytes() : 0L;
+            this.bandwidthPercent = config.getBandwidthPercent();
+            this.delayed = injected(routeId, "delay", meterRegistry);
+            this.aborted = injected(routeId, "abort", meterRegistry);
+            this.reset = injected(routeId, "reset", meterRegistry);
+            this.throttled = injected(routeId, "bandwidth", meterRegistry);
+        }
+
+        private static Counter injected(String routeId, String fault, MeterRegistry meterRegistry) {
+            return Counter.builder(INJECTED_METRIC)
+                    .description("Faults injected into requests")
+                    .tag("routeId", routeId)
+                    .tag("fault", fault)
+                    .register(meterRegistry);
+        }
+
+        private Fault select(ThrottledResponse throttled) {
+            Duration delay = this.delay != null && selected(this.delayPercent) ? this.nextDelay() : null;
+            boolean reset = selected(this.resetPercent);
+            Integer abortStatus = !reset && this.abortStatus != null && selected(this.abortPercent) ? this.abortStatus : null;
+            if (delay == null && abortStatus == null && !reset && throttled == null) {
+                return null;
+            }
+
+            return new Fault(delay, abortStatus, reset, throttled, this);
+        }
+
+        private Duration nextDelay() {
+            long delay = this.delay.toNanos();
+            long maxDelay = this.maxDelay != null ? this.maxDelay.toNanos() : Long.MAX_VALUE;
+            switch (this.delayDistribution) {
+                case UNIFORM:
+                    return maxDelay > delay && maxDelay != Long.MAX_VALUE ? Duration.ofNanos(ThreadLocalRandom.current().nextLong(delay, maxDelay + 1L)) : this.delay;
+                case EXPONENTIAL:
+                    double sample = -Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * delay;
+                    return Duration.ofNanos((long) Math.min(sample, maxDelay));
+                default:
+                    return this.delay;
+            }
+        }
+    }
+
+    /**
+     * Paces the response body to a number of bytes per second, once the request is forwarded. Each chunk is
+     * released once the body up to its end has had its time at that rate, so the average rate holds whatever the
+     * chunk sizes are.
+     */
+    private static final class ThrottledResponse extends ServerHttpResponseDecorator {
+        private final long bytesPerSecond;
+        private volatile boolean active;
+        private boolean started;
+        private long start;
+        private long written;
+
+        private ThrottledResponse(ServerHttpResponse delegate, long bytesPerSecond) {
+            super(delegate);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(this.active ? this.throttle(body) : body);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(this.active ? Flux.from(body).map(this::throttle) : body);
+        }
+
+        private Flux<DataBuffer> throttle(Publisher<? extends DataBuffer> body) {
+            return Flux.<DataBuffer>from(body).concatMap((buffer) -> {
+                long now = Schedulers.parallel().now(TimeUnit.NANOSECONDS);
+                if (!this.started) {
+                    this.started = true;
+                    this.start = now;
+                }
+
+                this.written += buffer.readableByteCount();
+                long due = this.start + this.written * 1_000_000_000L / this.bytesPerSecond;
+                if (due <= now) {
+                    return Mono.just(buffer);
+                }
+
+                return Mono.delay(Duration.ofNanos(due - now)).thenReturn(buffer).doOnCancel(() -> {
+                    DataBufferUtils.release(buffer);
+                });
+            });
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private String header;
+        private String headerValue;
+        private Duration delay;
+        private Duration maxDelay;
+        private DelayDistribution delayDistribution = DelayDistribution.FIXED;
+        private double delayPercent = 100.0;
+        private Integer abortStatus;
+        private double abortPercent = 100.0;
+        private double resetPercent;
+        private DataSize bandwidth;
+        private double bandwidthPercent = 100.0;
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Header a request must carry for faults to be injected; all requests are eligible if not set.
+         */
+        public String getHeader() {
+            return this.header;
+        }
+
+        public void setHeader(String header) {
+            this.header = header;
+        }
+
+        /**
+         * Value the header must have; any value if not set.
+         */
+        public String getHeaderValue() {
+            return this.headerValue;
+        }
+
+        public void setHeaderValue(String headerValue) {
+            this.headerValue = headerValue;
+        }
+
+        /**
+         * Injected delay, or its lower bound or mean depending on the distribution.
+         */
+        public Duration getDelay() {
+            return this.delay;
+        }
+
+        public void setDelay(Duration delay) {
+            this.delay = delay;
+        }
+
+        public Duration getMaxDelay() {
+            return this.maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public DelayDistribution getDelayDistribution() {
+            return this.delayDistribution;
+        }
+
+        public void setDelayDistribution(DelayDistribution delayDistribution) {
+            this.delayDistribution = delayDistribution;
+        }
+
+        public double getDelayPercent() {
+            return this.delayPercent;
+        }
+
+        public void setDelayPercent(double delayPercent) {
+            this.delayPercent = delayPercent;
+        }
+
+        /**
+         * Status of the responses of aborted requests, which are not forwarded.
+         */
+        public Integer getAbortStatus() {
+            return this.abortStatus;
+        }
+
+        public void setAbortStatus(Integer abortStatus) {
+            this.abortStatus = abortStatus;
+        }
+
+        public double getAbortPercent() {
+            return this.abortPercent;
+        }
+
+        public void setAbortPercent(double abortPercent) {
+            this.abortPercent = abortPercent;
+        }
+
+        /**
+         * Percentage of the requests whose connection is reset instead of being forwarded.
+         */
+        public double getResetPercent() {
+            return this.resetPercent;
+        }
+
+        public void setResetPercent(double resetPercent) {
+            this.resetPercent = resetPercent;
+        }
+
+        /**
+         * Response body bytes per second.
+         */
+        public DataSize getBandwidth() {
+            return this.bandwidth;
+        }
+
+        public void setBandwidth(DataSize bandwidth) {
+            this.bandwidth = bandwidth;
+        }
+
+        public double getBandwidthPercent() {
+            return this.bandwidthPercent;
+        }
+
+        public void setBandwidthPercent(double bandwidthPercent) {
+            this.bandwidthPercent = bandwidthPercent;
+        }
+    }
+}
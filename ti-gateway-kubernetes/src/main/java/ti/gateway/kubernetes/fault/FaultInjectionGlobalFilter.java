@@ -0,0 +1,98 @@
+package ti.gateway.kubernetes.fault;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+/**
+ * Applies the faults selected by {@link FaultInjectionGatewayFilterFactory} right before the request is forwarded.
+ *
+ * A delay is scheduled on a timer before the request is forwarded or aborted. Aborted requests get the configured
+ * status without being forwarded. A reset closes the client connection with a TCP reset; on servers other than
+ * Reactor Netty, which do not expose the connection, it is logged and answered as an abort with 502. Requests
+ * without a selected fault only pay for an attribute lookup.
+ */
+@Component
+class FaultInjectionGlobalFilter implements GlobalFilter, Ordered {
+    static final int ORDER = NettyRoutingFilter.ORDER - 10;
+    private static final Logger LOG = LoggerFactory.getLogger(FaultInjectionGlobalFilter.class);
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        FaultInjectionGatewayFilterFactory.Fault fault = exchange.getAttribute(FaultInjectionGatewayFilterFactory.FAULT_ATTR);
+        if (fault == null) {
+            return chain.filter(exchange);
+        }
+
+        Mono<Void> next = Mono.defer(() -> {
+            if (fault.isReset()) {
+                return reset(exchange, fault);
+            }
+
+            if (fault.getAbortStatus() != null) {
+                fault.aborted();
+                return abort(exchange, HttpStatusCode.valueOf(fault.getAbortStatus()));
+            }
+
+            fault.forwarded();
+            return chain.filter(exchange);
+        });
+        if (fault.getDelay() == null) {
+            return next;
+        }
+
+        fault.delayed();
+        return Mono.delay(fault.getDelay()).then(next);
+    }
+
+    private static Mono<Void> abort(ServerWebExchange exchange, HttpStatusCode status) {
+        setAlreadyRouted(exchange);
+        exchange.getResponse().setStatusCode(status);
+        return exchange.getResponse().setComplete();
+    }
+
+    private static Mono<Void> reset(ServerWebExchange exchange, FaultInjectionGatewayFilterFactory.Fault fault) {
+        Connection connection = connection(exchange.getResponse());
+        if (connection == null) {
+            LOG.warn("Cannot reset the connection of {} on this server, aborting it with 502 instead", exchange.getRequest().getPath());
+            fault.aborted();
+            return abort(exchange, HttpStatus.BAD_GATEWAY);
+        }
+
+        setAlreadyRouted(exchange);
+        fault.resetConnection();
+        Channel channel = connection.channel();
+        channel.config().setOption(ChannelOption.SO_LINGER, 0);
+        channel.close();
+        return Mono.empty();
+    }
+
+    private static Connection connection(ServerHttpResponse response) {
+        try {
+            Object nativeResponse = ServerHttpResponseDecorator.getNativeResponse(response);
+            return nativeResponse instanceof Connection ? (Connection) nativeResponse : null;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -3,13 +3,26 @@ package ti.gateway.kubernetes.header;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.RewriteResponseHeaderGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
-import org.springframework.web.server.ServerWebExchange;
+import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Rewrites the values of all response headers with a regular expression.
+ *
+ * The expression is compiled once per route and the headers are rewritten just before the response is committed.
+ * Header values that cannot match are skipped without allocating: a literal expression is checked with
+ * {@link String#contains}, any other expression with a single {@link Matcher#find()}.
+ */
+@Component
 public class RewriteAllResponseHeadersGatewayFilterFactory extends RewriteResponseHeaderGatewayFilterFactory {
+    private static final String REGEX_METACHARACTERS = "\\.[]{}()*+?^$|";
 
     public RewriteAllResponseHeadersGatewayFilterFactory() {
     }
@@ -21,19 +34,72 @@ public class RewriteAllResponseHeadersGatewayFilterFactory extends RewriteRespon
 
     @Override
     public GatewayFilter apply(Config config) {
+        if (config.getRegexp() == null) {
+            return (exchange, chain) -> {
+                return chain.filter(exchange);
+            };
+        }
+
+        HeaderRewriter rewriter = new HeaderRewriter(config.getRegexp(), config.getReplacement() != null ? config.getReplacement() : "");
         return (exchange, chain) -> {
-            return chain.filter(exchange).then(Mono.fromRunnable(() -> {
-                this.rewriteAllHeaders(exchange, config);
-            }));
+            exchange.getResponse().beforeCommit(() -> {
+                rewriter.rewrite(exchange.getResponse().getHeaders());
+                return Mono.empty();
+            });
+            return chain.filter(exchange);
         };
     }
 
-    private void rewriteAllHeaders(ServerWebExchange exchange, Config config) {
-        HttpHeaders headers = exchange.getResponse().getHeaders();
-        headers.keySet().forEach(headerName -> {
-            headers.compute(headerName, (k, v) -> {
-                return super.rewriteHeaders(config, v);
-            });
-        });
+    static boolean isLiteral(String regexp) {
+        for (int i = 0; i < regexp.length(); ++i) {
+            if (REGEX_METACHARACTERS.indexOf(regexp.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class HeaderRewriter {
+        private final Pattern pattern;
+        private final String literal;
+        private final String replacement;
+
+        private HeaderRewriter(String regexp, String replacement) {
+            this.pattern = Pattern.compile(regexp);
+            this.literal = !regexp.isEmpty() && isLiteral(regexp) ? regexp : null;
+            this.replacement = replacement.replace("$\\", "$");
+        }
+
+        private void rewrite(HttpHeaders headers) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                List<String> values = header.getValue();
+                List<String> rewritten = null;
+                for (int i = 0; i < values.size(); ++i) {
+                    String value = values.get(i);
+                    String result = this.rewrite(value);
+                    if (result != value && rewritten == null) {
+                        rewritten = new ArrayList<>(values);
+                    }
+
+                    if (rewritten != null) {
+                        rewritten.set(i, result);
+                    }
+                }
+
+                if (rewritten != null) {
+                    header.setValue(rewritten);
+                }
+            }
+        }
+
+        private String rewrite(String value) {
+            if (value == null || this.literal != null && !value.contains(this.literal)) {
+                return value;
+            }
+
+            Matcher matcher = this.pattern.matcher(value);
+            return matcher.find() ? matcher.replaceAll(this.replacement) : value;
+        }
     }
 }
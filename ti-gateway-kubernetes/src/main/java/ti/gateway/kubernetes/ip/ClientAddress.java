@@ -0,0 +1,48 @@
+package ti.gateway.kubernetes.ip;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Takes the client address of a request as sent, without resolving it.
+ *
+ * With a number of trusted proxies, the address is the {@code X-Forwarded-For} entry that many hops from the end,
+ * or the first entry when there are fewer, as with {@code XForwardedRemoteAddressResolver}. That resolver turns the
+ * entry into an {@link InetSocketAddress}, which looks up a hostname on the event loop, so the entry is returned
+ * here as a string for {@link IpRangeMatcher#matches(String)}, which only accepts IP literals.
+ */
+public final class ClientAddress {
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private ClientAddress() {
+    }
+
+    /**
+     * Returns the client address of the exchange, or {@code null} if there is none.
+     *
+     * @param maxTrustedIndex the number of trusted proxies appending to {@code X-Forwarded-For}, or 0 to take the
+     * address of the connection
+     */
+    public static String of(ServerWebExchange exchange, int maxTrustedIndex) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (maxTrustedIndex > 0) {
+            List<String> forwardedFor = request.getHeaders().get(X_FORWARDED_FOR);
+            if (forwardedFor != null && forwardedFor.size() == 1) {
+                String[] entries = forwardedFor.get(0).split(",");
+                return entries[Math.max(0, entries.length - maxTrustedIndex)].trim();
+            }
+        }
+
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null) {
+            return null;
+        }
+
+        InetAddress address = remoteAddress.getAddress();
+        return address != null ? address.getHostAddress() : remoteAddress.getHostString();
+    }
+}
@@ -0,0 +1,70 @@
+package ti.gateway.kubernetes.ip;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rejects requests whose client address is not in the source ranges of an IP allow list.
+ *
+ * The source ranges are IPv4 and IPv6 addresses or CIDR ranges, as in the {@code sourceRange} of an IP allow list,
+ * and are compiled into an {@link IpRangeMatcher} when the route is loaded. The client address is the address of
+ * the connection. As with the {@code IPs} key location of rate limits, a number before the ranges, as in
+ * {@code IPAllowList=1, 10.0.0.0/8}, is the number of trusted proxies appending to {@code X-Forwarded-For}, and
+ * the client address is then taken from that header. The address is matched as an IP literal, so a hostname in
+ * that header is rejected rather than resolved.
+ */
+@Component
+public class IPAllowListGatewayFilterFactory extends AbstractGatewayFilterFactory<IPAllowListGatewayFilterFactory.Config> {
+    public IPAllowListGatewayFilterFactory() {
+        super(IPAllowListGatewayFilterFactory.Config.class);
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("sourceRange");
+    }
+
+    public ShortcutType shortcutType() {
+        return ShortcutType.GATHER_LIST;
+    }
+
+    public GatewayFilter apply(IPAllowListGatewayFilterFactory.Config config) {
+        List<String> ranges = config.getSourceRange();
+        int maxTrustedIndex = 0;
+        if (!ranges.isEmpty() && ranges.get(0).trim().matches("\\d+")) {
+            maxTrustedIndex = Integer.parseInt(ranges.get(0).trim());
+            ranges = ranges.subList(1, ranges.size());
+        }
+
+        IpRangeMatcher sourceRange = IpRangeMatcher.of(ranges);
+        int trustedProxies = maxTrustedIndex;
+        return (exchange, chain) -> {
+            if (sourceRange.matches(ClientAddress.of(exchange, trustedProxies))) {
+                return chain.filter(exchange);
+            }
+
+            exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+            return exchange.getResponse().setComplete();
+        };
+    }
+
+    public static class Config {
+        private List<String> sourceRange = new ArrayList<>();
+
+        public Config() {
+        }
+
+        public List<String> getSourceRange() {
+            return this.sourceRange;
+        }
+
+        public void setSourceRange(List<String> sourceRange) {
+            this.sourceRange = sourceRange;
+        }
+    }
+}
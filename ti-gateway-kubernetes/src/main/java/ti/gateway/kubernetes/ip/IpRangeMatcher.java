@@ -0,0 +1,165 @@
+package ti.gateway.kubernetes.ip;
+
+import io.netty.util.NetUtil;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Matches IPv4 and IPv6 addresses against a list of addresses and CIDR ranges.
+ *
+ * The ranges are compiled once into a binary trie per address family, one level per prefix bit, so a lookup
+ * follows at most 32 or 128 nodes whatever the size of the list. Nodes are kept in a flat array of child indexes,
+ * which holds large lists in a few bytes per distinct prefix bit. Addresses are parsed as literals only, never
+ * resolved, and IPv4-mapped IPv6 addresses match the IPv4 ranges.
+ */
+public final class IpRangeMatcher {
+    private static final int NONE = 0;
+    private final Trie ipv4 = new Trie();
+    private final Trie ipv6 = new Trie();
+
+    private IpRangeMatcher() {
+    }
+
+    /**
+     * Compiles addresses such as {@code 10.0.0.1}, and ranges such as {@code 10.0.0.0/8} or {@code 2001:db8::/32}.
+     *
+     * @throws IllegalArgumentException if an entry is neither
+     */
+    public static IpRangeMatcher of(Collection<String> ranges) {
+        IpRangeMatcher matcher = new IpRangeMatcher();
+        for (String range : ranges) {
+            matcher.add(range.trim());
+        }
+
+        return matcher;
+    }
+
+    public boolean matches(InetAddress address) {
+        return address != null && this.matches(address.getAddress());
+    }
+
+    public boolean matches(String address) {
+        byte[] bytes = address != null ? NetUtil.createByteArrayFromIpAddressString(address.trim()) : null;
+        return bytes != null && this.matches(bytes);
+    }
+
+    public boolean isEmpty() {
+        return this.ipv4.isEmpty() && this.ipv6.isEmpty();
+    }
+
+    private boolean matches(byte[] address) {
+        byte[] normalized = normalize(address);
+        return (normalized.length == 4 ? this.ipv4 : this.ipv6).matches(normalized);
+    }
+
+    private void add(String range) {
+        int slash = range.indexOf('/');
+        String address = slash >= 0 ? range.substring(0, slash) : range;
+        byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+        if (bytes == null) {
+            throw new IllegalArgumentException("Invalid IP address or CIDR range: " + range);
+        }
+
+        int prefixLength = bytes.length * 8;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(range.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid IP address or CIDR range: " + range, e);
+            }
+
+            if (prefixLength < 0 || prefixLength > bytes.length * 8) {
+                throw new IllegalArgumentException("Invalid IP address or CIDR range: " + range);
+            }
+        }
+
+        byte[] normalized = normalize(bytes);
+        if (normalized.length != bytes.length) {
+            prefixLength = Math.max(0, prefixLength - 96);
+        }
+
+        (normalized.length == 4 ? this.ipv4 : this.ipv6).add(normalized, prefixLength);
+    }
+
+    /**
+     * Returns the IPv4 address of an IPv4-mapped IPv6 address, or the address itself.
+     */
+    private static byte[] normalize(byte[] address) {
+        if (address.length != 16) {
+            return address;
+        }
+
+        for (int i = 0; i < 10; ++i) {
+            if (address[i] != 0) {
+                return address;
+            }
+        }
+
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff ? Arrays.copyOfRange(address, 12, 16) : address;
+    }
+
+    /**
+     * Binary trie whose node {@code n} has its children at {@code children[2n]} and {@code children[2n + 1]}.
+     * Node 0 is the root, which no node points to, so 0 also stands for no child.
+     */
+    private static final class Trie {
+        private int[] children = new int[2];
+        private final BitSet terminal = new BitSet();
+        private int size = 1;
+
+        private boolean isEmpty() {
+            return this.size == 1 && !this.terminal.get(0);
+        }
+
+        private void add(byte[] address, int prefixLength) {
+            int node = 0;
+            for (int bit = 0; bit < prefixLength; ++bit) {
+                if (this.terminal.get(node)) {
+                    return;
+                }
+
+                int child = 2 * node + bit(address, bit);
+                if (this.children[child] == NONE) {
+                    int created = this.newNode();
+                    this.children[child] = created;
+                }
+
+                node = this.children[child];
+            }
+
+            this.terminal.set(node);
+        }
+
+        private boolean matches(byte[] address) {
+            int node = 0;
+            int bits = address.length * 8;
+            for (int bit = 0; bit < bits; ++bit) {
+                if (this.terminal.get(node)) {
+                    return true;
+                }
+
+                node = this.children[2 * node + bit(address, bit)];
+                if (node == NONE) {
+                    return false;
+                }
+            }
+
+            return this.terminal.get(node);
+        }
+
+        private int newNode() {
+            if (2 * this.size + 2 > this.children.length) {
+                this.children = Arrays.copyOf(this.children, this.children.length * 2);
+            }
+
+            return this.size++;
+        }
+
+        private static int bit(byte[] address, int bit) {
+            return address[bit >> 3] >> (7 - (bit & 7)) & 1;
+        }
+    }
+}
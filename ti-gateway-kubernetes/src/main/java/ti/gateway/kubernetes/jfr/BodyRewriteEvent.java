@@ -0,0 +1,25 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ti.gateway.BodyRewrite")
+@Label("Body Rewrite")
+@Description("Rewrite of a buffered response body by a body rewrite filter")
+@Category({"TiGateway", "Filters"})
+@StackTrace(false)
+public class BodyRewriteEvent extends Event {
+    @Label("Route Id")
+    public String routeId;
+
+    @Label("Filter")
+    public String filter;
+
+    @Label("Body Length")
+    @Description("Length of the body before the rewrite, in characters")
+    public long bodyLength;
+}
@@ -0,0 +1,44 @@
+package ti.gateway.kubernetes.jfr;
+
+import org.springframework.cloud.gateway.filter.factory.rewrite.RewriteFunction;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Helpers shared by the TiGateway JFR events.
+ *
+ * Events are only populated after {@code shouldCommit()}, so that nothing is resolved while no
+ * recording has them enabled.
+ */
+public final class GatewayEvents {
+
+    private GatewayEvents() {
+    }
+
+    public static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : null;
+    }
+
+    /**
+     * Wraps a synchronous body rewrite so that each invocation is recorded as a {@link BodyRewriteEvent}.
+     */
+    public static RewriteFunction<String, String> bodyRewrite(String filterName, RewriteFunction<String, String> rewriteFunction) {
+        return (exchange, body) -> {
+            BodyRewriteEvent event = new BodyRewriteEvent();
+            event.begin();
+            try {
+                return rewriteFunction.apply(exchange, body);
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.routeId = routeId(exchange);
+                    event.filter = filterName;
+                    event.bodyLength = body != null ? body.length() : 0L;
+                    event.commit();
+                }
+            }
+        };
+    }
+}
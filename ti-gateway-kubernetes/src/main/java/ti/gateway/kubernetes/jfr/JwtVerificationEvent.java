@@ -0,0 +1,24 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ti.gateway.JwtVerification")
+@Label("JWT Verification")
+@Description("Key lookup, key parsing and signature verification of a bearer token")
+@Category({"TiGateway", "Security"})
+@StackTrace(false)
+public class JwtVerificationEvent extends Event {
+    @Label("Route Id")
+    public String routeId;
+
+    @Label("Key Location")
+    public String keyLocation;
+
+    @Label("Valid")
+    public boolean valid;
+}
@@ -0,0 +1,24 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ti.gateway.RateLimit")
+@Label("Rate Limit Decision")
+@Description("Resolution of the rate limit bucket and consumption of a token")
+@Category({"TiGateway", "Rate Limiting"})
+@StackTrace(false)
+public class RateLimitEvent extends Event {
+    @Label("Route Id")
+    public String routeId;
+
+    @Label("Allowed")
+    public boolean allowed;
+
+    @Label("Remaining")
+    public long remaining;
+}
@@ -0,0 +1,21 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ti.gateway.RouteMatch")
+@Label("Route Match")
+@Description("Time from the start of request handling until a route has been matched")
+@Category({"TiGateway", "Routing"})
+@StackTrace(false)
+class RouteMatchEvent extends Event {
+    @Label("Route Id")
+    String routeId;
+
+    @Label("Path")
+    String path;
+}
@@ -0,0 +1,39 @@
+package ti.gateway.kubernetes.jfr;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Commits the {@link RouteMatchEvent} started by {@link RouteMatchEventWebFilter} once the gateway filter chain is entered.
+ */
+@Component
+class RouteMatchEventGlobalFilter implements GlobalFilter, Ordered {
+
+    RouteMatchEventGlobalFilter() {
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        RouteMatchEvent event = exchange.getAttribute(RouteMatchEventWebFilter.ROUTE_MATCH_EVENT_ATTR);
+        if (event != null) {
+            exchange.getAttributes().remove(RouteMatchEventWebFilter.ROUTE_MATCH_EVENT_ATTR);
+            event.end();
+            if (event.shouldCommit()) {
+                event.routeId = GatewayEvents.routeId(exchange);
+                event.path = exchange.getRequest().getPath().value();
+                event.commit();
+            }
+        }
+
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,35 @@
+package ti.gateway.kubernetes.jfr;
+
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Starts a {@link RouteMatchEvent} before the handler mapping runs; {@link RouteMatchEventGlobalFilter} commits it.
+ */
+@Component
+class RouteMatchEventWebFilter implements WebFilter, Ordered {
+    static final String ROUTE_MATCH_EVENT_ATTR = RouteMatchEventWebFilter.class.getName() + ".event";
+
+    RouteMatchEventWebFilter() {
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        RouteMatchEvent event = new RouteMatchEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            exchange.getAttributes().put(ROUTE_MATCH_EVENT_ATTR, event);
+        }
+
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
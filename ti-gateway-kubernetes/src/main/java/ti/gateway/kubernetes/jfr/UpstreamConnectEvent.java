@@ -0,0 +1,23 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ti.gateway.UpstreamConnect")
+@Label("Upstream Connect")
+@Description("Time from routing the request until a pooled or new upstream connection is ready to send it")
+@Category({"TiGateway", "Upstream"})
+@StackTrace(false)
+class UpstreamConnectEvent extends Event {
+    @Label("Route Id")
+    String routeId;
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    transient boolean committed;
+}
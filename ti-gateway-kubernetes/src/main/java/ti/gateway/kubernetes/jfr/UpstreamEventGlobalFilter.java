@@ -0,0 +1,60 @@
+package ti.gateway.kubernetes.jfr;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * Times the proxied upstream call when {@link UpstreamResponseEvent} is enabled. A status of 0 means no
+ * upstream response was received (error, timeout or cancellation).
+ *
+ * Runs just before the {@link NettyRoutingFilter}. The connect event travels in the Reactor context so
+ * {@link UpstreamEventHttpClientCustomizer} can commit it when the request is written to a connection.
+ */
+@Component
+class UpstreamEventGlobalFilter implements GlobalFilter, Ordered {
+
+    UpstreamEventGlobalFilter() {
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        UpstreamResponseEvent responseEvent = new UpstreamResponseEvent();
+        UpstreamConnectEvent connectEvent = new UpstreamConnectEvent();
+        if (!responseEvent.isEnabled() && !connectEvent.isEnabled()) {
+            return chain.filter(exchange);
+        }
+
+        String routeId = GatewayEvents.routeId(exchange);
+        connectEvent.routeId = routeId;
+        connectEvent.begin();
+        responseEvent.begin();
+        return chain.filter(exchange).doFinally((signal) -> {
+            responseEvent.end();
+            if (responseEvent.shouldCommit()) {
+                URI uri = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                boolean responded = exchange.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR) != null;
+                responseEvent.routeId = routeId;
+                responseEvent.uri = uri != null ? uri.toString() : null;
+                responseEvent.status = responded && status != null ? status.value() : 0;
+                responseEvent.commit();
+            }
+        }).contextWrite((context) -> {
+            return context.put(UpstreamConnectEvent.class, connectEvent);
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyRoutingFilter.ORDER - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package ti.gateway.kubernetes.jfr;
+
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Commits the {@link UpstreamConnectEvent} placed in the Reactor context by {@link UpstreamEventGlobalFilter}.
+ */
+@Component
+class UpstreamEventHttpClientCustomizer implements HttpClientCustomizer {
+
+    UpstreamEventHttpClientCustomizer() {
+    }
+
+    @Override
+    public HttpClient customize(HttpClient httpClient) {
+        return httpClient.doOnRequest((request, connection) -> {
+            request.currentContextView().<UpstreamConnectEvent>getOrEmpty(UpstreamConnectEvent.class).ifPresent((event) -> {
+                event.end();
+                if (!event.committed && event.shouldCommit()) {
+                    event.committed = true;
+                    event.remoteAddress = String.valueOf(connection.channel().remoteAddress());
+                    event.commit();
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,24 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ti.gateway.UpstreamResponse")
+@Label("Upstream Response")
+@Description("Time from routing the request until the upstream response headers have been received")
+@Category({"TiGateway", "Upstream"})
+@StackTrace(false)
+class UpstreamResponseEvent extends Event {
+    @Label("Route Id")
+    String routeId;
+
+    @Label("Upstream URI")
+    String uri;
+
+    @Label("Status")
+    int status;
+}
@@ -2,6 +2,8 @@ package ti.gateway.kubernetes.jwt;
 
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.JWTParser;
+import ti.gateway.kubernetes.jfr.GatewayEvents;
+import ti.gateway.kubernetes.jfr.JwtVerificationEvent;
 import ti.gateway.kubernetes.security.CommonSecurity;
 import ti.gateway.kubernetes.security.RolesExtractor;
 import org.slf4j.Logger;
@@ -76,14 +78,19 @@ public class JwtKeyGatewayFilterFactory implements GatewayFilterFactory<JwtKeyGa
             @SuppressWarnings("deprecation")
             String plainToken = ((BearerTokenAuthenticationToken)authentication).getToken();
 
+            JwtVerificationEvent event = new JwtVerificationEvent();
+            event.begin();
             JwtKeyGatewayFilterFactory.TokenParser token;
             try {
                 token = JwtKeyGatewayFilterFactory.TokenParser.parseToken(plainToken);
             } catch (ParseException var7) {
+                this.commitVerificationEvent(event, exchange, config, false);
                 return this.errorResponse();
             }
 
-            if (!this.isValidToken(token, config, exchange)) {
+            boolean validToken = this.isValidToken(token, config, exchange);
+            this.commitVerificationEvent(event, exchange, config, validToken);
+            if (!validToken) {
                 return this.errorResponse();
             } else {
                 DefaultOAuth2AuthenticatedPrincipal principal = this.buildPrincipal(plainToken, config);
@@ -92,6 +99,16 @@ public class JwtKeyGatewayFilterFactory implements GatewayFilterFactory<JwtKeyGa
         });
     }
 
+    private void commitVerificationEvent(JwtVerificationEvent event, ServerWebExchange exchange, JwtKeyGatewayFilterFactory.Config config, boolean valid) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.routeId = GatewayEvents.routeId(exchange);
+            event.keyLocation = config != null ? config.getKeyLocation() : null;
+            event.valid = valid;
+            event.commit();
+        }
+    }
+
     private Mono<Authentication> errorResponse() {
         return Mono.error(new InvalidBearerTokenException("Token could not be validated"));
     }
@@ -0,0 +1,149 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Consistent hash load balancer with bounded loads.
+ *
+ * Requests with the same key go to the same instance as long as it is not loaded more than the load factor times
+ * the average; a key of an overloaded instance continues clockwise on the ring to the next instance within the
+ * bound. The load of an instance is the number of requests it was assigned over the last second, which needs no
+ * completion callbacks. The ring is rebuilt incrementally whenever the instance list changes. Requests without a
+ * key are balanced round robin.
+ */
+class ConsistentHashLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+    private static final Logger LOG = LoggerFactory.getLogger(ConsistentHashLoadBalancer.class);
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final String serviceId;
+    private final HashKeySource keySource;
+    private final double loadFactor;
+    private final int virtualNodes;
+    private final LongSupplier clock;
+    private final Map<String, WindowedCount> loads = new ConcurrentHashMap<>();
+    private final WindowedCount totalLoad;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private volatile ConsistentHashRing ring;
+
+    ConsistentHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId, ConsistentHashProperties.Service service) {
+        this(supplierProvider, serviceId, service, System::nanoTime);
+    }
+
+    ConsistentHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider, String serviceId, ConsistentHashProperties.Service service, LongSupplier clock) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.keySource = HashKeySource.parse(service.getKey());
+        this.loadFactor = Math.max(service.getLoadFactor(), 1.0);
+        this.virtualNodes = service.getVirtualNodes();
+        this.clock = clock;
+        this.totalLoad = new WindowedCount(clock.getAsLong());
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = this.supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map((instances) -> {
+            return this.choose(instances, this.key(request));
+        });
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances, String key) {
+        if (instances.isEmpty()) {
+            LOG.warn("No servers available for service: {}", this.serviceId);
+            return new EmptyResponse();
+        }
+
+        ConsistentHashRing ring = this.ringFor(instances);
+        long now = this.clock.getAsLong();
+        int selected;
+        if (key == null) {
+            selected = (this.roundRobin.getAndIncrement() & Integer.MAX_VALUE) % ring.size();
+        } else {
+            double bound = Math.ceil(this.loadFactor * (this.totalLoad.get(now) + 1.0) / ring.size());
+            selected = ring.select(ConsistentHashRing.hash(key), (index) -> {
+                return this.load(ring.instanceKey(index), now).get(now) + 1.0 <= bound;
+            });
+        }
+
+        this.load(ring.instanceKey(selected), now).increment(now);
+        this.totalLoad.increment(now);
+        return new DefaultResponse(ring.instance(selected));
+    }
+
+    private String key(Request<?> request) {
+        Object context = request != null ? request.getContext() : null;
+        if (context instanceof RequestDataContext && ((RequestDataContext) context).getClientRequest() != null) {
+            return this.keySource.key(((RequestDataContext) context).getClientRequest());
+        }
+
+        return null;
+    }
+
+    private ConsistentHashRing ringFor(List<ServiceInstance> instances) {
+        ConsistentHashRing current = this.ring;
+        ConsistentHashRing updated = ConsistentHashRing.build(current, instances, this.virtualNodes);
+        if (updated != current) {
+            this.ring = updated;
+            this.loads.keySet().removeIf((instanceKey) -> !updated.contains(instanceKey));
+        }
+
+        return updated;
+    }
+
+    private WindowedCount load(String instanceKey, long now) {
+        WindowedCount load = this.loads.get(instanceKey);
+        return load != null ? load : this.loads.computeIfAbsent(instanceKey, (key) -> new WindowedCount(now));
+    }
+
+    /**
+     * Count over a sliding window, estimated from the current and the previous fixed window.
+     */
+    static final class WindowedCount {
+        private long windowStart;
+        private int current;
+        private int previous;
+
+        WindowedCount(long now) {
+            this.windowStart = now;
+        }
+
+        synchronized void increment(long now) {
+            this.advance(now);
+            ++this.current;
+        }
+
+        synchronized double get(long now) {
+            this.advance(now);
+            double elapsed = (double) (now - this.windowStart) / WINDOW_NANOS;
+            return this.previous * (1.0 - elapsed) + this.current;
+        }
+
+        private void advance(long now) {
+            long windows = (now - this.windowStart) / WINDOW_NANOS;
+            if (windows > 0) {
+                this.previous = windows == 1 ? this.current : 0;
+                this.current = 0;
+                this.windowStart += windows * WINDOW_NANOS;
+            }
+        }
+    }
+}
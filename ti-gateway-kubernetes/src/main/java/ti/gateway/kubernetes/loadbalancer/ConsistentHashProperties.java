@@ -0,0 +1,67 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConfigurationProperties(
+        prefix = "spring.cloud.gateway.k8s.loadbalancer.consistent-hash"
+)
+class ConsistentHashProperties {
+    private Map<String, Service> services = new LinkedHashMap<>();
+
+    ConsistentHashProperties() {
+    }
+
+    /**
+     * Services balanced by consistent hashing, by service id; other services are balanced round robin.
+     */
+    public Map<String, Service> getServices() {
+        return this.services;
+    }
+
+    public void setServices(Map<String, Service> services) {
+        this.services = services;
+    }
+
+    public static class Service {
+        private String key;
+        private double loadFactor = 1.25;
+        private int virtualNodes = 100;
+
+        public Service() {
+        }
+
+        /**
+         * Source of the hash key: {@code header:<name>}, {@code cookie:<name>}, {@code claim:<name>} of the bearer
+         * token, or {@code path:<index>} of a path segment.
+         */
+        public String getKey() {
+            return this.key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        /**
+         * How much more than the average load an instance may take before keys spill over to the next one.
+         */
+        public double getLoadFactor() {
+            return this.loadFactor;
+        }
+
+        public void setLoadFactor(double loadFactor) {
+            this.loadFactor = loadFactor;
+        }
+
+        public int getVirtualNodes() {
+            return this.virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable hash ring of service instances with virtual nodes.
+ *
+ * The points of an instance only depend on its key, so a ring built from a previous one reuses the points of the
+ * instances it already had and only hashes new ones; keys only move from or to instances that were removed or
+ * added.
+ */
+final class ConsistentHashRing {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private final List<ServiceInstance> source;
+    private final ServiceInstance[] instances;
+    private final String[] instanceKeys;
+    private final Map<String, long[]> instancePoints;
+    private final long[] points;
+    private final int[] owners;
+
+    private ConsistentHashRing(List<ServiceInstance> source, ServiceInstance[] instances, String[] instanceKeys, Map<String, long[]> instancePoints) {
+        this.source = source;
+        this.instances = instances;
+        this.instanceKeys = instanceKeys;
+        this.instancePoints = instancePoints;
+        int size = 0;
+        for (String key : instanceKeys) {
+            size += instancePoints.get(key).length;
+        }
+
+        long[] packed = new long[size];
+        long[] points = new long[size];
+        int[] owners = new int[size];
+        int[] order = new int[size];
+        int position = 0;
+        for (int owner = 0; owner < instanceKeys.length; ++owner) {
+            for (long point : instancePoints.get(instanceKeys[owner])) {
+                packed[position] = point;
+                order[position] = owner;
+                ++position;
+            }
+        }
+
+        Integer[] indexes = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            indexes[i] = i;
+        }
+
+        Arrays.sort(indexes, (a, b) -> {
+            int compare = Long.compare(packed[a], packed[b]);
+            return compare != 0 ? compare : instanceKeys[order[a]].compareTo(instanceKeys[order[b]]);
+        });
+        for (int i = 0; i < size; ++i) {
+            points[i] = packed[indexes[i]];
+            owners[i] = order[indexes[i]];
+        }
+
+        this.points = points;
+        this.owners = owners;
+    }
+
+    private ConsistentHashRing(List<ServiceInstance> source, ConsistentHashRing ring) {
+        this.source = source;
+        this.instances = source.toArray(new ServiceInstance[0]);
+        this.instanceKeys = ring.instanceKeys;
+        this.instancePoints = ring.instancePoints;
+        this.points = ring.points;
+        this.owners = ring.owners;
+    }
+
+    /**
+     * Builds the ring of the given instances, reusing what it can from the previous ring.
+     */
+    static ConsistentHashRing build(ConsistentHashRing previous, List<ServiceInstance> instances, int virtualNodes) {
+        if (previous != null && previous.source == instances) {
+            return previous;
+        }
+
+        String[] keys = new String[instances.size()];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = instanceKey(instances.get(i));
+        }
+
+        if (previous != null && Arrays.equals(previous.instanceKeys, keys)) {
+            return new ConsistentHashRing(instances, previous);
+        }
+
+        Map<String, long[]> points = new HashMap<>();
+        for (String key : keys) {
+            long[] existing = previous != null ? previous.instancePoints.get(key) : null;
+            points.put(key, existing != null ? existing : points(key, virtualNodes));
+        }
+
+        return new ConsistentHashRing(instances, instances.toArray(new ServiceInstance[0]), keys, points);
+    }
+
+    static String instanceKey(ServiceInstance instance) {
+        return instance.getInstanceId() != null ? instance.getInstanceId() : instance.getHost() + ":" + instance.getPort();
+    }
+
+    static long hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    int size() {
+        return this.instances.length;
+    }
+
+    ServiceInstance instance(int index) {
+        return this.instances[index];
+    }
+
+    String instanceKey(int index) {
+        return this.instanceKeys[index];
+    }
+
+    boolean contains(String instanceKey) {
+        return this.instancePoints.containsKey(instanceKey);
+    }
+
+    /**
+     * Walks the ring clockwise from the key and returns the first instance accepted by the filter, or the owner of
+     * the key if none is accepted.
+     */
+    int select(long keyHash, Acceptor acceptor) {
+        int start = Arrays.binarySearch(this.points, keyHash);
+        start = start >= 0 ? start : -start - 1;
+        start = start == this.points.length ? 0 : start;
+        boolean[] seen = new boolean[this.instances.length];
+        int distinct = 0;
+        for (int step = 0; step < this.points.length && distinct < this.instances.length; ++step) {
+            int owner = this.owners[(start + step) % this.points.length];
+            if (!seen[owner]) {
+                seen[owner] = true;
+                ++distinct;
+                if (acceptor.accept(owner)) {
+                    return owner;
+                }
+            }
+        }
+
+        return this.owners[start];
+    }
+
+    private static long[] points(String instanceKey, int virtualNodes) {
+        long[] points = new long[Math.max(virtualNodes, 1)];
+        for (int i = 0; i < points.length; ++i) {
+            points[i] = hash(instanceKey + "#" + i);
+        }
+
+        return points;
+    }
+
+    interface Acceptor {
+        boolean accept(int index);
+    }
+}
@@ -0,0 +1,50 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer client configuration, applied in the context of every load balanced service.
+ *
+ * Deliberately not a {@code @Configuration}, so that component scanning does not register it in the application
+ * context.
+ */
+class GatewayLoadBalancerClientConfiguration {
+
+    GatewayLoadBalancerClientConfiguration() {
+    }
+
+    @Bean
+    ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(Environment environment, LoadBalancerClientFactory loadBalancerClientFactory, ConsistentHashProperties properties) {
+        String name = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        ConsistentHashProperties.Service service = properties.getServices().get(name);
+        if (service != null) {
+            return new ConsistentHashLoadBalancer(loadBalancerClientFactory.getLazyProvider(name, ServiceInstanceListSupplier.class), name, service);
+        }
+
+        return new RoundRobinLoadBalancer(loadBalancerClientFactory.getLazyProvider(name, ServiceInstanceListSupplier.class), name);
+    }
+
+    @Bean
+    static BeanPostProcessor outlierEjectingServiceInstanceListSupplierPostProcessor(ObjectProvider<OutlierDetector> detector) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof ServiceInstanceListSupplier && !(bean instanceof OutlierEjectingServiceInstanceListSupplier)) {
+                    OutlierDetector outlierDetector = detector.getIfAvailable();
+                    return outlierDetector != null ? new OutlierEjectingServiceInstanceListSupplier((ServiceInstanceListSupplier) bean, outlierDetector) : bean;
+                }
+
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Load balancer configuration
+ *
+ * Services listed under {@code spring.cloud.gateway.k8s.loadbalancer.consistent-hash.services} are balanced by
+ * consistent hashing with bounded loads, all others keep the default round robin balancer. Instances of all
+ * services are subject to passive outlier detection unless it is disabled.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties({ConsistentHashProperties.class, OutlierDetectionProperties.class})
+@LoadBalancerClients(defaultConfiguration = GatewayLoadBalancerClientConfiguration.class)
+public class GatewayLoadBalancerConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(value = "spring.cloud.gateway.k8s.loadbalancer.outlier-detection.enabled", matchIfMissing = true)
+    OutlierDetector outlierDetector(OutlierDetectionProperties properties, MeterRegistry meterRegistry) {
+        return new OutlierDetector(properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "spring.cloud.gateway.k8s.loadbalancer.outlier-detection.enabled", matchIfMissing = true)
+    OutlierDetectionGlobalFilter outlierDetectionGlobalFilter(OutlierDetector outlierDetector) {
+        return new OutlierDetectionGlobalFilter(outlierDetector);
+    }
+}
@@ -0,0 +1,89 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.http.HttpHeaders;
+import ti.gateway.kubernetes.jwt.JwtHelper;
+
+import java.util.Locale;
+
+/**
+ * Extracts the consistent hash key of a request.
+ */
+abstract class HashKeySource {
+
+    /**
+     * Returns the key of the request, or {@code null} if it has none.
+     */
+    abstract String key(RequestData request);
+
+    static HashKeySource parse(String source) {
+        int separator = source != null ? source.indexOf(':') : -1;
+        if (separator <= 0 || separator == source.length() - 1) {
+            throw new IllegalArgumentException("Invalid consistent hash key '" + source + "', expected <header|cookie|claim|path>:<name>");
+        }
+
+        String name = source.substring(separator + 1).trim();
+        switch (source.substring(0, separator).trim().toLowerCase(Locale.ROOT)) {
+            case "header":
+                return new HashKeySource() {
+                    @Override
+                    String key(RequestData request) {
+                        return request.getHeaders() != null ? request.getHeaders().getFirst(name) : null;
+                    }
+                };
+            case "cookie":
+                return new HashKeySource() {
+                    @Override
+                    String key(RequestData request) {
+                        return request.getCookies() != null ? request.getCookies().getFirst(name) : null;
+                    }
+                };
+            case "claim":
+                return new HashKeySource() {
+                    @Override
+                    String key(RequestData request) {
+                        String authorization = request.getHeaders() != null ? request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION) : null;
+                        if (authorization == null || !authorization.regionMatches(true, 0, "bearer ", 0, 7)) {
+                            return null;
+                        }
+
+                        return JwtHelper.getClaimAsString(JwtHelper.cleanupHeaderValue(authorization), name);
+                    }
+                };
+            case "path":
+                int index = Integer.parseInt(name);
+                return new HashKeySource() {
+                    @Override
+                    String key(RequestData request) {
+                        return request.getUrl() != null ? pathSegment(request.getUrl().getRawPath(), index) : null;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Invalid consistent hash key '" + source + "', expected <header|cookie|claim|path>:<name>");
+        }
+    }
+
+    static String pathSegment(String path, int index) {
+        if (path == null) {
+            return null;
+        }
+
+        int segment = 0;
+        int start = 0;
+        for (int i = 0; i <= path.length(); ++i) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > start) {
+                    if (segment == index) {
+                        return path.substring(start, i);
+                    }
+
+                    ++segment;
+                }
+
+                start = i + 1;
+            }
+        }
+
+        return null;
+    }
+}
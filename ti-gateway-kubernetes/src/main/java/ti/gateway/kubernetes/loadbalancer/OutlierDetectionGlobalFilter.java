@@ -0,0 +1,74 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+
+/**
+ * Reports the outcome of every load balanced request to the {@link OutlierDetector}.
+ *
+ * Runs right after the load balancer picked the instance. 5xx responses and failures other than connect failures
+ * count as errors; cancelled requests are not reported.
+ */
+class OutlierDetectionGlobalFilter implements GlobalFilter, Ordered {
+    private final OutlierDetector detector;
+
+    OutlierDetectionGlobalFilter(OutlierDetector detector) {
+        this.detector = detector;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange).doOnSuccess((ignored) -> {
+            ServiceInstance instance = instance(exchange);
+            if (instance != null) {
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                if (status != null && status.is5xxServerError()) {
+                    this.detector.recordError(instance, System.nanoTime() - start);
+                } else {
+                    this.detector.recordSuccess(instance, System.nanoTime() - start);
+                }
+            }
+        }).doOnError((error) -> {
+            ServiceInstance instance = instance(exchange);
+            if (instance != null) {
+                if (isConnectFailure(error)) {
+                    this.detector.recordConnectFailure(instance);
+                } else {
+                    this.detector.recordError(instance, System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+
+    static boolean isConnectFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof ConnectException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static ServiceInstance instance(ServerWebExchange exchange) {
+        Response<ServiceInstance> response = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        return response != null && response.hasServer() ? response.getServer() : null;
+    }
+}
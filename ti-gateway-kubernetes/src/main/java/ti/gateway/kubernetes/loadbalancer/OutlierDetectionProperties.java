@@ -0,0 +1,132 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(
+        prefix = "spring.cloud.gateway.k8s.loadbalancer.outlier-detection"
+)
+class OutlierDetectionProperties {
+    private boolean enabled = true;
+    private int consecutiveErrors = 5;
+    private int consecutiveConnectFailures = 3;
+    private Duration baseEjectionTime = Duration.ofSeconds(30L);
+    private Duration maxEjectionTime = Duration.ofMinutes(5L);
+    private int maxEjectionPercent = 10;
+    private Duration interval = Duration.ofSeconds(10L);
+    private double latencyPercentile = 99.0;
+    private double latencyFactor = 3.0;
+    private Duration minLatency = Duration.ofMillis(100L);
+    private int minRequests = 50;
+
+    OutlierDetectionProperties() {
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 5xx responses and timeouts in a row after which an instance is ejected.
+     */
+    public int getConsecutiveErrors() {
+        return this.consecutiveErrors;
+    }
+
+    public void setConsecutiveErrors(int consecutiveErrors) {
+        this.consecutiveErrors = consecutiveErrors;
+    }
+
+    public int getConsecutiveConnectFailures() {
+        return this.consecutiveConnectFailures;
+    }
+
+    public void setConsecutiveConnectFailures(int consecutiveConnectFailures) {
+        this.consecutiveConnectFailures = consecutiveConnectFailures;
+    }
+
+    /**
+     * Ejection time of a first ejection; it doubles with every further ejection up to the maximum.
+     */
+    public Duration getBaseEjectionTime() {
+        return this.baseEjectionTime;
+    }
+
+    public void setBaseEjectionTime(Duration baseEjectionTime) {
+        this.baseEjectionTime = baseEjectionTime;
+    }
+
+    public Duration getMaxEjectionTime() {
+        return this.maxEjectionTime;
+    }
+
+    public void setMaxEjectionTime(Duration maxEjectionTime) {
+        this.maxEjectionTime = maxEjectionTime;
+    }
+
+    /**
+     * Share of the instances of a service that may be ejected at the same time; one instance of a service with
+     * at least two can always be ejected.
+     */
+    public int getMaxEjectionPercent() {
+        return this.maxEjectionPercent;
+    }
+
+    public void setMaxEjectionPercent(int maxEjectionPercent) {
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    /**
+     * Interval over which latencies are compared and after which the ejection backoff decays by one step.
+     */
+    public Duration getInterval() {
+        return this.interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public double getLatencyPercentile() {
+        return this.latencyPercentile;
+    }
+
+    public void setLatencyPercentile(double latencyPercentile) {
+        this.latencyPercentile = latencyPercentile;
+    }
+
+    /**
+     * An instance whose latency percentile exceeds the median of the service by this factor is ejected.
+     */
+    public double getLatencyFactor() {
+        return this.latencyFactor;
+    }
+
+    public void setLatencyFactor(double latencyFactor) {
+        this.latencyFactor = latencyFactor;
+    }
+
+    public Duration getMinLatency() {
+        return this.minLatency;
+    }
+
+    public void setMinLatency(Duration minLatency) {
+        this.minLatency = minLatency;
+    }
+
+    /**
+     * Requests an instance needs in an interval for its latency to be compared.
+     */
+    public int getMinRequests() {
+        return this.minRequests;
+    }
+
+    public void setMinRequests(int minRequests) {
+        this.minRequests = minRequests;
+    }
+}
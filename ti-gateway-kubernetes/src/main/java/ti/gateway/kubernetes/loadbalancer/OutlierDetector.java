@@ -0,0 +1,252 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Passive health of load balanced instances, tracked from real responses.
+ *
+ * An instance is ejected after consecutive errors or connect failures, or when its latency percentile over an
+ * interval exceeds the median of the other instances of its service by the configured factor. Ejections last
+ * the base ejection time doubled for every earlier ejection, capped at the maximum; the doubling decays by one
+ * step for every interval without ejection. No more than the configured share of the instances of a service is
+ * ejected at a time.
+ */
+class OutlierDetector {
+    static final String EJECTIONS_METRIC = "spring.cloud.gateway.loadbalancer.ejections";
+    private static final Logger LOG = LoggerFactory.getLogger(OutlierDetector.class);
+    private final OutlierDetectionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final Map<String, ServiceHealth> services = new ConcurrentHashMap<>();
+
+    OutlierDetector(OutlierDetectionProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    OutlierDetector(OutlierDetectionProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+    }
+
+    void recordSuccess(ServiceInstance instance, long latencyNanos) {
+        long now = this.nanoClock.getAsLong();
+        ServiceHealth service = this.service(instance.getServiceId(), now);
+        InstanceHealth health = service.instance(instance);
+        health.consecutiveErrors.set(0);
+        health.consecutiveConnectFailures.set(0);
+        health.latency.recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 1L));
+        service.evaluateIfDue(now);
+    }
+
+    void recordError(ServiceInstance instance, long latencyNanos) {
+        long now = this.nanoClock.getAsLong();
+        ServiceHealth service = this.service(instance.getServiceId(), now);
+        InstanceHealth health = service.instance(instance);
+        health.latency.recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 1L));
+        if (health.consecutiveErrors.incrementAndGet() >= this.properties.getConsecutiveErrors()) {
+            service.eject(health, "errors", now);
+        }
+
+        service.evaluateIfDue(now);
+    }
+
+    void recordConnectFailure(ServiceInstance instance) {
+        long now = this.nanoClock.getAsLong();
+        ServiceHealth service = this.service(instance.getServiceId(), now);
+        InstanceHealth health = service.instance(instance);
+        if (health.consecutiveConnectFailures.incrementAndGet() >= this.properties.getConsecutiveConnectFailures()) {
+            service.eject(health, "connect", now);
+        }
+
+        service.evaluateIfDue(now);
+    }
+
+    /**
+     * Returns the instances that are not ejected, or all of them if every instance is ejected.
+     */
+    List<ServiceInstance> filter(String serviceId, List<ServiceInstance> instances) {
+        if (serviceId == null) {
+            return instances;
+        }
+
+        long now = this.nanoClock.getAsLong();
+        ServiceHealth service = this.service(serviceId, now);
+        service.knownInstances = instances.size();
+        if (service.instances.isEmpty()) {
+            return instances;
+        }
+
+        int allowed = service.allowedEjections();
+        List<ServiceInstance> available = null;
+        int ejected = 0;
+        for (int i = 0; i < instances.size(); ++i) {
+            ServiceInstance instance = instances.get(i);
+            InstanceHealth health = service.instances.get(instanceKey(instance));
+            if (health != null && health.isEjected(now) && ejected < allowed) {
+                ++ejected;
+                if (available == null) {
+                    available = new ArrayList<>(instances.subList(0, i));
+                }
+            } else if (available != null) {
+                available.add(instance);
+            }
+        }
+
+        return available == null || available.isEmpty() ? instances : available;
+    }
+
+    boolean isEjected(ServiceInstance instance) {
+        ServiceHealth service = this.services.get(instance.getServiceId());
+        InstanceHealth health = service != null ? service.instances.get(instanceKey(instance)) : null;
+        return health != null && health.isEjected(this.nanoClock.getAsLong());
+    }
+
+    private ServiceHealth service(String serviceId, long now) {
+        ServiceHealth service = this.services.get(serviceId);
+        return service != null ? service : this.services.computeIfAbsent(serviceId, (id) -> new ServiceHealth(id, now));
+    }
+
+    private static String instanceKey(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    private final class ServiceHealth {
+        private final String serviceId;
+        private final Map<String, InstanceHealth> instances = new ConcurrentHashMap<>();
+        private final AtomicLong nextEvaluation;
+        private volatile int knownInstances;
+
+        private ServiceHealth(String serviceId, long now) {
+            this.serviceId = serviceId;
+            this.nextEvaluation = new AtomicLong(now + OutlierDetector.this.properties.getInterval().toNanos());
+        }
+
+        private InstanceHealth instance(ServiceInstance instance) {
+            String key = instanceKey(instance);
+            InstanceHealth health = this.instances.get(key);
+            return health != null ? health : this.instances.computeIfAbsent(key, InstanceHealth::new);
+        }
+
+        private int allowedEjections() {
+            int known = Math.max(this.knownInstances, this.instances.size());
+            return known < 2 ? 0 : Math.max(1, known * OutlierDetector.this.properties.getMaxEjectionPercent() / 100);
+        }
+
+        private synchronized void eject(InstanceHealth health, String reason, long now) {
+            if (health.isEjected(now)) {
+                return;
+            }
+
+            int ejected = 0;
+            for (InstanceHealth instance : this.instances.values()) {
+                ejected += instance.isEjected(now) ? 1 : 0;
+            }
+
+            if (ejected >= this.allowedEjections()) {
+                return;
+            }
+
+            OutlierDetectionProperties properties = OutlierDetector.this.properties;
+            long base = properties.getBaseEjectionTime().toNanos();
+            long duration = Math.min(base << Math.min(health.ejections, 30), properties.getMaxEjectionTime().toNanos());
+            ++health.ejections;
+            health.ejectedUntil = now + Math.max(duration, 0L);
+            health.ejected = true;
+            health.consecutiveErrors.set(0);
+            health.consecutiveConnectFailures.set(0);
+            Counter.builder(EJECTIONS_METRIC)
+                    .description("Instances ejected by passive outlier detection")
+                    .tag("serviceId", this.serviceId)
+                    .tag("reason", reason)
+                    .register(OutlierDetector.this.meterRegistry)
+                    .increment();
+            LOG.info("Ejecting instance {} of service {} for {} ms after {}", health.key, this.serviceId, TimeUnit.NANOSECONDS.toMillis(duration), reason);
+        }
+
+        private void evaluateIfDue(long now) {
+            long due = this.nextEvaluation.get();
+            if (now - due < 0L || !this.nextEvaluation.compareAndSet(due, now + OutlierDetector.this.properties.getInterval().toNanos())) {
+                return;
+            }
+
+            synchronized (this) {
+                this.evaluate(now);
+            }
+        }
+
+        private void evaluate(long now) {
+            OutlierDetectionProperties properties = OutlierDetector.this.properties;
+            List<InstanceHealth> measured = new ArrayList<>();
+            for (InstanceHealth health : this.instances.values()) {
+                health.interval = health.latency.getIntervalHistogram(health.interval);
+                if (health.interval.getTotalCount() >= properties.getMinRequests()) {
+                    health.percentile = health.interval.getValueAtPercentile(properties.getLatencyPercentile());
+                    measured.add(health);
+                } else if (health.interval.getTotalCount() == 0L && !health.isEjected(now) && health.ejections == 0) {
+                    this.instances.remove(health.key, health);
+                }
+
+                if (!health.isEjected(now) && health.ejections > 0 && !health.ejected) {
+                    --health.ejections;
+                }
+
+                health.ejected = health.isEjected(now);
+            }
+
+            if (measured.size() < 3) {
+                return;
+            }
+
+            long[] percentiles = new long[measured.size()];
+            for (int i = 0; i < percentiles.length; ++i) {
+                percentiles[i] = measured.get(i).percentile;
+            }
+
+            Arrays.sort(percentiles);
+            long median = percentiles[percentiles.length / 2];
+            long minLatency = TimeUnit.NANOSECONDS.toMicros(properties.getMinLatency().toNanos());
+            for (InstanceHealth health : measured) {
+                if (health.percentile > median * properties.getLatencyFactor() && health.percentile > minLatency) {
+                    this.eject(health, "latency", now);
+                }
+            }
+        }
+    }
+
+    private static final class InstanceHealth {
+        private final String key;
+        private final AtomicInteger consecutiveErrors = new AtomicInteger();
+        private final AtomicInteger consecutiveConnectFailures = new AtomicInteger();
+        private final Recorder latency = new Recorder(2);
+        private Histogram interval;
+        private long percentile;
+        private volatile long ejectedUntil;
+        private int ejections;
+        private volatile boolean ejected;
+
+        private InstanceHealth(String key) {
+            this.key = key;
+        }
+
+        private boolean isEjected(long now) {
+            return this.ejected && now - this.ejectedUntil < 0L;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.loadbalancer.core.DelegatingServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Hides the instances ejected by the {@link OutlierDetector} from the load balancer.
+ */
+class OutlierEjectingServiceInstanceListSupplier extends DelegatingServiceInstanceListSupplier {
+    private final OutlierDetector detector;
+
+    OutlierEjectingServiceInstanceListSupplier(ServiceInstanceListSupplier delegate, OutlierDetector detector) {
+        super(delegate);
+        this.detector = detector;
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        return this.getDelegate().get().map((instances) -> {
+            return this.detector.filter(this.getServiceId(), instances);
+        });
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get(Request request) {
+        return this.getDelegate().get(request).map((instances) -> {
+            return this.detector.filter(this.getServiceId(), instances);
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package ti.gateway.kubernetes.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reports per-route, per-filter latency percentiles in milliseconds and allows filter timing to be toggled at runtime.
+ */
+@Component
+@Endpoint(id = "filterlatency")
+public class FilterLatencyEndpoint {
+    private final FilterLatencyRegistry registry;
+
+    FilterLatencyEndpoint(FilterLatencyRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> latencies() {
+        Map<String, Map<String, Map<String, Object>>> routes = new TreeMap<>();
+        this.registry.getRecorders().forEach((recorder) -> {
+            FilterLatencyRecorder.Snapshot snapshot = recorder.snapshot();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", snapshot.getCount());
+            stats.put("p50", snapshot.getP50());
+            stats.put("p99", snapshot.getP99());
+            stats.put("max", snapshot.getMax());
+            routes.computeIfAbsent(recorder.getRouteId(), (routeId) -> new TreeMap<>()).put(recorder.getFilterName(), stats);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", this.registry.isEnabled());
+        result.put("routes", routes);
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> toggle(boolean enabled) {
+        this.registry.setEnabled(enabled);
+        return Map.of("enabled", this.registry.isEnabled());
+    }
+
+    @DeleteOperation
+    public void reset() {
+        this.registry.reset();
+    }
+}
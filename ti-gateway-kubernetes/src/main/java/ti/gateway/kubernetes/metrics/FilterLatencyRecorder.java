@@ -0,0 +1,126 @@
+package ti.gateway.kubernetes.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency recorder for a single filter of a single route.
+ *
+ * Request threads write into a lock-free {@link Recorder}; readers fold the pending interval into the current
+ * slot of a sliding window, so percentiles and the maximum reflect recent latency rather than all time, while
+ * the invocation count stays cumulative. Histograms use packed, auto-resizing storage so memory follows the
+ * recorded range.
+ */
+class FilterLatencyRecorder {
+    private static final int SLOTS = 6;
+    private final String routeId;
+    private final String filterName;
+    private final Recorder recorder;
+    private final LongSupplier nanoClock;
+    private final long slotNanos;
+    private final Histogram[] slots = new Histogram[SLOTS];
+    private final long[] slotIds = new long[SLOTS];
+    private final Histogram window;
+    private Histogram interval;
+    private long count;
+
+    FilterLatencyRecorder(String routeId, String filterName, int significantDigits, Duration window) {
+        this(routeId, filterName, significantDigits, window, System::nanoTime);
+    }
+
+    FilterLatencyRecorder(String routeId, String filterName, int significantDigits, Duration window, LongSupplier nanoClock) {
+        this.routeId = routeId;
+        this.filterName = filterName;
+        this.recorder = new Recorder(significantDigits, true);
+        this.nanoClock = nanoClock;
+        this.slotNanos = Math.max(1L, window.toNanos() / SLOTS);
+        for (int i = 0; i < SLOTS; ++i) {
+            this.slots[i] = new PackedHistogram(significantDigits);
+            this.slotIds[i] = -1L;
+        }
+
+        this.window = new PackedHistogram(significantDigits);
+    }
+
+    public String getRouteId() {
+        return this.routeId;
+    }
+
+    public String getFilterName() {
+        return this.filterName;
+    }
+
+    void record(long nanos) {
+        this.recorder.recordValue(Math.max(0L, nanos));
+    }
+
+    synchronized Snapshot snapshot() {
+        this.interval = this.recorder.getIntervalHistogram(this.interval);
+        this.count += this.interval.getTotalCount();
+        long current = this.nanoClock.getAsLong() / this.slotNanos;
+        int index = (int) (current % SLOTS);
+        if (this.slotIds[index] != current) {
+            this.slots[index].reset();
+            this.slotIds[index] = current;
+        }
+
+        this.slots[index].add(this.interval);
+        this.window.reset();
+        for (int i = 0; i < SLOTS; ++i) {
+            if (this.slotIds[i] > current - SLOTS) {
+                this.window.add(this.slots[i]);
+            }
+        }
+
+        return new Snapshot(this.count, toMillis(this.window.getValueAtPercentile(50.0)), toMillis(this.window.getValueAtPercentile(99.0)), toMillis(this.window.getMaxValue()));
+    }
+
+    synchronized void reset() {
+        this.recorder.reset();
+        for (int i = 0; i < SLOTS; ++i) {
+            this.slots[i].reset();
+            this.slotIds[i] = -1L;
+        }
+
+        this.count = 0L;
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1L);
+    }
+
+    static class Snapshot {
+        private final long count;
+        private final double p50;
+        private final double p99;
+        private final double max;
+
+        Snapshot(long count, double p50, double p99, double max) {
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getP50() {
+            return this.p50;
+        }
+
+        public double getP99() {
+            return this.p99;
+        }
+
+        public double getMax() {
+            return this.max;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ti.gateway.kubernetes.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the per-route, per-filter latency recorders.
+ *
+ * The number of recorders is capped so that route or filter churn cannot grow memory or meter
+ * cardinality without bound, and the recorders and meters of routes that no longer exist are removed once a
+ * route refresh completes. Toggling timing triggers a route refresh, which re-decorates the route
+ * filters; while disabled, routes are built without any timing wrappers.
+ */
+@Component
+class FilterLatencyRegistry implements ApplicationListener<RefreshRoutesResultEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(FilterLatencyRegistry.class);
+    static final String LATENCY_METRIC_NAME = "spring.cloud.gateway.filter.latency";
+    static final String INVOCATIONS_METRIC_NAME = "spring.cloud.gateway.filter.invocations";
+    private final FilterTimingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<String, FilterLatencyRecorder> recorders = new ConcurrentHashMap<>();
+    private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile boolean limitReported;
+
+    FilterLatencyRegistry(FilterTimingProperties properties, MeterRegistry meterRegistry, ApplicationEventPublisher eventPublisher) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.enabled = properties.isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (this.enabled != enabled) {
+            LOG.info("Filter timing {}, refreshing routes", enabled ? "enabled" : "disabled");
+            this.enabled = enabled;
+            this.eventPublisher.publishEvent(new RefreshRoutesEvent(this));
+        }
+    }
+
+    /**
+     * Returns the recorder for the given route and filter, or {@code null} when the recorder limit has been reached.
+     */
+    FilterLatencyRecorder recorderFor(String routeId, String filterName) {
+        String key = routeId + '/' + filterName;
+        FilterLatencyRecorder recorder = this.recorders.get(key);
+        if (recorder != null) {
+            return recorder;
+        }
+
+        if (this.recorders.size() >= this.properties.getMaxRecorders()) {
+            if (!this.limitReported) {
+                this.limitReported = true;
+                LOG.warn("Filter timing limit of {} recorders reached, further filters will not be timed", this.properties.getMaxRecorders());
+            }
+
+            return null;
+        }
+
+        return this.recorders.computeIfAbsent(key, (k) -> {
+            FilterLatencyRecorder created = new FilterLatencyRecorder(routeId, filterName, this.properties.getSignificantDigits(), this.properties.getWindow());
+            this.meters.put(k, this.registerMeters(created));
+            return created;
+        });
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
+    }
+
+    void retainRoutes(Set<String> routeIds) {
+        this.recorders.entrySet().removeIf((entry) -> {
+            if (routeIds.contains(entry.getValue().getRouteId())) {
+                return false;
+            }
+
+            List<Meter> recorderMeters = this.meters.remove(entry.getKey());
+            if (recorderMeters != null) {
+                recorderMeters.forEach(this.meterRegistry::remove);
+            }
+
+            this.limitReported = false;
+            return true;
+        });
+    }
+
+    Collection<FilterLatencyRecorder> getRecorders() {
+        return this.recorders.values();
+    }
+
+    void reset() {
+        this.recorders.values().forEach(FilterLatencyRecorder::reset);
+    }
+
+    private List<Meter> registerMeters(FilterLatencyRecorder recorder) {
+        Tags tags = Tags.of("routeId", recorder.getRouteId(), "filter", recorder.getFilterName());
+        return List.of(
+                Gauge.builder(LATENCY_METRIC_NAME, recorder, (r) -> r.snapshot().getP50())
+                        .tags(tags).tag("quantile", "0.5").baseUnit("milliseconds").register(this.meterRegistry),
+                Gauge.builder(LATENCY_METRIC_NAME, recorder, (r) -> r.snapshot().getP99())
+                        .tags(tags).tag("quantile", "0.99").baseUnit("milliseconds").register(this.meterRegistry),
+                Gauge.builder(LATENCY_METRIC_NAME, recorder, (r) -> r.snapshot().getMax())
+                        .tags(tags).tag("quantile", "1.0").baseUnit("milliseconds").register(this.meterRegistry),
+                FunctionCounter.builder(INVOCATIONS_METRIC_NAME, recorder, (r) -> r.snapshot().getCount())
+                        .tags(tags).register(this.meterRegistry));
+    }
+}
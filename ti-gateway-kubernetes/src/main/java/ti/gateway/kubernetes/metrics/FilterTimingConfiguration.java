@@ -0,0 +1,36 @@
+package ti.gateway.kubernetes.metrics;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.CompositeRouteLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Filter timing configuration
+ *
+ * Wraps the route locators that build routes (not the composite and caching ones) so that per-filter
+ * timing can be switched on and off with a route refresh.
+ */
+@Configuration
+@EnableConfigurationProperties({FilterTimingProperties.class})
+public class FilterTimingConfiguration {
+
+    @Bean
+    static BeanPostProcessor filterTimingRouteLocatorPostProcessor(ObjectProvider<FilterLatencyRegistry> registryProvider) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof RouteLocator && !(bean instanceof CachingRouteLocator) && !(bean instanceof CompositeRouteLocator)) {
+                    return new FilterTimingRouteLocator((RouteLocator) bean, registryProvider);
+                }
+
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package ti.gateway.kubernetes.metrics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(
+        prefix = "spring.cloud.gateway.k8s.filter-timing"
+)
+class FilterTimingProperties {
+    public static final String PREFIX = "spring.cloud.gateway.k8s.filter-timing";
+    private boolean enabled = false;
+    private int maxRecorders = 500;
+    private int significantDigits = 2;
+    private Duration window = Duration.ofMinutes(1L);
+
+    FilterTimingProperties() {
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxRecorders() {
+        return this.maxRecorders;
+    }
+
+    public void setMaxRecorders(int maxRecorders) {
+        this.maxRecorders = maxRecorders;
+    }
+
+    public int getSignificantDigits() {
+        return this.significantDigits;
+    }
+
+    public void setSignificantDigits(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+
+    /**
+     * Period over which latency percentiles and the maximum are reported.
+     */
+    public Duration getWindow() {
+        return this.window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public String toString() {
+        return "FilterTimingProperties{enabled=" + this.enabled + ", maxRecorders=" + this.maxRecorders + ", significantDigits=" + this.significantDigits + ", window=" + this.window + "}";
+    }
+}
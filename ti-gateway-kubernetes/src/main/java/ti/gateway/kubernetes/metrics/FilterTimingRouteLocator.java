@@ -0,0 +1,101 @@
+package ti.gateway.kubernetes.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorates the filters of every located route with a {@link TimedGatewayFilter} while filter timing is enabled.
+ *
+ * Routes are decorated when they are built, so there is no per-request cost while timing is disabled.
+ */
+class FilterTimingRouteLocator implements RouteLocator {
+    private static final String LAMBDA_MARKER = "$$Lambda";
+    private static final String FILTER_FACTORY_SUFFIX = "GatewayFilterFactory";
+    private static final String FILTER_SUFFIX = "GatewayFilter";
+    private final RouteLocator delegate;
+    private final ObjectProvider<FilterLatencyRegistry> registryProvider;
+
+    FilterTimingRouteLocator(RouteLocator delegate, ObjectProvider<FilterLatencyRegistry> registryProvider) {
+        this.delegate = delegate;
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Flux<Route> getRoutes() {
+        FilterLatencyRegistry registry = this.registryProvider.getIfAvailable();
+        if (registry == null || !registry.isEnabled()) {
+            return this.delegate.getRoutes();
+        }
+
+        return this.delegate.getRoutes().map((route) -> {
+            return this.timed(route, registry);
+        });
+    }
+
+    private Route timed(Route route, FilterLatencyRegistry registry) {
+        List<GatewayFilter> filters = new ArrayList<>(route.getFilters().size());
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (GatewayFilter filter : route.getFilters()) {
+            String name = filterName(filter);
+            int occurrence = occurrences.merge(name, 1, Integer::sum);
+            if (occurrence > 1) {
+                name = name + "#" + occurrence;
+            }
+
+            FilterLatencyRecorder recorder = registry.recorderFor(route.getId(), name);
+            filters.add(recorder == null || filter instanceof TimedGatewayFilter ? filter : new TimedGatewayFilter(filter, recorder));
+        }
+
+        return Route.async()
+                .id(route.getId())
+                .uri(route.getUri())
+                .order(route.getOrder())
+                .asyncPredicate(route.getPredicate())
+                .replaceMetadata(route.getMetadata())
+                .replaceFilters(filters)
+                .build();
+    }
+
+    /**
+     * Derives a stable, low-cardinality name for a route filter from its implementation class.
+     */
+    static String filterName(GatewayFilter filter) {
+        GatewayFilter unwrapped = filter instanceof OrderedGatewayFilter ? ((OrderedGatewayFilter) filter).getDelegate() : filter;
+        String description = unwrapped.toString();
+        if (description.startsWith("[") && description.length() > 1) {
+            int end = description.indexOf(' ');
+            return description.substring(1, end > 0 ? end : description.length() - 1);
+        }
+
+        String name = unwrapped.getClass().getName();
+        int lambda = name.indexOf(LAMBDA_MARKER);
+        if (lambda > 0) {
+            name = name.substring(0, lambda);
+        }
+
+        name = name.substring(name.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        if (inner > 0) {
+            name = name.substring(0, inner);
+        }
+
+        if (name.endsWith(FILTER_FACTORY_SUFFIX) && name.length() > FILTER_FACTORY_SUFFIX.length()) {
+            return name.substring(0, name.length() - FILTER_FACTORY_SUFFIX.length());
+        }
+
+        if (name.endsWith(FILTER_SUFFIX) && name.length() > FILTER_SUFFIX.length()) {
+            return name.substring(0, name.length() - FILTER_SUFFIX.length());
+        }
+
+        return name;
+    }
+}
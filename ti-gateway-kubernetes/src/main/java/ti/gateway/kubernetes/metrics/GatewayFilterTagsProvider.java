@@ -1,23 +1,86 @@
 package ti.gateway.kubernetes.metrics;
 
 import io.micrometer.core.instrument.Tags;
+import ti.gateway.kubernetes.security.RolesSecurityGatewayFilter;
+import ti.gateway.kubernetes.security.SecurityGatewayFilter;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.cloud.gateway.support.tagsprovider.GatewayTagsProvider;
+import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tags gateway request metrics with whether the matched route is protected by a security filter.
+ *
+ * The tags only depend on the route definition, so they are computed once per {@link Route} instance
+ * and cached by route id. A rebuilt route is a new instance, which is detected by identity and
+ * recomputed; the whole cache is dropped once a route refresh completes.
+ */
 @Component
-public class GatewayFilterTagsProvider implements GatewayTagsProvider {
+public class GatewayFilterTagsProvider implements GatewayTagsProvider, ApplicationListener<RefreshRoutesResultEvent> {
+    static final String HAS_AUTHENTICATION_FILTER_TAG = "hasAuthenticationFilter";
+    private static final Tags WITH_AUTHENTICATION_FILTER = Tags.of(HAS_AUTHENTICATION_FILTER_TAG, "true");
+    private static final Tags WITHOUT_AUTHENTICATION_FILTER = Tags.of(HAS_AUTHENTICATION_FILTER_TAG, "false");
+    private final Map<String, RouteTags> routeTags = new ConcurrentHashMap<>();
+
     public GatewayFilterTagsProvider() {
     }
 
     public Tags apply(ServerWebExchange exchange) {
-        Route route = (Route)exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
-        return Tags.of("hasAuthenticationFilter", String.valueOf(containsAuthenticationFilter(route)));
+        Route route = (Route) exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return WITHOUT_AUTHENTICATION_FILTER;
+        }
+
+        RouteTags cached = this.routeTags.get(route.getId());
+        if (cached != null && cached.route == route) {
+            return cached.tags;
+        }
+
+        RouteTags computed = new RouteTags(route, computeTags(route));
+        this.routeTags.put(route.getId(), computed);
+        return computed.tags;
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        this.routeTags.clear();
+    }
+
+    private static Tags computeTags(Route route) {
+        return containsAuthenticationFilter(route) ? WITH_AUTHENTICATION_FILTER : WITHOUT_AUTHENTICATION_FILTER;
     }
 
     private static boolean containsAuthenticationFilter(Route route) {
-        return route != null && route.getFilters() != null && route.toString().contains("SecurityGatewayFilter");
+        if (route.getFilters() == null) {
+            return false;
+        }
+
+        for (GatewayFilter filter : route.getFilters()) {
+            GatewayFilter delegate = filter instanceof TimedGatewayFilter ? ((TimedGatewayFilter) filter).getDelegate() : filter;
+            delegate = delegate instanceof OrderedGatewayFilter ? ((OrderedGatewayFilter) delegate).getDelegate() : delegate;
+            if (delegate instanceof SecurityGatewayFilter || delegate instanceof RolesSecurityGatewayFilter) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static final class RouteTags {
+        private final Route route;
+        private final Tags tags;
+
+        private RouteTags(Route route, Tags tags) {
+            this.route = route;
+            this.tags = tags;
+        }
     }
 }
@@ -0,0 +1,75 @@
+package ti.gateway.kubernetes.metrics;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records the time spent inside a route filter, excluding the time spent in the rest of the chain.
+ *
+ * The delegate's order is preserved so wrapping does not change the position of the filter in the chain.
+ */
+public class TimedGatewayFilter implements GatewayFilter, Ordered {
+    private final GatewayFilter delegate;
+    private final FilterLatencyRecorder recorder;
+
+    TimedGatewayFilter(GatewayFilter delegate, FilterLatencyRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    public GatewayFilter getDelegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return Mono.defer(() -> {
+            Span span = new Span(System.nanoTime());
+            return this.delegate.filter(exchange, (ex) -> {
+                return Mono.defer(() -> {
+                    span.downstreamStart = System.nanoTime();
+                    return chain.filter(ex).doFinally((signal) -> {
+                        span.downstreamEnd(System.nanoTime());
+                    });
+                });
+            }).doFinally((signal) -> {
+                this.recorder.record(span.selfTime(System.nanoTime()));
+            });
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return this.delegate instanceof Ordered ? ((Ordered) this.delegate).getOrder() : Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public String toString() {
+        return "[Timed " + this.delegate + "]";
+    }
+
+    private static final class Span {
+        private final long start;
+        private long downstreamStart;
+        private long downstreamNanos;
+
+        private Span(long start) {
+            this.start = start;
+        }
+
+        private void downstreamEnd(long now) {
+            if (this.downstreamStart != 0L) {
+                this.downstreamNanos += now - this.downstreamStart;
+                this.downstreamStart = 0L;
+            }
+        }
+
+        private long selfTime(long now) {
+            this.downstreamEnd(now);
+            return now - this.start - this.downstreamNanos;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ti.gateway.kubernetes.mirror;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP clients for shadow upstreams, each on a connection pool of its own and shared by name.
+ *
+ * Mirror traffic never borrows connections from the routing pools, so a slow shadow cannot starve the primary
+ * requests. A client is only rebuilt when the route that configured it changes its settings, and disposed once it
+ * no longer exists after a route refresh; a route that uses the same name with different settings gets the existing
+ * client and a warning. Pools export the Reactor Netty {@code reactor.netty.connection.provider.*} metrics tagged
+ * with their name.
+ */
+@Component
+class MirrorClientRegistry implements DisposableBean, ApplicationListener<RefreshRoutesResultEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(MirrorClientRegistry.class);
+    private final Map<String, MirrorClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the client with the given name, building it if it does not exist or if its owning route changed
+     * the settings.
+     */
+    synchronized MirrorClient configure(String name, String routeId, Settings settings) {
+        MirrorClient existing = this.clients.get(name);
+        if (existing != null) {
+            if (existing.settings.equals(settings)) {
+                return existing;
+            }
+
+            if (!Objects.equals(existing.routeId, routeId)) {
+                LOG.warn("Mirror client '{}' of route '{}' is already configured by route '{}' with different settings, ignoring them", name, routeId, existing.routeId);
+                return existing;
+            }
+        }
+
+        ConnectionProvider provider = ConnectionProvider.builder("mirror-" + name)
+                .metrics(true)
+                .maxConnections(settings.maxConnections)
+                .pendingAcquireMaxCount(settings.maxConnections)
+                .pendingAcquireTimeout(settings.timeout)
+                .build();
+        MirrorClient created = new MirrorClient(routeId, settings, provider, HttpClient.create(provider).responseTimeout(settings.timeout));
+        this.clients.put(name, created);
+        if (existing != null) {
+            existing.dispose();
+        }
+
+        return created;
+    }
+
+    MirrorClient get(String name) {
+        return this.clients.get(name);
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
+    }
+
+    /**
+     * Disposes the clients whose owning route no longer exists. Other routes using them are given a new client on
+     * their next mirror request.
+     */
+    synchronized void retainRoutes(Set<String> routeIds) {
+        this.clients.values().removeIf((client) -> {
+            if (routeIds.contains(client.routeId)) {
+                return false;
+            }
+
+            client.dispose();
+            return true;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        for (MirrorClient client : this.clients.values()) {
+            client.dispose();
+        }
+
+        this.clients.clear();
+    }
+
+    static final class MirrorClient {
+        private final String routeId;
+        private final Settings settings;
+        private final ConnectionProvider provider;
+        private final HttpClient client;
+        private volatile boolean disposed;
+
+        private MirrorClient(String routeId, Settings settings, ConnectionProvider provider, HttpClient client) {
+            this.routeId = routeId;
+            this.settings = settings;
+            this.provider = provider;
+            this.client = client;
+        }
+
+        HttpClient getClient() {
+            return this.client;
+        }
+
+        boolean isDisposed() {
+            return this.disposed;
+        }
+
+        /**
+         * Closes idle connections; connections in use are closed when they are released.
+         */
+        private void dispose() {
+            this.disposed = true;
+            this.provider.disposeLater().subscribe();
+        }
+    }
+
+    /**
+     * Pool settings of a shadow upstream. Pending acquires are bounded by the pool size and time out with the
+     * mirror request, so a saturated pool fails mirror requests instead of queueing them.
+     */
+    static final class Settings {
+        private final int maxConnections;
+        private final Duration timeout;
+
+        Settings(int maxConnections, Duration timeout) {
+            this.maxConnections = maxConnections;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Settings)) {
+                return false;
+            }
+
+            Settings settings = (Settings) o;
+            return this.maxConnections == settings.maxConnections && Objects.equals(this.timeout, settings.timeout);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.maxConnections, this.timeout);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package ti.gateway.kubernetes.mirror;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.Unpooled;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mirrors a sample of the requests of a route to a shadow upstream, without waiting for it.
+ *
+ * The mirrored request has the method, path, query and headers the request has when the filter runs, sent to the
+ * scheme, host and port of the configured URI. Its body is copied while the primary request reads it and the copy
+ * is sent once the body is complete, so the primary request never waits for the shadow; a body larger than the
+ * limit, or one the primary request does not read to the end, is not mirrored. Requests over the in-flight limit
+ * are not mirrored either and are not copied, so a slow shadow holds at most the limit of bounded copies. Shadow
+ * responses are discarded. Mirror requests use a connection pool of their own, see {@link MirrorClientRegistry}.
+ */
+@Component
+public class MirrorGatewayFilterFactory extends AbstractGatewayFilterFactory<MirrorGatewayFilterFactory.Config> {
+    static final String REQUESTS_METRIC = "spring.cloud.gateway.mirror.requests";
+    static final String DROPPED_METRIC = "spring.cloud.gateway.mirror.dropped";
+    private static final Set<String> SKIPPED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private static final byte[] EMPTY = new byte[0];
+    private final MirrorClientRegistry clients;
+    private final MeterRegistry meterRegistry;
+
+    static {
+        SKIPPED_HEADERS.addAll(Arrays.asList(HttpHeaders.HOST, HttpHeaders.CONTENT_LENGTH, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION,
+                HttpHeaders.EXPECT, HttpHeaders.UPGRADE, HttpHeaders.TE, HttpHeaders.TRAILER, HttpHeaders.PROXY_AUTHORIZATION, "Keep-Alive"));
+    }
+
+    MirrorGatewayFilterFactory(MirrorClientRegistry clients, MeterRegistry meterRegistry) {
+        super(MirrorGatewayFilterFactory.Config.class);
+        this.clients = clients;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("uri", "percent");
+    }
+
+    public GatewayFilter apply(MirrorGatewayFilterFactory.Config config) {
+        if (config.getUri() == null || config.getPercent() <= 0.0) {
+            return (exchange, chain) -> {
+                return chain.filter(exchange);
+            };
+        }
+
+        RouteMirror mirror = new RouteMirror(config, this.clients, this.meterRegistry);
+        return (exchange, chain) -> {
+            if (!mirror.sample()) {
+                return chain.filter(exchange);
+            }
+
+            if (!mirror.tryAcquire()) {
+                mirror.droppedInFlight.increment();
+                return chain.filter(exchange);
+            }
+
+            ServerHttpRequest request = exchange.getRequest();
+            HttpHeaders headers = request.getHeaders();
+            long contentLength = headers.getContentLength();
+            if (contentLength == 0L || contentLength < 0L && !headers.containsKey(HttpHeaders.TRANSFER_ENCODING)) {
+                mirror.send(request, EMPTY, 0);
+                return chain.filter(exchange);
+            }
+
+            if (contentLength > mirror.maxBodySize) {
+                mirror.release();
+                mirror.droppedBodySize.increment();
+                return chain.filter(exchange);
+            }
+
+            BodyCopy copy = new BodyCopy(mirror, request, contentLength);
+            return chain.filter(exchange.mutate().request(new MirroredRequest(request, copy)).build()).doFinally((signal) -> {
+                copy.abandon();
+            });
+        };
+    }
+
+    private static final class RouteMirror {
+        private final URI uri;
+        private final double percent;
+        private final int maxInFlight;
+        private final int maxBodySize;
+        private final Duration timeout;
+        private final MirrorClientRegistry clients;
+        private final String name;
+        private final String routeId;
+        private final MirrorClientRegistry.Settings settings;
+        private volatile MirrorClientRegistry.MirrorClient client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter mirrored;
+        private final Counter failed;
+        private final Counter droppedInFlight;
+        private final Counter droppedBodySize;
+        private final Counter droppedIncomplete;
+
+        private RouteMirror(Config config, MirrorClientRegistry clients, MeterRegistry meterRegistry) {
+            String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+            String name = config.getUri().getAuthority() != null ? config.getUri().getAuthority() : routeId;
+            this.uri = config.getUri();
+            this.percent = config.getPercent();
+            this.maxInFlight = config.getMaxInFlight();
+            this.maxBodySize = (int) Math.min(Integer.MAX_VALUE - 8, config.getMaxBodySize().toBytes());
+            this.timeout = config.getTimeout();
+            this.clients = clients;
+            this.name = name;
+            this.routeId = config.getRouteId();
+            this.settings = new MirrorClientRegistry.Settings(config.getMaxConnections(), config.getTimeout());
+            this.client = clients.configure(name, this.routeId, this.settings);
+            this.mirrored = requests(routeId, "mirrored", meterRegistry);
+            this.failed = requests(routeId, "failed", meterRegistry);
+            this.droppedInFlight = dropped(routeId, "in-flight", meterRegistry);
+            this.droppedBodySize = dropped(routeId, "body-size", meterRegistry);
+            this.droppedIncomplete = dropped(routeId, "incomplete", meterRegistry);
+        }
+
+        private static Counter requests(String routeId, String result, MeterRegistry meterRegistry) {
+            return Counter.builder(REQUESTS_METRIC)
+                    .description("Requests mirrored to a shadow upstream")
+                    .tag("routeId", routeId)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+
+        private static Counter dropped(String routeId, String reason, MeterRegistry meterRegistry) {
+            return Counter.builder(DROPPED_METRIC)
+                    .description("Sampled requests that were not mirrored")
+                    .tag("routeId", routeId)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+
+        private boolean sample() {
+            return this.percent >= 100.0 || ThreadLocalRandom.current().nextDouble(100.0) < this.percent;
+        }
+
+        private boolean tryAcquire() {
+            int current;
+            do {
+                current = this.inFlight.get();
+                if (current >= this.maxInFlight) {
+                    return false;
+                }
+            } while (!this.inFlight.compareAndSet(current, current + 1));
+
+            return true;
+        }
+
+        private void release() {
+            this.inFlight.decrementAndGet();
+        }
+
+        /**
+         * Returns the client of the shadow upstream, resolving it again if it was disposed, e.g. because the route
+         * that configured it was removed.
+         */
+        private HttpClient client() {
+            MirrorClientRegistry.MirrorClient current = this.client;
+            if (current.isDisposed()) {
+                current = this.clients.configure(this.name, this.routeId, this.settings);
+                this.client = current;
+            }
+
+            return current.getClient();
+        }
+
+        private void send(ServerHttpRequest request, byte[] body, int length) {
+            URI target = UriComponentsBuilder.fromUri(request.getURI())
+                    .scheme(this.uri.getScheme())
+                    .host(this.uri.getHost())
+                    .port(this.uri.getPort())
+                    .build(true)
+                    .toUri();
+            HttpHeaders headers = request.getHeaders();
+            this.client()
+                    .headers((mirrorHeaders) -> {
+                        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                            if (!SKIPPED_HEADERS.contains(header.getKey())) {
+                                mirrorHeaders.add(header.getKey(), header.getValue());
+                            }
+                        }
+
+                        mirrorHeaders.set(HttpHeaders.CONTENT_LENGTH, length);
+                    })
+                    .request(io.netty.handler.codec.http.HttpMethod.valueOf(request.getMethod().name()))
+                    .uri(target)
+                    .send((mirrorRequest, outbound) -> {
+                        return length > 0 ? outbound.send(Mono.just(Unpooled.wrappedBuffer(body, 0, length))) : outbound;
+                    })
+                    .response((response, content) -> {
+                        return content.then();
+                    })
+                    .then()
+                    .timeout(this.timeout)
+                    .doFinally((signal) -> {
+                        this.release();
+                    })
+                    .subscribe(null, (error) -> {
+                        this.failed.increment();
+                    }, this.mirrored::increment);
+        }
+    }
+
+    /**
+     * Copy of a request body, sent to the shadow once the body is complete. The copy is dropped as soon as it
+     * exceeds the limit, and the in-flight slot is released if the body is never completed.
+     */
+    private static final class BodyCopy {
+        private final RouteMirror mirror;
+        private final ServerHttpRequest request;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private byte[] bytes;
+        private int length;
+
+        private BodyCopy(RouteMirror mirror, ServerHttpRequest request, long contentLength) {
+            this.mirror = mirror;
+            this.request = request;
+            this.bytes = new byte[contentLength > 0L ? (int) contentLength : Math.min(1024, mirror.maxBodySize)];
+        }
+
+        private void append(DataBuffer buffer) {
+            if (this.finished.get()) {
+                return;
+            }
+
+            int readable = buffer.readableByteCount();
+            if (this.length + readable > this.mirror.maxBodySize) {
+                if (this.finished.compareAndSet(false, true)) {
+                    this.bytes = null;
+                    this.mirror.release();
+                    this.mirror.droppedBodySize.increment();
+                }
+
+                return;
+            }
+
+            if (this.length + readable > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.min(this.mirror.maxBodySize, Math.max(this.length + readable, this.bytes.length * 2)));
+            }
+
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer chunk = iterator.next();
+                    int remaining = chunk.remaining();
+                    chunk.get(this.bytes, this.length, remaining);
+                    this.length += remaining;
+                }
+            }
+        }
+
+        private void complete() {
+            if (this.finished.compareAndSet(false, true)) {
+                byte[] body = this.bytes;
+                this.bytes = null;
+                this.mirror.send(this.request, body, this.length);
+            }
+        }
+
+        private void abandon() {
+            if (this.finished.compareAndSet(false, true)) {
+                this.mirror.release();
+                this.mirror.droppedIncomplete.increment();
+            }
+        }
+    }
+
+    private static final class MirroredRequest extends ServerHttpRequestDecorator {
+        private final BodyCopy copy;
+
+        private MirroredRequest(ServerHttpRequest delegate, BodyCopy copy) {
+            super(delegate);
+            this.copy = copy;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return super.getBody().doOnNext(this.copy::append).doOnComplete(this.copy::complete);
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private URI uri;
+        private double percent = 100.0;
+        private int maxInFlight = 100;
+        private int maxConnections = 50;
+        private Duration timeout = Duration.ofSeconds(5L);
+        private DataSize maxBodySize = DataSize.ofKilobytes(64L);
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Shadow upstream; only its scheme, host and port are used.
+         */
+        public URI getUri() {
+            return this.uri;
+        }
+
+        public void setUri(URI uri) {
+            this.uri = uri;
+        }
+
+        /**
+         * Percentage of the requests that are mirrored.
+         */
+        public double getPercent() {
+            return this.percent;
+        }
+
+        public void setPercent(double percent) {
+            this.percent = percent;
+        }
+
+        /**
+         * Maximum number of mirror requests of the route that are copied or in flight at once.
+         */
+        public int getMaxInFlight() {
+            return this.maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getMaxConnections() {
+            return this.maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getTimeout() {
+            return this.timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public DataSize getMaxBodySize() {
+            return this.maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+}
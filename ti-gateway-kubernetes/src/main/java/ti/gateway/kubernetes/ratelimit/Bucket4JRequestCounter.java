@@ -2,6 +2,7 @@ package ti.gateway.kubernetes.ratelimit;
 
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.EstimationProbe;
 
 import java.util.concurrent.TimeUnit;
 
@@ -20,4 +21,25 @@ class Bucket4JRequestCounter implements RequestCounter {
             return new ConsumeResponse(consumptionProbe.isConsumed(), consumptionProbe.getRemainingTokens(), TimeUnit.NANOSECONDS.toMillis(consumptionProbe.getNanosToWaitForRefill()));
         });
     }
+
+    HierarchicalRequestCounter.Level level() {
+        return new HierarchicalRequestCounter.Level() {
+            @Override
+            public Object lock() {
+                return Bucket4JRequestCounter.this.bucket;
+            }
+
+            @Override
+            public ConsumeResponse estimate() {
+                EstimationProbe estimationProbe = Bucket4JRequestCounter.this.bucket.estimateAbilityToConsume(1L);
+                return new ConsumeResponse(estimationProbe.canBeConsumed(), estimationProbe.getRemainingTokens(), TimeUnit.NANOSECONDS.toMillis(estimationProbe.getNanosToWaitForRefill()));
+            }
+
+            @Override
+            public ConsumeResponse consume() {
+                ConsumptionProbe consumptionProbe = Bucket4JRequestCounter.this.bucket.tryConsumeAndReturnRemaining(1L);
+                return new ConsumeResponse(consumptionProbe.isConsumed(), consumptionProbe.getRemainingTokens(), TimeUnit.NANOSECONDS.toMillis(consumptionProbe.getNanosToWaitForRefill()));
+            }
+        };
+    }
 }
@@ -1,5 +1,6 @@
 package ti.gateway.kubernetes.ratelimit;
 
+import ti.gateway.kubernetes.jfr.RateLimitEvent;
 import java.util.HashMap;
 import java.util.Map;
 import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
@@ -26,12 +27,28 @@ class DefaultRateLimiter extends AbstractRateLimiter<RateLimiterProperties> {
             return Mono.just(new Response(false, Map.of()));
         } else {
             RateLimiterProperties config = (RateLimiterProperties) this.getConfig().getOrDefault(routeId, DEFAULT_CONFIG);
-            return this.requestCounterFactory.createOfGet(routeId, id, config.getLimit(), config.getDuration()).flatMap((requestCounter) -> {
-                return requestCounter.consume(id);
+            return Mono.defer(() -> {
+                RateLimitEvent event = new RateLimitEvent();
+                event.begin();
+                return this.requestCounterFactory.createOfGet(routeId, id, config.getAlgorithm(), config.getLimit(), config.getBurst(), config.getDuration(), config.getQuotas()).flatMap((requestCounter) -> {
+                    return requestCounter.consume(id);
+                }).doOnNext((consumeResponse) -> {
+                    this.commitEvent(event, routeId, consumeResponse);
+                });
             }).map(this::toResponse);
         }
     }
 
+    private void commitEvent(RateLimitEvent event, String routeId, ConsumeResponse consumeResponse) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.routeId = routeId;
+            event.allowed = consumeResponse.isAllowed();
+            event.remaining = consumeResponse.getRemainingRequests();
+            event.commit();
+        }
+    }
+
     private Response toResponse(ConsumeResponse consumeResponse) {
         Map<String, String> headers = new HashMap<>();
         if (consumeResponse.isAllowed()) {
@@ -0,0 +1,99 @@
+package ti.gateway.kubernetes.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits the keys of a route with the generic cell rate algorithm.
+ *
+ * The only state of a key is its theoretical arrival time: the time at which it would be back to a full burst if
+ * it sent no more requests. A request is allowed if it does not arrive earlier than that time minus the burst
+ * tolerance, and then pushes the time forward by one emission interval ({@code duration / limit}). There is no
+ * window, so no edge can be exploited for a double burst. A key whose arrival time has passed is equivalent to an
+ * unknown one, so entries are evicted that long after their last update.
+ *
+ * Being a single number that is read and replaced in one step, the state can be kept in a distributed map and
+ * updated with an entry processor.
+ */
+class GcraRequestCounter implements RequestCounter {
+    private final int burst;
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final LongSupplier clock;
+    private final Cache<String, Long> arrivals;
+
+    GcraRequestCounter(int limit, int burst, Duration duration) {
+        this(limit, burst, duration, System::nanoTime);
+    }
+
+    GcraRequestCounter(int limit, int burst, Duration duration, LongSupplier clock) {
+        this.burst = burst > 0 ? burst : limit;
+        this.emissionInterval = Math.max(1L, duration.toNanos() / Math.max(1, limit));
+        this.burstTolerance = this.emissionInterval * (this.burst - 1);
+        this.clock = clock;
+        this.arrivals = Caffeine.newBuilder().expireAfterWrite(Duration.ofNanos(this.burstTolerance + this.emissionInterval)).build();
+    }
+
+    @Override
+    public Mono<ConsumeResponse> consume(String apiKey) {
+        return Mono.fromCallable(() -> {
+            return this.tryConsume(apiKey != null ? apiKey : "");
+        });
+    }
+
+    long keyCount() {
+        return this.arrivals.estimatedSize();
+    }
+
+    HierarchicalRequestCounter.Level level(String apiKey) {
+        String key = apiKey != null ? apiKey : "";
+        return new HierarchicalRequestCounter.Level() {
+            @Override
+            public Object lock() {
+                return GcraRequestCounter.this;
+            }
+
+            @Override
+            public ConsumeResponse estimate() {
+                long[] next = new long[1];
+                return GcraRequestCounter.this.decide(GcraRequestCounter.this.arrivals.getIfPresent(key), GcraRequestCounter.this.clock.getAsLong(), next);
+            }
+
+            @Override
+            public ConsumeResponse consume() {
+                return GcraRequestCounter.this.tryConsume(key);
+            }
+        };
+    }
+
+    private ConsumeResponse tryConsume(String key) {
+        long now = this.clock.getAsLong();
+        ConsumeResponse[] response = new ConsumeResponse[1];
+        this.arrivals.asMap().compute(key, (k, arrival) -> {
+            long[] next = new long[1];
+            response[0] = this.decide(arrival, now, next);
+            return response[0].isAllowed() ? next[0] : arrival;
+        });
+        return response[0];
+    }
+
+    /**
+     * Decides on a request arriving at {@code now}, setting the arrival time it would leave in {@code next}.
+     */
+    private ConsumeResponse decide(Long arrival, long now, long[] next) {
+        long theoretical = arrival != null && arrival - now > 0L ? arrival : now;
+        long allowedAt = theoretical - this.burstTolerance;
+        if (allowedAt - now > 0L) {
+            return new ConsumeResponse(false, 0L, TimeUnit.NANOSECONDS.toMillis(allowedAt - now));
+        }
+
+        next[0] = theoretical + this.emissionInterval;
+        long remaining = Math.max(0L, Math.floorDiv(now + this.burstTolerance - next[0], this.emissionInterval) + 1L);
+        return new ConsumeResponse(true, remaining, 0L);
+    }
+}
@@ -1,14 +1,25 @@
 package ti.gateway.kubernetes.ratelimit;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hazelcast.core.HazelcastInstance;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Bucket4j;
 // import io.github.bucket4j.hazelcast.HazelcastProxyManager; // Temporarily commented out due to API changes in Bucket4j 8.x
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
 
 /**
@@ -16,32 +27,226 @@ import reactor.core.publisher.Mono;
  * 
  * Note: Currently using local bucket implementation due to Bucket4j 8.x API changes.
  * TODO: Update to use proper Hazelcast integration when API is clarified.
+ *
+ * Rate limit state is namespaced per route together with the algorithm, limit, burst and duration it was
+ * created for. A route keeps its state across route refreshes as long as its limit definition is unchanged;
+ * only a changed or removed route loses its state. See {@link RateLimitAlgorithm} for the available
+ * algorithms and their memory per key.
+ *
+ * Quotas are kept apart from the routes, under their name when shared. A shared quota belongs to the first route
+ * that declared it: other routes declaring it with a different definition use it as it is, and it is dropped
+ * along with that route. Requests of a route with quotas are decided by a {@link HierarchicalRequestCounter}
+ * whose levels are the key, then the quotas in the order of their names.
  */
 @Component
-@SuppressWarnings({"deprecation", "unused"})
+@SuppressWarnings("unused")
 class HazelcastBucket4JRequestCounterFactory implements RequestCounterFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(HazelcastBucket4JRequestCounterFactory.class);
+    private static final String NO_KEY = "";
+    private static final String ROUTE_QUOTA = "route:";
+    private static final String SHARED_QUOTA = "shared:";
     @SuppressWarnings("unused")
     private final HazelcastInstance hazelcastInstance;
+    private final Map<String, RouteLimit> routeLimits = new ConcurrentHashMap<>();
+    private final Map<String, QuotaLimit> quotaLimits = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> routeQuotaKeys = new ConcurrentHashMap<>();
 
     public HazelcastBucket4JRequestCounterFactory(HazelcastInstance hazelcastInstance) {
         this.hazelcastInstance = hazelcastInstance;
     }
 
     @Override
-    public Mono<RequestCounter> createOfGet(String routeId, String apiKey, int limit, Duration duration) {
-        // Bandwidth.simple is deprecated, but we need to use it until Bucket4j API is updated
-        Bandwidth bandwidth = Bandwidth.simple((long) limit, duration);
-        return Mono.defer(() -> {
-            return this.createBucket(routeId, apiKey, bandwidth);
-        }).map(Bucket4JRequestCounter::new);
-    }
-
-    private Mono<Bucket> createBucket(String routeId, String mapName, Bandwidth bandwidth) {
-        // Temporarily using local bucket due to Bucket4j 8.x API changes
-        // TODO: Update to use proper Hazelcast integration when API is clarified
-        // Bucket4j.builder() is deprecated, but we need to use it until API is updated
-        return Mono.just(Bucket4j.builder()
-                .addLimit(bandwidth)
-                .build());
+    public Mono<RequestCounter> createOfGet(String routeId, String apiKey, RateLimitAlgorithm algorithm, int limit, int burst, Duration duration, List<RateLimiterProperties.Quota> quotas) {
+        return Mono.fromSupplier(() -> {
+            RouteLimit routeLimit = this.limitFor(routeId, algorithm, limit, burst, duration);
+            String key = apiKey != null ? apiKey : NO_KEY;
+            if (quotas == null || quotas.isEmpty()) {
+                return routeLimit.counterFor(key);
+            }
+
+            String route = routeId != null ? routeId : NO_KEY;
+            Map<String, RouteLimit> quotaLimits = new TreeMap<>();
+            List<String> routeQuotaKeys = new ArrayList<>(quotas.size());
+            for (int i = 0; i < quotas.size(); ++i) {
+                RateLimiterProperties.Quota quota = quotas.get(i);
+                String quotaKey;
+                if (StringUtils.hasText(quota.getName())) {
+                    quotaKey = SHARED_QUOTA + quota.getName();
+                } else {
+                    quotaKey = ROUTE_QUOTA + route + "#" + i;
+                    routeQuotaKeys.add(quotaKey);
+                }
+
+                quotaLimits.put(quotaKey, this.quotaFor(quotaKey, route, quota));
+            }
+
+            this.retainRouteQuotas(route, routeQuotaKeys);
+
+            List<HierarchicalRequestCounter.Level> levels = new ArrayList<>(quotaLimits.size() + 1);
+            levels.add(routeLimit.levelFor(key));
+            for (RouteLimit quotaLimit : quotaLimits.values()) {
+                levels.add(quotaLimit.levelFor(NO_KEY));
+            }
+
+            return new HierarchicalRequestCounter(levels);
+        });
+    }
+
+    @Override
+    public void retainRoutes(Collection<String> routeIds) {
+        this.routeLimits.keySet().retainAll(routeIds);
+        this.routeQuotaKeys.keySet().retainAll(routeIds);
+        this.quotaLimits.values().removeIf((quotaLimit) -> {
+            quotaLimit.conflicting.retainAll(routeIds);
+            return !routeIds.contains(quotaLimit.owner);
+        });
+    }
+
+    /**
+     * Drops the unnamed quotas a route no longer declares, such as those past the end of a shortened quota list.
+     */
+    private void retainRouteQuotas(String routeId, List<String> quotaKeys) {
+        List<String> previous = this.routeQuotaKeys.get(routeId);
+        if (quotaKeys.equals(previous)) {
+            return;
+        }
+
+        previous = this.routeQuotaKeys.put(routeId, quotaKeys);
+        if (previous != null) {
+            for (String quotaKey : previous) {
+                if (!quotaKeys.contains(quotaKey)) {
+                    this.quotaLimits.remove(quotaKey);
+                }
+            }
+        }
+    }
+
+    int quotaCount() {
+        return this.quotaLimits.size();
+    }
+
+    int routeCount() {
+        return this.routeLimits.size();
+    }
+
+    private RouteLimit limitFor(String routeId, RateLimitAlgorithm algorithm, int limit, int burst, Duration duration) {
+        String route = routeId != null ? routeId : NO_KEY;
+        RateLimitAlgorithm selected = algorithm != null ? algorithm : RateLimitAlgorithm.TOKEN_BUCKET;
+        int effectiveBurst = effectiveBurst(selected, limit, burst);
+        RouteLimit routeLimit = this.routeLimits.get(route);
+        if (routeLimit == null || !routeLimit.matches(selected, limit, effectiveBurst, duration)) {
+            routeLimit = this.routeLimits.compute(route, (id, current) -> {
+                return current != null && current.matches(selected, limit, effectiveBurst, duration) ? current : new RouteLimit(selected, limit, effectiveBurst, duration);
+            });
+        }
+
+        return routeLimit;
+    }
+
+    private RouteLimit quotaFor(String quotaKey, String routeId, RateLimiterProperties.Quota quota) {
+        RateLimitAlgorithm selected = quota.getAlgorithm() != null ? quota.getAlgorithm() : RateLimitAlgorithm.TOKEN_BUCKET;
+        int effectiveBurst = effectiveBurst(selected, quota.getLimit(), quota.getBurst());
+        QuotaLimit quotaLimit = this.quotaLimits.get(quotaKey);
+        if (quotaLimit != null && quotaLimit.conflicting.contains(routeId)) {
+            return quotaLimit.limit;
+        }
+
+        if (quotaLimit == null || !quotaLimit.limit.matches(selected, quota.getLimit(), effectiveBurst, quota.getDuration())) {
+            quotaLimit = this.quotaLimits.compute(quotaKey, (key, current) -> {
+                if (current == null || current.owner.equals(routeId) && !current.limit.matches(selected, quota.getLimit(), effectiveBurst, quota.getDuration())) {
+                    return new QuotaLimit(routeId, new RouteLimit(selected, quota.getLimit(), effectiveBurst, quota.getDuration()));
+                }
+
+                if (!current.owner.equals(routeId) && current.conflicting.add(routeId)) {
+                    LOG.warn("Route {} declares quota {} differently from route {}, using the definition of route {}", routeId, quota.getName(), current.owner, current.owner);
+                }
+
+                return current;
+            });
+        }
+
+        return quotaLimit.limit;
+    }
+
+    private static int effectiveBurst(RateLimitAlgorithm algorithm, int limit, int burst) {
+        return burst > 0 && algorithm != RateLimitAlgorithm.SLIDING_WINDOW ? burst : limit;
+    }
+
+    /**
+     * A quota, the route that owns its definition and the other routes known to declare it differently.
+     */
+    private static final class QuotaLimit {
+        private final String owner;
+        private final RouteLimit limit;
+        private final Set<String> conflicting = ConcurrentHashMap.newKeySet();
+
+        private QuotaLimit(String owner, RouteLimit limit) {
+            this.owner = owner;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * The rate limit state of one route, fingerprinted by the limit definition it was created for.
+     *
+     * Token buckets are kept per key. An idle bucket is back to full capacity once its burst has been refilled, so
+     * evicting it after that long without access does not change rate limiting decisions. The other algorithms keep
+     * the state of all the keys of the route in a single counter.
+     */
+    private static final class RouteLimit {
+        private final RateLimitAlgorithm algorithm;
+        private final int limit;
+        private final int burst;
+        private final Duration duration;
+        private final Bandwidth bandwidth;
+        private final Cache<String, Bucket> buckets;
+        private final RequestCounter counter;
+
+        private RouteLimit(RateLimitAlgorithm algorithm, int limit, int burst, Duration duration) {
+            this.algorithm = algorithm;
+            this.limit = limit;
+            this.burst = burst;
+            this.duration = duration;
+            if (algorithm == RateLimitAlgorithm.TOKEN_BUCKET) {
+                this.bandwidth = Bandwidth.builder().capacity((long) burst).refillGreedy((long) limit, duration).build();
+                Duration refill = limit > 0 && burst > limit ? duration.multipliedBy(burst).dividedBy(limit) : duration;
+                this.buckets = Caffeine.newBuilder().expireAfterAccess(refill).build();
+                this.counter = null;
+            } else {
+                this.bandwidth = null;
+                this.buckets = null;
+                this.counter = algorithm == RateLimitAlgorithm.GCRA ? new GcraRequestCounter(limit, burst, duration) : new SlidingWindowRequestCounter(limit, duration);
+            }
+        }
+
+        private boolean matches(RateLimitAlgorithm algorithm, int limit, int burst, Duration duration) {
+            return this.algorithm == algorithm && this.limit == limit && this.burst == burst && this.duration.equals(duration);
+        }
+
+        private RequestCounter counterFor(String apiKey) {
+            if (this.counter != null) {
+                return this.counter;
+            }
+
+            return new Bucket4JRequestCounter(this.bucketFor(apiKey));
+        }
+
+        private HierarchicalRequestCounter.Level levelFor(String apiKey) {
+            if (this.counter instanceof GcraRequestCounter) {
+                return ((GcraRequestCounter) this.counter).level(apiKey);
+            }
+
+            if (this.counter instanceof SlidingWindowRequestCounter) {
+                return ((SlidingWindowRequestCounter) this.counter).level(apiKey);
+            }
+
+            return new Bucket4JRequestCounter(this.bucketFor(apiKey)).level();
+        }
+
+        private Bucket bucketFor(String apiKey) {
+            return this.buckets.get(apiKey, (key) -> {
+                return Bucket.builder().addLimit(this.bandwidth).build();
+            });
+        }
     }
 }
@@ -0,0 +1,73 @@
+package ti.gateway.kubernetes.ratelimit;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Consumes from several limits, such as those of a key, a route and an upstream service, in one decision.
+ *
+ * The locks of all the levels are taken in order, every level is checked, and a request is counted at every level
+ * only if all of them allow it, so a level that rejects a request never costs the others a token. The response
+ * reports the smallest remaining count of the levels or, when rejected, the longest wait among the rejecting ones.
+ * Levels must be given in an order shared by every hierarchy using them to rule out deadlocks.
+ */
+class HierarchicalRequestCounter implements RequestCounter {
+    private final Level[] levels;
+
+    HierarchicalRequestCounter(List<Level> levels) {
+        this.levels = levels.toArray(new Level[0]);
+    }
+
+    @Override
+    public Mono<ConsumeResponse> consume(String apiKey) {
+        return Mono.fromCallable(() -> {
+            return this.decide(0);
+        });
+    }
+
+    private ConsumeResponse decide(int level) {
+        if (level == this.levels.length) {
+            return this.decide();
+        }
+
+        synchronized (this.levels[level].lock()) {
+            return this.decide(level + 1);
+        }
+    }
+
+    private ConsumeResponse decide() {
+        long retryDelayMs = -1L;
+        for (Level level : this.levels) {
+            ConsumeResponse estimate = level.estimate();
+            if (!estimate.isAllowed()) {
+                retryDelayMs = Math.max(retryDelayMs, estimate.getRetryDelayMs());
+            }
+        }
+
+        if (retryDelayMs >= 0L) {
+            return new ConsumeResponse(false, 0L, retryDelayMs);
+        }
+
+        long remaining = Long.MAX_VALUE;
+        for (Level level : this.levels) {
+            remaining = Math.min(remaining, level.consume().getRemainingRequests());
+        }
+
+        return new ConsumeResponse(true, remaining, 0L);
+    }
+
+    /**
+     * The limit of one key at one level. Checking and consuming are only atomic together while holding its lock.
+     */
+    interface Level {
+        Object lock();
+
+        /**
+         * Returns what {@link #consume()} would, without counting the request.
+         */
+        ConsumeResponse estimate();
+
+        ConsumeResponse consume();
+    }
+}
@@ -0,0 +1,26 @@
+package ti.gateway.kubernetes.ratelimit;
+
+/**
+ * Algorithm a route uses to rate limit its keys to {@code limit} requests per {@code duration}.
+ *
+ * Memory per key is the retained heap of an active key excluding the key itself, cache entry included, measured
+ * over 200,000 keys on a 64-bit JVM with compressed references. Idle keys are evicted once their state is
+ * equivalent to that of an unknown key.
+ */
+public enum RateLimitAlgorithm {
+    /**
+     * Bucket4j token bucket holding up to {@code burst} tokens and refilled greedily at {@code limit} per
+     * {@code duration}. About 330 bytes per key.
+     */
+    TOKEN_BUCKET,
+    /**
+     * Generic cell rate algorithm: one request every {@code duration / limit}, with up to {@code burst} at once.
+     * Stores a single timestamp per key, about 105 bytes.
+     */
+    GCRA,
+    /**
+     * Sliding window counter weighting the count of the previous window by its overlap with the sliding window.
+     * Stores a window start and two counts per key, about 115 bytes. Has no separate burst.
+     */
+    SLIDING_WINDOW
+}
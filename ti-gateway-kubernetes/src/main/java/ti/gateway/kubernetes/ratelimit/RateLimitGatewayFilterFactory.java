@@ -1,7 +1,8 @@
 package ti.gateway.kubernetes.ratelimit;
 
+import ti.gateway.kubernetes.ip.ClientAddress;
+import ti.gateway.kubernetes.ip.IpRangeMatcher;
 import ti.gateway.kubernetes.jwt.JwtHelper;
-import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -13,8 +14,6 @@ import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.RequestRateLimiterGatewayFilterFactory;
 import org.springframework.cloud.gateway.filter.factory.RequestRateLimiterGatewayFilterFactory.Config;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
-import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
-import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
@@ -53,8 +52,10 @@ class RateLimitGatewayFilterFactory implements GatewayFilterFactory<RateLimiterP
                     return this.getKeyFromHeader(exchange, config.getHeader());
                 };
             } else {
+                IpRangeMatcher allowedIPs = IpRangeMatcher.of(config.getIPs());
+                int maxTrustedIndex = config.getXForwardedForMaxTrustedIndex();
                 keyResolver = (exchange) -> {
-                    return this.getKeyFromIpAddress(exchange, config.getIPs(), config.getXForwardedForMaxTrustedIndex());
+                    return this.getKeyFromIpAddress(exchange, allowedIPs, maxTrustedIndex);
                 };
             }
 
@@ -97,14 +98,10 @@ class RateLimitGatewayFilterFactory implements GatewayFilterFactory<RateLimiterP
         }
     }
 
-    private Mono<String> getKeyFromIpAddress(ServerWebExchange exchange, List<String> allowedIPs, int maxTrustedIndex) {
-        RemoteAddressResolver remoteAddressResolver = XForwardedRemoteAddressResolver.maxTrustedIndex(maxTrustedIndex);
-        InetSocketAddress remoteAddress = remoteAddressResolver.resolve(exchange);
-        if (remoteAddress != null) {
-            String ip = remoteAddress.getAddress().getHostAddress();
-            if (allowedIPs.contains(ip)) {
-                return Mono.just(ip);
-            }
+    Mono<String> getKeyFromIpAddress(ServerWebExchange exchange, IpRangeMatcher allowedIPs, int maxTrustedIndex) {
+        String clientAddress = ClientAddress.of(exchange, maxTrustedIndex);
+        if (allowedIPs.matches(clientAddress)) {
+            return Mono.just(clientAddress);
         }
 
         return Mono.empty();
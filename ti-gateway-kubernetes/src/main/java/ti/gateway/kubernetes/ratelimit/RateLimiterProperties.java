@@ -13,6 +13,9 @@ import org.springframework.util.StringUtils;
 class RateLimiterProperties implements HasRouteId {
     private int limit = 0;
     private Duration duration = Duration.ofSeconds(1L);
+    private RateLimitAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET;
+    private int burst = 0;
+    private List<Quota> quotas = new ArrayList<>();
     private String routeId;
     private String keyLocation;
     private String claim;
@@ -86,6 +89,36 @@ class RateLimiterProperties implements HasRouteId {
         this.duration = duration;
     }
 
+    public RateLimitAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public void setAlgorithm(RateLimitAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Requests a key may send at once; the limit itself when not positive. Ignored by the sliding window.
+     */
+    public int getBurst() {
+        return this.burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    /**
+     * Limits enforced together with the limit of the key, in the same decision.
+     */
+    public List<Quota> getQuotas() {
+        return this.quotas;
+    }
+
+    public void setQuotas(List<Quota> quotas) {
+        this.quotas = quotas;
+    }
+
     public String getRouteId() {
         return this.routeId;
     }
@@ -149,4 +182,62 @@ class RateLimiterProperties implements HasRouteId {
         }
 
     }
+
+    /**
+     * A limit on all the requests of the route, or of every route declaring the same name, such as those of an
+     * upstream service.
+     */
+    public static class Quota {
+        private String name;
+        private RateLimitAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET;
+        private int limit = 0;
+        private int burst = 0;
+        private Duration duration = Duration.ofSeconds(1L);
+
+        public Quota() {
+        }
+
+        /**
+         * Name under which routes share the quota; the quota only counts the requests of its route if not set.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public RateLimitAlgorithm getAlgorithm() {
+            return this.algorithm;
+        }
+
+        public void setAlgorithm(RateLimitAlgorithm algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public int getLimit() {
+            return this.limit;
+        }
+
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        public int getBurst() {
+            return this.burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public Duration getDuration() {
+            return this.duration;
+        }
+
+        public void setDuration(Duration duration) {
+            this.duration = duration;
+        }
+    }
 }
@@ -1,23 +1,45 @@
 package ti.gateway.kubernetes.ratelimit;
 
-import com.hazelcast.core.HazelcastInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
+/**
+ * Removes the rate limit state of routes that no longer exist once a route refresh completes.
+ *
+ * Routes whose limit changed are reset lazily by the {@link RequestCounterFactory}, all other routes keep
+ * their counters.
+ */
 @Component
-class RateLimitsRemover implements ApplicationListener<RefreshRoutesEvent> {
+class RateLimitsRemover implements ApplicationListener<RefreshRoutesResultEvent> {
     private final Logger logger = LoggerFactory.getLogger(RateLimitsRemover.class);
-    private final HazelcastInstance hazelcastInstance;
+    private final RequestCounterFactory requestCounterFactory;
+    private final DefaultRateLimiter defaultRateLimiter;
+
+    RateLimitsRemover(RequestCounterFactory requestCounterFactory, DefaultRateLimiter defaultRateLimiter) {
+        this.requestCounterFactory = requestCounterFactory;
+        this.defaultRateLimiter = defaultRateLimiter;
+    }
+
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
 
-    RateLimitsRemover(HazelcastInstance hazelcastInstance) {
-        this.hazelcastInstance = hazelcastInstance;
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
     }
 
-    public void onApplicationEvent(RefreshRoutesEvent event) {
-        this.logger.info("Removing Hazelcast map '{}' with rate limit information", "GLOBAL_RATE_LIMIT");
-        this.hazelcastInstance.getMap("GLOBAL_RATE_LIMIT").destroy();
+    void retainRoutes(Set<String> routeIds) {
+        this.logger.debug("Retaining rate limit information of routes {}", routeIds);
+        this.defaultRateLimiter.getConfig().keySet().retainAll(routeIds);
+        this.requestCounterFactory.retainRoutes(routeIds);
     }
 }
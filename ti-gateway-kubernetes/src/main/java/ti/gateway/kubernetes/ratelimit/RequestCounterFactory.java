@@ -1,8 +1,31 @@
 package ti.gateway.kubernetes.ratelimit;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import reactor.core.publisher.Mono;
 
 interface RequestCounterFactory {
-    Mono<RequestCounter> createOfGet(String routeId, String apiKey, int limit, Duration duration);
+    default Mono<RequestCounter> createOfGet(String routeId, String apiKey, int limit, Duration duration) {
+        return this.createOfGet(routeId, apiKey, RateLimitAlgorithm.TOKEN_BUCKET, limit, 0, duration);
+    }
+
+    /**
+     * Returns the counter of {@code apiKey} on a route, limited to {@code limit} requests per {@code duration}
+     * with the given algorithm and burst, a burst not greater than zero being the limit itself.
+     */
+    default Mono<RequestCounter> createOfGet(String routeId, String apiKey, RateLimitAlgorithm algorithm, int limit, int burst, Duration duration) {
+        return this.createOfGet(routeId, apiKey, algorithm, limit, burst, duration, List.of());
+    }
+
+    /**
+     * Returns a counter that also consumes from {@code quotas}, counting a request at every level only if all of
+     * them allow it.
+     */
+    Mono<RequestCounter> createOfGet(String routeId, String apiKey, RateLimitAlgorithm algorithm, int limit, int burst, Duration duration, List<RateLimiterProperties.Quota> quotas);
+
+    /**
+     * Drops the rate limit state of every route that is not in {@code routeIds}.
+     */
+    void retainRoutes(Collection<String> routeIds);
 }
@@ -0,0 +1,127 @@
+package ti.gateway.kubernetes.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits the keys of a route with a sliding window counter.
+ *
+ * Each key counts its requests in the current window and remembers the count of the previous one. The rate is
+ * estimated as the current count plus the previous count weighted by how much of the previous window still
+ * overlaps the sliding window ending now, which smooths the limit over window edges without storing timestamps.
+ * Windows start with the first request of a key. A key unused for two windows is equivalent to an unknown one,
+ * so entries are evicted after that long without access.
+ */
+class SlidingWindowRequestCounter implements RequestCounter {
+    private final int limit;
+    private final long size;
+    private final LongSupplier clock;
+    private final Cache<String, Window> windows;
+
+    SlidingWindowRequestCounter(int limit, Duration duration) {
+        this(limit, duration, System::nanoTime);
+    }
+
+    SlidingWindowRequestCounter(int limit, Duration duration, LongSupplier clock) {
+        this.limit = limit;
+        this.size = Math.max(1L, duration.toNanos());
+        this.clock = clock;
+        this.windows = Caffeine.newBuilder().expireAfterAccess(duration.multipliedBy(2L)).build();
+    }
+
+    @Override
+    public Mono<ConsumeResponse> consume(String apiKey) {
+        return Mono.fromCallable(() -> {
+            return this.tryConsume(apiKey != null ? apiKey : "");
+        });
+    }
+
+    long keyCount() {
+        return this.windows.estimatedSize();
+    }
+
+    HierarchicalRequestCounter.Level level(String apiKey) {
+        Window window = this.windowFor(apiKey != null ? apiKey : "");
+        return new HierarchicalRequestCounter.Level() {
+            @Override
+            public Object lock() {
+                return window;
+            }
+
+            @Override
+            public ConsumeResponse estimate() {
+                return SlidingWindowRequestCounter.this.decide(window, false);
+            }
+
+            @Override
+            public ConsumeResponse consume() {
+                return SlidingWindowRequestCounter.this.decide(window, true);
+            }
+        };
+    }
+
+    private ConsumeResponse tryConsume(String key) {
+        return this.decide(this.windowFor(key), true);
+    }
+
+    private Window windowFor(String key) {
+        long now = this.clock.getAsLong();
+        return this.windows.get(key, (k) -> {
+            return new Window(now);
+        });
+    }
+
+    private ConsumeResponse decide(Window window, boolean consume) {
+        long now = this.clock.getAsLong();
+        synchronized (window) {
+            long elapsed = now - window.start;
+            if (elapsed >= this.size) {
+                long windows = elapsed / this.size;
+                window.previous = windows == 1L ? window.current : 0;
+                window.current = 0;
+                window.start += windows * this.size;
+                elapsed -= windows * this.size;
+            }
+
+            double weighted = window.previous * (double) (this.size - elapsed) / this.size;
+            if (weighted + window.current + 1 <= this.limit) {
+                long remaining = (long) (this.limit - weighted - window.current - 1);
+                if (consume) {
+                    ++window.current;
+                }
+
+                return new ConsumeResponse(true, remaining, 0L);
+            }
+
+            return new ConsumeResponse(false, 0L, TimeUnit.NANOSECONDS.toMillis(this.retryDelay(window, elapsed)));
+        }
+    }
+
+    /**
+     * Time until the estimated rate leaves room for one more request.
+     */
+    private long retryDelay(Window window, long elapsed) {
+        if (window.current + 1 > this.limit) {
+            double overlap = window.current > 0 ? Math.max(0.0, 1.0 - (this.limit - 1) / (double) window.current) : 0.0;
+            return this.size - elapsed + (long) Math.ceil(this.size * overlap);
+        }
+
+        double overlap = Math.max(0.0, 1.0 - (this.limit - 1 - window.current) / (double) window.previous);
+        return Math.max(0L, (long) Math.ceil(this.size * overlap) - elapsed);
+    }
+
+    private static final class Window {
+        private long start;
+        private int previous;
+        private int current;
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+}
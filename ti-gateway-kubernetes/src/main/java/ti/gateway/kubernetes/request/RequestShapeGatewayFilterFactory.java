@@ -0,0 +1,308 @@
+package ti.gateway.kubernetes.request;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejects requests whose shape exceeds the configured limits, in a single pass over the raw request.
+ *
+ * Header count and bytes and the number of cookies are taken while iterating the headers once; the URI length
+ * and the number of query parameters are taken from the raw URI. Cookies and query parameters are counted by
+ * their separators, without parsing them. The body is limited by its declared length or, when it is streamed,
+ * while it is read. Unset limits are not checked. The filter runs before the other route filters.
+ */
+@Component
+public class RequestShapeGatewayFilterFactory extends AbstractGatewayFilterFactory<RequestShapeGatewayFilterFactory.Config> {
+    static final String REJECTED_METRIC = "spring.cloud.gateway.request.shape.rejected";
+    private final MeterRegistry meterRegistry;
+
+    public RequestShapeGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(RequestShapeGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("maxHeaders", "maxHeaderBytes", "maxCookies", "maxQueryParams", "maxUriLength", "maxBodySize");
+    }
+
+    public GatewayFilter apply(RequestShapeGatewayFilterFactory.Config config) {
+        Limits limits = new Limits(config, this.meterRegistry);
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            Limit exceeded = limits.check(request);
+            if (exceeded != null) {
+                return reject(exchange, exceeded);
+            }
+
+            if (limits.maxBodySize >= 0 && request.getHeaders().getContentLength() < 0) {
+                return chain.filter(exchange.mutate().request(new LimitedBodyRequest(request, limits)).build());
+            }
+
+            return chain.filter(exchange);
+        }, Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, Limit limit) {
+        limit.rejected.increment();
+        exchange.getResponse().setStatusCode(limit.status);
+        exchange.getResponse().getHeaders().set("errorMessage", limit.message);
+        return exchange.getResponse().setComplete();
+    }
+
+    static int countCookies(String header) {
+        int count = 0;
+        boolean empty = true;
+        for (int i = 0; i < header.length(); ++i) {
+            char c = header.charAt(i);
+            if (c == ';') {
+                count += empty ? 0 : 1;
+                empty = true;
+            } else if (c != ' ') {
+                empty = false;
+            }
+        }
+
+        return empty ? count : count + 1;
+    }
+
+    static int countQueryParams(String rawQuery) {
+        if (rawQuery == null) {
+            return 0;
+        }
+
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i <= rawQuery.length(); ++i) {
+            if (i == rawQuery.length() || rawQuery.charAt(i) == '&') {
+                count += i > start ? 1 : 0;
+                start = i + 1;
+            }
+        }
+
+        return count;
+    }
+
+    private static final class Limit {
+        private final HttpStatus status;
+        private final String message;
+        private final Counter rejected;
+
+        private Limit(String name, HttpStatus status, String message, String routeId, MeterRegistry meterRegistry) {
+            this.status = status;
+            this.message = message;
+            this.rejected = Counter.builder(REJECTED_METRIC)
+                    .description("Requests rejected for exceeding a request shape limit")
+                    .tag("routeId", routeId)
+                    .tag("limit", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class Limits {
+        private final int maxHeaders;
+        private final long maxHeaderBytes;
+        private final int maxCookies;
+        private final int maxQueryParams;
+        private final int maxUriLength;
+        private final long maxBodySize;
+        private final Limit headers;
+        private final Limit headerBytes;
+        private final Limit cookies;
+        private final Limit queryParams;
+        private final Limit uriLength;
+        private final Limit bodySize;
+
+        private Limits(Config config, MeterRegistry meterRegistry) {
+            String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+            this.maxHeaders = config.getMaxHeaders() != null ? config.getMaxHeaders() : -1;
+            this.maxHeaderBytes = config.getMaxHeaderBytes() != null ? config.getMaxHeaderBytes().toBytes() : -1L;
+            this.maxCookies = config.getMaxCookies() != null ? config.getMaxCookies() : -1;
+            this.maxQueryParams = config.getMaxQueryParams() != null ? config.getMaxQueryParams() : -1;
+            this.maxUriLength = config.getMaxUriLength() != null ? config.getMaxUriLength() : -1;
+            this.maxBodySize = config.getMaxBodySize() != null ? config.getMaxBodySize().toBytes() : -1L;
+            this.headers = new Limit("headers", HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "Request exceeded the maximum number of allowed headers", routeId, meterRegistry);
+            this.headerBytes = new Limit("header-bytes", HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "Request exceeded the maximum size of headers", routeId, meterRegistry);
+            this.cookies = new Limit("cookies", HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "Request exceeded the maximum of cookies", routeId, meterRegistry);
+            this.queryParams = new Limit("query-params", HttpStatus.URI_TOO_LONG, "Request exceeded the maximum number of allowed query parameters", routeId, meterRegistry);
+            this.uriLength = new Limit("uri-length", HttpStatus.URI_TOO_LONG, "Request exceeded the maximum length of the URI", routeId, meterRegistry);
+            this.bodySize = new Limit("body-size", HttpStatus.PAYLOAD_TOO_LARGE, "Request exceeded the maximum size of the body", routeId, meterRegistry);
+        }
+
+        private Limit check(ServerHttpRequest request) {
+            URI uri = request.getURI();
+            String rawPath = uri.getRawPath();
+            String rawQuery = uri.getRawQuery();
+            if (this.maxUriLength >= 0) {
+                int length = (rawPath != null ? rawPath.length() : 0) + (rawQuery != null ? rawQuery.length() + 1 : 0);
+                if (length > this.maxUriLength) {
+                    return this.uriLength;
+                }
+            }
+
+            if (this.maxQueryParams >= 0 && countQueryParams(rawQuery) > this.maxQueryParams) {
+                return this.queryParams;
+            }
+
+            HttpHeaders headers = request.getHeaders();
+            if (this.maxHeaderBytes >= 0 || this.maxCookies >= 0) {
+                int count = 0;
+                long bytes = 0L;
+                int cookies = 0;
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    ++count;
+                    boolean cookie = this.maxCookies >= 0 && HttpHeaders.COOKIE.equalsIgnoreCase(header.getKey());
+                    for (String value : header.getValue()) {
+                        bytes += header.getKey().length() + value.length() + 4L;
+                        cookies += cookie ? countCookies(value) : 0;
+                    }
+                }
+
+                if (this.maxHeaders >= 0 && count > this.maxHeaders) {
+                    return this.headers;
+                }
+
+                if (this.maxHeaderBytes >= 0 && bytes > this.maxHeaderBytes) {
+                    return this.headerBytes;
+                }
+
+                if (this.maxCookies >= 0 && cookies > this.maxCookies) {
+                    return this.cookies;
+                }
+            } else if (this.maxHeaders >= 0 && headers.size() > this.maxHeaders) {
+                return this.headers;
+            }
+
+            if (this.maxBodySize >= 0 && headers.getContentLength() > this.maxBodySize) {
+                return this.bodySize;
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Request with a streamed body that fails once more than the allowed bytes were read.
+     */
+    private static final class LimitedBodyRequest extends ServerHttpRequestDecorator {
+        private final Limits limits;
+
+        private LimitedBodyRequest(ServerHttpRequest delegate, Limits limits) {
+            super(delegate);
+            this.limits = limits;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            AtomicLong read = new AtomicLong();
+            return super.getBody().handle((buffer, sink) -> {
+                if (read.addAndGet(buffer.readableByteCount()) > this.limits.maxBodySize) {
+                    DataBufferUtils.release(buffer);
+                    this.limits.bodySize.rejected.increment();
+                    sink.error(new ResponseStatusException(this.limits.bodySize.status, this.limits.bodySize.message));
+                } else {
+                    sink.next(buffer);
+                }
+            });
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private Integer maxHeaders;
+        private DataSize maxHeaderBytes;
+        private Integer maxCookies;
+        private Integer maxQueryParams;
+        private Integer maxUriLength;
+        private DataSize maxBodySize;
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public Integer getMaxHeaders() {
+            return this.maxHeaders;
+        }
+
+        public void setMaxHeaders(Integer maxHeaders) {
+            this.maxHeaders = maxHeaders;
+        }
+
+        /**
+         * Limit of the header names and values, counted as they are sent on HTTP/1.1.
+         */
+        public DataSize getMaxHeaderBytes() {
+            return this.maxHeaderBytes;
+        }
+
+        public void setMaxHeaderBytes(DataSize maxHeaderBytes) {
+            this.maxHeaderBytes = maxHeaderBytes;
+        }
+
+        public Integer getMaxCookies() {
+            return this.maxCookies;
+        }
+
+        public void setMaxCookies(Integer maxCookies) {
+            this.maxCookies = maxCookies;
+        }
+
+        public Integer getMaxQueryParams() {
+            return this.maxQueryParams;
+        }
+
+        public void setMaxQueryParams(Integer maxQueryParams) {
+            this.maxQueryParams = maxQueryParams;
+        }
+
+        /**
+         * Limit of the raw path and query length.
+         */
+        public Integer getMaxUriLength() {
+            return this.maxUriLength;
+        }
+
+        public void setMaxUriLength(Integer maxUriLength) {
+            this.maxUriLength = maxUriLength;
+        }
+
+        public DataSize getMaxBodySize() {
+            return this.maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ti.gateway.kubernetes.retry;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the latency of a route and derives the delay after which a hedged request is sent.
+ *
+ * Latencies go into a lock-free {@link Recorder}. Once per second the thread that notices folds the pending
+ * interval into the current window and recomputes the configured percentile, so the request path only reads
+ * a volatile. Windows are replaced as a whole so the delay follows recent latency.
+ */
+class HedgeDelay {
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    private static final long MIN_SAMPLES = 20L;
+    private final LongSupplier nanoClock;
+    private final Recorder recorder = new Recorder(2);
+    private final Histogram window = new Histogram(2);
+    private final AtomicLong nextRefresh;
+    private Histogram interval;
+    private long windowStart;
+    private volatile double percentile;
+    private volatile long windowNanos;
+    private volatile long minDelayNanos;
+    private volatile long maxDelayNanos;
+    private volatile long delayNanos;
+
+    HedgeDelay(double percentile, Duration minDelay, Duration maxDelay, Duration window) {
+        this(percentile, minDelay, maxDelay, window, System::nanoTime);
+    }
+
+    HedgeDelay(double percentile, Duration minDelay, Duration maxDelay, Duration window, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+        this.nextRefresh = new AtomicLong(this.windowStart + REFRESH_NANOS);
+        this.configure(percentile, minDelay, maxDelay, window);
+        this.delayNanos = this.maxDelayNanos;
+    }
+
+    void configure(double percentile, Duration minDelay, Duration maxDelay, Duration window) {
+        this.percentile = Math.max(0.0, Math.min(100.0, percentile));
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = Math.max(this.minDelayNanos, maxDelay.toNanos());
+        this.windowNanos = window.toNanos();
+        this.delayNanos = this.clamp(this.delayNanos);
+    }
+
+    void record(long nanos) {
+        this.recorder.recordValue(Math.max(0L, nanos));
+    }
+
+    Duration getDelay() {
+        long now = this.nanoClock.getAsLong();
+        long next = this.nextRefresh.get();
+        if (now - next >= 0L && this.nextRefresh.compareAndSet(next, now + REFRESH_NANOS)) {
+            this.refresh(now);
+        }
+
+        return Duration.ofNanos(this.delayNanos);
+    }
+
+    private synchronized void refresh(long now) {
+        this.interval = this.recorder.getIntervalHistogram(this.interval);
+        this.window.add(this.interval);
+        if (this.window.getTotalCount() >= MIN_SAMPLES) {
+            this.delayNanos = this.clamp(this.window.getValueAtPercentile(this.percentile));
+        }
+
+        if (now - this.windowStart >= this.windowNanos) {
+            this.window.reset();
+            this.windowStart = now;
+        }
+    }
+
+    private long clamp(long nanos) {
+        return Math.max(this.minDelayNanos, Math.min(this.maxDelayNanos, nanos));
+    }
+}
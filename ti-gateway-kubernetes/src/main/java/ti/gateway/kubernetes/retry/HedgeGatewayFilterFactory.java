@@ -0,0 +1,230 @@
+package ti.gateway.kubernetes.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends a second, hedged request for idempotent requests that did not get a response within a delay and
+ * answers with whichever response arrives first.
+ *
+ * The delay follows a percentile of the recent latency of the route, bounded by a minimum and maximum, so only
+ * the slow tail is hedged. Only {@code GET} and {@code HEAD} requests are hedged. Hedges are capped by a
+ * {@link RetryBudget} to a percentage of the hedgeable requests, so a degraded upstream whose latency stays over
+ * the maximum delay does not get every request twice.
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+    static final String HEDGED_METRIC = "spring.cloud.gateway.hedge.requests";
+    static final String WON_METRIC = "spring.cloud.gateway.hedge.wins";
+    static final String SKIPPED_METRIC = "spring.cloud.gateway.hedge.skipped";
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteHedge> routeHedges = new ConcurrentHashMap<>();
+
+    public HedgeGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(HedgeGatewayFilterFactory.Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("percentile", "maxDelay");
+    }
+
+    public GatewayFilter apply(HedgeGatewayFilterFactory.Config config) {
+        RouteHedge routeHedge = this.routeHedgeFor(config);
+        return (exchange, chain) -> {
+            HttpMethod method = exchange.getRequest().getMethod();
+            if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+                return chain.filter(exchange);
+            }
+
+            routeHedge.budget.deposit();
+            Duration delay = routeHedge.delay.getDelay();
+            return Mono.create((sink) -> {
+                new HedgedRequest(exchange, chain, sink, routeHedge).start(delay);
+            });
+        };
+    }
+
+    RouteHedge getRouteHedge(String routeId) {
+        return this.routeHedges.get(routeId);
+    }
+
+    private RouteHedge routeHedgeFor(Config config) {
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "";
+        RouteHedge existing = this.routeHedges.get(routeId);
+        if (existing != null) {
+            existing.delay.configure(config.getPercentile(), config.getMinDelay(), config.getMaxDelay(), config.getWindow());
+            existing.budget.configure(config.getBudgetPercent(), config.getMinHedgesPerSecond(), config.getBudgetWindow());
+            return existing;
+        }
+
+        return this.routeHedges.computeIfAbsent(routeId, (id) -> {
+            Counter hedged = Counter.builder(HEDGED_METRIC)
+                    .description("Hedged requests sent")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            Counter won = Counter.builder(WON_METRIC)
+                    .description("Hedged requests that answered before the original request")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            Counter skipped = Counter.builder(SKIPPED_METRIC)
+                    .description("Hedged requests not sent because the hedge budget was exhausted")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            HedgeDelay delay = new HedgeDelay(config.getPercentile(), config.getMinDelay(), config.getMaxDelay(), config.getWindow());
+            RetryBudget budget = new RetryBudget(config.getBudgetPercent(), config.getMinHedgesPerSecond(), config.getBudgetWindow());
+            return new RouteHedge(delay, budget, hedged, won, skipped);
+        });
+    }
+
+    static final class RouteHedge {
+        private final HedgeDelay delay;
+        private final RetryBudget budget;
+        private final Counter hedged;
+        private final Counter won;
+        private final Counter skipped;
+
+        private RouteHedge(HedgeDelay delay, RetryBudget budget, Counter hedged, Counter won, Counter skipped) {
+            this.delay = delay;
+            this.budget = budget;
+            this.hedged = hedged;
+            this.won = won;
+            this.skipped = skipped;
+        }
+
+        void record(long nanos) {
+            this.delay.record(nanos);
+        }
+
+        /**
+         * Returns whether the budget allows one more hedge, withdrawing it if so.
+         */
+        boolean tryHedge() {
+            if (!this.budget.canRetry()) {
+                this.skipped.increment();
+                return false;
+            }
+
+            this.budget.withdraw();
+            this.hedged.increment();
+            return true;
+        }
+
+        void won() {
+            this.won.increment();
+        }
+
+        double getHedged() {
+            return this.hedged.count();
+        }
+
+        double getWon() {
+            return this.won.count();
+        }
+
+        double getSkipped() {
+            return this.skipped.count();
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private double percentile = 95.0;
+        private Duration minDelay = Duration.ofMillis(10L);
+        private Duration maxDelay = Duration.ofSeconds(1L);
+        private Duration window = Duration.ofSeconds(30L);
+        private int budgetPercent = 10;
+        private int minHedgesPerSecond = 1;
+        private Duration budgetWindow = Duration.ofSeconds(10L);
+
+        public Config() {
+        }
+
+        @Override
+        public String getRouteId() {
+            return this.routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        /**
+         * Latency percentile after which the hedged request is sent.
+         */
+        public double getPercentile() {
+            return this.percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public Duration getMinDelay() {
+            return this.minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        /**
+         * Delay used until enough latency samples have been recorded, and the upper bound of the delay.
+         */
+        public Duration getMaxDelay() {
+            return this.maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public Duration getWindow() {
+            return this.window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        /**
+         * Hedges allowed as a percentage of the hedgeable requests in the budget window.
+         */
+        public int getBudgetPercent() {
+            return this.budgetPercent;
+        }
+
+        public void setBudgetPercent(int budgetPercent) {
+            this.budgetPercent = budgetPercent;
+        }
+
+        public int getMinHedgesPerSecond() {
+            return this.minHedgesPerSecond;
+        }
+
+        public void setMinHedgesPerSecond(int minHedgesPerSecond) {
+            this.minHedgesPerSecond = minHedgesPerSecond;
+        }
+
+        public Duration getBudgetWindow() {
+            return this.budgetWindow;
+        }
+
+        public void setBudgetWindow(Duration budgetWindow) {
+            this.budgetWindow = budgetWindow;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package ti.gateway.kubernetes.retry;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.netty.Connection;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs the rest of the filter chain once, and a second time if no response arrived within the hedge delay.
+ *
+ * Each attempt sees its own copy of the exchange attributes and its own response status, headers and cookies,
+ * so the routing filter of both attempts can run concurrently. The first attempt that completes, i.e. has
+ * received the upstream response headers, or starts writing a body claims the real response: its state is
+ * copied over and the other attempt is cancelled. A losing attempt that still completes releases its upstream
+ * connection without reading the body.
+ */
+final class HedgedRequest {
+    private static final int PRIMARY = 0;
+    private static final int HEDGE = 1;
+    private final ServerWebExchange exchange;
+    private final GatewayFilterChain chain;
+    private final MonoSink<Void> sink;
+    private final HedgeGatewayFilterFactory.RouteHedge routeHedge;
+    private final AttemptExchange[] exchanges = new AttemptExchange[2];
+    private final Disposable[] attempts = new Disposable[2];
+    private Disposable timer;
+    private int running;
+    private int winner = -1;
+    private boolean done;
+
+    HedgedRequest(ServerWebExchange exchange, GatewayFilterChain chain, MonoSink<Void> sink, HedgeGatewayFilterFactory.RouteHedge routeHedge) {
+        this.exchange = exchange;
+        this.chain = chain;
+        this.sink = sink;
+        this.routeHedge = routeHedge;
+    }
+
+    void start(Duration delay) {
+        this.sink.onCancel(this::cancel);
+        this.startAttempt(PRIMARY);
+        synchronized (this) {
+            if (this.winner < 0 && !this.done) {
+                this.timer = Mono.delay(delay).subscribe((tick) -> {
+                    this.startHedge();
+                });
+            }
+        }
+    }
+
+    private void startHedge() {
+        synchronized (this) {
+            if (this.winner >= 0 || this.done || this.running == 0) {
+                return;
+            }
+        }
+
+        if (this.routeHedge.tryHedge()) {
+            this.startAttempt(HEDGE);
+        }
+    }
+
+    private void startAttempt(int index) {
+        AttemptExchange attemptExchange = new AttemptExchange(this.exchange, index);
+        long start = System.nanoTime();
+        synchronized (this) {
+            this.exchanges[index] = attemptExchange;
+            ++this.running;
+        }
+
+        Disposable attempt = this.chain.filter(attemptExchange)
+                .contextWrite(this.sink.contextView())
+                .subscribe(null, (error) -> {
+                    this.onError(index, error);
+                }, () -> {
+                    this.routeHedge.record(System.nanoTime() - start);
+                    this.onComplete(index);
+                });
+        boolean cancelled;
+        synchronized (this) {
+            this.attempts[index] = attempt;
+            cancelled = this.done || this.winner >= 0 && this.winner != index;
+        }
+
+        if (cancelled) {
+            attempt.dispose();
+        }
+    }
+
+    private boolean claim(int index) {
+        Disposable loser;
+        Disposable pendingTimer;
+        synchronized (this) {
+            if (this.winner >= 0 || this.done) {
+                return this.winner == index;
+            }
+
+            this.winner = index;
+            loser = this.attempts[1 - index];
+            pendingTimer = this.timer;
+        }
+
+        this.exchanges[index].copyTo(this.exchange);
+        if (index == HEDGE) {
+            this.routeHedge.won();
+        }
+
+        if (pendingTimer != null) {
+            pendingTimer.dispose();
+        }
+
+        if (loser != null) {
+            loser.dispose();
+        }
+
+        return true;
+    }
+
+    private void onComplete(int index) {
+        if (this.claim(index)) {
+            this.sink.success();
+            return;
+        }
+
+        synchronized (this) {
+            --this.running;
+        }
+
+        Connection connection = this.exchanges[index].getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+        }
+    }
+
+    private void onError(int index, Throwable error) {
+        Disposable pendingTimer;
+        synchronized (this) {
+            --this.running;
+            if (this.winner >= 0 && this.winner != index || this.winner < 0 && this.running > 0 || this.done) {
+                return;
+            }
+
+            this.done = true;
+            pendingTimer = this.timer;
+        }
+
+        if (pendingTimer != null) {
+            pendingTimer.dispose();
+        }
+
+        this.sink.error(error);
+    }
+
+    private void cancel() {
+        List<Disposable> disposables = new ArrayList<>(3);
+        synchronized (this) {
+            this.done = true;
+            disposables.add(this.timer);
+            disposables.add(this.attempts[PRIMARY]);
+            disposables.add(this.attempts[HEDGE]);
+        }
+
+        for (Disposable disposable : disposables) {
+            if (disposable != null) {
+                disposable.dispose();
+            }
+        }
+    }
+
+    private final class AttemptExchange extends ServerWebExchangeDecorator {
+        private final Map<String, Object> attributes;
+        private final AttemptResponse response;
+
+        private AttemptExchange(ServerWebExchange delegate, int index) {
+            super(delegate);
+            this.attributes = new ConcurrentHashMap<>(delegate.getAttributes());
+            this.response = new AttemptResponse(delegate.getResponse(), index);
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return this.attributes;
+        }
+
+        @Override
+        public ServerHttpResponse getResponse() {
+            return this.response;
+        }
+
+        private void copyTo(ServerWebExchange target) {
+            target.getAttributes().putAll(this.attributes);
+            this.response.copyToDelegate();
+        }
+    }
+
+    private final class AttemptResponse extends ServerHttpResponseDecorator {
+        private final int index;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final MultiValueMap<String, ResponseCookie> cookies = new LinkedMultiValueMap<>();
+        private final List<Supplier<? extends Mono<Void>>> commitActions = new ArrayList<>(2);
+        private HttpStatusCode statusCode;
+
+        private AttemptResponse(ServerHttpResponse delegate, int index) {
+            super(delegate);
+            this.index = index;
+        }
+
+        @Override
+        public boolean setStatusCode(HttpStatusCode status) {
+            this.statusCode = status;
+            return true;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return this.statusCode != null ? this.statusCode : this.getDelegate().getStatusCode();
+        }
+
+        @Override
+        public boolean setRawStatusCode(Integer value) {
+            return this.setStatusCode(value != null ? HttpStatusCode.valueOf(value) : null);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> getCookies() {
+            return this.cookies;
+        }
+
+        @Override
+        public void addCookie(ResponseCookie cookie) {
+            this.cookies.add(cookie.getName(), cookie);
+        }
+
+        @Override
+        public void beforeCommit(Supplier<? extends Mono<Void>> action) {
+            this.commitActions.add(action);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return HedgedRequest.this.claim(this.index) ? this.getDelegate().writeWith(body) : Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return HedgedRequest.this.claim(this.index) ? this.getDelegate().writeAndFlushWith(body) : Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return HedgedRequest.this.claim(this.index) ? this.getDelegate().setComplete() : Mono.empty();
+        }
+
+        private void copyToDelegate() {
+            ServerHttpResponse delegate = this.getDelegate();
+            if (this.statusCode != null) {
+                delegate.setStatusCode(this.statusCode);
+            }
+
+            delegate.getHeaders().putAll(this.headers);
+            for (List<ResponseCookie> values : this.cookies.values()) {
+                for (ResponseCookie cookie : values) {
+                    delegate.addCookie(cookie);
+                }
+            }
+
+            for (Supplier<? extends Mono<Void>> action : this.commitActions) {
+                delegate.beforeCommit(action);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ti.gateway.kubernetes.retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps retries to a percentage of the requests seen over a sliding window.
+ *
+ * The window is split into slots that are recycled lock-free as time passes. A floor of retries per second
+ * keeps low traffic routes retryable.
+ */
+class RetryBudget {
+    private static final int SLOTS = 10;
+    private final LongSupplier nanoClock;
+    private final long origin;
+    private final AtomicLongArray slotIds = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray requests = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray retries = new AtomicLongArray(SLOTS);
+    private volatile long slotNanos;
+    private volatile double percent;
+    private volatile long minRetries;
+
+    RetryBudget(int percent, int minRetriesPerSecond, Duration window) {
+        this(percent, minRetriesPerSecond, window, System::nanoTime);
+    }
+
+    RetryBudget(int percent, int minRetriesPerSecond, Duration window, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+        for (int i = 0; i < SLOTS; ++i) {
+            this.slotIds.set(i, -1L);
+        }
+
+        this.configure(percent, minRetriesPerSecond, window);
+    }
+
+    void configure(int percent, int minRetriesPerSecond, Duration window) {
+        long windowNanos = Math.max(SLOTS, window.toNanos());
+        this.slotNanos = windowNanos / SLOTS;
+        this.percent = Math.max(0, percent) / 100.0;
+        this.minRetries = (long) Math.ceil(Math.max(0, minRetriesPerSecond) * (windowNanos / 1.0E9));
+    }
+
+    void deposit() {
+        this.requests.incrementAndGet(this.slot(this.currentSlotId()));
+    }
+
+    boolean canRetry() {
+        long current = this.currentSlotId();
+        long requestCount = 0L;
+        long retryCount = 0L;
+        for (int i = 0; i < SLOTS; ++i) {
+            long id = this.slotIds.get(i);
+            if (id > current - SLOTS) {
+                requestCount += this.requests.get(i);
+                retryCount += this.retries.get(i);
+            }
+        }
+
+        return retryCount < Math.max(this.minRetries, (long) (requestCount * this.percent));
+    }
+
+    void withdraw() {
+        this.retries.incrementAndGet(this.slot(this.currentSlotId()));
+    }
+
+    private long currentSlotId() {
+        return (this.nanoClock.getAsLong() - this.origin) / this.slotNanos;
+    }
+
+    private int slot(long id) {
+        int index = (int) (id % SLOTS);
+        long seen = this.slotIds.get(index);
+        if (seen != id && this.slotIds.compareAndSet(index, seen, id)) {
+            this.requests.set(index, 0L);
+            this.retries.set(index, 0L);
+        }
+
+        return index;
+    }
+}
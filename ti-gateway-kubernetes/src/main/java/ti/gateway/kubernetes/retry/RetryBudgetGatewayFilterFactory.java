@@ -0,0 +1,201 @@
+package ti.gateway.kubernetes.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeanUtils;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code Retry} filter whose retries are additionally capped by a per route retry budget.
+ *
+ * Every successful request, one that completes without an error or a 5xx status, deposits into the budget of its
+ * route and every retry withdraws from it, so during a partial outage retries stay a bounded fraction of the
+ * successful traffic instead of multiplying the load on the upstream. Only attempts the {@code Retry} filter would
+ * retry, by status, series, exception and method, are checked against the budget, and a retry is withdrawn once
+ * it is decided. Budgets are kept per route id and survive route refreshes.
+ */
+@Component
+public class RetryBudgetGatewayFilterFactory extends RetryGatewayFilterFactory {
+    static final String EXHAUSTED_METRIC = "spring.cloud.gateway.retry.budget.exhausted";
+    private static final String ERROR_ATTR = RetryBudgetGatewayFilterFactory.class.getName() + ".error";
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteBudget> routeBudgets = new ConcurrentHashMap<>();
+
+    public RetryBudgetGatewayFilterFactory(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Class<RetryConfig> getConfigClass() {
+        return (Class) RetryBudgetGatewayFilterFactory.Config.class;
+    }
+
+    @Override
+    public RetryConfig newConfig() {
+        return BeanUtils.instantiateClass(RetryBudgetGatewayFilterFactory.Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(RetryConfig retryConfig) {
+        RouteBudget routeBudget = this.routeBudgetFor(retryConfig);
+        GatewayFilter retry = super.apply(retryConfig);
+        return (exchange, chain) -> {
+            return retry.filter(exchange, (attempt) -> {
+                return Mono.defer(() -> {
+                    attempt.getAttributes().remove(ERROR_ATTR);
+                    return chain.filter(attempt);
+                }).doOnError((error) -> {
+                    attempt.getAttributes().put(ERROR_ATTR, error);
+                });
+            }).doOnSuccess((aVoid) -> {
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                if (status == null || !status.is5xxServerError()) {
+                    routeBudget.budget.deposit();
+                }
+            });
+        };
+    }
+
+    @Override
+    public boolean exceedsMaxIterations(ServerWebExchange exchange, RetryConfig retryConfig) {
+        if (super.exceedsMaxIterations(exchange, retryConfig)) {
+            return true;
+        }
+
+        if (!isRetryable(exchange, retryConfig)) {
+            return false;
+        }
+
+        RouteBudget routeBudget = this.routeBudgets.get(routeId(exchange));
+        if (routeBudget == null) {
+            return false;
+        }
+
+        if (!routeBudget.budget.canRetry()) {
+            routeBudget.exhausted.increment();
+            return true;
+        }
+
+        routeBudget.budget.withdraw();
+        return false;
+    }
+
+    RetryBudget getBudget(String routeId) {
+        RouteBudget routeBudget = this.routeBudgets.get(routeId);
+        return routeBudget != null ? routeBudget.budget : null;
+    }
+
+    private RouteBudget routeBudgetFor(RetryConfig retryConfig) {
+        Config config = retryConfig instanceof Config ? (Config) retryConfig : new Config();
+        String routeId = retryConfig.getRouteId() != null ? retryConfig.getRouteId() : "";
+        RouteBudget existing = this.routeBudgets.get(routeId);
+        if (existing != null) {
+            existing.budget.configure(config.getBudgetPercent(), config.getMinRetriesPerSecond(), config.getBudgetWindow());
+            return existing;
+        }
+
+        return this.routeBudgets.computeIfAbsent(routeId, (id) -> {
+            Counter exhausted = Counter.builder(EXHAUSTED_METRIC)
+                    .description("Retries skipped because the retry budget was exhausted")
+                    .tag("routeId", id)
+                    .register(this.meterRegistry);
+            return new RouteBudget(new RetryBudget(config.getBudgetPercent(), config.getMinRetriesPerSecond(), config.getBudgetWindow()), exhausted);
+        });
+    }
+
+    /**
+     * Returns whether the {@code Retry} filter would retry the last attempt, so that only those retries are
+     * charged to the budget.
+     */
+    private static boolean isRetryable(ServerWebExchange exchange, RetryConfig retryConfig) {
+        if (!retryConfig.getMethods().contains(exchange.getRequest().getMethod())) {
+            return false;
+        }
+
+        Throwable error = exchange.getAttribute(ERROR_ATTR);
+        if (error != null) {
+            for (Class<? extends Throwable> exception : retryConfig.getExceptions()) {
+                if (exception.isInstance(error) || exception.isInstance(error.getCause())) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (status == null) {
+            return false;
+        }
+
+        if (retryConfig.getStatuses().contains(HttpStatus.resolve(status.value()))) {
+            return true;
+        }
+
+        HttpStatus.Series series = HttpStatus.Series.resolve(status.value());
+        return series != null && retryConfig.getSeries().contains(series);
+    }
+
+    private static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "";
+    }
+
+    private static final class RouteBudget {
+        private final RetryBudget budget;
+        private final Counter exhausted;
+
+        private RouteBudget(RetryBudget budget, Counter exhausted) {
+            this.budget = budget;
+            this.exhausted = exhausted;
+        }
+    }
+
+    public static class Config extends RetryConfig {
+        private int budgetPercent = 20;
+        private int minRetriesPerSecond = 10;
+        private Duration budgetWindow = Duration.ofSeconds(10L);
+
+        public Config() {
+        }
+
+        /**
+         * Retries allowed as a percentage of the requests in the budget window.
+         */
+        public int getBudgetPercent() {
+            return this.budgetPercent;
+        }
+
+        public void setBudgetPercent(int budgetPercent) {
+            this.budgetPercent = budgetPercent;
+        }
+
+        public int getMinRetriesPerSecond() {
+            return this.minRetriesPerSecond;
+        }
+
+        public void setMinRetriesPerSecond(int minRetriesPerSecond) {
+            this.minRetriesPerSecond = minRetriesPerSecond;
+        }
+
+        public Duration getBudgetWindow() {
+            return this.budgetWindow;
+        }
+
+        public void setBudgetWindow(Duration budgetWindow) {
+            this.budgetWindow = budgetWindow;
+        }
+    }
+}
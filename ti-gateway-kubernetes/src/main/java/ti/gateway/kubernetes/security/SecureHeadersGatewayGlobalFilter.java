@@ -1,7 +1,9 @@
 package ti.gateway.kubernetes.security;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
@@ -13,6 +15,12 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+/**
+ * Adds the default secure headers to every response that does not set them itself.
+ *
+ * The enabled headers are resolved once from {@link SecureHeadersProperties} and added just before the
+ * response is committed, so they also reach the client when the body is streamed.
+ */
 @Component
 @ConditionalOnProperty(
         value = {"spring.cloud.gateway.secure-headers.disabled"},
@@ -20,36 +28,47 @@ import reactor.core.publisher.Mono;
         havingValue = "false"
 )
 public class SecureHeadersGatewayGlobalFilter implements GlobalFilter, Ordered {
-    @SuppressWarnings("unused")
     private static final String DEFAULT_CACHE_CONTROL_VALUE = "no-cache, no-store, max-age=0, must-revalidate";
-    @SuppressWarnings("unused")
     private static final String DEFAULT_PRAGMA_VALUE = "no-cache";
-    @SuppressWarnings("unused")
     private static final String DEFAULT_EXPIRES_VALUE = "0";
-    private static final Map<String, String> DEFAULT_SECURE_HEADERS = new HashMap<>();
-    private final SecureHeadersProperties properties;
+    private final String[] headerNames;
+    private final String[] headerValues;
 
     public SecureHeadersGatewayGlobalFilter(SecureHeadersProperties properties) {
-        this.properties = properties;
-        DEFAULT_SECURE_HEADERS.put("Cache-Control", "no-cache, no-store, max-age=0, must-revalidate");
-        DEFAULT_SECURE_HEADERS.put("Pragma", "no-cache");
-        DEFAULT_SECURE_HEADERS.put("Expires", "0");
-        DEFAULT_SECURE_HEADERS.put("X-Xss-Protection", properties.getXssProtectionHeader());
-        DEFAULT_SECURE_HEADERS.put("Strict-Transport-Security", properties.getStrictTransportSecurity());
-        DEFAULT_SECURE_HEADERS.put("X-Frame-Options", properties.getFrameOptions());
-        DEFAULT_SECURE_HEADERS.put("X-Content-Type-Options", properties.getContentTypeOptions());
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("Cache-Control", DEFAULT_CACHE_CONTROL_VALUE);
+        defaults.put("Pragma", DEFAULT_PRAGMA_VALUE);
+        defaults.put("Expires", DEFAULT_EXPIRES_VALUE);
+        defaults.put("X-Xss-Protection", properties.getXssProtectionHeader());
+        defaults.put("Strict-Transport-Security", properties.getStrictTransportSecurity());
+        defaults.put("X-Frame-Options", properties.getFrameOptions());
+        defaults.put("X-Content-Type-Options", properties.getContentTypeOptions());
+
+        List<String> disabled = properties.getDisable();
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        defaults.forEach((header, value) -> {
+            if (value != null && !disabled.contains(header.toLowerCase(Locale.ROOT))) {
+                names.add(header);
+                values.add(value);
+            }
+        });
+        this.headerNames = names.toArray(new String[0]);
+        this.headerValues = values.toArray(new String[0]);
     }
 
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        return chain.filter(exchange).then(Mono.fromRunnable(() -> {
+        exchange.getResponse().beforeCommit(() -> {
             HttpHeaders headers = exchange.getResponse().getHeaders();
-            List<String> disabled = this.properties.getDisable();
-            DEFAULT_SECURE_HEADERS.forEach((header, value) -> {
-                if (!disabled.contains(header.toLowerCase()) && !headers.containsKey(header)) {
-                    headers.add(header, value);
+            for (int i = 0; i < this.headerNames.length; ++i) {
+                if (!headers.containsKey(this.headerNames[i])) {
+                    headers.add(this.headerNames[i], this.headerValues[i]);
                 }
-            });
-        }));
+            }
+
+            return Mono.empty();
+        });
+        return chain.filter(exchange);
     }
 
     public int getOrder() {
@@ -1,5 +1,6 @@
 package ti.gateway.kubernetes.tls;
 
+import java.time.Duration;
 import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -9,6 +10,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 class TlsConfiguration {
     public static final String PREFIX = "spring.cloud.gateway.k8s.tls";
     private List<TlsServer> servers;
+    private Duration reloadInterval = Duration.ofSeconds(30L);
+    private long sessionCacheSize = 0L;
+    private Duration sessionTimeout;
 
     TlsConfiguration() {
     }
@@ -22,12 +26,48 @@ class TlsConfiguration {
         return this;
     }
 
+    /**
+     * How often the certificate files are checked for changes, zero or negative disables reloading.
+     */
+    public Duration getReloadInterval() {
+        return this.reloadInterval;
+    }
+
+    public TlsConfiguration setReloadInterval(Duration reloadInterval) {
+        this.reloadInterval = reloadInterval;
+        return this;
+    }
+
+    /**
+     * Maximum number of cached TLS sessions per certificate, zero keeps the provider default.
+     */
+    public long getSessionCacheSize() {
+        return this.sessionCacheSize;
+    }
+
+    public TlsConfiguration setSessionCacheSize(long sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+        return this;
+    }
+
+    /**
+     * Lifetime of cached TLS sessions and session tickets, unset keeps the provider default.
+     */
+    public Duration getSessionTimeout() {
+        return this.sessionTimeout;
+    }
+
+    public TlsConfiguration setSessionTimeout(Duration sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+        return this;
+    }
+
     public boolean isEnabled() {
         return this.servers != null && !this.servers.isEmpty();
     }
 
     public String toString() {
-        return "TlsConfiguration{servers=" + this.servers + "}";
+        return "TlsConfiguration{servers=" + this.servers + ", reloadInterval=" + this.reloadInterval + ", sessionCacheSize=" + this.sessionCacheSize + ", sessionTimeout=" + this.sessionTimeout + "}";
     }
 }
 
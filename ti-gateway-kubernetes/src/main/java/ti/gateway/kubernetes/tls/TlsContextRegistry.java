@@ -0,0 +1,261 @@
+package ti.gateway.kubernetes.tls;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.AsyncMapping;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.net.ssl.SSLSessionContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.tcp.SslProvider;
+
+/**
+ * Holds the TLS contexts of all configured servers and resolves them by SNI host name.
+ *
+ * The certificate files are polled on a background thread; when a server's files change, a new
+ * {@link SslContext} is built there and the host mapping is replaced atomically. New handshakes use the new
+ * certificate, established connections keep the context they were created with. A failed reload keeps the
+ * previous context and is retried on the next poll.
+ *
+ * With OpenSSL, all contexts share the same session ticket keys, so ticket based resumption survives a
+ * certificate rotation.
+ */
+@Component
+@ConditionalOnTlsEnabled
+class TlsContextRegistry implements AsyncMapping<String, SslProvider>, SmartLifecycle {
+    private static final Logger LOG = LoggerFactory.getLogger(TlsContextRegistry.class);
+    static final String HANDSHAKE_METRIC = "spring.cloud.gateway.tls.handshake";
+    static final String DEFAULT_HOST = "default";
+    private final TlsConfiguration tlsConfiguration;
+    private final MeterRegistry meterRegistry;
+    private final OpenSslSessionTicketKey[] ticketKeys;
+    private final Map<TlsServer, LoadedServer> loadedServers = new IdentityHashMap<>();
+    private final SslProvider defaultProvider;
+    private volatile Map<String, SslProvider> providers = Map.of();
+    private volatile ScheduledExecutorService executor;
+
+    TlsContextRegistry(TlsConfiguration tlsConfiguration, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.tlsConfiguration = tlsConfiguration;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.ticketKeys = OpenSsl.isAvailable() ? new OpenSslSessionTicketKey[]{newTicketKey()} : null;
+        this.defaultProvider = this.provider(DEFAULT_HOST, this.defaultSslContext());
+        this.reload();
+    }
+
+    SslProvider getDefaultProvider() {
+        return this.defaultProvider;
+    }
+
+    @Override
+    public Future<SslProvider> map(String hostname, Promise<SslProvider> promise) {
+        return promise.setSuccess(this.resolve(hostname));
+    }
+
+    SslProvider resolve(String hostname) {
+        if (hostname == null) {
+            return this.defaultProvider;
+        }
+
+        Map<String, SslProvider> current = this.providers;
+        String host = hostname.toLowerCase(Locale.ROOT);
+        SslProvider provider = current.get(host);
+        if (provider == null) {
+            int dot = host.indexOf('.');
+            provider = dot > 0 ? current.get("*" + host.substring(dot)) : null;
+        }
+
+        return provider != null ? provider : this.defaultProvider;
+    }
+
+    /**
+     * Rebuilds the contexts of servers whose certificate files changed and publishes the new host mapping.
+     */
+    synchronized void reload() {
+        boolean changed = false;
+        for (TlsServer server : this.tlsConfiguration.getServers()) {
+            LoadedServer loaded = this.loadedServers.get(server);
+            long fingerprint = fingerprint(server.getSecret());
+            if (loaded != null && loaded.fingerprint == fingerprint) {
+                continue;
+            }
+
+            try {
+                SslContext sslContext = this.sslContextFor(server.getSecret());
+                Map<String, SslProvider> hostProviders = new HashMap<>();
+                server.getHosts().forEach((host) -> {
+                    String name = host.toLowerCase(Locale.ROOT);
+                    hostProviders.put(name, this.provider(name, sslContext));
+                });
+                this.loadedServers.put(server, new LoadedServer(fingerprint, hostProviders));
+                LOG.info("Requests to {} will use TLS context configured using {}", server.getHosts(), server.getSecret());
+                changed = true;
+            } catch (Exception e) {
+                if (loaded == null) {
+                    throw new IllegalStateException("Unable to configure TLS context for " + server.getHosts(), e);
+                }
+
+                LOG.warn("Unable to reload TLS context for {}, keeping the previous certificate", server.getHosts(), e);
+            }
+        }
+
+        if (changed) {
+            Map<String, SslProvider> mapping = new HashMap<>();
+            this.loadedServers.values().forEach((loaded) -> {
+                mapping.putAll(loaded.providers);
+            });
+            this.providers = Map.copyOf(mapping);
+        }
+    }
+
+    @Override
+    public void start() {
+        long interval = this.tlsConfiguration.getReloadInterval() != null ? this.tlsConfiguration.getReloadInterval().toMillis() : 0L;
+        if (interval <= 0L) {
+            return;
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "tls-certificate-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.reload();
+            } catch (RuntimeException e) {
+                LOG.warn("TLS certificate reload failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        this.executor = scheduler;
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService scheduler = this.executor;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        this.executor = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.executor != null;
+    }
+
+    private SslContext sslContextFor(TlsSecret secret) throws Exception {
+        return this.tuned(Http11SslContextSpec.forServer(secret.getCertFile(), secret.getKeyFile())).sslContext();
+    }
+
+    private SslContext defaultSslContext() {
+        try {
+            SelfSignedCertificate defaultCert = new SelfSignedCertificate("Spring Cloud Gateway Fake Certificate");
+            return this.tuned(Http11SslContextSpec.forServer(defaultCert.key(), new X509Certificate[]{defaultCert.cert()})).sslContext();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to configure Netty SNI", e);
+        }
+    }
+
+    private Http11SslContextSpec tuned(Http11SslContextSpec spec) {
+        return spec.configure((builder) -> {
+            if (this.tlsConfiguration.getSessionCacheSize() > 0L) {
+                builder.sessionCacheSize(this.tlsConfiguration.getSessionCacheSize());
+            }
+
+            if (this.tlsConfiguration.getSessionTimeout() != null) {
+                builder.sessionTimeout(this.tlsConfiguration.getSessionTimeout().getSeconds());
+            }
+        });
+    }
+
+    private SslProvider provider(String host, SslContext sslContext) {
+        SSLSessionContext sessionContext = sslContext.sessionContext();
+        if (this.ticketKeys != null && sessionContext instanceof OpenSslSessionContext) {
+            ((OpenSslSessionContext) sessionContext).setTicketKeys(this.ticketKeys);
+        }
+
+        return SslProvider.builder()
+                .sslContext(sslContext)
+                .handlerConfigurator(this.handshakeRecorder(host))
+                .build();
+    }
+
+    private Consumer<SslHandler> handshakeRecorder(String host) {
+        if (this.meterRegistry == null) {
+            return (handler) -> {
+            };
+        }
+
+        Timer success = this.handshakeTimer(host, "SUCCESS");
+        Timer failure = this.handshakeTimer(host, "FAILURE");
+        return (handler) -> {
+            long start = System.nanoTime();
+            handler.handshakeFuture().addListener((future) -> {
+                (future.isSuccess() ? success : failure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            });
+        };
+    }
+
+    private Timer handshakeTimer(String host, String outcome) {
+        return Timer.builder(HANDSHAKE_METRIC)
+                .description("TLS handshakes per SNI host")
+                .tag("host", host)
+                .tag("outcome", outcome)
+                .register(this.meterRegistry);
+    }
+
+    private static long fingerprint(TlsSecret secret) {
+        return fingerprint(secret.getCertFile()) * 31L + fingerprint(secret.getKeyFile());
+    }
+
+    private static long fingerprint(File file) {
+        return file.lastModified() * 31L + file.length();
+    }
+
+    private static OpenSslSessionTicketKey newTicketKey() {
+        SecureRandom random = new SecureRandom();
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    private static final class LoadedServer {
+        private final long fingerprint;
+        private final Map<String, SslProvider> providers;
+
+        private LoadedServer(long fingerprint, Map<String, SslProvider> providers) {
+            this.fingerprint = fingerprint;
+            this.providers = providers;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ti.gateway.kubernetes.upstream;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.ApplicationListener;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+
+/**
+ * Routing filter that sends requests of routes with their own upstream pool through that pool.
+ *
+ * The client of a route is resolved once per {@link Route} instance and cached by route id; a rebuilt route is
+ * a new instance and is resolved again, as is a route whose pool was replaced. The clients of routes that no
+ * longer exist are dropped once a route refresh completes. Routes without pool metadata use the global client.
+ */
+class PooledNettyRoutingFilter extends NettyRoutingFilter implements ApplicationListener<RefreshRoutesResultEvent> {
+    private final UpstreamPoolRegistry registry;
+    private final Map<String, RouteClient> routeClients = new ConcurrentHashMap<>();
+
+    PooledNettyRoutingFilter(HttpClient httpClient, ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider, HttpClientProperties properties, UpstreamPoolRegistry registry) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.registry = registry;
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        RouteClient cached = this.routeClients.get(route.getId());
+        if (cached == null || cached.route != route || cached.pool != null && cached.pool.isDisposed()) {
+            cached = new RouteClient(route, this.registry.poolFor(route));
+            this.routeClients.put(route.getId(), cached);
+        }
+
+        return cached.client != null ? cached.client : super.getHttpClient(route, exchange);
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
+    }
+
+    void retainRoutes(Set<String> routeIds) {
+        this.routeClients.keySet().retainAll(routeIds);
+    }
+
+    boolean hasClient(String routeId) {
+        return this.routeClients.containsKey(routeId);
+    }
+
+    private static final class RouteClient {
+        private final Route route;
+        private final UpstreamPoolRegistry.Pool pool;
+        private final HttpClient client;
+
+        private RouteClient(Route route, UpstreamPoolRegistry.Pool pool) {
+            this.route = route;
+            this.pool = pool;
+            Object connectTimeout = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+            if (pool == null || connectTimeout == null) {
+                this.client = pool != null ? pool.getClient() : null;
+            } else {
+                this.client = pool.getClient().option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout instanceof Number ? ((Number) connectTimeout).intValue() : Integer.parseInt(connectTimeout.toString()));
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ti.gateway.kubernetes.upstream;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+
+/**
+ * Upstream pool configuration
+ *
+ * Replaces the gateway routing filter with one that honours the per-route pool metadata.
+ */
+@Configuration
+public class UpstreamPoolConfiguration {
+
+    @Bean
+    static BeanPostProcessor pooledNettyRoutingFilterPostProcessor(ObjectProvider<HttpClient> httpClient, ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                                                                   ObjectProvider<HttpClientProperties> properties, ObjectProvider<UpstreamPoolRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean.getClass() == NettyRoutingFilter.class) {
+                    return new PooledNettyRoutingFilter(httpClient.getObject(), headersFilters, properties.getObject(), registry.getObject());
+                }
+
+                return bean;
+            }
+        };
+    }
+}
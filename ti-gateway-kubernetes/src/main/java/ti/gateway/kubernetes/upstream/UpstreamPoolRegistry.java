@@ -0,0 +1,319 @@
+package ti.gateway.kubernetes.upstream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.route.CachingRouteLocator;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Upstream connection pools configured through route metadata and shared by name.
+ *
+ * A route opts in with any of the {@code pool-*} or {@code protocol} metadata keys. Routes to the same service
+ * share a pool unless they name one with {@code pool-name}. A pool is only rebuilt when the route that configured
+ * it changes its settings or no longer exists after a route refresh; a route that uses the same name with different
+ * settings gets the existing pool and a warning. Clients are built like the global one, so proxy, SSL and
+ * {@link HttpClientCustomizer}s apply, and every pool exports the Reactor Netty
+ * {@code reactor.netty.connection.provider.*} metrics tagged with its name.
+ */
+@Component
+class UpstreamPoolRegistry implements DisposableBean, ApplicationListener<RefreshRoutesResultEvent> {
+    static final String POOL_NAME_METADATA = "pool-name";
+    static final String MAX_CONNECTIONS_METADATA = "pool-max-connections";
+    static final String MAX_PENDING_ACQUIRES_METADATA = "pool-max-pending-acquires";
+    static final String PENDING_ACQUIRE_TIMEOUT_METADATA = "pool-pending-acquire-timeout";
+    static final String MAX_IDLE_TIME_METADATA = "pool-max-idle-time";
+    static final String PROTOCOL_METADATA = "protocol";
+    private static final Logger LOG = LoggerFactory.getLogger(UpstreamPoolRegistry.class);
+    private final HttpClientProperties properties;
+    private final List<HttpClientCustomizer> customizers;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    @Autowired
+    UpstreamPoolRegistry(HttpClientProperties properties, ObjectProvider<HttpClientCustomizer> customizers) {
+        this(properties, customizers.orderedStream().collect(Collectors.toList()));
+    }
+
+    UpstreamPoolRegistry(HttpClientProperties properties, List<HttpClientCustomizer> customizers) {
+        this.properties = properties;
+        this.customizers = customizers;
+    }
+
+    /**
+     * Returns the pool of a route, or {@code null} if the route does not configure one.
+     */
+    Pool poolFor(Route route) {
+        Settings settings = Settings.from(route);
+        return settings != null ? this.configure(settings.name, route.getId(), settings) : null;
+    }
+
+    /**
+     * Returns the pool with the given name, building it if it does not exist or if its owning route changed
+     * the settings.
+     */
+    synchronized Pool configure(String name, String routeId, Settings settings) {
+        Pool existing = this.pools.get(name);
+        if (existing != null) {
+            if (existing.settings.equals(settings)) {
+                return existing;
+            }
+
+            if (!Objects.equals(existing.routeId, routeId)) {
+                LOG.warn("Upstream pool '{}' of route '{}' is already configured by route '{}' with different settings, ignoring them", name, routeId, existing.routeId);
+                return existing;
+            }
+        }
+
+        Pool created = this.build(routeId, settings);
+        this.pools.put(name, created);
+        if (existing != null) {
+            existing.dispose();
+        }
+
+        return created;
+    }
+
+    Pool get(String name) {
+        return this.pools.get(name);
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (!event.isSuccess() || !(event.getSource() instanceof CachingRouteLocator)) {
+            return;
+        }
+
+        ((CachingRouteLocator) event.getSource()).getRoutes().map(Route::getId).collectList().subscribe((routeIds) -> {
+            this.retainRoutes(Set.copyOf(routeIds));
+        });
+    }
+
+    /**
+     * Disposes the pools whose owning route no longer exists. Other routes using them are given a new pool on their
+     * next request.
+     */
+    synchronized void retainRoutes(Set<String> routeIds) {
+        this.pools.values().removeIf((pool) -> {
+            if (routeIds.contains(pool.routeId)) {
+                return false;
+            }
+
+            pool.dispose();
+            return true;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        for (Pool pool : this.pools.values()) {
+            pool.dispose();
+        }
+
+        this.pools.clear();
+    }
+
+    private Pool build(String routeId, Settings settings) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(settings.name).metrics(true);
+        if (settings.maxConnections != null) {
+            builder.maxConnections(settings.maxConnections);
+        }
+
+        if (settings.maxPendingAcquires != null) {
+            builder.pendingAcquireMaxCount(settings.maxPendingAcquires);
+        }
+
+        if (settings.pendingAcquireTimeout != null) {
+            builder.pendingAcquireTimeout(settings.pendingAcquireTimeout);
+        }
+
+        if (settings.maxIdleTime != null) {
+            builder.maxIdleTime(settings.maxIdleTime);
+        }
+
+        ConnectionProvider provider = builder.build();
+        ServerProperties serverProperties = new ServerProperties();
+        serverProperties.getHttp2().setEnabled(settings.protocol == Protocol.H2);
+        HttpClient client = new PoolHttpClientFactory(this.properties, serverProperties, this.customizers, provider).build();
+        if (settings.protocol == Protocol.H2C) {
+            client = client.protocol(HttpProtocol.H2C);
+        } else if (settings.protocol == Protocol.HTTP11) {
+            client = client.protocol(HttpProtocol.HTTP11);
+        }
+
+        return new Pool(routeId, settings, provider, client);
+    }
+
+    enum Protocol {
+        HTTP11, H2C, H2
+    }
+
+    static final class Pool {
+        private final String routeId;
+        private final Settings settings;
+        private final ConnectionProvider provider;
+        private final HttpClient client;
+        private volatile boolean disposed;
+
+        private Pool(String routeId, Settings settings, ConnectionProvider provider, HttpClient client) {
+            this.routeId = routeId;
+            this.settings = settings;
+            this.provider = provider;
+            this.client = client;
+        }
+
+        ConnectionProvider getProvider() {
+            return this.provider;
+        }
+
+        HttpClient getClient() {
+            return this.client;
+        }
+
+        boolean isDisposed() {
+            return this.disposed;
+        }
+
+        /**
+         * Closes idle connections; connections in use are closed when they are released.
+         */
+        private void dispose() {
+            this.disposed = true;
+            this.provider.disposeLater().subscribe();
+        }
+    }
+
+    /**
+     * Pool settings of a route; unset values fall back to the Reactor Netty defaults.
+     */
+    static final class Settings {
+        private final String name;
+        private final Integer maxConnections;
+        private final Integer maxPendingAcquires;
+        private final Duration pendingAcquireTimeout;
+        private final Duration maxIdleTime;
+        private final Protocol protocol;
+
+        Settings(String name, Integer maxConnections, Integer maxPendingAcquires, Duration pendingAcquireTimeout, Duration maxIdleTime, Protocol protocol) {
+            this.name = name;
+            this.maxConnections = maxConnections;
+            this.maxPendingAcquires = maxPendingAcquires;
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+            this.maxIdleTime = maxIdleTime;
+            this.protocol = protocol;
+        }
+
+        static Settings from(Route route) {
+            Map<String, Object> metadata = route.getMetadata();
+            Object name = metadata.get(POOL_NAME_METADATA);
+            Object maxConnections = metadata.get(MAX_CONNECTIONS_METADATA);
+            Object maxPendingAcquires = metadata.get(MAX_PENDING_ACQUIRES_METADATA);
+            Object pendingAcquireTimeout = metadata.get(PENDING_ACQUIRE_TIMEOUT_METADATA);
+            Object maxIdleTime = metadata.get(MAX_IDLE_TIME_METADATA);
+            Object protocol = metadata.get(PROTOCOL_METADATA);
+            if (name == null && maxConnections == null && maxPendingAcquires == null && pendingAcquireTimeout == null && maxIdleTime == null && protocol == null) {
+                return null;
+            }
+
+            String poolName = name != null ? name.toString() : route.getUri().getAuthority();
+            return new Settings(poolName != null ? poolName : route.getId(), toInteger(maxConnections), toInteger(maxPendingAcquires), toDuration(pendingAcquireTimeout), toDuration(maxIdleTime), toProtocol(protocol));
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        Protocol getProtocol() {
+            return this.protocol;
+        }
+
+        private static Integer toInteger(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            return value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString().trim());
+        }
+
+        private static Duration toDuration(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            return value instanceof Number ? Duration.ofMillis(((Number) value).longValue()) : DurationStyle.detectAndParse(value.toString().trim(), ChronoUnit.MILLIS);
+        }
+
+        private static Protocol toProtocol(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            String protocol = value.toString().trim().replace("/", "").replace(".", "").toUpperCase(Locale.ROOT);
+            return "HTTP2".equals(protocol) ? Protocol.H2 : Protocol.valueOf(protocol);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || this.getClass() != o.getClass()) {
+                return false;
+            }
+
+            Settings settings = (Settings) o;
+            return Objects.equals(this.name, settings.name) && Objects.equals(this.maxConnections, settings.maxConnections) && Objects.equals(this.maxPendingAcquires, settings.maxPendingAcquires) && Objects.equals(this.pendingAcquireTimeout, settings.pendingAcquireTimeout) && Objects.equals(this.maxIdleTime, settings.maxIdleTime) && this.protocol == settings.protocol;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, this.maxConnections, this.maxPendingAcquires, this.pendingAcquireTimeout, this.maxIdleTime, this.protocol);
+        }
+    }
+
+    /**
+     * Builds a client like the global one, on top of a route pool. HTTP/2 over TLS is negotiated when the given
+     * server properties enable HTTP/2.
+     */
+    private static final class PoolHttpClientFactory extends HttpClientFactory {
+        private final ConnectionProvider provider;
+
+        private PoolHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties, List<HttpClientCustomizer> customizers, ConnectionProvider provider) {
+            super(properties, serverProperties, new HttpClientSslConfigurer(properties.getSsl(), serverProperties), customizers);
+            this.provider = provider;
+        }
+
+        private HttpClient build() {
+            return this.createInstance();
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return this.provider;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ti.gateway.kubernetes.accesslog;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link AccessLogWriter}, {@link AccessLogRingBuffer} and {@link AccessLogGlobalFilter}.
+ */
+class AccessLogWriterTest {
+
+    private AccessLogProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AccessLogProperties();
+        properties.setBufferSize(4);
+        properties.setAttributes(List.of("clientIp"));
+    }
+
+    @Test
+    void testRingBufferRejectsWhenFull() {
+        AccessLogRingBuffer buffer = new AccessLogRingBuffer(3);
+        assertEquals(4, buffer.capacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(record("r" + i)));
+        }
+        assertFalse(buffer.offer(record("r4")));
+
+        assertEquals("r0", buffer.poll().routeId);
+        assertTrue(buffer.offer(record("r4")));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals("r" + i, buffer.poll().routeId);
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void testWriterCountsDropsAndWrites() {
+        AccessLogWriter writer = new AccessLogWriter(properties);
+        for (int i = 0; i < 6; i++) {
+            writer.offer(record("r" + i));
+        }
+
+        assertEquals(2, writer.getDropped());
+        assertEquals(4, writer.drain());
+        assertEquals(4, writer.getWritten());
+        assertEquals(0, writer.drain());
+    }
+
+    @Test
+    void testWriterLogsOneEventPerRecord() {
+        properties.setLoggerName("ti.gateway.kubernetes.accesslog.test");
+        Logger logger = (Logger) LoggerFactory.getLogger(properties.getLoggerName());
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            AccessLogWriter writer = new AccessLogWriter(properties);
+            for (int i = 0; i < 3; i++) {
+                writer.offer(record("r" + i));
+            }
+
+            assertEquals(3, writer.drain());
+
+            assertEquals(3, appender.list.size());
+            for (int i = 0; i < 3; i++) {
+                String message = appender.list.get(i).getFormattedMessage();
+                assertTrue(message.contains("\"route\":\"r" + i + "\""), message);
+                assertFalse(message.contains("\n"), message);
+            }
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+
+    @Test
+    void testFormatEscapesValues() {
+        AccessLogWriter writer = new AccessLogWriter(properties);
+        AccessLogRecord record = new AccessLogRecord(0L, "route\"1", "GET", "/a\\b", 200, -1L, 12L, 2_000L, 5_000L, new Object[]{"10.0.0.1"});
+
+        StringBuilder out = new StringBuilder();
+        writer.format(record, out);
+
+        assertEquals("{\"time\":\"1970-01-01T00:00:00Z\",\"route\":\"route\\\"1\",\"method\":\"GET\",\"path\":\"/a\\\\b\",\"status\":200,"
+                + "\"requestBytes\":-1,\"responseBytes\":12,\"upstreamMicros\":2,\"durationMicros\":5,\"clientIp\":\"10.0.0.1\"}", out.toString());
+    }
+
+    @Test
+    void testFilterCapturesExchange() {
+        AccessLogWriter writer = new AccessLogWriter(properties);
+        AccessLogGlobalFilter filter = new AccessLogGlobalFilter(writer);
+        AccessLogUpstreamTimingFilter upstreamTimingFilter = new AccessLogUpstreamTimingFilter();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/test").contentLength(3).body("abc"));
+        Route route = Route.async().id("route1").uri("http://localhost:8080").predicate(ex -> true).build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        exchange.getAttributes().put("clientIp", "10.0.0.1");
+
+        Mono<Void> result = filter.filter(exchange, ex -> upstreamTimingFilter.filter(ex, upstream -> {
+            upstream.getResponse().setStatusCode(HttpStatus.CREATED);
+            return upstream.getResponse().writeWith(Mono.just(upstream.getResponse().bufferFactory().wrap("hello".getBytes(StandardCharsets.UTF_8))));
+        }));
+        StepVerifier.create(result).verifyComplete();
+
+        StringBuilder out = new StringBuilder();
+        AccessLogRecord record = writer.getBuffer().poll();
+        writer.format(record, out);
+        assertEquals("route1", record.routeId);
+        assertEquals(201, record.status);
+        assertEquals(3, record.requestBytes);
+        assertEquals(5, record.responseBytes);
+        assertTrue(record.upstreamNanos >= 0);
+        assertTrue(out.toString().contains("\"clientIp\":\"10.0.0.1\""));
+    }
+
+    private static AccessLogRecord record(String routeId) {
+        return new AccessLogRecord(0L, routeId, "GET", "/", 200, 0L, 0L, -1L, 0L, new Object[1]);
+    }
+}
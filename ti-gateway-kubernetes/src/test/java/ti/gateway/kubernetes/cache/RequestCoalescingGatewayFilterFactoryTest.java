@@ -0,0 +1,256 @@
+package ti.gateway.kubernetes.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ti.gateway.kubernetes.apikeys.ApiKeyGlobalFilter;
+import ti.gateway.kubernetes.apikeys.ApiKeyValidator;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link RequestCoalescingGatewayFilterFactory}.
+ */
+class RequestCoalescingGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestCoalescingGatewayFilterFactory factory;
+    private RequestCoalescingGlobalFilter coalescing;
+    private AtomicInteger upstreamCalls;
+    private Sinks.Empty<Void> release;
+    private String setCookie;
+    private String cacheControl;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new RequestCoalescingGatewayFilterFactory(meterRegistry);
+        coalescing = new RequestCoalescingGlobalFilter();
+        upstreamCalls = new AtomicInteger();
+        release = Sinks.empty();
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneUpstreamCall() {
+        GatewayFilter filter = factory.apply(config());
+        MockServerWebExchange leader = get("/items");
+        MockServerWebExchange waiter = get("/items");
+
+        Mono<Void> leading = run(filter, leader, upstream()).cache();
+        leading.subscribe();
+        Mono<Void> waiting = run(filter, waiter, upstream()).cache();
+        waiting.subscribe();
+        assertEquals(1, factory.getInFlightCount());
+
+        release.tryEmitEmpty();
+        StepVerifier.create(leading).verifyComplete();
+        StepVerifier.create(waiting).verifyComplete();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0, factory.getInFlightCount());
+        assertEquals(HttpStatus.OK, waiter.getResponse().getStatusCode());
+        assertEquals("body-1", waiter.getResponse().getBodyAsString().block());
+        assertEquals("body-1", leader.getResponse().getBodyAsString().block());
+        assertEquals("v", waiter.getResponse().getHeaders().getFirst("X-Upstream"));
+        assertEquals(6L, waiter.getResponse().getHeaders().getContentLength());
+        assertEquals(1.0, count("leader"));
+        assertEquals(1.0, count("coalesced"));
+    }
+
+    @Test
+    void testKeyIncludesConfiguredHeaders() {
+        RequestCoalescingGatewayFilterFactory.Config config = config();
+        config.setHeaders(List.of("Accept-Language"));
+        GatewayFilter filter = factory.apply(config);
+
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header("Accept-Language", "en")), upstream()).subscribe();
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header("Accept-Language", "de")), upstream()).subscribe();
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/items?page=2").header("Accept-Language", "en")), upstream()).subscribe();
+        release.tryEmitEmpty();
+
+        assertEquals(3, upstreamCalls.get());
+        assertEquals(3.0, count("leader"));
+    }
+
+    @Test
+    void testResponseSettingCookiesIsNotShared() {
+        setCookie = "session=1";
+        GatewayFilter filter = factory.apply(config());
+        MockServerWebExchange waiter = get("/items");
+
+        run(filter, get("/items"), upstream()).subscribe();
+        Mono<Void> waiting = run(filter, waiter, upstream()).cache();
+        waiting.subscribe();
+        release.tryEmitEmpty();
+        StepVerifier.create(waiting).verifyComplete();
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals("body-2", waiter.getResponse().getBodyAsString().block());
+        assertEquals(1.0, count("fallback"));
+    }
+
+    @Test
+    void testPrivateResponseIsNotShared() {
+        cacheControl = "private, max-age=60";
+        GatewayFilter filter = factory.apply(config());
+        MockServerWebExchange waiter = get("/items");
+
+        run(filter, get("/items"), upstream()).subscribe();
+        Mono<Void> waiting = run(filter, waiter, upstream()).cache();
+        waiting.subscribe();
+        release.tryEmitEmpty();
+        StepVerifier.create(waiting).verifyComplete();
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals("body-2", waiter.getResponse().getBodyAsString().block());
+        assertEquals(1.0, count("fallback"));
+    }
+
+    @Test
+    void testRequestsWithCredentialsAreNotCoalesced() {
+        GatewayFilter filter = factory.apply(config());
+
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header(HttpHeaders.AUTHORIZATION, "Bearer a")), upstream()).subscribe();
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header(HttpHeaders.COOKIE, "session=1")), upstream()).subscribe();
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header("X-Api-Key", "k1")), upstream()).subscribe();
+        assertEquals(0, factory.getInFlightCount());
+
+        RequestCoalescingGatewayFilterFactory.Config config = config();
+        config.setHeaders(List.of("X-Api-Key"));
+        GatewayFilter keyed = factory.apply(config);
+        run(keyed, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header("X-Api-Key", "k1")), upstream()).subscribe();
+        run(keyed, MockServerWebExchange.from(MockServerHttpRequest.get("/items").header("X-Api-Key", "k1")), upstream()).subscribe();
+        release.tryEmitEmpty();
+
+        assertEquals(4, upstreamCalls.get());
+        assertEquals(1.0, count("coalesced"));
+    }
+
+    @Test
+    void testWaiterIsAuthenticatedBeforeCoalescing() {
+        GatewayFilter filter = factory.apply(config());
+        ApiKeyValidator apiKeyValidator = mock(ApiKeyValidator.class);
+        when(apiKeyValidator.keyIsValid(any())).thenReturn(Mono.just(false));
+        ApiKeyGlobalFilter apiKeyFilter = new ApiKeyGlobalFilter(apiKeyValidator);
+        MockServerWebExchange waiter = get("/items");
+
+        run(filter, get("/items"), upstream()).subscribe();
+        StepVerifier.create(filter.filter(waiter, (exchange) -> {
+            return apiKeyFilter.filter(exchange, (authenticated) -> {
+                return coalescing.filter(authenticated, upstream());
+            });
+        })).verifyComplete();
+        release.tryEmitEmpty();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, waiter.getResponse().getStatusCode());
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0.0, count("coalesced"));
+    }
+
+    @Test
+    void testWaitersBeyondLimitAreProxied() {
+        RequestCoalescingGatewayFilterFactory.Config config = config();
+        config.setMaxWaiters(1);
+        GatewayFilter filter = factory.apply(config);
+
+        run(filter, get("/items"), upstream()).subscribe();
+        run(filter, get("/items"), upstream()).subscribe();
+        run(filter, get("/items"), upstream()).subscribe();
+        assertEquals(2, upstreamCalls.get());
+
+        release.tryEmitEmpty();
+        assertEquals(1.0, count("leader"));
+        assertEquals(1.0, count("coalesced"));
+        assertEquals(1.0, count("bypassed"));
+    }
+
+    @Test
+    void testWaiterFallsBackAfterTimeout() {
+        RequestCoalescingGatewayFilterFactory.Config config = config();
+        config.setTimeout(Duration.ofMillis(20));
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange waiter = get("/items");
+
+        run(filter, get("/items"), upstream()).subscribe();
+        StepVerifier.create(run(filter, waiter, (exchange) -> {
+            upstreamCalls.incrementAndGet();
+            return exchange.getResponse().setComplete();
+        })).verifyComplete();
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(1.0, count("fallback"));
+    }
+
+    @Test
+    void testOtherMethodsAreNotCoalesced() {
+        GatewayFilter filter = factory.apply(config());
+
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.post("/items")), upstream()).subscribe();
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.post("/items")), upstream()).subscribe();
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(0, factory.getInFlightCount());
+    }
+
+    private RequestCoalescingGatewayFilterFactory.Config config() {
+        RequestCoalescingGatewayFilterFactory.Config config = new RequestCoalescingGatewayFilterFactory.Config();
+        config.setRouteId("route1");
+        return config;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get(RequestCoalescingGatewayFilterFactory.REQUESTS_METRIC).tag("routeId", "route1").tag("result", result).counter().count();
+    }
+
+    /**
+     * Runs the route filter and, once it passes the exchange on, the coalescing before the given chain.
+     */
+    private Mono<Void> run(GatewayFilter filter, ServerWebExchange exchange, GatewayFilterChain chain) {
+        return filter.filter(exchange, (decorated) -> {
+            return coalescing.filter(decorated, chain);
+        });
+    }
+
+    private GatewayFilterChain upstream() {
+        return (exchange) -> {
+            int call = upstreamCalls.incrementAndGet();
+            return release.asMono().then(Mono.defer(() -> {
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                exchange.getResponse().getHeaders().add("X-Upstream", "v");
+                if (cacheControl != null) {
+                    exchange.getResponse().getHeaders().setCacheControl(cacheControl);
+                }
+
+                if (setCookie != null) {
+                    exchange.getResponse().getHeaders().add(HttpHeaders.SET_COOKIE, setCookie);
+                }
+
+                byte[] body = ("body-" + call).getBytes(StandardCharsets.UTF_8);
+                return exchange.getResponse().writeWith(Mono.just(DefaultDataBufferFactory.sharedInstance.wrap(body)));
+            }));
+        };
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}
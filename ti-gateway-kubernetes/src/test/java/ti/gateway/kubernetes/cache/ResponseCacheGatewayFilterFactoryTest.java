@@ -0,0 +1,294 @@
+package ti.gateway.kubernetes.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ti.gateway.kubernetes.apikeys.ApiKeyGlobalFilter;
+import ti.gateway.kubernetes.apikeys.ApiKeyValidator;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ResponseCacheGatewayFilterFactory}.
+ */
+class ResponseCacheGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ResponseCacheStore store;
+    private ResponseCacheGatewayFilterFactory factory;
+    private ResponseCacheGlobalFilter lookup;
+    private AtomicInteger upstreamCalls;
+    private List<HttpHeaders> upstreamRequests;
+    private String upstreamBody;
+    private String upstreamCacheControl;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new ResponseCacheStore(new ResponseCacheProperties());
+        factory = new ResponseCacheGatewayFilterFactory(store, meterRegistry);
+        lookup = new ResponseCacheGlobalFilter();
+        upstreamCalls = new AtomicInteger();
+        upstreamRequests = new ArrayList<>();
+        upstreamBody = "v1";
+        upstreamCacheControl = "max-age=60";
+    }
+
+    @Test
+    void testSecondRequestIsServedFromCache() {
+        GatewayFilter filter = factory.apply(config(Duration.ZERO, Duration.ZERO));
+
+        MockServerWebExchange first = get("/items?page=1");
+        StepVerifier.create(run(filter, first, upstream())).verifyComplete();
+        MockServerWebExchange second = get("/items?page=1");
+        StepVerifier.create(run(filter, second, upstream())).verifyComplete();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals("v1", first.getResponse().getBodyAsString().block());
+        assertEquals("v1", second.getResponse().getBodyAsString().block());
+        assertEquals(HttpStatus.OK, second.getResponse().getStatusCode());
+        assertEquals("0", second.getResponse().getHeaders().getFirst(HttpHeaders.AGE));
+        assertEquals(2L, second.getResponse().getHeaders().getContentLength());
+        assertEquals(1.0, meterRegistry.get(ResponseCacheGatewayFilterFactory.REQUESTS_METRIC).tag("routeId", "route1").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get(ResponseCacheGatewayFilterFactory.REQUESTS_METRIC).tag("routeId", "route1").tag("result", "miss").counter().count());
+        assertEquals(2.0, meterRegistry.get(ResponseCacheGatewayFilterFactory.SERVED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testIfNoneMatchIsAnsweredLocally() {
+        GatewayFilter filter = factory.apply(config(Duration.ZERO, Duration.ZERO));
+        MockServerWebExchange first = get("/items");
+        StepVerifier.create(run(filter, first, upstream())).verifyComplete();
+        String etag = first.getResponse().getHeaders().getETag();
+        assertNull(etag);
+
+        MockServerWebExchange second = get("/items");
+        StepVerifier.create(run(filter, second, upstream())).verifyComplete();
+        etag = second.getResponse().getHeaders().getETag();
+        assertNotNull(etag);
+
+        MockServerWebExchange conditional = MockServerWebExchange.from(MockServerHttpRequest.get("/items").header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag));
+        StepVerifier.create(run(filter, conditional, upstream())).verifyComplete();
+
+        assertEquals(HttpStatus.NOT_MODIFIED, conditional.getResponse().getStatusCode());
+        assertEquals(etag, conditional.getResponse().getHeaders().getETag());
+        assertEquals("max-age=60", conditional.getResponse().getHeaders().getCacheControl());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void testUncacheableResponsesAreNotStored() {
+        GatewayFilter filter = factory.apply(config(Duration.ofMinutes(1L), Duration.ZERO));
+
+        upstreamCacheControl = "no-store";
+        StepVerifier.create(run(filter, get("/a"), upstream())).verifyComplete();
+        StepVerifier.create(run(filter, get("/a"), upstream())).verifyComplete();
+        upstreamCacheControl = "private, max-age=60";
+        StepVerifier.create(run(filter, get("/b"), upstream())).verifyComplete();
+        StepVerifier.create(run(filter, get("/b"), upstream())).verifyComplete();
+        upstreamCacheControl = null;
+        MockServerWebExchange post = MockServerWebExchange.from(MockServerHttpRequest.post("/c"));
+        StepVerifier.create(run(filter, post, upstream())).verifyComplete();
+        StepVerifier.create(run(filter, MockServerWebExchange.from(MockServerHttpRequest.post("/c")), upstream())).verifyComplete();
+
+        assertEquals(6, upstreamCalls.get());
+    }
+
+    @Test
+    void testVaryHeadersSelectEntry() {
+        GatewayFilter filter = factory.apply(config(Duration.ZERO, Duration.ZERO));
+        GatewayFilterChain chain = (exchange) -> {
+            upstreamCalls.incrementAndGet();
+            String language = exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_LANGUAGE);
+            exchange.getResponse().getHeaders().setVary(List.of(HttpHeaders.ACCEPT_LANGUAGE));
+            return write(exchange, "max-age=60", language);
+        };
+
+        for (String language : new String[]{"en", "de", "en", "de"}) {
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/greeting").header(HttpHeaders.ACCEPT_LANGUAGE, language));
+            StepVerifier.create(run(filter, exchange, chain)).verifyComplete();
+            assertEquals(language, exchange.getResponse().getBodyAsString().block());
+        }
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void testStaleEntryIsServedWhileRevalidating() throws InterruptedException {
+        GatewayFilter filter = factory.apply(config(Duration.ofMillis(50L), Duration.ofMinutes(1L)));
+        upstreamCacheControl = null;
+        StepVerifier.create(run(filter, get("/items"), upstream())).verifyComplete();
+        Thread.sleep(100L);
+
+        upstreamBody = "v2";
+        MockServerWebExchange stale = get("/items");
+        StepVerifier.create(run(filter, stale, upstream())).verifyComplete();
+        MockServerWebExchange refreshed = get("/items");
+        StepVerifier.create(run(filter, refreshed, upstream())).verifyComplete();
+
+        assertEquals("v1", stale.getResponse().getBodyAsString().block());
+        assertEquals("v2", refreshed.getResponse().getBodyAsString().block());
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(1.0, meterRegistry.get(ResponseCacheGatewayFilterFactory.REQUESTS_METRIC).tag("routeId", "route1").tag("result", "stale").counter().count());
+    }
+
+    @Test
+    void testRevalidationSendsUpstreamEtag() throws InterruptedException {
+        GatewayFilter filter = factory.apply(config(Duration.ofMillis(50L), Duration.ofMinutes(1L)));
+        GatewayFilterChain chain = (exchange) -> {
+            upstreamCalls.incrementAndGet();
+            upstreamRequests.add(exchange.getRequest().getHeaders());
+            if (exchange.getRequest().getHeaders().getIfNoneMatch().contains("\"abc\"")) {
+                exchange.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+                return exchange.getResponse().setComplete();
+            }
+
+            exchange.getResponse().getHeaders().setETag("\"abc\"");
+            return write(exchange, null, "v1");
+        };
+        StepVerifier.create(run(filter, get("/items"), chain)).verifyComplete();
+        Thread.sleep(100L);
+
+        StepVerifier.create(run(filter, get("/items"), chain)).verifyComplete();
+        MockServerWebExchange fresh = get("/items");
+        StepVerifier.create(run(filter, fresh, chain)).verifyComplete();
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(List.of("\"abc\""), upstreamRequests.get(1).getIfNoneMatch());
+        assertEquals("v1", fresh.getResponse().getBodyAsString().block());
+        assertEquals(1.0, meterRegistry.get(ResponseCacheGatewayFilterFactory.REQUESTS_METRIC).tag("routeId", "route1").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void testCacheHitRequiresApiKey() {
+        GatewayFilter filter = factory.apply(config(Duration.ZERO, Duration.ZERO));
+        ApiKeyValidator apiKeyValidator = mock(ApiKeyValidator.class);
+        when(apiKeyValidator.keyIsValid(any())).thenAnswer((invocation) -> {
+            return Mono.just("good".equals(invocation.getArgument(0)));
+        });
+        ApiKeyGlobalFilter apiKeyFilter = new ApiKeyGlobalFilter(apiKeyValidator);
+        MockServerWebExchange cached = get("/items");
+        String key = ResponseCacheGatewayFilterFactory.key(ResponseCacheGatewayFilterFactory.resourceKey("route1", cached.getRequest()), null, cached.getRequest());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+        store.put(key, CachedResponse.of(HttpStatus.OK, headers, "secret".getBytes(StandardCharsets.UTF_8), 6, System.nanoTime(), Duration.ofMinutes(1L).toNanos(), 0L));
+
+        MockServerWebExchange anonymous = get("/items");
+        StepVerifier.create(filter.filter(anonymous, (exchange) -> {
+            return apiKeyFilter.filter(exchange, (authenticated) -> {
+                return lookup.filter(authenticated, upstream());
+            });
+        })).verifyComplete();
+        MockServerWebExchange authenticated = MockServerWebExchange.from(MockServerHttpRequest.get("/items").header("X-Api-Key", "good"));
+        StepVerifier.create(filter.filter(authenticated, (exchange) -> {
+            return apiKeyFilter.filter(exchange, (checked) -> {
+                return lookup.filter(checked, upstream());
+            });
+        })).verifyComplete();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, anonymous.getResponse().getStatusCode());
+        assertEquals("", anonymous.getResponse().getBodyAsString().defaultIfEmpty("").block());
+        assertEquals("v1", authenticated.getResponse().getBodyAsString().block());
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0.0, meterRegistry.get(ResponseCacheGatewayFilterFactory.REQUESTS_METRIC).tag("routeId", "route1").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void testCredentialsAreCachedOnlyWhenResponseVariesByThem() {
+        GatewayFilter filter = factory.apply(config(Duration.ZERO, Duration.ZERO));
+        GatewayFilterChain chain = (exchange) -> {
+            upstreamCalls.incrementAndGet();
+            if (exchange.getRequest().getHeaders().containsKey("X-Api-Key")) {
+                exchange.getResponse().getHeaders().setVary(List.of("X-Api-Key"));
+            }
+
+            return write(exchange, "max-age=60", "v1");
+        };
+
+        for (int i = 0; i < 2; ++i) {
+            StepVerifier.create(run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/a").header(HttpHeaders.COOKIE, "session=1")), chain)).verifyComplete();
+        }
+
+        assertEquals(2, upstreamCalls.get());
+
+        for (String apiKey : new String[]{"k1", "k2", "k1", "k2"}) {
+            StepVerifier.create(run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/b").header("X-Api-Key", apiKey)), chain)).verifyComplete();
+        }
+
+        assertEquals(4, upstreamCalls.get());
+        StepVerifier.create(run(filter, get("/b"), chain)).verifyComplete();
+        assertEquals(5, upstreamCalls.get());
+    }
+
+    @Test
+    void testCacheControlDirectives() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CACHE_CONTROL, "public, max-age=60, s-maxage=\"120\"");
+        headers.add(HttpHeaders.CACHE_CONTROL, "stale-while-revalidate=30");
+
+        CacheControlDirectives directives = CacheControlDirectives.parse(headers);
+
+        assertEquals(120L, directives.getFreshness());
+        assertEquals(60L, directives.getMaxAge());
+        assertEquals(30L, directives.getStaleWhileRevalidate());
+        assertFalse(directives.isNoStore());
+        assertSame(CacheControlDirectives.NONE, CacheControlDirectives.parse(new HttpHeaders()));
+    }
+
+    /**
+     * Runs the route filter and, once it passes the exchange on, the cache lookup before the given chain.
+     */
+    private Mono<Void> run(GatewayFilter filter, ServerWebExchange exchange, GatewayFilterChain chain) {
+        return filter.filter(exchange, (decorated) -> {
+            return lookup.filter(decorated, chain);
+        });
+    }
+
+    private GatewayFilterChain upstream() {
+        return (exchange) -> {
+            upstreamCalls.incrementAndGet();
+            upstreamRequests.add(exchange.getRequest().getHeaders());
+            return write(exchange, upstreamCacheControl, upstreamBody);
+        };
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, String cacheControl, String body) {
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        if (cacheControl != null) {
+            exchange.getResponse().getHeaders().setCacheControl(cacheControl);
+        }
+
+        return exchange.getResponse().writeWith(Mono.just(DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static MockServerWebExchange get(String uri) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(uri));
+    }
+
+    private static ResponseCacheGatewayFilterFactory.Config config(Duration timeToLive, Duration staleWhileRevalidate) {
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setRouteId("route1");
+        config.setTimeToLive(timeToLive);
+        config.setStaleWhileRevalidate(staleWhileRevalidate);
+        return config;
+    }
+}
@@ -1,11 +1,15 @@
 package ti.gateway.kubernetes.circuitbreaker;
 
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.ObjectProvider;
-import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
 import org.springframework.web.reactive.DispatcherHandler;
 
 import java.util.List;
@@ -17,20 +21,23 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class CircuitBreakerGatewayFilterFactoryTest {
 
-    @Mock
-    @SuppressWarnings("rawtypes")
-    private ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory;
-
     @Mock
     private ObjectProvider<DispatcherHandler> dispatcherHandlerProvider;
 
+    private SharedCircuitBreakerRegistry circuitBreakerRegistry;
+
     private CircuitBreakerGatewayFilterFactory factory;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        circuitBreakerRegistry = new SharedCircuitBreakerRegistry(
+                CircuitBreakerRegistry.ofDefaults(),
+                TimeLimiterRegistry.ofDefaults(),
+                new SimpleMeterRegistry()
+        );
         factory = new CircuitBreakerGatewayFilterFactory(
-                reactiveCircuitBreakerFactory,
+                circuitBreakerRegistry,
                 dispatcherHandlerProvider
         );
     }
@@ -49,28 +56,31 @@ class CircuitBreakerGatewayFilterFactoryTest {
     }
 
     @Test
-    void testCustomizer() {
+    void testApplyConfiguresSharedCircuitBreaker() {
         CircuitBreakerGatewayFilterFactory.Resilience4JExtendedConfig config = 
                 new CircuitBreakerGatewayFilterFactory.Resilience4JExtendedConfig();
         config.setName("test-circuit-breaker");
         config.setFailureRateThreshold(50.0f);
         config.setWaitIntervalInOpenState(java.time.Duration.ofSeconds(60));
         
-        var customizer = factory.customizer(config);
+        assertNotNull(factory.apply(config));
         
-        assertNotNull(customizer);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.get("test-circuit-breaker").getCircuitBreaker();
+        assertEquals(50.0f, circuitBreaker.getCircuitBreakerConfig().getFailureRateThreshold());
+        assertEquals(60000L, circuitBreaker.getCircuitBreakerConfig().getWaitIntervalFunctionInOpenState().apply(1));
     }
 
     @Test
-    void testCustomizerWithNullValues() {
+    void testApplyWithNullValuesUsesDefaults() {
         CircuitBreakerGatewayFilterFactory.Resilience4JExtendedConfig config = 
                 new CircuitBreakerGatewayFilterFactory.Resilience4JExtendedConfig();
         config.setName("test-circuit-breaker");
         // Leave failureRateThreshold and waitIntervalInOpenState as null
         
-        var customizer = factory.customizer(config);
+        assertNotNull(factory.apply(config));
         
-        assertNotNull(customizer);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.get("test-circuit-breaker").getCircuitBreaker();
+        assertEquals(CircuitBreakerConfig.ofDefaults().getFailureRateThreshold(), circuitBreaker.getCircuitBreakerConfig().getFailureRateThreshold());
     }
 
     @Test
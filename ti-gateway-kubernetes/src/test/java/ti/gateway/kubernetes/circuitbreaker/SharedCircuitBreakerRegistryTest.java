@@ -0,0 +1,126 @@
+package ti.gateway.kubernetes.circuitbreaker;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SharedCircuitBreakerRegistry}.
+ */
+class SharedCircuitBreakerRegistryTest {
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private SharedCircuitBreakerRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .minimumNumberOfCalls(2)
+                .slidingWindowSize(2)
+                .build());
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new SharedCircuitBreakerRegistry(circuitBreakerRegistry, TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(100L)).build()), meterRegistry);
+    }
+
+    @Test
+    void testBreakerIsReusedAcrossRefreshes() {
+        SharedCircuitBreakerRegistry.Settings settings = settings(50.0f);
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker first = registry.configure("backend", "route1", settings);
+        first.getCircuitBreaker().transitionToOpenState();
+
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker second = registry.configure("backend", "route1", settings(50.0f));
+
+        assertSame(first, second);
+        assertEquals(CircuitBreaker.State.OPEN, second.getCircuitBreaker().getState());
+        assertSame(first.getCircuitBreaker(), circuitBreakerRegistry.circuitBreaker("backend"));
+    }
+
+    @Test
+    void testConflictingSettingsOfAnotherRouteAreIgnored() {
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker first = registry.configure("backend", "route1", settings(50.0f));
+
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker other = registry.configure("backend", "route2", settings(10.0f));
+
+        assertSame(first, other);
+        assertEquals(50.0f, other.getCircuitBreaker().getCircuitBreakerConfig().getFailureRateThreshold());
+    }
+
+    @Test
+    void testOwningRouteCanChangeSettings() {
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker first = registry.configure("backend", "route1", settings(50.0f));
+
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker changed = registry.configure("backend", "route1", settings(10.0f));
+
+        assertNotSame(first, changed);
+        assertEquals(10.0f, changed.getCircuitBreaker().getCircuitBreakerConfig().getFailureRateThreshold());
+        assertSame(changed.getCircuitBreaker(), circuitBreakerRegistry.circuitBreaker("backend"));
+        assertSame(changed, registry.get("backend"));
+    }
+
+    @Test
+    void testFailuresOpenBreakerAndRecordTransition() {
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker breaker = registry.configure("backend", "route1", settings(50.0f));
+
+        for (int i = 0; i < 2; ++i) {
+            StepVerifier.create(breaker.run(Mono.error(new IllegalStateException("down")), (error) -> Mono.just("fallback")))
+                    .expectNext("fallback")
+                    .verifyComplete();
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getCircuitBreaker().getState());
+        assertEquals(1.0, meterRegistry.get(SharedCircuitBreakerRegistry.TRANSITIONS_METRIC).tag("name", "backend").tag("from", "CLOSED").tag("to", "OPEN").counter().count());
+        assertEquals(100.0f, breaker.getCircuitBreaker().getMetrics().getFailureRate());
+    }
+
+    @Test
+    void testTimeoutIsRecordedAsFailure() {
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker breaker = registry.get("backend");
+
+        StepVerifier.create(breaker.run(Mono.never(), (error) -> Mono.just("timeout")))
+                .expectNext("timeout")
+                .verifyComplete();
+
+        assertEquals(1, breaker.getCircuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void testConfigurationReachesBuiltBreakers() {
+        registry.configure("backend", "route1", settings(50.0f));
+
+        registry.configure("backend", new Resilience4JConfigBuilder("backend")
+                .circuitBreakerConfig(CircuitBreakerConfig.custom().slidingWindowSize(5).build())
+                .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(2L)).build())
+                .build());
+        registry.configureDefault((name) -> {
+            return new Resilience4JConfigBuilder(name)
+                    .circuitBreakerConfig(CircuitBreakerConfig.custom().slidingWindowSize(7).build())
+                    .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(3L)).build())
+                    .build();
+        });
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker configured = registry.get("backend");
+        SharedCircuitBreakerRegistry.NamedCircuitBreaker other = registry.get("other");
+
+        assertEquals(5, configured.getCircuitBreaker().getCircuitBreakerConfig().getSlidingWindowSize());
+        assertEquals(50.0f, configured.getCircuitBreaker().getCircuitBreakerConfig().getFailureRateThreshold());
+        assertEquals(Duration.ofSeconds(2L), registry.getConfiguration("backend").getTimeLimiterConfig().getTimeoutDuration());
+        assertEquals(7, other.getCircuitBreaker().getCircuitBreakerConfig().getSlidingWindowSize());
+        assertEquals(Duration.ofSeconds(3L), registry.getConfiguration("other").getTimeLimiterConfig().getTimeoutDuration());
+    }
+
+    private static SharedCircuitBreakerRegistry.Settings settings(float failureRateThreshold) {
+        return new SharedCircuitBreakerRegistry.Settings(failureRateThreshold, Duration.ofSeconds(60L), null, Duration.ofSeconds(1L));
+    }
+}
@@ -0,0 +1,188 @@
+package ti.gateway.kubernetes.compression;
+
+import com.github.luben.zstd.Zstd;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompressionGatewayFilterFactory}.
+ */
+class CompressionGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CompressionGatewayFilterFactory factory;
+    private CompressionGatewayFilterFactory.Config config;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new CompressionGatewayFilterFactory(meterRegistry);
+        config = new CompressionGatewayFilterFactory.Config();
+        config.setRouteId("route1");
+    }
+
+    @Test
+    void testGzipResponse() throws IOException {
+        String body = json(200);
+        MockServerWebExchange exchange = exchange("gzip, deflate");
+
+        run(exchange, (headers) -> {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setETag("\"v1\"");
+        }, body);
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), headers.getVary());
+        assertEquals("W/\"v1\"", headers.getETag());
+        assertFalse(headers.containsKey(HttpHeaders.CONTENT_LENGTH));
+        byte[] compressed = bytes(exchange);
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(body, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        assertEquals(body.length(), counter("gzip", "in"));
+        assertEquals(compressed.length, counter("gzip", "out"));
+        assertEquals(1L, meterRegistry.get(CompressionGatewayFilterFactory.TIME_METRIC).tag("encoding", "gzip").timer().count());
+    }
+
+    @Test
+    void testZstdIsPreferredOnEqualQuality() {
+        String body = json(5000);
+        MockServerWebExchange exchange = exchange("gzip, zstd");
+
+        run(exchange, (headers) -> {
+            headers.setContentType(MediaType.parseMediaType("application/problem+json"));
+        }, body);
+
+        assertEquals("zstd", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        byte[] compressed = bytes(exchange);
+        assertTrue(compressed.length < body.length() / 4);
+        assertEquals(body, new String(Zstd.decompress(compressed, body.length()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNegotiation() {
+        assertEquals(1.0, CompressionGatewayFilterFactory.quality(List.of("gzip, zstd;q=0.5"), "gzip"));
+        assertEquals(0.5, CompressionGatewayFilterFactory.quality(List.of("gzip, zstd;q=0.5"), "zstd"));
+        assertEquals(0.3, CompressionGatewayFilterFactory.quality(List.of("br", "*;q=0.3"), "gzip"));
+        assertEquals(0.0, CompressionGatewayFilterFactory.quality(null, "gzip"));
+
+        MockServerWebExchange preferred = exchange("zstd;q=0.5, gzip");
+        run(preferred, (headers) -> headers.setContentType(MediaType.TEXT_PLAIN), json(100));
+        assertEquals("gzip", preferred.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        MockServerWebExchange refused = exchange("gzip;q=0, zstd;q=0");
+        run(refused, (headers) -> headers.setContentType(MediaType.TEXT_PLAIN), json(100));
+        assertNull(refused.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void testIneligibleResponsesPassThrough() {
+        String body = json(100);
+        assertPassedThrough((headers) -> {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set(HttpHeaders.CONTENT_ENCODING, "br");
+        }, body);
+        assertPassedThrough((headers) -> {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(10);
+        }, body.substring(0, 10));
+        assertPassedThrough((headers) -> headers.setContentType(MediaType.IMAGE_PNG), body);
+        assertPassedThrough((headers) -> {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setCacheControl("no-transform");
+        }, body);
+    }
+
+    @Test
+    void testStreamedChunksAreFlushed() throws IOException {
+        config.setEncodings(List.of("gzip"));
+        config.setGzipLevel(1);
+        MockServerWebExchange exchange = exchange("gzip");
+        GatewayFilter filter = factory.apply(config);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; ++i) {
+            expected.append(json(i * 300));
+        }
+
+        GatewayFilterChain chain = (ex) -> {
+            ex.getResponse().getHeaders().setContentType(MediaType.TEXT_PLAIN);
+            return ex.getResponse().writeAndFlushWith(Flux.range(0, 20).map((i) -> {
+                return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(json(i * 300).getBytes(StandardCharsets.UTF_8)));
+            }));
+        };
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes(exchange)))) {
+            assertEquals(expected.toString(), new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void assertPassedThrough(Consumer<HttpHeaders> headers, String body) {
+        MockServerWebExchange exchange = exchange("gzip, zstd");
+        run(exchange, headers, body);
+
+        assertNotEquals("gzip", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNotEquals("zstd", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(body, new String(bytes(exchange), StandardCharsets.UTF_8));
+    }
+
+    private void run(MockServerWebExchange exchange, Consumer<HttpHeaders> headers, String body) {
+        GatewayFilterChain chain = (ex) -> {
+            headers.accept(ex.getResponse().getHeaders());
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            int half = bytes.length / 2;
+            return ex.getResponse().writeWith(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(bytes, 0, half)),
+                    DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(bytes, half, bytes.length - half))));
+        };
+        StepVerifier.create(factory.apply(config).filter(exchange, chain)).verifyComplete();
+    }
+
+    private double counter(String encoding, String direction) {
+        return meterRegistry.get(CompressionGatewayFilterFactory.BYTES_METRIC).tag("routeId", "route1").tag("encoding", encoding).tag("direction", direction).counter().count();
+    }
+
+    private static byte[] bytes(MockServerWebExchange exchange) {
+        DataBuffer joined = DataBufferUtils.join(exchange.getResponse().getBody()).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+
+    private static MockServerWebExchange exchange(String acceptEncoding) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/items").header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding));
+    }
+
+    private static String json(int items) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < items; ++i) {
+            json.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"name\":\"item-").append(i % 17).append("\"}");
+        }
+
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,125 @@
+package ti.gateway.kubernetes.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ConcurrencyLimitGatewayFilterFactory} and {@link GradientConcurrencyLimit}.
+ */
+class ConcurrencyLimitGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrencyLimitGatewayFilterFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new ConcurrencyLimitGatewayFilterFactory(meterRegistry);
+    }
+
+    @Test
+    void testRejectsOverLimitWithRetryAfter() {
+        GatewayFilter filter = factory.apply(config("route1", 1));
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+        filter.filter(first, ex -> upstream.asMono()).subscribe();
+        StepVerifier.create(filter.filter(second, ex -> Mono.empty())).verifyComplete();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getResponse().getStatusCode());
+        assertEquals("1", second.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.get(ConcurrencyLimitGatewayFilterFactory.IN_FLIGHT_METRIC).tag("routeId", "route1").gauge().value());
+        assertEquals(1.0, meterRegistry.get(ConcurrencyLimitGatewayFilterFactory.REJECTED_METRIC).tag("routeId", "route1").counter().count());
+
+        upstream.tryEmitEmpty();
+        assertEquals(0, factory.getLimit("route1").getInFlight());
+    }
+
+    @Test
+    void testRemovedRoutesLoseTheirLimitAndMeters() {
+        factory.apply(config("route1", 10));
+        factory.apply(config("route2", 10));
+
+        factory.retainRoutes(Set.of("route2"));
+
+        assertNull(factory.getLimit("route1"));
+        assertNotNull(factory.getLimit("route2"));
+        assertNull(meterRegistry.find(ConcurrencyLimitGatewayFilterFactory.LIMIT_METRIC).tag("routeId", "route1").gauge());
+        assertNull(meterRegistry.find(ConcurrencyLimitGatewayFilterFactory.IN_FLIGHT_METRIC).tag("routeId", "route1").gauge());
+        assertNull(meterRegistry.find(ConcurrencyLimitGatewayFilterFactory.REJECTED_METRIC).tag("routeId", "route1").counter());
+        assertNotNull(meterRegistry.find(ConcurrencyLimitGatewayFilterFactory.LIMIT_METRIC).tag("routeId", "route2").gauge());
+    }
+
+    @Test
+    void testLimitStateSurvivesReapply() {
+        factory.apply(config("route1", 10));
+        GradientConcurrencyLimit limit = factory.getLimit("route1");
+
+        ConcurrencyLimitGatewayFilterFactory.Config changed = config("route1", 10);
+        changed.setMaxLimit(5);
+        factory.apply(changed);
+
+        assertSame(limit, factory.getLimit("route1"));
+        assertEquals(5, limit.getLimit());
+        assertEquals(5.0, meterRegistry.get(ConcurrencyLimitGatewayFilterFactory.LIMIT_METRIC).tag("routeId", "route1").gauge().value());
+    }
+
+    @Test
+    void testLimitGrowsWithStableLatency() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(10, 1, 100, 0.2, 1.5);
+
+        for (int i = 0; i < 100; ++i) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), limit.getLimit(), false);
+        }
+
+        assertTrue(limit.getLimit() > 10);
+    }
+
+    @Test
+    void testLimitShrinksWhenLatencyRises() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(50, 1, 100, 0.2, 1.5);
+        for (int i = 0; i < 20; ++i) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+        }
+
+        for (int i = 0; i < 50; ++i) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(100), limit.getLimit(), false);
+        }
+
+        assertTrue(limit.getLimit() < 50);
+    }
+
+    @Test
+    void testIdleSamplesDoNotGrowLimitAndDropsBackOff() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 1, 100, 0.2, 1.5);
+        for (int i = 0; i < 100; ++i) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 1, false);
+        }
+        assertEquals(20, limit.getLimit());
+
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 20, true);
+        assertEquals(18, limit.getLimit());
+    }
+
+    private static ConcurrencyLimitGatewayFilterFactory.Config config(String routeId, int initialLimit) {
+        ConcurrencyLimitGatewayFilterFactory.Config config = new ConcurrencyLimitGatewayFilterFactory.Config();
+        config.setRouteId(routeId);
+        config.setInitialLimit(initialLimit);
+        return config;
+    }
+}
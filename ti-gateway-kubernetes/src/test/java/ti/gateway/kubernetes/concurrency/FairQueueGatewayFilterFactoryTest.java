@@ -0,0 +1,222 @@
+package ti.gateway.kubernetes.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link FairQueueGatewayFilterFactory} and {@link FairQueue}.
+ */
+class FairQueueGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FairQueueGatewayFilterFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new FairQueueGatewayFilterFactory(meterRegistry);
+    }
+
+    @Test
+    void testTenantsShareSlotsByWeight() {
+        FairQueue queue = new FairQueue(1, 1, 10, 100);
+        List<String> admitted = new ArrayList<>();
+        queue.acquire(0, "holder", 1).subscribe();
+        for (int i = 0; i < 4; ++i) {
+            queue.acquire(0, "a", 2).subscribe(null, null, () -> admitted.add("a"));
+            queue.acquire(0, "b", 1).subscribe(null, null, () -> admitted.add("b"));
+        }
+
+        for (int i = 0; i < 8; ++i) {
+            queue.release();
+        }
+
+        assertEquals(List.of("a", "a", "b", "a", "a", "b", "b", "b"), admitted);
+        assertEquals(1, queue.getInFlight());
+        assertEquals(0, queue.getQueued(0));
+    }
+
+    @Test
+    void testHigherPriorityClassIsServedFirst() {
+        FairQueue queue = new FairQueue(2, 1, 10, 100);
+        List<String> admitted = new ArrayList<>();
+        queue.acquire(1, "holder", 1).subscribe();
+        queue.acquire(1, "a", 1).subscribe(null, null, () -> admitted.add("batch"));
+        queue.acquire(0, "a", 1).subscribe(null, null, () -> admitted.add("interactive"));
+
+        queue.release();
+
+        assertEquals(List.of("interactive"), admitted);
+        assertEquals(1, queue.getQueued(1));
+    }
+
+    @Test
+    void testFullTenantQueueAndCancelledWaiters() {
+        FairQueue queue = new FairQueue(1, 1, 1, 100);
+        queue.acquire(0, "holder", 1).subscribe();
+        Disposable waiting = queue.acquire(0, "a", 1).subscribe();
+
+        StepVerifier.create(queue.acquire(0, "a", 1)).verifyError(FairQueue.QueueFullException.class);
+        waiting.dispose();
+        assertEquals(0, queue.getQueued(0));
+
+        queue.release();
+        assertEquals(0, queue.getInFlight());
+    }
+
+    @Test
+    void testQueuedRequestIsShedAfterTimeout() {
+        FairQueueGatewayFilterFactory.Config config = config();
+        config.setQueueTimeout(Duration.ofMillis(50L));
+        GatewayFilter filter = factory.apply(config);
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        filter.filter(exchange("a", null), (exchange) -> upstream.asMono()).subscribe();
+        MockServerWebExchange shed = exchange("b", "batch");
+
+        StepVerifier.create(filter.filter(shed, (exchange) -> Mono.empty())).verifyComplete();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getResponse().getStatusCode());
+        assertEquals("1", shed.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.get(FairQueueGatewayFilterFactory.REJECTED_METRIC).tag("class", "batch").tag("reason", "timeout").counter().count());
+        assertEquals(0, factory.getQueue("orders").getQueued(1));
+        upstream.tryEmitEmpty();
+        assertEquals(0, factory.getQueue("orders").getInFlight());
+    }
+
+    @Test
+    void testNoisyTenantIsRejectedWhenItsQueueIsFull() {
+        FairQueueGatewayFilterFactory.Config config = config();
+        config.setMaxQueuePerTenant(1);
+        GatewayFilter filter = factory.apply(config);
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        filter.filter(exchange("noisy", null), (exchange) -> upstream.asMono()).subscribe();
+        filter.filter(exchange("noisy", null), (exchange) -> Mono.empty()).subscribe();
+        MockServerWebExchange rejected = exchange("noisy", null);
+        MockServerWebExchange other = exchange("quiet", null);
+
+        StepVerifier.create(filter.filter(rejected, (exchange) -> Mono.empty())).verifyComplete();
+        filter.filter(other, (exchange) -> Mono.empty()).subscribe();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertEquals(2, factory.getQueue("orders").getQueued(0));
+        assertEquals(2.0, meterRegistry.get(FairQueueGatewayFilterFactory.DEPTH_METRIC).tag("class", "interactive").gauge().value());
+        upstream.tryEmitEmpty();
+        assertEquals(0, factory.getQueue("orders").getInFlight());
+        assertEquals(3L, meterRegistry.get(FairQueueGatewayFilterFactory.WAIT_METRIC).tag("class", "interactive").timer().count());
+    }
+
+    @Test
+    void testRouteIsRejectedWhenItsQueueIsFull() {
+        FairQueueGatewayFilterFactory.Config config = config();
+        config.setMaxQueued(2);
+        GatewayFilter filter = factory.apply(config);
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        filter.filter(exchange("a", null), (exchange) -> upstream.asMono()).subscribe();
+        filter.filter(exchange("b", null), (exchange) -> Mono.empty()).subscribe();
+        filter.filter(exchange("c", "batch"), (exchange) -> Mono.empty()).subscribe();
+        MockServerWebExchange rejected = exchange("d", null);
+
+        StepVerifier.create(filter.filter(rejected, (exchange) -> Mono.empty())).verifyComplete();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertEquals(2, factory.getQueue("orders").getQueued());
+        assertEquals(1.0, meterRegistry.get(FairQueueGatewayFilterFactory.REJECTED_METRIC).tag("class", "interactive").tag("reason", "route-queue-full").counter().count());
+        upstream.tryEmitEmpty();
+        assertEquals(0, factory.getQueue("orders").getQueued());
+        assertEquals(0, factory.getQueue("orders").getInFlight());
+    }
+
+    @Test
+    void testChangedClassesKeepTheSlotsOfAdmittedRequests() {
+        GatewayFilter filter = factory.apply(config());
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        filter.filter(exchange("a", null), (exchange) -> upstream.asMono()).subscribe();
+        filter.filter(exchange("b", "batch"), (exchange) -> Mono.never()).subscribe();
+
+        FairQueueGatewayFilterFactory.Config changed = config();
+        changed.setClasses(List.of("all"));
+        GatewayFilter refreshed = factory.apply(changed);
+        MockServerWebExchange waiting = exchange("c", null);
+        refreshed.filter(waiting, (exchange) -> Mono.empty()).subscribe();
+
+        FairQueue queue = factory.getQueue("orders");
+        assertEquals(1, queue.getClassCount());
+        assertEquals(1, queue.getInFlight());
+        assertEquals(2, queue.getQueued(0));
+        assertNotNull(meterRegistry.find(FairQueueGatewayFilterFactory.DEPTH_METRIC).tag("class", "all").gauge());
+        assertNull(meterRegistry.find(FairQueueGatewayFilterFactory.DEPTH_METRIC).tag("class", "batch").gauge());
+        assertNull(meterRegistry.find(FairQueueGatewayFilterFactory.WAIT_METRIC).tag("class", "batch").timer());
+
+        upstream.tryEmitEmpty();
+        assertEquals(1, queue.getInFlight());
+        assertEquals(1, queue.getQueued(0));
+    }
+
+    @Test
+    void testRemovedRoutesLoseTheirQueueAndMeters() {
+        factory.apply(config());
+        FairQueueGatewayFilterFactory.Config other = config();
+        other.setRouteId("payments");
+        factory.apply(other);
+
+        factory.retainRoutes(Set.of("payments"));
+
+        assertNull(factory.getQueue("orders"));
+        assertNotNull(factory.getQueue("payments"));
+        assertTrue(meterRegistry.find(FairQueueGatewayFilterFactory.IN_FLIGHT_METRIC).tag("routeId", "orders").meters().isEmpty());
+        assertTrue(meterRegistry.find(FairQueueGatewayFilterFactory.DEPTH_METRIC).tag("routeId", "orders").meters().isEmpty());
+        assertTrue(meterRegistry.find(FairQueueGatewayFilterFactory.REJECTED_METRIC).tag("routeId", "orders").meters().isEmpty());
+        assertTrue(meterRegistry.find(FairQueueGatewayFilterFactory.WAIT_METRIC).tag("routeId", "orders").meters().isEmpty());
+        assertFalse(meterRegistry.find(FairQueueGatewayFilterFactory.DEPTH_METRIC).tag("routeId", "payments").meters().isEmpty());
+    }
+
+    @Test
+    void testTenantKeys() {
+        MockServerHttpRequest request = MockServerHttpRequest.get("/orders?tenant=q")
+                .header(TenantKey.API_KEY_HEADER, "s".repeat(32) + "v".repeat(32))
+                .header("X-App-Id", "app")
+                .build();
+
+        assertEquals("s".repeat(32), TenantKey.parse("api-key").tenant(request));
+        assertEquals("app", TenantKey.parse("header:X-App-Id").tenant(request));
+        assertEquals("q", TenantKey.parse("query:tenant").tenant(request));
+        assertNull(TenantKey.parse("claim:sub").tenant(request));
+        assertThrows(IllegalArgumentException.class, () -> TenantKey.parse("body:tenant"));
+    }
+
+    private static FairQueueGatewayFilterFactory.Config config() {
+        FairQueueGatewayFilterFactory.Config config = new FairQueueGatewayFilterFactory.Config();
+        config.setRouteId("orders");
+        config.setMaxConcurrency(1);
+        config.setTenant("header:X-App-Id");
+        config.setWeights(Map.of("quiet", 2));
+        return config;
+    }
+
+    private static MockServerWebExchange exchange(String tenant, String priorityClass) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/orders").header("X-App-Id", tenant);
+        if (priorityClass != null) {
+            request.header("X-Priority-Class", priorityClass);
+        }
+
+        return MockServerWebExchange.from(request);
+    }
+}
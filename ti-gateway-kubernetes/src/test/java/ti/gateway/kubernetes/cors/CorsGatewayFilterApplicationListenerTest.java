@@ -0,0 +1,136 @@
+package ti.gateway.kubernetes.cors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.cors.CorsConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CorsGatewayFilterApplicationListener} and {@link RouteCorsProcessor}.
+ */
+class CorsGatewayFilterApplicationListenerTest {
+
+    private GlobalCorsProperties globalCorsProperties;
+    private RoutePredicateHandlerMapping handlerMapping;
+    private CorsGatewayFilterApplicationListener listener;
+    private Route corsRoute;
+    private Route plainRoute;
+
+    @BeforeEach
+    void setUp() {
+        CorsGatewayFilterConfig config = new CorsGatewayFilterConfig();
+        config.setCors("[allowedOrigins:https://example.com,allowedMethods:GET;POST,maxAge:600]");
+        corsRoute = Route.async()
+                .id("cors-route")
+                .uri("http://localhost:8080")
+                .predicate(exchange -> exchange.getRequest().getPath().value().startsWith("/cors"))
+                .filter(new OrderedGatewayFilter(new CorsGatewayFilterFactory().apply(config), 1))
+                .build();
+        plainRoute = Route.async()
+                .id("plain-route")
+                .uri("http://localhost:8080")
+                .predicate(exchange -> true)
+                .build();
+
+        globalCorsProperties = new GlobalCorsProperties();
+        handlerMapping = new RoutePredicateHandlerMapping(new FilteringWebHandler(List.of()), () -> Flux.just(corsRoute, plainRoute), globalCorsProperties, new MockEnvironment());
+        listener = new CorsGatewayFilterApplicationListener(handlerMapping);
+    }
+
+    @Test
+    void testIndexIsKeyedByRouteId() {
+        listener.update(List.of(corsRoute, plainRoute));
+
+        assertEquals(1, listener.getRouteCorsProcessor().getRouteConfigurations().size());
+        CorsConfiguration configuration = listener.getRouteCorsProcessor().getRouteConfigurations().get("cors-route");
+        assertEquals(List.of("https://example.com"), configuration.getAllowedOrigins());
+    }
+
+    @Test
+    void testPreflightIsAnsweredByHandlerMapping() {
+        listener.update(List.of(corsRoute, plainRoute));
+        MockServerWebExchange exchange = preflight("http://localhost/cors/a");
+
+        StepVerifier.create(handlerMapping.getHandler(exchange)).expectNextCount(1).verifyComplete();
+
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        assertEquals("cors-route", route.getId());
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertEquals("https://example.com", headers.getAccessControlAllowOrigin());
+        assertEquals(List.of(HttpMethod.GET, HttpMethod.POST), headers.getAccessControlAllowMethods());
+        assertEquals(600L, headers.getAccessControlMaxAge());
+    }
+
+    @Test
+    void testPreflightOfRouteWithoutCorsIsRejected() {
+        listener.update(List.of(corsRoute, plainRoute));
+        MockServerWebExchange exchange = preflight("http://localhost/other");
+
+        StepVerifier.create(handlerMapping.getHandler(exchange)).expectNextCount(1).verifyComplete();
+
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        assertEquals("plain-route", route.getId());
+        assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+        assertNull(exchange.getResponse().getHeaders().getAccessControlAllowOrigin());
+    }
+
+    @Test
+    void testRouteWithoutCorsFallsBackToGlobalConfiguration() {
+        CorsConfiguration global = new CorsConfiguration();
+        global.addAllowedOrigin("https://global.example.com");
+        global.addAllowedMethod("GET");
+        handlerMapping.setCorsConfigurations(Map.of("/**", global));
+        listener.update(List.of(corsRoute, plainRoute));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.options("http://localhost/other")
+                .header(HttpHeaders.ORIGIN, "https://global.example.com")
+                .header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "GET"));
+        StepVerifier.create(handlerMapping.getHandler(exchange)).expectNextCount(1).verifyComplete();
+
+        assertEquals("https://global.example.com", exchange.getResponse().getHeaders().getAccessControlAllowOrigin());
+    }
+
+    @Test
+    void testActualRequestFromDisallowedOriginIsRejectedByRouteFilter() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/cors/a")
+                .header(HttpHeaders.ORIGIN, "https://other.example.com"));
+
+        StepVerifier.create(corsRoute.getFilters().get(0).filter(exchange, ex -> Mono.error(new IllegalStateException())))
+                .verifyComplete();
+
+        assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testIndexIsReplacedOnUpdate() {
+        listener.update(List.of(corsRoute));
+        listener.update(List.of(plainRoute));
+
+        assertTrue(listener.getRouteCorsProcessor().getRouteConfigurations().isEmpty());
+    }
+
+    private static MockServerWebExchange preflight(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.method(HttpMethod.OPTIONS, path)
+                .header(HttpHeaders.ORIGIN, "https://example.com")
+                .header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "POST"));
+    }
+}
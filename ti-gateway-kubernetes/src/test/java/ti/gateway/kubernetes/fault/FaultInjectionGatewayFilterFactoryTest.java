@@ -0,0 +1,180 @@
+package ti.gateway.kubernetes.fault;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link FaultInjectionGatewayFilterFactory} and {@link FaultInjectionGlobalFilter}.
+ */
+class FaultInjectionGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FaultInjectionGatewayFilterFactory factory;
+    private FaultInjectionGlobalFilter globalFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new FaultInjectionGatewayFilterFactory(meterRegistry);
+        globalFilter = new FaultInjectionGlobalFilter();
+    }
+
+    @Test
+    void testFaultsOnlyApplyToRequestsWithTheHeader() {
+        FaultInjectionGatewayFilterFactory.Config config = config();
+        config.setAbortStatus(503);
+        config.setHeader("X-Fault");
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange plain = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+        MockServerWebExchange faulty = MockServerWebExchange.from(MockServerHttpRequest.get("/orders").header("X-Fault", "1"));
+
+        StepVerifier.create(filter.filter(plain, (exchange) -> Mono.empty())).verifyComplete();
+        StepVerifier.create(filter.filter(faulty, (exchange) -> Mono.empty())).verifyComplete();
+
+        assertNull(plain.getAttribute(FaultInjectionGatewayFilterFactory.FAULT_ATTR));
+        FaultInjectionGatewayFilterFactory.Fault fault = faulty.getAttribute(FaultInjectionGatewayFilterFactory.FAULT_ATTR);
+        assertNotNull(fault);
+        assertEquals(503, fault.getAbortStatus());
+        assertEquals(0.0, injected("abort"));
+
+        StepVerifier.create(globalFilter.filter(faulty, (exchange) -> Mono.empty())).verifyComplete();
+
+        assertEquals(1.0, injected("abort"));
+    }
+
+    @Test
+    void testFaultsOfRejectedRequestsAreNotCounted() {
+        FaultInjectionGatewayFilterFactory.Config config = config();
+        config.setDelay(Duration.ofMillis(100L));
+        config.setAbortStatus(503);
+        config.setBandwidth(DataSize.ofBytes(1000L));
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+
+        StepVerifier.create(filter.filter(exchange, (ex) -> {
+            ex.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+            return ex.getResponse().setComplete();
+        })).verifyComplete();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertEquals(0.0, injected("delay"));
+        assertEquals(0.0, injected("abort"));
+        assertEquals(0.0, injected("bandwidth"));
+    }
+
+    @Test
+    void testAbortedRequestIsNotForwarded() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+        exchange.getAttributes().put(FaultInjectionGatewayFilterFactory.FAULT_ATTR, new FaultInjectionGatewayFilterFactory.Fault(null, 503, false));
+        AtomicBoolean forwarded = new AtomicBoolean();
+
+        StepVerifier.create(globalFilter.filter(exchange, (ex) -> Mono.fromRunnable(() -> forwarded.set(true)))).verifyComplete();
+
+        assertFalse(forwarded.get());
+        assertTrue(ServerWebExchangeUtils.isAlreadyRouted(exchange));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testDelayIsScheduledOnATimer() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+        exchange.getAttributes().put(FaultInjectionGatewayFilterFactory.FAULT_ATTR, new FaultInjectionGatewayFilterFactory.Fault(Duration.ofSeconds(2L), null, false));
+        AtomicBoolean forwarded = new AtomicBoolean();
+
+        StepVerifier.withVirtualTime(() -> globalFilter.filter(exchange, (ex) -> Mono.fromRunnable(() -> forwarded.set(true))))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(2L))
+                .verifyComplete();
+
+        assertTrue(forwarded.get());
+    }
+
+    @Test
+    void testDelaysFollowTheDistribution() {
+        FaultInjectionGatewayFilterFactory.Config config = config();
+        config.setDelay(Duration.ofMillis(100L));
+        config.setMaxDelay(Duration.ofMillis(200L));
+        config.setDelayDistribution(FaultInjectionGatewayFilterFactory.DelayDistribution.UNIFORM);
+        GatewayFilter uniform = factory.apply(config);
+        config.setDelayDistribution(FaultInjectionGatewayFilterFactory.DelayDistribution.EXPONENTIAL);
+        GatewayFilter exponential = factory.apply(config);
+
+        for (int i = 0; i < 100; ++i) {
+            Duration uniformDelay = delayOf(uniform);
+            Duration exponentialDelay = delayOf(exponential);
+            assertTrue(uniformDelay.toMillis() >= 100L && uniformDelay.toMillis() <= 200L);
+            assertTrue(exponentialDelay.toMillis() <= 200L);
+        }
+    }
+
+    @Test
+    void testResponseBodyIsPaced() {
+        FaultInjectionGatewayFilterFactory.Config config = config();
+        config.setBandwidth(DataSize.ofBytes(1000L));
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+
+        StepVerifier.withVirtualTime(() -> filter.filter(exchange, (ex) -> globalFilter.filter(ex, (forwarded) -> forwarded.getResponse().writeWith(Flux.just(buffer(1000), buffer(1000))))))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(1999L))
+                .thenAwait(Duration.ofMillis(1L))
+                .verifyComplete();
+
+        StepVerifier.create(exchange.getResponse().getBodyAsString()).expectNextMatches((body) -> body.length() == 2000).verifyComplete();
+        assertEquals(1.0, injected("bandwidth"));
+    }
+
+    @Test
+    void testResetFallsBackToAnAbortWithoutAConnection() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+        exchange.getAttributes().put(FaultInjectionGatewayFilterFactory.FAULT_ATTR, new FaultInjectionGatewayFilterFactory.Fault(null, null, true));
+        AtomicBoolean forwarded = new AtomicBoolean();
+
+        StepVerifier.create(globalFilter.filter(exchange, (ex) -> Mono.fromRunnable(() -> forwarded.set(true)))).verifyComplete();
+
+        assertFalse(forwarded.get());
+        assertTrue(ServerWebExchangeUtils.isAlreadyRouted(exchange));
+        assertEquals(HttpStatus.BAD_GATEWAY, exchange.getResponse().getStatusCode());
+    }
+
+    private double injected(String fault) {
+        return meterRegistry.get(FaultInjectionGatewayFilterFactory.INJECTED_METRIC).tag("fault", fault).counter().count();
+    }
+
+    private static Duration delayOf(GatewayFilter filter) {
+        AtomicReference<FaultInjectionGatewayFilterFactory.Fault> fault = new AtomicReference<>();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/orders")), (exchange) -> {
+            fault.set(exchange.getAttribute(FaultInjectionGatewayFilterFactory.FAULT_ATTR));
+            return Mono.empty();
+        }).block();
+        return fault.get().getDelay();
+    }
+
+    private static DataBuffer buffer(int size) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(new byte[size]);
+    }
+
+    private static FaultInjectionGatewayFilterFactory.Config config() {
+        FaultInjectionGatewayFilterFactory.Config config = new FaultInjectionGatewayFilterFactory.Config();
+        config.setRouteId("orders");
+        return config;
+    }
+}
@@ -53,18 +53,40 @@ class RewriteAllResponseHeadersGatewayFilterFactoryTest {
         responseHeaders.add("X-Custom-Header", "old-value");
         responseHeaders.add("X-Another-Header", "old-value-too");
 
-        Mono<Void> result = filter.filter(exchange, (ex) -> {
-            // Simulate response headers being set
-            return Mono.empty();
-        });
+        Mono<Void> result = filter.filter(exchange, (ex) -> ex.getResponse().setComplete());
 
         StepVerifier.create(result)
                 .verifyComplete();
 
-        // Verify headers were rewritten (the rewrite happens after the chain)
-        // Note: The actual rewriting happens in the then() callback, so we need to verify
-        // that the filter chain completes successfully
-        assertNotNull(exchange.getResponse());
+        // The rewrite happens when the response is committed
+        assertEquals("new-value", responseHeaders.getFirst("X-Custom-Header"));
+        assertEquals("new-value-too", responseHeaders.getFirst("X-Another-Header"));
+    }
+
+    @Test
+    void testApplyWithRegexAndGroupReference() {
+        RewriteResponseHeaderGatewayFilterFactory.Config config = new RewriteResponseHeaderGatewayFilterFactory.Config();
+        config.setRegexp("http://internal:(\\d+)");
+        config.setReplacement("https://public:$\\1");
+
+        ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+        HttpHeaders responseHeaders = exchange.getResponse().getHeaders();
+        responseHeaders.add("Location", "http://internal:8080/a");
+        responseHeaders.add("X-Untouched", "value");
+        List<String> untouched = responseHeaders.get("X-Untouched");
+
+        StepVerifier.create(factory.apply(config).filter(exchange, (ex) -> ex.getResponse().setComplete()))
+                .verifyComplete();
+
+        assertEquals("https://public:8080/a", responseHeaders.getFirst("Location"));
+        assertSame(untouched, responseHeaders.get("X-Untouched"));
+    }
+
+    @Test
+    void testIsLiteral() {
+        assertTrue(RewriteAllResponseHeadersGatewayFilterFactory.isLiteral("internal-host"));
+        assertFalse(RewriteAllResponseHeadersGatewayFilterFactory.isLiteral("internal.host"));
+        assertFalse(RewriteAllResponseHeadersGatewayFilterFactory.isLiteral("a|b"));
     }
 
     @Test
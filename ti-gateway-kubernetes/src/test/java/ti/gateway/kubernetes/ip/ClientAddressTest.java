@@ -0,0 +1,49 @@
+package ti.gateway.kubernetes.ip;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ClientAddress}.
+ */
+class ClientAddressTest {
+
+    @Test
+    void testConnectionAddressWithoutTrustedProxies() {
+        assertEquals("192.168.0.1", ClientAddress.of(exchange("10.1.2.3, 10.4.5.6"), 0));
+    }
+
+    @Test
+    void testForwardedEntryOfTheTrustedHop() {
+        assertEquals("10.4.5.6", ClientAddress.of(exchange("10.1.2.3, 10.4.5.6"), 1));
+        assertEquals("10.1.2.3", ClientAddress.of(exchange("10.1.2.3, 10.4.5.6"), 2));
+    }
+
+    @Test
+    void testFirstForwardedEntryWhenThereAreFewerThanTrustedProxies() {
+        assertEquals("10.1.2.3", ClientAddress.of(exchange("10.1.2.3"), 3));
+    }
+
+    @Test
+    void testForwardedEntriesAreNotResolved() {
+        assertEquals("gateway.invalid", ClientAddress.of(exchange("gateway.invalid"), 1));
+    }
+
+    @Test
+    void testConnectionAddressWithoutForwardedFor() {
+        assertEquals("192.168.0.1", ClientAddress.of(exchange(null), 1));
+    }
+
+    private static MockServerWebExchange exchange(String forwardedFor) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/orders").remoteAddress(new InetSocketAddress("192.168.0.1", 12345));
+        if (forwardedFor != null) {
+            request.header("X-Forwarded-For", forwardedFor);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
@@ -0,0 +1,79 @@
+package ti.gateway.kubernetes.ip;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link IPAllowListGatewayFilterFactory}.
+ */
+class IPAllowListGatewayFilterFactoryTest {
+
+    private final IPAllowListGatewayFilterFactory factory = new IPAllowListGatewayFilterFactory();
+
+    @Test
+    void testAllowsClientsInTheSourceRange() {
+        GatewayFilter filter = factory.apply(config("10.0.0.0/8"));
+
+        assertTrue(forwarded(filter, exchange("10.1.2.3", null)));
+    }
+
+    @Test
+    void testRejectsOtherClients() {
+        GatewayFilter filter = factory.apply(config("10.0.0.0/8"));
+        MockServerWebExchange exchange = exchange("192.168.0.1", null);
+
+        assertFalse(forwarded(filter, exchange));
+        assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testForwardedForIsOnlyTrustedWhenConfigured() {
+        assertFalse(forwarded(factory.apply(config("10.0.0.0/8")), exchange("192.168.0.1", "10.1.2.3")));
+        assertTrue(forwarded(factory.apply(config("1", "10.0.0.0/8")), exchange("192.168.0.1", "10.1.2.3")));
+    }
+
+    @Test
+    void testForwardedHostnamesAreRejectedWithoutLookup() {
+        MockServerWebExchange exchange = exchange("10.1.2.3", "localhost");
+
+        assertFalse(forwarded(factory.apply(config("1", "127.0.0.0/8", "10.0.0.0/8")), exchange));
+        assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testShortcutGathersTheSourceRange() {
+        assertEquals(List.of("sourceRange"), factory.shortcutFieldOrder());
+        assertEquals(IPAllowListGatewayFilterFactory.ShortcutType.GATHER_LIST, factory.shortcutType());
+    }
+
+    private static boolean forwarded(GatewayFilter filter, MockServerWebExchange exchange) {
+        AtomicBoolean forwarded = new AtomicBoolean();
+        StepVerifier.create(filter.filter(exchange, (ex) -> Mono.fromRunnable(() -> forwarded.set(true)))).verifyComplete();
+        return forwarded.get();
+    }
+
+    private static MockServerWebExchange exchange(String remoteAddress, String forwardedFor) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/orders").remoteAddress(new InetSocketAddress(remoteAddress, 12345));
+        if (forwardedFor != null) {
+            request.header("X-Forwarded-For", forwardedFor);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    private static IPAllowListGatewayFilterFactory.Config config(String... sourceRange) {
+        IPAllowListGatewayFilterFactory.Config config = new IPAllowListGatewayFilterFactory.Config();
+        config.setSourceRange(List.of(sourceRange));
+        return config;
+    }
+}
@@ -0,0 +1,77 @@
+package ti.gateway.kubernetes.ip;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link IpRangeMatcher}.
+ */
+class IpRangeMatcherTest {
+
+    @Test
+    void testMatchesAddressesAndIPv4Ranges() {
+        IpRangeMatcher matcher = IpRangeMatcher.of(List.of("192.168.1.1", "10.0.0.0/8", "172.16.0.0/12"));
+
+        assertTrue(matcher.matches("192.168.1.1"));
+        assertFalse(matcher.matches("192.168.1.2"));
+        assertTrue(matcher.matches("10.255.3.4"));
+        assertTrue(matcher.matches("172.31.255.255"));
+        assertFalse(matcher.matches("172.32.0.0"));
+        assertFalse(matcher.matches("11.0.0.1"));
+    }
+
+    @Test
+    void testMatchesIPv6Ranges() {
+        IpRangeMatcher matcher = IpRangeMatcher.of(List.of("2001:db8::/32", "::1"));
+
+        assertTrue(matcher.matches("2001:db8:1234::1"));
+        assertFalse(matcher.matches("2001:db9::1"));
+        assertTrue(matcher.matches("::1"));
+        assertFalse(matcher.matches("10.0.0.1"));
+    }
+
+    @Test
+    void testIPv4MappedAddressesMatchIPv4Ranges() {
+        IpRangeMatcher matcher = IpRangeMatcher.of(List.of("10.0.0.0/8", "::ffff:192.168.0.0/112"));
+
+        assertTrue(matcher.matches("::ffff:10.1.2.3"));
+        assertTrue(matcher.matches("192.168.7.7"));
+        assertFalse(matcher.matches("192.169.0.1"));
+    }
+
+    @Test
+    void testZeroPrefixMatchesItsWholeFamily() {
+        IpRangeMatcher matcher = IpRangeMatcher.of(List.of("0.0.0.0/0"));
+
+        assertTrue(matcher.matches("203.0.113.9"));
+        assertFalse(matcher.matches("2001:db8::1"));
+    }
+
+    @Test
+    void testHostnamesAndInvalidEntries() {
+        assertThrows(IllegalArgumentException.class, () -> IpRangeMatcher.of(List.of("localhost")));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeMatcher.of(List.of("10.0.0.0/33")));
+        assertThrows(IllegalArgumentException.class, () -> IpRangeMatcher.of(List.of("10.0.0.0/x")));
+        IpRangeMatcher matcher = IpRangeMatcher.of(List.of());
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("localhost"));
+        assertFalse(matcher.matches((String) null));
+    }
+
+    @Test
+    void testLargeListsMatchEveryEntry() {
+        List<String> ranges = new ArrayList<>();
+        for (int i = 0; i < 10_000; ++i) {
+            ranges.add("10." + (i >> 8) + "." + (i & 255) + ".0/24");
+        }
+        IpRangeMatcher matcher = IpRangeMatcher.of(ranges);
+
+        assertTrue(matcher.matches("10.0.0.1"));
+        assertTrue(matcher.matches("10.39.15.200"));
+        assertFalse(matcher.matches("10.39.16.1"));
+    }
+}
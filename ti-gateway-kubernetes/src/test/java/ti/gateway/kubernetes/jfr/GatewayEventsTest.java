@@ -0,0 +1,104 @@
+package ti.gateway.kubernetes.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.factory.rewrite.RewriteFunction;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TiGateway JFR events.
+ */
+class GatewayEventsTest {
+
+    private Recording recording;
+    private MockServerWebExchange exchange;
+
+    @BeforeEach
+    void setUp() {
+        recording = new Recording();
+        recording.enable("ti.gateway.RouteMatch").withoutThreshold();
+        recording.enable("ti.gateway.BodyRewrite").withoutThreshold();
+        recording.start();
+
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test/path"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+    }
+
+    @Test
+    void testRouteMatchEvent() throws IOException {
+        Mono<Void> result = new RouteMatchEventWebFilter().filter(exchange, ex -> {
+            ex.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route("route1"));
+            return new RouteMatchEventGlobalFilter().filter(ex, e -> Mono.empty());
+        });
+        StepVerifier.create(result).verifyComplete();
+
+        List<RecordedEvent> events = recordedEvents("ti.gateway.RouteMatch");
+        assertEquals(1, events.size());
+        assertEquals("route1", events.get(0).getString("routeId"));
+        assertEquals("/test/path", events.get(0).getString("path"));
+        assertNull(exchange.getAttribute(RouteMatchEventWebFilter.ROUTE_MATCH_EVENT_ATTR));
+    }
+
+    @Test
+    void testBodyRewriteEvent() throws IOException {
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route("route2"));
+        RewriteFunction<String, String> rewrite = GatewayEvents.bodyRewrite("RewriteResponseBody", (ex, body) -> Mono.just(body.toUpperCase()));
+
+        StepVerifier.create(Mono.from(rewrite.apply(exchange, "body")))
+                .expectNext("BODY")
+                .verifyComplete();
+
+        List<RecordedEvent> events = recordedEvents("ti.gateway.BodyRewrite");
+        assertEquals(1, events.size());
+        assertEquals("route2", events.get(0).getString("routeId"));
+        assertEquals("RewriteResponseBody", events.get(0).getString("filter"));
+        assertEquals(4L, events.get(0).getLong("bodyLength"));
+    }
+
+    @Test
+    void testRouteIdWithoutRoute() {
+        assertNull(GatewayEvents.routeId(exchange));
+    }
+
+    private List<RecordedEvent> recordedEvents(String name) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("gateway-events", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> name.equals(event.getEventType().getName()))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Route route(String id) {
+        return Route.async()
+                .id(id)
+                .uri("http://localhost:8080")
+                .predicate(exchange -> true)
+                .build();
+    }
+}
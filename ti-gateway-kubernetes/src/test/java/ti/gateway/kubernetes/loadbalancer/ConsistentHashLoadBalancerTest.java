@@ -0,0 +1,157 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ConsistentHashLoadBalancer}.
+ */
+class ConsistentHashLoadBalancerTest {
+
+    private ConsistentHashProperties.Service service;
+    private AtomicLong clock;
+
+    @BeforeEach
+    void setUp() {
+        service = new ConsistentHashProperties.Service();
+        service.setKey("header:X-User");
+        clock = new AtomicLong();
+    }
+
+    @Test
+    void testSameKeyGoesToSameInstance() {
+        ConsistentHashLoadBalancer balancer = balancer();
+        List<ServiceInstance> instances = instances(5);
+        Set<String> used = new HashSet<>();
+
+        for (int i = 0; i < 50; ++i) {
+            String key = "user-" + i;
+            String first = balancer.choose(instances, key).getServer().getInstanceId();
+            clock.addAndGet(2_000_000_000L);
+            assertEquals(first, balancer.choose(instances, key).getServer().getInstanceId());
+            clock.addAndGet(2_000_000_000L);
+            used.add(first);
+        }
+
+        assertEquals(5, used.size());
+    }
+
+    @Test
+    void testOnlyKeysOfChangedInstancesMove() {
+        ConsistentHashLoadBalancer balancer = balancer();
+        List<ServiceInstance> before = instances(4);
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            owners.put("user-" + i, balancer.choose(before, "user-" + i).getServer().getInstanceId());
+            clock.addAndGet(2_000_000_000L);
+        }
+
+        List<ServiceInstance> after = instances(5);
+        int moved = 0;
+        for (Map.Entry<String, String> owner : owners.entrySet()) {
+            String now = balancer.choose(after, owner.getKey()).getServer().getInstanceId();
+            clock.addAndGet(2_000_000_000L);
+            if (!now.equals(owner.getValue())) {
+                assertEquals("instance-4", now);
+                ++moved;
+            }
+        }
+
+        assertTrue(moved > 100 && moved < 300, "moved " + moved);
+    }
+
+    @Test
+    void testHotKeySpillsOverWithinBound() {
+        ConsistentHashLoadBalancer balancer = balancer();
+        List<ServiceInstance> instances = instances(4);
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < 100; ++i) {
+            counts.merge(balancer.choose(instances, "hot").getServer().getInstanceId(), 1, Integer::sum);
+        }
+
+        assertTrue(counts.size() > 1);
+        for (int count : counts.values()) {
+            assertTrue(count <= Math.ceil(1.25 * 100 / 4), counts.toString());
+        }
+    }
+
+    @Test
+    void testKeySources() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-User", "alice");
+        headers.setBearerAuth(new PlainJWT(new JWTClaimsSet.Builder().claim("tenant", "acme").build()).serialize());
+        LinkedMultiValueMap<String, String> cookies = new LinkedMultiValueMap<>();
+        cookies.add("session", "s1");
+        RequestData request = new RequestData(HttpMethod.GET, URI.create("http://orders/tenants/t7/items"), headers, cookies, new HashMap<>());
+
+        assertEquals("alice", HashKeySource.parse("header:X-User").key(request));
+        assertEquals("s1", HashKeySource.parse("cookie:session").key(request));
+        assertEquals("acme", HashKeySource.parse("claim:tenant").key(request));
+        assertEquals("t7", HashKeySource.parse("path:1").key(request));
+        assertNull(HashKeySource.parse("path:5").key(request));
+        assertThrows(IllegalArgumentException.class, () -> HashKeySource.parse("query:user"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testChooseUsesSupplierAndRequestKey() {
+        List<ServiceInstance> instances = instances(3);
+        ServiceInstanceListSupplier supplier = mock(ServiceInstanceListSupplier.class);
+        when(supplier.get(any())).thenReturn(Flux.just(instances));
+        ObjectProvider<ServiceInstanceListSupplier> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable(any())).thenReturn(supplier);
+        ConsistentHashLoadBalancer balancer = new ConsistentHashLoadBalancer(provider, "orders", service, clock::get);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-User", "bob");
+        RequestData data = new RequestData(HttpMethod.GET, URI.create("http://orders/items"), headers, new LinkedMultiValueMap<>(), new HashMap<>());
+
+        Response<ServiceInstance> response = balancer.choose(new DefaultRequest<>(new RequestDataContext(data))).block();
+        clock.addAndGet(2_000_000_000L);
+
+        assertNotNull(response);
+        assertEquals(balancer.choose(instances, "bob").getServer(), response.getServer());
+        assertFalse(balancer.choose(new ArrayList<>(), "bob").hasServer());
+    }
+
+    private ConsistentHashLoadBalancer balancer() {
+        return new ConsistentHashLoadBalancer(mock(ObjectProvider.class), "orders", service, clock::get);
+    }
+
+    private static List<ServiceInstance> instances(int count) {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            instances.add(new DefaultServiceInstance("instance-" + i, "orders", "10.0.0." + i, 8080, false));
+        }
+
+        return instances;
+    }
+}
@@ -0,0 +1,144 @@
+package ti.gateway.kubernetes.loadbalancer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link OutlierDetector}.
+ */
+class OutlierDetectorTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private SimpleMeterRegistry meterRegistry;
+    private OutlierDetectionProperties properties;
+    private AtomicLong clock;
+    private OutlierDetector detector;
+    private List<ServiceInstance> instances;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new OutlierDetectionProperties();
+        properties.setMaxEjectionPercent(50);
+        clock = new AtomicLong();
+        detector = new OutlierDetector(properties, meterRegistry, clock::get);
+        instances = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            instances.add(new DefaultServiceInstance("instance-" + i, "orders", "10.0.0." + i, 8080, false));
+        }
+
+        detector.filter("orders", instances);
+    }
+
+    @Test
+    void testConsecutiveErrorsEjectWithBackoff() {
+        ServiceInstance bad = instances.get(0);
+        for (int i = 0; i < 4; ++i) {
+            detector.recordError(bad, 5 * MILLIS);
+        }
+        detector.recordSuccess(bad, 5 * MILLIS);
+        for (int i = 0; i < 4; ++i) {
+            detector.recordError(bad, 5 * MILLIS);
+        }
+        assertFalse(detector.isEjected(bad));
+
+        detector.recordError(bad, 5 * MILLIS);
+        assertTrue(detector.isEjected(bad));
+        assertEquals(instances.subList(1, 4), detector.filter("orders", instances));
+        assertEquals(1.0, meterRegistry.get(OutlierDetector.EJECTIONS_METRIC).tag("serviceId", "orders").tag("reason", "errors").counter().count());
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertFalse(detector.isEjected(bad));
+        assertSame(instances, detector.filter("orders", instances));
+
+        for (int i = 0; i < 5; ++i) {
+            detector.recordError(bad, 5 * MILLIS);
+        }
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertTrue(detector.isEjected(bad));
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertFalse(detector.isEjected(bad));
+    }
+
+    @Test
+    void testConnectFailuresEject() {
+        ServiceInstance bad = instances.get(1);
+        detector.recordConnectFailure(bad);
+        detector.recordConnectFailure(bad);
+        assertFalse(detector.isEjected(bad));
+
+        detector.recordConnectFailure(bad);
+
+        assertTrue(detector.isEjected(bad));
+        assertEquals(1.0, meterRegistry.get(OutlierDetector.EJECTIONS_METRIC).tag("reason", "connect").counter().count());
+        assertTrue(OutlierDetectionGlobalFilter.isConnectFailure(new IOException(new ConnectException("refused"))));
+        assertFalse(OutlierDetectionGlobalFilter.isConnectFailure(new IOException("reset")));
+    }
+
+    @Test
+    void testSlowInstanceIsEjected() {
+        for (int i = 0; i < 100; ++i) {
+            detector.recordSuccess(instances.get(0), 20 * MILLIS);
+            detector.recordSuccess(instances.get(1), 25 * MILLIS);
+            detector.recordSuccess(instances.get(2), 30 * MILLIS);
+            detector.recordSuccess(instances.get(3), 400 * MILLIS);
+        }
+
+        clock.addAndGet(properties.getInterval().toNanos());
+        detector.recordSuccess(instances.get(0), 20 * MILLIS);
+
+        assertTrue(detector.isEjected(instances.get(3)));
+        assertFalse(detector.isEjected(instances.get(0)));
+        assertEquals(1.0, meterRegistry.get(OutlierDetector.EJECTIONS_METRIC).tag("reason", "latency").counter().count());
+    }
+
+    @Test
+    void testEjectionsAreCapped() {
+        properties.setMaxEjectionPercent(10);
+        for (ServiceInstance instance : instances.subList(0, 2)) {
+            for (int i = 0; i < 5; ++i) {
+                detector.recordError(instance, 5 * MILLIS);
+            }
+        }
+
+        assertTrue(detector.isEjected(instances.get(0)));
+        assertFalse(detector.isEjected(instances.get(1)));
+        assertEquals(3, detector.filter("orders", instances).size());
+
+        List<ServiceInstance> single = instances.subList(0, 1);
+        assertSame(single, detector.filter("orders", single));
+    }
+
+    @Test
+    void testSupplierHidesEjectedInstances() {
+        ServiceInstanceListSupplier delegate = mock(ServiceInstanceListSupplier.class);
+        when(delegate.getServiceId()).thenReturn("orders");
+        when(delegate.get()).thenReturn(Flux.just(instances));
+        OutlierEjectingServiceInstanceListSupplier supplier = new OutlierEjectingServiceInstanceListSupplier(delegate, detector);
+        for (int i = 0; i < 3; ++i) {
+            detector.recordConnectFailure(instances.get(2));
+        }
+
+        List<ServiceInstance> available = supplier.get().blockFirst();
+
+        assertEquals(3, available.size());
+        assertFalse(available.contains(instances.get(2)));
+    }
+}
@@ -0,0 +1,149 @@
+package ti.gateway.kubernetes.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.StripPrefixGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link FilterTimingRouteLocator} and {@link TimedGatewayFilter}.
+ */
+class FilterTimingRouteLocatorTest {
+
+    private FilterTimingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ApplicationEventPublisher eventPublisher;
+    private FilterLatencyRegistry registry;
+    private FilterTimingRouteLocator locator;
+    private Route route;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new FilterTimingProperties();
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new FilterLatencyRegistry(properties, meterRegistry, eventPublisher);
+        ObjectProvider<FilterLatencyRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(registry);
+
+        GatewayFilter slowFilter = new OrderedGatewayFilter((exchange, chain) -> Mono.delay(Duration.ofMillis(20)).then(chain.filter(exchange)), 1);
+        route = Route.async()
+                .id("route1")
+                .uri("http://localhost:8080")
+                .predicate(exchange -> true)
+                .filter(slowFilter)
+                .build();
+        RouteLocator delegate = () -> Flux.just(route);
+        locator = new FilterTimingRouteLocator(delegate, provider);
+    }
+
+    @Test
+    void testRoutesAreNotDecoratedWhenDisabled() {
+        StepVerifier.create(locator.getRoutes())
+                .assertNext(located -> assertSame(route, located))
+                .verifyComplete();
+        assertTrue(registry.getRecorders().isEmpty());
+    }
+
+    @Test
+    void testRoutesAreDecoratedWhenEnabled() {
+        registry.setEnabled(true);
+        verify(eventPublisher).publishEvent(any(RefreshRoutesEvent.class));
+
+        Route located = locator.getRoutes().blockFirst();
+
+        assertNotNull(located);
+        assertEquals("route1", located.getId());
+        assertEquals(1, located.getFilters().size());
+        TimedGatewayFilter timed = (TimedGatewayFilter) located.getFilters().get(0);
+        assertEquals(1, timed.getOrder());
+        assertEquals(1, registry.getRecorders().size());
+    }
+
+    @Test
+    void testTimedFilterRecordsOwnTime() {
+        registry.setEnabled(true);
+        Route located = locator.getRoutes().blockFirst();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+        Mono<Void> result = located.getFilters().get(0).filter(exchange, ex -> Mono.delay(Duration.ofMillis(50)).then());
+        StepVerifier.create(result).verifyComplete();
+
+        FilterLatencyRecorder.Snapshot snapshot = registry.getRecorders().iterator().next().snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertTrue(snapshot.getMax() >= 15.0);
+        assertTrue(snapshot.getMax() < 50.0);
+    }
+
+    @Test
+    void testRecorderLimit() {
+        properties.setMaxRecorders(1);
+
+        assertNotNull(registry.recorderFor("route1", "A"));
+        assertNull(registry.recorderFor("route1", "B"));
+        assertNotNull(registry.recorderFor("route1", "A"));
+    }
+
+    @Test
+    void testRemovedRoutesLoseTheirRecordersAndMeters() {
+        properties.setMaxRecorders(2);
+        registry.recorderFor("route1", "A");
+        registry.recorderFor("route2", "A");
+        assertNull(registry.recorderFor("route3", "A"));
+
+        registry.retainRoutes(Set.of("route2", "route3"));
+
+        assertEquals(1, registry.getRecorders().size());
+        assertNull(meterRegistry.find(FilterLatencyRegistry.INVOCATIONS_METRIC_NAME).tag("routeId", "route1").functionCounter());
+        assertTrue(meterRegistry.find(FilterLatencyRegistry.LATENCY_METRIC_NAME).tag("routeId", "route1").gauges().isEmpty());
+        assertNotNull(meterRegistry.find(FilterLatencyRegistry.INVOCATIONS_METRIC_NAME).tag("routeId", "route2").functionCounter());
+        assertNotNull(registry.recorderFor("route3", "A"));
+    }
+
+    @Test
+    void testPercentilesCoverTheWindowOnly() {
+        AtomicLong clock = new AtomicLong();
+        FilterLatencyRecorder recorder = new FilterLatencyRecorder("route1", "A", 2, Duration.ofMinutes(1L), clock::get);
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(500L));
+        assertEquals(500.0, recorder.snapshot().getMax(), 5.0);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(61L));
+        recorder.record(TimeUnit.MILLISECONDS.toNanos(10L));
+        FilterLatencyRecorder.Snapshot snapshot = recorder.snapshot();
+
+        assertEquals(2, snapshot.getCount());
+        assertEquals(10.0, snapshot.getMax(), 0.5);
+        assertEquals(10.0, snapshot.getP99(), 0.5);
+    }
+
+    @Test
+    void testFilterName() {
+        GatewayFilter stripPrefix = new StripPrefixGatewayFilterFactory().apply(config -> config.setParts(1));
+        GatewayFilter lambda = (exchange, chain) -> chain.filter(exchange);
+
+        assertEquals("StripPrefix", FilterTimingRouteLocator.filterName(new OrderedGatewayFilter(stripPrefix, 1)));
+        assertEquals("FilterTimingRouteLocatorTest", FilterTimingRouteLocator.filterName(lambda));
+    }
+}
@@ -0,0 +1,96 @@
+package ti.gateway.kubernetes.metrics;
+
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import ti.gateway.kubernetes.security.SecurityGatewayFilter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link GatewayFilterTagsProvider}.
+ */
+class GatewayFilterTagsProviderTest {
+
+    private GatewayFilterTagsProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new GatewayFilterTagsProvider();
+    }
+
+    @Test
+    void testNoRoute() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+        assertEquals(Tags.of("hasAuthenticationFilter", "false"), provider.apply(exchange));
+    }
+
+    @Test
+    void testRouteWithSecurityFilter() {
+        GatewayFilter securityFilter = new OrderedGatewayFilter(new SecurityGatewayFilter(mock(SecurityWebFilterChain.class)), 1);
+        Route route = route("secured", securityFilter);
+
+        assertEquals(Tags.of("hasAuthenticationFilter", "true"), provider.apply(exchangeFor(route)));
+    }
+
+    @Test
+    void testRouteWithoutSecurityFilter() {
+        Route route = route("open", (exchange, chain) -> chain.filter(exchange));
+
+        assertEquals(Tags.of("hasAuthenticationFilter", "false"), provider.apply(exchangeFor(route)));
+    }
+
+    @Test
+    void testTagsAreCachedPerRouteInstance() {
+        Route route = route("cached", (exchange, chain) -> chain.filter(exchange));
+
+        Tags first = provider.apply(exchangeFor(route));
+        Tags second = provider.apply(exchangeFor(route));
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void testRebuiltRouteIsRecomputed() {
+        Route open = route("same-id", (exchange, chain) -> chain.filter(exchange));
+        Route secured = route("same-id", new SecurityGatewayFilter(mock(SecurityWebFilterChain.class)));
+
+        assertEquals(Tags.of("hasAuthenticationFilter", "false"), provider.apply(exchangeFor(open)));
+        assertEquals(Tags.of("hasAuthenticationFilter", "true"), provider.apply(exchangeFor(secured)));
+    }
+
+    @Test
+    void testRefreshClearsCache() {
+        Route route = route("refreshed", (exchange, chain) -> chain.filter(exchange));
+        provider.apply(exchangeFor(route));
+
+        provider.onApplicationEvent(new RefreshRoutesResultEvent(this));
+
+        assertEquals(Tags.of("hasAuthenticationFilter", "false"), provider.apply(exchangeFor(route)));
+    }
+
+    private static Route route(String id, GatewayFilter filter) {
+        return Route.async()
+                .id(id)
+                .uri("http://localhost:8080")
+                .predicate(exchange -> true)
+                .filter(filter)
+                .build();
+    }
+
+    private static MockServerWebExchange exchangeFor(Route route) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+}
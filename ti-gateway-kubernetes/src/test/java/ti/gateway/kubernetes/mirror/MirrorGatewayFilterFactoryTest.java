@@ -0,0 +1,182 @@
+package ti.gateway.kubernetes.mirror;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MirrorGatewayFilterFactory}.
+ */
+class MirrorGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MirrorClientRegistry clients;
+    private MirrorGatewayFilterFactory factory;
+    private DisposableServer shadow;
+    private BlockingQueue<String> mirrored;
+    private Sinks.Empty<Void> shadowRelease;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clients = new MirrorClientRegistry();
+        factory = new MirrorGatewayFilterFactory(clients, meterRegistry);
+        mirrored = new LinkedBlockingQueue<>();
+        shadowRelease = Sinks.empty();
+        shadowRelease.tryEmitEmpty();
+        shadow = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .handle((request, response) -> {
+                    return request.receive().aggregate().asString(StandardCharsets.UTF_8).defaultIfEmpty("")
+                            .doOnNext((body) -> mirrored.add(request.method().name() + " " + request.uri() + " " + request.requestHeaders().get("X-Trace") + " " + body))
+                            .then(shadowRelease.asMono())
+                            .then(response.status(500).send());
+                })
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        shadow.disposeNow();
+        clients.destroy();
+    }
+
+    @Test
+    void testRequestIsMirroredWithoutBody() throws InterruptedException {
+        GatewayFilter filter = factory.apply(config());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://primary/items?page=2").header("X-Trace", "abc"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> Mono.empty())).verifyComplete();
+
+        assertEquals("GET /items?page=2 abc ", mirrored.poll(5, TimeUnit.SECONDS));
+        assertCount(MirrorGatewayFilterFactory.REQUESTS_METRIC, "result", "mirrored", 1.0);
+    }
+
+    @Test
+    void testClientOfRemovedRouteIsDisposedAndResolvedAgain() throws InterruptedException {
+        factory.apply(config());
+        MirrorGatewayFilterFactory.Config other = config();
+        other.setRouteId("payments");
+        other.setMaxConnections(5);
+        GatewayFilter filter = factory.apply(other);
+        String name = "localhost:" + shadow.port();
+        MirrorClientRegistry.MirrorClient removed = clients.get(name);
+
+        clients.retainRoutes(Set.of("payments"));
+        assertTrue(removed.isDisposed());
+        assertNull(clients.get(name));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://primary/items").header("X-Trace", "ghi"));
+        StepVerifier.create(filter.filter(exchange, ex -> Mono.empty())).verifyComplete();
+
+        assertEquals("GET /items ghi ", mirrored.poll(5, TimeUnit.SECONDS));
+        assertNotNull(clients.get(name));
+        assertNotSame(removed, clients.get(name));
+    }
+
+    @Test
+    void testBodyIsMirroredOnceThePrimaryReadIt() throws InterruptedException {
+        GatewayFilter filter = factory.apply(config());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://primary/orders").header("X-Trace", "def").contentLength(8L).body("{\"id\":1}"));
+
+        StepVerifier.create(filter.filter(exchange, readBody())).verifyComplete();
+
+        assertEquals("POST /orders def {\"id\":1}", mirrored.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBodyOverTheLimitIsNotMirrored() throws InterruptedException {
+        MirrorGatewayFilterFactory.Config config = config();
+        config.setMaxBodySize(DataSize.ofBytes(4L));
+        GatewayFilter filter = factory.apply(config);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://primary/orders").contentLength(8L).body("{\"id\":1}"));
+
+        StepVerifier.create(filter.filter(exchange, readBody())).verifyComplete();
+
+        assertNull(mirrored.poll(200, TimeUnit.MILLISECONDS));
+        assertCount(MirrorGatewayFilterFactory.DROPPED_METRIC, "reason", "body-size", 1.0);
+    }
+
+    @Test
+    void testUnreadBodyReleasesTheInFlightSlot() throws InterruptedException {
+        MirrorGatewayFilterFactory.Config config = config();
+        config.setMaxInFlight(1);
+        GatewayFilter filter = factory.apply(config);
+
+        StepVerifier.create(filter.filter(post("/orders"), ex -> Mono.empty())).verifyComplete();
+        StepVerifier.create(filter.filter(post("/orders"), readBody())).verifyComplete();
+
+        assertEquals("POST /orders null body", mirrored.poll(5, TimeUnit.SECONDS));
+        assertCount(MirrorGatewayFilterFactory.DROPPED_METRIC, "reason", "incomplete", 1.0);
+    }
+
+    @Test
+    void testSlowShadowDoesNotDelayOrQueueRequests() throws InterruptedException {
+        shadowRelease = Sinks.empty();
+        MirrorGatewayFilterFactory.Config config = config();
+        config.setMaxInFlight(1);
+        GatewayFilter filter = factory.apply(config);
+
+        StepVerifier.create(filter.filter(post("/first"), readBody())).expectComplete().verify(Duration.ofSeconds(1L));
+        assertNotNull(mirrored.poll(5, TimeUnit.SECONDS));
+        StepVerifier.create(filter.filter(post("/second"), readBody())).expectComplete().verify(Duration.ofSeconds(1L));
+
+        assertCount(MirrorGatewayFilterFactory.DROPPED_METRIC, "reason", "in-flight", 1.0);
+        shadowRelease.tryEmitEmpty();
+        assertCount(MirrorGatewayFilterFactory.REQUESTS_METRIC, "result", "mirrored", 1.0);
+    }
+
+    private void assertCount(String name, String tag, String value, double expected) {
+        for (int i = 0; i < 50 && meterRegistry.get(name).tag(tag, value).counter().count() < expected; ++i) {
+            try {
+                Thread.sleep(100L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        assertEquals(expected, meterRegistry.get(name).tag(tag, value).counter().count());
+    }
+
+    private MirrorGatewayFilterFactory.Config config() {
+        MirrorGatewayFilterFactory.Config config = new MirrorGatewayFilterFactory.Config();
+        config.setRouteId("orders");
+        config.setUri(URI.create("http://localhost:" + shadow.port()));
+        return config;
+    }
+
+    private static MockServerWebExchange post(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("http://primary" + path).header("Transfer-Encoding", "chunked").body("body"));
+    }
+
+    private static GatewayFilterChain readBody() {
+        return (exchange) -> {
+            return DataBufferUtils.join(exchange.getRequest().getBody())
+                    .doOnNext(DataBufferUtils::release)
+                    .then();
+        };
+    }
+}
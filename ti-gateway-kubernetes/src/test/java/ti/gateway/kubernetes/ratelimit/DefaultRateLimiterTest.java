@@ -58,7 +58,7 @@ class DefaultRateLimiterTest {
         String routeId = "route1";
         String id = "user123";
         
-        when(requestCounterFactory.createOfGet(eq(routeId), eq(id), anyInt(), any(Duration.class)))
+        when(requestCounterFactory.createOfGet(eq(routeId), eq(id), any(), anyInt(), anyInt(), any(Duration.class), any()))
                 .thenReturn(Mono.just(requestCounter));
         when(requestCounter.consume(eq(id)))
                 .thenReturn(Mono.just(consumeResponse));
@@ -81,7 +81,7 @@ class DefaultRateLimiterTest {
         String routeId = "route1";
         String id = "user123";
         
-        when(requestCounterFactory.createOfGet(eq(routeId), eq(id), anyInt(), any(Duration.class)))
+        when(requestCounterFactory.createOfGet(eq(routeId), eq(id), any(), anyInt(), anyInt(), any(Duration.class), any()))
                 .thenReturn(Mono.just(requestCounter));
         when(requestCounter.consume(eq(id)))
                 .thenReturn(Mono.just(consumeResponse));
@@ -102,7 +102,7 @@ class DefaultRateLimiterTest {
     @Test
     void testIsAllowedWithNullRouteId() {
         // Should handle null routeId gracefully - will call createOfGet with null routeId
-        when(requestCounterFactory.createOfGet(isNull(), eq("user123"), anyInt(), any(Duration.class)))
+        when(requestCounterFactory.createOfGet(isNull(), eq("user123"), any(), anyInt(), anyInt(), any(Duration.class), any()))
                 .thenReturn(Mono.just(requestCounter));
         when(requestCounter.consume(eq("user123")))
                 .thenReturn(Mono.just(consumeResponse));
@@ -121,7 +121,7 @@ class DefaultRateLimiterTest {
     @Test
     void testIsAllowedWithNullId() {
         // Should handle null id gracefully - will call createOfGet with null id
-        when(requestCounterFactory.createOfGet(eq("route1"), isNull(), anyInt(), any(Duration.class)))
+        when(requestCounterFactory.createOfGet(eq("route1"), isNull(), any(), anyInt(), anyInt(), any(Duration.class), any()))
                 .thenReturn(Mono.just(requestCounter));
         when(requestCounter.consume(isNull()))
                 .thenReturn(Mono.just(consumeResponse));
@@ -0,0 +1,67 @@
+package ti.gateway.kubernetes.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link GcraRequestCounter}.
+ */
+class GcraRequestCounterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void testBurstIsAllowedThenRequestsAreSpacedByTheEmissionInterval() {
+        GcraRequestCounter counter = new GcraRequestCounter(10, 3, Duration.ofSeconds(1L), clock::get);
+
+        assertEquals(2L, consume(counter, "key").getRemainingRequests());
+        assertEquals(1L, consume(counter, "key").getRemainingRequests());
+        assertEquals(0L, consume(counter, "key").getRemainingRequests());
+        ConsumeResponse denied = consume(counter, "key");
+        assertFalse(denied.isAllowed());
+        assertEquals(100L, denied.getRetryDelayMs());
+
+        clock.addAndGet(Duration.ofMillis(100L).toNanos());
+        assertTrue(consume(counter, "key").isAllowed());
+        assertFalse(consume(counter, "key").isAllowed());
+    }
+
+    @Test
+    void testWindowEdgesDoNotDoubleTheBurst() {
+        GcraRequestCounter counter = new GcraRequestCounter(2, 0, Duration.ofSeconds(1L), clock::get);
+        assertTrue(consume(counter, "key").isAllowed());
+        assertTrue(consume(counter, "key").isAllowed());
+
+        clock.addAndGet(Duration.ofMillis(999L).toNanos());
+        assertTrue(consume(counter, "key").isAllowed());
+        assertFalse(consume(counter, "key").isAllowed());
+    }
+
+    @Test
+    void testRemainingCountsOnlyWholeIntervals() {
+        GcraRequestCounter counter = new GcraRequestCounter(2, 0, Duration.ofSeconds(10L), clock::get);
+        assertEquals(1L, consume(counter, "key").getRemainingRequests());
+
+        clock.addAndGet(Duration.ofSeconds(1L).toNanos());
+        assertEquals(0L, consume(counter, "key").getRemainingRequests());
+        assertEquals(4000L, consume(counter, "key").getRetryDelayMs());
+    }
+
+    @Test
+    void testKeysAreIndependent() {
+        GcraRequestCounter counter = new GcraRequestCounter(1, 0, Duration.ofSeconds(1L), clock::get);
+
+        assertTrue(consume(counter, "key1").isAllowed());
+        assertFalse(consume(counter, "key1").isAllowed());
+        assertTrue(consume(counter, "key2").isAllowed());
+        assertEquals(2L, counter.keyCount());
+    }
+
+    private static ConsumeResponse consume(RequestCounter counter, String key) {
+        return counter.consume(key).block();
+    }
+}
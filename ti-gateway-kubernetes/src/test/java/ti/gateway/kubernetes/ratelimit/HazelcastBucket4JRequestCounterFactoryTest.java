@@ -7,6 +7,8 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -130,4 +132,138 @@ class HazelcastBucket4JRequestCounterFactoryTest {
                 .assertNext(counter -> assertNotNull(counter))
                 .verifyComplete();
     }
+
+    @Test
+    void testBucketStateIsKeptPerRouteAndKey() {
+        Duration duration = Duration.ofMinutes(1);
+
+        assertEquals(1, consume("route1", "key1", 2, duration).getRemainingRequests());
+        assertEquals(0, consume("route1", "key1", 2, duration).getRemainingRequests());
+        assertFalse(consume("route1", "key1", 2, duration).isAllowed());
+        assertTrue(consume("route1", "key2", 2, duration).isAllowed());
+        assertTrue(consume("route2", "key1", 2, duration).isAllowed());
+    }
+
+    @Test
+    void testChangedLimitResetsOnlyThatRoute() {
+        Duration duration = Duration.ofMinutes(1);
+        consume("route1", "key1", 1, duration);
+        consume("route2", "key1", 1, duration);
+
+        assertTrue(consume("route1", "key1", 5, duration).isAllowed());
+        assertFalse(consume("route2", "key1", 1, duration).isAllowed());
+    }
+
+    @Test
+    void testRetainRoutesEvictsRemovedRoutes() {
+        Duration duration = Duration.ofMinutes(1);
+        consume("route1", "key1", 1, duration);
+        consume("route2", "key1", 1, duration);
+
+        factory.retainRoutes(Set.of("route2"));
+
+        assertEquals(1, factory.routeCount());
+        assertTrue(consume("route1", "key1", 1, duration).isAllowed());
+        assertFalse(consume("route2", "key1", 1, duration).isAllowed());
+    }
+
+    @Test
+    void testBurstIsSeparateFromTheSustainedRate() {
+        Duration duration = Duration.ofMinutes(1);
+
+        for (int i = 0; i < 5; ++i) {
+            assertTrue(consume("route1", "key1", RateLimitAlgorithm.TOKEN_BUCKET, 1, 5, duration).isAllowed());
+        }
+        assertFalse(consume("route1", "key1", RateLimitAlgorithm.TOKEN_BUCKET, 1, 5, duration).isAllowed());
+    }
+
+    @Test
+    void testAlgorithmsKeepStatePerKey() {
+        Duration duration = Duration.ofMinutes(1);
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            String routeId = algorithm.name();
+            assertTrue(consume(routeId, "key1", algorithm, 1, 0, duration).isAllowed());
+            assertFalse(consume(routeId, "key1", algorithm, 1, 0, duration).isAllowed());
+            assertTrue(consume(routeId, "key2", algorithm, 1, 0, duration).isAllowed());
+        }
+    }
+
+    @Test
+    void testChangedAlgorithmResetsTheRoute() {
+        Duration duration = Duration.ofMinutes(1);
+        consume("route1", "key1", RateLimitAlgorithm.TOKEN_BUCKET, 1, 0, duration);
+
+        assertTrue(consume("route1", "key1", RateLimitAlgorithm.GCRA, 1, 0, duration).isAllowed());
+        assertFalse(consume("route1", "key1", RateLimitAlgorithm.GCRA, 1, 0, duration).isAllowed());
+    }
+
+    @Test
+    void testNamedQuotaIsSharedBetweenRoutes() {
+        List<RateLimiterProperties.Quota> quotas = List.of(quota("orders-service", 2));
+
+        assertTrue(consume("route1", "key1", quotas).isAllowed());
+        assertTrue(consume("route2", "key1", quotas).isAllowed());
+        assertFalse(consume("route1", "key2", quotas).isAllowed());
+        assertEquals(1, factory.quotaCount());
+    }
+
+    @Test
+    void testUnnamedQuotaLimitsItsRouteOnly() {
+        List<RateLimiterProperties.Quota> quotas = List.of(quota(null, 1));
+
+        assertTrue(consume("route1", "key1", quotas).isAllowed());
+        assertFalse(consume("route1", "key2", quotas).isAllowed());
+        assertTrue(consume("route2", "key1", quotas).isAllowed());
+    }
+
+    @Test
+    void testQuotaKeepsTheDefinitionOfItsOwner() {
+        consume("route1", "key1", List.of(quota("shared", 1)));
+
+        assertFalse(consume("route2", "key1", List.of(quota("shared", 5))).isAllowed());
+        assertFalse(consume("route2", "key2", List.of(quota("shared", 5))).isAllowed());
+        assertEquals(1, factory.quotaCount());
+        assertTrue(consume("route1", "key2", List.of(quota("shared", 5))).isAllowed());
+    }
+
+    @Test
+    void testShortenedQuotaListDropsUnnamedQuotas() {
+        consume("route1", "key1", List.of(quota(null, 1), quota("shared", 1), quota(null, 1)));
+        assertEquals(3, factory.quotaCount());
+
+        consume("route1", "key1", List.of(quota(null, 5)));
+
+        assertEquals(2, factory.quotaCount());
+        assertTrue(consume("route1", "key2", List.of(quota(null, 5))).isAllowed());
+    }
+
+    @Test
+    void testRetainRoutesDropsQuotasOfRemovedOwners() {
+        consume("route1", "key1", List.of(quota("shared", 1), quota(null, 1)));
+
+        factory.retainRoutes(Set.of("route2"));
+
+        assertEquals(0, factory.quotaCount());
+        assertTrue(consume("route2", "key1", List.of(quota("shared", 1))).isAllowed());
+    }
+
+    private ConsumeResponse consume(String routeId, String apiKey, List<RateLimiterProperties.Quota> quotas) {
+        return factory.createOfGet(routeId, apiKey, RateLimitAlgorithm.TOKEN_BUCKET, 10, 0, Duration.ofMinutes(1), quotas).flatMap(counter -> counter.consume(apiKey)).block();
+    }
+
+    private static RateLimiterProperties.Quota quota(String name, int limit) {
+        RateLimiterProperties.Quota quota = new RateLimiterProperties.Quota();
+        quota.setName(name);
+        quota.setLimit(limit);
+        quota.setDuration(Duration.ofMinutes(1));
+        return quota;
+    }
+
+    private ConsumeResponse consume(String routeId, String apiKey, RateLimitAlgorithm algorithm, int limit, int burst, Duration duration) {
+        return factory.createOfGet(routeId, apiKey, algorithm, limit, burst, duration).flatMap(counter -> counter.consume(apiKey)).block();
+    }
+
+    private ConsumeResponse consume(String routeId, String apiKey, int limit, Duration duration) {
+        return factory.createOfGet(routeId, apiKey, limit, duration).flatMap(counter -> counter.consume(apiKey)).block();
+    }
 }
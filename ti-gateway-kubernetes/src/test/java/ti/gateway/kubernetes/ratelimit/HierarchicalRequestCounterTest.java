@@ -0,0 +1,74 @@
+package ti.gateway.kubernetes.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link HierarchicalRequestCounter}.
+ */
+class HierarchicalRequestCounterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void testRejectedRequestConsumesFromNoLevel() {
+        GcraRequestCounter keys = new GcraRequestCounter(5, 0, Duration.ofSeconds(10L), clock::get);
+        GcraRequestCounter route = new GcraRequestCounter(1, 0, Duration.ofSeconds(10L), clock::get);
+        HierarchicalRequestCounter first = hierarchy(keys, "key1", route);
+        HierarchicalRequestCounter second = hierarchy(keys, "key2", route);
+
+        assertTrue(first.consume("key1").block().isAllowed());
+        ConsumeResponse rejected = second.consume("key2").block();
+        assertFalse(rejected.isAllowed());
+        assertEquals(10_000L, rejected.getRetryDelayMs());
+
+        assertEquals(4L, keys.consume("key2").block().getRemainingRequests());
+    }
+
+    @Test
+    void testMostRestrictiveRemainingIsReported() {
+        SlidingWindowRequestCounter keys = new SlidingWindowRequestCounter(10, Duration.ofSeconds(1L), clock::get);
+        GcraRequestCounter route = new GcraRequestCounter(3, 0, Duration.ofSeconds(1L), clock::get);
+        HierarchicalRequestCounter hierarchy = new HierarchicalRequestCounter(List.of(keys.level("key"), route.level("")));
+
+        assertEquals(2L, hierarchy.consume("key").block().getRemainingRequests());
+        assertEquals(1L, hierarchy.consume("key").block().getRemainingRequests());
+    }
+
+    @Test
+    void testSharedLevelIsNeverOverConsumed() throws InterruptedException {
+        SlidingWindowRequestCounter keys = new SlidingWindowRequestCounter(1000, Duration.ofMinutes(1L));
+        SlidingWindowRequestCounter shared = new SlidingWindowRequestCounter(100, Duration.ofMinutes(1L));
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(400);
+        for (int i = 0; i < 400; ++i) {
+            String key = "key" + i % 8;
+            executor.execute(() -> {
+                HierarchicalRequestCounter hierarchy = new HierarchicalRequestCounter(List.of(keys.level(key), shared.level("")));
+                if (hierarchy.consume(key).block().isAllowed()) {
+                    allowed.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10L, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(100, allowed.get());
+    }
+
+    private static HierarchicalRequestCounter hierarchy(GcraRequestCounter keys, String key, GcraRequestCounter route) {
+        return new HierarchicalRequestCounter(List.of(keys.level(key), route.level("")));
+    }
+}
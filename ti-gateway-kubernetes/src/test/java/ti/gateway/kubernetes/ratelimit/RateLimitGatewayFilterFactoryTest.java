@@ -5,7 +5,12 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.test.StepVerifier;
+import ti.gateway.kubernetes.ip.IpRangeMatcher;
 
+import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
@@ -94,6 +99,14 @@ class RateLimitGatewayFilterFactoryTest {
         assertEquals(2, config.getXForwardedForMaxTrustedIndex());
     }
 
+    @Test
+    void testIPsKeyIsTheForwardedLiteral() {
+        IpRangeMatcher allowedIPs = IpRangeMatcher.of(List.of("10.0.0.0/8", "127.0.0.0/8"));
+
+        StepVerifier.create(factory.getKeyFromIpAddress(exchange("10.1.2.3"), allowedIPs, 1)).expectNext("10.1.2.3").verifyComplete();
+        StepVerifier.create(factory.getKeyFromIpAddress(exchange("localhost"), allowedIPs, 1)).verifyComplete();
+    }
+
     @Test
     void testNewConfig() {
         RateLimiterProperties config = factory.newConfig();
@@ -118,4 +131,10 @@ class RateLimitGatewayFilterFactoryTest {
         assertTrue(fieldOrder.contains("duration"));
         assertTrue(fieldOrder.contains("keyLocation"));
     }
+
+    private static MockServerWebExchange exchange(String forwardedFor) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/orders")
+                .remoteAddress(new InetSocketAddress("192.168.0.1", 12345))
+                .header("X-Forwarded-For", forwardedFor));
+    }
 }
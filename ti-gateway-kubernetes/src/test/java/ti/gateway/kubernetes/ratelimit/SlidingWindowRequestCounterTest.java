@@ -0,0 +1,58 @@
+package ti.gateway.kubernetes.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SlidingWindowRequestCounter}.
+ */
+class SlidingWindowRequestCounterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void testLimitHoldsWithinAWindow() {
+        SlidingWindowRequestCounter counter = new SlidingWindowRequestCounter(3, Duration.ofSeconds(1L), clock::get);
+
+        assertEquals(2L, consume(counter).getRemainingRequests());
+        assertEquals(1L, consume(counter).getRemainingRequests());
+        assertEquals(0L, consume(counter).getRemainingRequests());
+        ConsumeResponse denied = consume(counter);
+        assertFalse(denied.isAllowed());
+        assertEquals(1333L, denied.getRetryDelayMs());
+    }
+
+    @Test
+    void testPreviousWindowIsWeightedByItsOverlap() {
+        SlidingWindowRequestCounter counter = new SlidingWindowRequestCounter(4, Duration.ofSeconds(1L), clock::get);
+        for (int i = 0; i < 4; ++i) {
+            consume(counter);
+        }
+
+        clock.addAndGet(Duration.ofMillis(1250L).toNanos());
+        assertTrue(consume(counter).isAllowed());
+        ConsumeResponse denied = consume(counter);
+        assertFalse(denied.isAllowed());
+        assertEquals(250L, denied.getRetryDelayMs());
+
+        clock.addAndGet(Duration.ofMillis(250L).toNanos());
+        assertTrue(consume(counter).isAllowed());
+    }
+
+    @Test
+    void testIdleKeyStartsAfresh() {
+        SlidingWindowRequestCounter counter = new SlidingWindowRequestCounter(1, Duration.ofSeconds(1L), clock::get);
+        consume(counter);
+
+        clock.addAndGet(Duration.ofSeconds(2L).toNanos());
+        assertEquals(0L, consume(counter).getRemainingRequests());
+    }
+
+    private static ConsumeResponse consume(RequestCounter counter) {
+        return counter.consume("key").block();
+    }
+}
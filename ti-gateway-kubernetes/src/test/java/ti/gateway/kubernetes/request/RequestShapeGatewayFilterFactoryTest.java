@@ -0,0 +1,141 @@
+package ti.gateway.kubernetes.request;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RequestShapeGatewayFilterFactory}.
+ */
+class RequestShapeGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestShapeGatewayFilterFactory factory;
+    private RequestShapeGatewayFilterFactory.Config config;
+    private AtomicInteger forwarded;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new RequestShapeGatewayFilterFactory(meterRegistry);
+        config = new RequestShapeGatewayFilterFactory.Config();
+        config.setRouteId("route1");
+        forwarded = new AtomicInteger();
+    }
+
+    @Test
+    void testRequestWithinLimitsIsForwarded() {
+        config.setMaxHeaders(5);
+        config.setMaxHeaderBytes(DataSize.ofKilobytes(1));
+        config.setMaxCookies(2);
+        config.setMaxQueryParams(2);
+        config.setMaxUriLength(64);
+        config.setMaxBodySize(DataSize.ofBytes(10));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/items?a=1&b=2")
+                .header("Cookie", "a=1; b=2")
+                .contentLength(4)
+                .body("body"));
+        StepVerifier.create(factory.apply(config).filter(exchange, chain())).verifyComplete();
+
+        assertEquals(1, forwarded.get());
+        assertNull(exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void testHeaderLimits() {
+        config.setMaxHeaders(2);
+        assertRejected(MockServerHttpRequest.get("/").header("A", "1").header("B", "2").header("C", "3"), HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "headers");
+
+        config.setMaxHeaders(null);
+        config.setMaxHeaderBytes(DataSize.ofBytes(20));
+        assertRejected(MockServerHttpRequest.get("/").header("X-Long", "0123456789abcdef"), HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "header-bytes");
+    }
+
+    @Test
+    void testCookieLimit() {
+        config.setMaxCookies(2);
+
+        assertRejected(MockServerHttpRequest.get("/").header("Cookie", "a=1; b=2").header("Cookie", "c=3"), HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "cookies");
+        assertEquals(2, RequestShapeGatewayFilterFactory.countCookies("a=1; b=2;"));
+        assertEquals(0, RequestShapeGatewayFilterFactory.countCookies(" ; "));
+    }
+
+    @Test
+    void testUriLimits() {
+        config.setMaxQueryParams(2);
+        assertRejected(MockServerHttpRequest.get("/items?a=1&b=2&c"), HttpStatus.URI_TOO_LONG, "query-params");
+        assertEquals(2, RequestShapeGatewayFilterFactory.countQueryParams("a=1&&b=2&"));
+
+        config.setMaxQueryParams(null);
+        config.setMaxUriLength(10);
+        assertRejected(MockServerHttpRequest.get("/items/12345"), HttpStatus.URI_TOO_LONG, "uri-length");
+    }
+
+    @Test
+    void testDeclaredBodySizeLimit() {
+        config.setMaxBodySize(DataSize.ofBytes(3));
+
+        assertRejected(MockServerHttpRequest.post("/items").contentLength(4).body("body"), HttpStatus.PAYLOAD_TOO_LARGE, "body-size");
+    }
+
+    @Test
+    void testStreamedBodySizeLimit() {
+        config.setMaxBodySize(DataSize.ofBytes(6));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/items").body(Flux.just("abcd", "efgh").map((chunk) -> {
+            return DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+        })));
+        GatewayFilterChain readingChain = (ex) -> {
+            return DataBufferUtils.join(ex.getRequest().getBody()).then();
+        };
+
+        StepVerifier.create(factory.apply(config).filter(exchange, readingChain))
+                .expectErrorSatisfies((error) -> {
+                    assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ((ResponseStatusException) error).getStatusCode());
+                })
+                .verify();
+        assertEquals(1.0, rejected("body-size"));
+    }
+
+    private void assertRejected(MockServerHttpRequest.BaseBuilder<?> request, HttpStatus status, String limit) {
+        assertRejected(request.build(), status, limit);
+    }
+
+    private void assertRejected(MockServerHttpRequest request, HttpStatus status, String limit) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        StepVerifier.create(factory.apply(config).filter(exchange, chain())).verifyComplete();
+
+        assertEquals(0, forwarded.get());
+        assertEquals(status, exchange.getResponse().getStatusCode());
+        assertNotNull(exchange.getResponse().getHeaders().getFirst("errorMessage"));
+        assertEquals(1.0, rejected(limit));
+    }
+
+    private double rejected(String limit) {
+        return meterRegistry.get(RequestShapeGatewayFilterFactory.REJECTED_METRIC).tag("routeId", "route1").tag("limit", limit).counter().count();
+    }
+
+    private GatewayFilterChain chain() {
+        return (exchange) -> {
+            forwarded.incrementAndGet();
+            return Mono.empty();
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package ti.gateway.kubernetes.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link HedgeGatewayFilterFactory} and {@link HedgeDelay}.
+ */
+class HedgeGatewayFilterFactoryTest {
+
+    private HedgeGatewayFilterFactory factory;
+    private GatewayFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        factory = new HedgeGatewayFilterFactory(new SimpleMeterRegistry());
+        HedgeGatewayFilterFactory.Config config = new HedgeGatewayFilterFactory.Config();
+        config.setRouteId("route1");
+        config.setMinDelay(Duration.ofMillis(20L));
+        config.setMaxDelay(Duration.ofMillis(50L));
+        filter = factory.apply(config);
+    }
+
+    @Test
+    void testSlowRequestIsHedgedAndFasterResponseWins() {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+        Mono<Void> result = filter.filter(exchange, ex -> {
+            int attempt = calls.incrementAndGet();
+            ex.getAttributes().put("attempt", attempt);
+            ex.getResponse().getHeaders().add("X-Attempt", String.valueOf(attempt));
+            ex.getResponse().setStatusCode(attempt == 1 ? HttpStatus.OK : HttpStatus.ACCEPTED);
+            Duration latency = attempt == 1 ? Duration.ofSeconds(5L) : Duration.ofMillis(1L);
+            return Mono.delay(latency).then().doOnCancel(() -> primaryCancelled.set(true));
+        });
+
+        StepVerifier.create(result).expectComplete().verify(Duration.ofSeconds(2L));
+
+        assertEquals(2, calls.get());
+        assertTrue(primaryCancelled.get());
+        assertEquals(HttpStatus.ACCEPTED, exchange.getResponse().getStatusCode());
+        assertEquals("2", exchange.getResponse().getHeaders().getFirst("X-Attempt"));
+        assertEquals(2, (Integer) exchange.getAttribute("attempt"));
+        assertEquals(1.0, factory.getRouteHedge("route1").getHedged());
+        assertEquals(1.0, factory.getRouteHedge("route1").getWon());
+    }
+
+    @Test
+    void testHedgesAreCappedByTheBudget() {
+        HedgeGatewayFilterFactory.Config config = new HedgeGatewayFilterFactory.Config();
+        config.setRouteId("route2");
+        config.setMinDelay(Duration.ofMillis(10L));
+        config.setMaxDelay(Duration.ofMillis(10L));
+        config.setBudgetPercent(0);
+        config.setMinHedgesPerSecond(1);
+        config.setBudgetWindow(Duration.ofSeconds(1L));
+        GatewayFilter budgeted = factory.apply(config);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; ++i) {
+            StepVerifier.create(budgeted.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/test")), ex -> {
+                calls.incrementAndGet();
+                return Mono.delay(Duration.ofMillis(100L)).then();
+            })).expectComplete().verify(Duration.ofSeconds(1L));
+        }
+
+        assertEquals(4, calls.get());
+        assertEquals(1.0, factory.getRouteHedge("route2").getHedged());
+        assertEquals(2.0, factory.getRouteHedge("route2").getSkipped());
+    }
+
+    @Test
+    void testFastRequestIsNotHedged() {
+        AtomicInteger calls = new AtomicInteger();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+            calls.incrementAndGet();
+            ex.getResponse().setStatusCode(HttpStatus.OK);
+            return Mono.empty();
+        })).verifyComplete();
+        Mono.delay(Duration.ofMillis(100L)).block();
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals(0.0, factory.getRouteHedge("route1").getHedged());
+    }
+
+    @Test
+    void testNonIdempotentRequestIsNotHedged() {
+        AtomicInteger calls = new AtomicInteger();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/test"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(100L)).then();
+        })).verifyComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(0.0, factory.getRouteHedge("route1").getHedged());
+    }
+
+    @Test
+    void testErrorOfBothAttemptsIsPropagated() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> Mono.error(new IllegalStateException("down"))))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(1L));
+    }
+
+    @Test
+    void testDelayFollowsPercentile() {
+        AtomicLong clock = new AtomicLong();
+        HedgeDelay delay = new HedgeDelay(90.0, Duration.ofMillis(1L), Duration.ofSeconds(1L), Duration.ofSeconds(30L), clock::get);
+        assertEquals(Duration.ofSeconds(1L), delay.getDelay());
+
+        for (int i = 1; i <= 100; ++i) {
+            delay.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1L));
+
+        long millis = delay.getDelay().toMillis();
+        assertTrue(millis >= 89 && millis <= 91, String.valueOf(millis));
+    }
+}
@@ -0,0 +1,217 @@
+package ti.gateway.kubernetes.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RetryBudgetGatewayFilterFactory} and {@link RetryBudget}.
+ */
+class RetryBudgetGatewayFilterFactoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetryBudgetGatewayFilterFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        factory = new RetryBudgetGatewayFilterFactory(meterRegistry);
+    }
+
+    @Test
+    void testBudgetAllowsPercentageOfRequests() {
+        AtomicLong clock = new AtomicLong();
+        RetryBudget budget = new RetryBudget(20, 0, Duration.ofSeconds(10L), clock::get);
+        for (int i = 0; i < 10; ++i) {
+            budget.deposit();
+        }
+
+        assertTrue(budget.canRetry());
+        budget.withdraw();
+        assertTrue(budget.canRetry());
+        budget.withdraw();
+        assertFalse(budget.canRetry());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11L));
+        assertFalse(budget.canRetry());
+        budget.deposit();
+        assertFalse(budget.canRetry());
+    }
+
+    @Test
+    void testMinimumRetriesPerSecond() {
+        RetryBudget budget = new RetryBudget(0, 1, Duration.ofSeconds(2L), new AtomicLong()::get);
+
+        budget.withdraw();
+        assertTrue(budget.canRetry());
+        budget.withdraw();
+        assertFalse(budget.canRetry());
+    }
+
+    @Test
+    void testRetriesStopWhenBudgetIsExhausted() {
+        RetryBudgetGatewayFilterFactory.Config config = config(3, 0);
+        GatewayFilter filter = factory.apply(config);
+        AtomicInteger calls = new AtomicInteger();
+
+        MockServerWebExchange exchange = exchange();
+        StepVerifier.create(filter.filter(exchange, ex -> Mono.fromRunnable(() -> {
+            calls.incrementAndGet();
+            ex.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        }))).verifyComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(1.0, meterRegistry.get(RetryBudgetGatewayFilterFactory.EXHAUSTED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testNonRetryableOutcomesDoNotTouchBudget() {
+        GatewayFilter filter = factory.apply(config(3, 0));
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.fromRunnable(() -> {
+            calls.incrementAndGet();
+            ex.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+        }))).verifyComplete();
+        StepVerifier.create(filter.filter(exchange(), ex -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("not retryable"));
+        })).verifyError(IllegalStateException.class);
+
+        assertEquals(2, calls.get());
+        assertEquals(0.0, meterRegistry.get(RetryBudgetGatewayFilterFactory.EXHAUSTED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testRetryableExceptionIsCheckedAgainstBudget() {
+        GatewayFilter filter = factory.apply(config(3, 0));
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier.create(filter.filter(exchange(), ex -> {
+            calls.incrementAndGet();
+            return Mono.error(new IOException("connection reset"));
+        })).verifyError(IOException.class);
+
+        assertEquals(1, calls.get());
+        assertEquals(1.0, meterRegistry.get(RetryBudgetGatewayFilterFactory.EXHAUSTED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testEachAttemptIsCheckedByItsOwnOutcome() {
+        RetryBudgetGatewayFilterFactory.Config config = config(3, 1);
+        config.setBudgetWindow(Duration.ofSeconds(1L));
+        GatewayFilter filter = factory.apply(config);
+        AtomicInteger calls = new AtomicInteger();
+
+        MockServerWebExchange exchange = exchange();
+        StepVerifier.create(filter.filter(exchange, ex -> Mono.defer(() -> {
+            if (calls.incrementAndGet() == 1) {
+                return Mono.error(new IOException("connection reset"));
+            }
+
+            ex.getResponse().setStatusCode(HttpStatus.OK);
+            return Mono.empty();
+        }))).verifyComplete();
+
+        assertEquals(2, calls.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals(0.0, meterRegistry.get(RetryBudgetGatewayFilterFactory.EXHAUSTED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testExceptionAttemptFollowedByRetryableStatusIsChecked() {
+        RetryBudgetGatewayFilterFactory.Config config = config(3, 1);
+        config.setBudgetWindow(Duration.ofSeconds(1L));
+        GatewayFilter filter = factory.apply(config);
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.defer(() -> {
+            if (calls.incrementAndGet() == 1) {
+                return Mono.error(new IOException("connection reset"));
+            }
+
+            ex.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return Mono.empty();
+        }))).verifyComplete();
+
+        assertEquals(2, calls.get());
+        assertEquals(1.0, meterRegistry.get(RetryBudgetGatewayFilterFactory.EXHAUSTED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testOnlySuccessfulRequestsDeposit() {
+        RetryBudgetGatewayFilterFactory.Config config = config(1, 0);
+        config.setBudgetPercent(100);
+        GatewayFilter filter = factory.apply(config);
+        RetryBudget budget = factory.getBudget("route1");
+
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.fromRunnable(() -> {
+            ex.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        }))).verifyComplete();
+        assertFalse(budget.canRetry());
+
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.fromRunnable(() -> {
+            ex.getResponse().setStatusCode(HttpStatus.OK);
+        }))).verifyComplete();
+        assertTrue(budget.canRetry());
+    }
+
+    @Test
+    void testRetriesWithinBudget() {
+        GatewayFilter filter = factory.apply(config(2, 10));
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier.create(filter.filter(exchange(), ex -> Mono.fromRunnable(() -> {
+            calls.incrementAndGet();
+            ex.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        }))).verifyComplete();
+
+        assertEquals(3, calls.get());
+        assertEquals(0.0, meterRegistry.get(RetryBudgetGatewayFilterFactory.EXHAUSTED_METRIC).tag("routeId", "route1").counter().count());
+    }
+
+    @Test
+    void testBudgetSurvivesReapply() {
+        factory.apply(config(3, 0));
+        RetryBudget budget = factory.getBudget("route1");
+
+        factory.apply(config(3, 5));
+
+        assertSame(budget, factory.getBudget("route1"));
+        assertTrue(budget.canRetry());
+    }
+
+    private static RetryBudgetGatewayFilterFactory.Config config(int retries, int minRetriesPerSecond) {
+        RetryBudgetGatewayFilterFactory.Config config = new RetryBudgetGatewayFilterFactory.Config();
+        config.setRouteId("route1");
+        config.setRetries(retries);
+        config.setStatuses(HttpStatus.SERVICE_UNAVAILABLE);
+        config.setBudgetPercent(0);
+        config.setMinRetriesPerSecond(minRetriesPerSecond);
+        config.setBackoff(null);
+        return config;
+    }
+
+    private static MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://localhost/test"));
+        Route route = Route.async().id("route1").uri("http://localhost:8080").predicate(ex -> true).build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+}
@@ -0,0 +1,59 @@
+package ti.gateway.kubernetes.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.factory.SecureHeadersProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link SecureHeadersGatewayGlobalFilter}.
+ */
+class SecureHeadersGatewayGlobalFilterTest {
+
+    private SecureHeadersProperties properties;
+    private MockServerWebExchange exchange;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SecureHeadersProperties();
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+    }
+
+    @Test
+    void testHeadersAreAddedWhenBodyIsWritten() {
+        SecureHeadersGatewayGlobalFilter filter = new SecureHeadersGatewayGlobalFilter(properties);
+
+        StepVerifier.create(filter.filter(exchange, ex -> ex.getResponse().writeWith(Mono.just(ex.getResponse().bufferFactory().wrap("body".getBytes(StandardCharsets.UTF_8))))))
+                .verifyComplete();
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertEquals("no-cache", headers.getFirst("Pragma"));
+        assertEquals(properties.getFrameOptions(), headers.getFirst("X-Frame-Options"));
+        assertEquals(properties.getStrictTransportSecurity(), headers.getFirst("Strict-Transport-Security"));
+    }
+
+    @Test
+    void testDisabledAndExistingHeadersAreKept() {
+        properties.setDisable(List.of("x-frame-options"));
+        SecureHeadersGatewayGlobalFilter filter = new SecureHeadersGatewayGlobalFilter(properties);
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+            ex.getResponse().getHeaders().set("Cache-Control", "max-age=60");
+            return ex.getResponse().setComplete();
+        })).verifyComplete();
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertFalse(headers.containsKey("X-Frame-Options"));
+        assertEquals(List.of("max-age=60"), headers.get("Cache-Control"));
+        assertEquals("0", headers.getFirst("Expires"));
+    }
+}
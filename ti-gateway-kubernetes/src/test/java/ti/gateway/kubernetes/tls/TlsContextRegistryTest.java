@@ -0,0 +1,131 @@
+package ti.gateway.kubernetes.tls;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import javax.net.ssl.SNIHostName;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TlsContextRegistry}.
+ */
+class TlsContextRegistryTest {
+
+    @TempDir
+    Path secretDir;
+
+    private MeterRegistry meterRegistry;
+    private TlsContextRegistry registry;
+    private DisposableServer server;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        writeCertificate("first.example.com", 1_000L);
+        TlsServer tlsServer = new TlsServer().setSecret(new TlsSecret(secretDir.toString())).setHosts(List.of("api.example.com", "*.apps.example.com"));
+        TlsConfiguration configuration = new TlsConfiguration().setServers(List.of(tlsServer)).setReloadInterval(Duration.ZERO);
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> meterRegistryProvider = mock(ObjectProvider.class);
+        when(meterRegistryProvider.getIfAvailable()).thenReturn(meterRegistry);
+        registry = new TlsContextRegistry(configuration, meterRegistryProvider);
+        server = HttpServer.create()
+                .port(0)
+                .secure(spec -> spec.sslContext(registry.getDefaultProvider().getSslContext()).setSniAsyncMappings(registry))
+                .handle((request, response) -> response.sendString(Mono.just("ok")))
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    void testResolvesExactAndWildcardHosts() {
+        assertNotSame(registry.getDefaultProvider(), registry.resolve("API.example.com"));
+        assertNotSame(registry.getDefaultProvider(), registry.resolve("web.apps.example.com"));
+        assertSame(registry.getDefaultProvider(), registry.resolve("other.example.com"));
+        assertSame(registry.getDefaultProvider(), registry.resolve(null));
+    }
+
+    @Test
+    void testReloadSwapsCertificateForNewHandshakes() throws Exception {
+        assertTrue(peerCertificate("api.example.com").getSubjectX500Principal().getName().contains("first.example.com"));
+        assertTrue(peerCertificate("unknown.example.com").getSubjectX500Principal().getName().contains("Fake Certificate"));
+
+        writeCertificate("second.example.com", 2_000L);
+        registry.reload();
+
+        assertTrue(peerCertificate("api.example.com").getSubjectX500Principal().getName().contains("second.example.com"));
+        assertEquals(2, meterRegistry.get(TlsContextRegistry.HANDSHAKE_METRIC).tag("host", "api.example.com").tag("outcome", "SUCCESS").timer().count());
+        assertEquals(1, meterRegistry.get(TlsContextRegistry.HANDSHAKE_METRIC).tag("host", TlsContextRegistry.DEFAULT_HOST).tag("outcome", "SUCCESS").timer().count());
+    }
+
+    @Test
+    void testFailedReloadKeepsPreviousCertificate() throws Exception {
+        File certFile = secretDir.resolve("tls.crt").toFile();
+        Files.writeString(certFile.toPath(), "not a certificate");
+        assertTrue(certFile.setLastModified(3_000_000L));
+
+        registry.reload();
+
+        assertTrue(peerCertificate("api.example.com").getSubjectX500Principal().getName().contains("first.example.com"));
+    }
+
+    private X509Certificate peerCertificate(String host) throws Exception {
+        AtomicReference<X509Certificate> certificate = new AtomicReference<>();
+        Http11SslContextSpec clientSpec = Http11SslContextSpec.forClient()
+                .configure(builder -> builder.trustManager(InsecureTrustManagerFactory.INSTANCE));
+        HttpClient.create()
+                .secure(spec -> spec.sslContext(clientSpec).serverNames(new SNIHostName(host)))
+                .doOnResponse((response, connection) -> {
+                    try {
+                        SslHandler sslHandler = connection.channel().pipeline().get(SslHandler.class);
+                        certificate.set((X509Certificate) sslHandler.engine().getSession().getPeerCertificates()[0]);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .get()
+                .uri("https://localhost:" + server.port() + "/")
+                .responseContent()
+                .aggregate()
+                .asString()
+                .block(Duration.ofSeconds(10));
+        // the handshake listener runs on the server event loop, give it a moment to record
+        Thread.sleep(50L);
+        return certificate.get();
+    }
+
+    private void writeCertificate(String fqdn, long lastModified) throws Exception {
+        SelfSignedCertificate certificate = new SelfSignedCertificate(fqdn);
+        Path cert = Files.copy(certificate.certificate().toPath(), secretDir.resolve("tls.crt"), StandardCopyOption.REPLACE_EXISTING);
+        Path key = Files.copy(certificate.privateKey().toPath(), secretDir.resolve("tls.key"), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(cert.toFile().setLastModified(lastModified * 1000L));
+        assertTrue(key.toFile().setLastModified(lastModified * 1000L));
+        certificate.delete();
+    }
+}
@@ -0,0 +1,154 @@
+package ti.gateway.kubernetes.upstream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link UpstreamPoolRegistry} and {@link PooledNettyRoutingFilter}.
+ */
+class UpstreamPoolRegistryTest {
+
+    private UpstreamPoolRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new UpstreamPoolRegistry(new HttpClientProperties(), List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.destroy();
+    }
+
+    @Test
+    void testRoutesWithoutPoolMetadataUseGlobalClient() {
+        assertNull(UpstreamPoolRegistry.Settings.from(route("route1", "http://orders:8080", Map.of("connect-timeout", 100))));
+        assertNull(registry.poolFor(route("route1", "http://orders:8080", Map.of())));
+    }
+
+    @Test
+    void testSettingsFromMetadata() {
+        Route route = route("route1", "http://orders:8080", Map.of(
+                UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50,
+                UpstreamPoolRegistry.MAX_PENDING_ACQUIRES_METADATA, "100",
+                UpstreamPoolRegistry.PENDING_ACQUIRE_TIMEOUT_METADATA, "2s",
+                UpstreamPoolRegistry.MAX_IDLE_TIME_METADATA, 30000,
+                UpstreamPoolRegistry.PROTOCOL_METADATA, "h2c"));
+
+        UpstreamPoolRegistry.Settings settings = UpstreamPoolRegistry.Settings.from(route);
+
+        assertEquals("orders:8080", settings.getName());
+        assertEquals(new UpstreamPoolRegistry.Settings("orders:8080", 50, 100, Duration.ofSeconds(2), Duration.ofSeconds(30), UpstreamPoolRegistry.Protocol.H2C), settings);
+        UpstreamPoolRegistry.Pool pool = registry.poolFor(route);
+        assertEquals(50, pool.getProvider().maxConnections());
+        assertArrayEquals(new HttpProtocol[]{HttpProtocol.H2C}, pool.getClient().configuration().protocols());
+    }
+
+    @Test
+    void testRoutesToSameServiceSharePool() {
+        UpstreamPoolRegistry.Pool first = registry.poolFor(route("route1", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50)));
+        UpstreamPoolRegistry.Pool second = registry.poolFor(route("route2", "http://orders:8080/v2", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 10)));
+        UpstreamPoolRegistry.Pool other = registry.poolFor(route("route3", "http://orders:8080", Map.of(UpstreamPoolRegistry.POOL_NAME_METADATA, "slow", UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 5)));
+
+        assertSame(first, second);
+        assertEquals(50, second.getProvider().maxConnections());
+        assertNotSame(first, other);
+        assertEquals(5, other.getProvider().maxConnections());
+    }
+
+    @Test
+    void testOwningRouteRebuildsPool() {
+        UpstreamPoolRegistry.Pool first = registry.poolFor(route("route1", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50)));
+        UpstreamPoolRegistry.Pool same = registry.poolFor(route("route1", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50)));
+        UpstreamPoolRegistry.Pool rebuilt = registry.poolFor(route("route1", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 20, UpstreamPoolRegistry.PROTOCOL_METADATA, "HTTP/1.1")));
+
+        assertSame(first, same);
+        assertNotSame(first, rebuilt);
+        assertTrue(first.isDisposed());
+        assertEquals(20, rebuilt.getProvider().maxConnections());
+        assertArrayEquals(new HttpProtocol[]{HttpProtocol.HTTP11}, rebuilt.getClient().configuration().protocols());
+        assertSame(rebuilt, registry.get("orders:8080"));
+    }
+
+    @Test
+    void testPoolsOfRemovedRoutesAreDisposed() {
+        UpstreamPoolRegistry.Pool removed = registry.poolFor(route("route1", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50)));
+        UpstreamPoolRegistry.Pool kept = registry.poolFor(route("route2", "http://users:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 10)));
+
+        registry.retainRoutes(Set.of("route2", "route3"));
+
+        assertTrue(removed.isDisposed());
+        assertNull(registry.get("orders:8080"));
+        assertFalse(kept.isDisposed());
+        UpstreamPoolRegistry.Pool renamed = registry.poolFor(route("route3", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 20)));
+        assertEquals(20, renamed.getProvider().maxConnections());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRoutingFilterDropsClientsOfRemovedRoutes() {
+        HttpClient global = HttpClient.create();
+        PooledNettyRoutingFilter filter = new PooledNettyRoutingFilter(global, mock(ObjectProvider.class), new HttpClientProperties(), registry);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        Route pooled = route("route1", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50));
+        HttpClient client = filter.getHttpClient(pooled, exchange);
+        assertTrue(filter.hasClient("route1"));
+
+        registry.retainRoutes(Set.of("route2"));
+        filter.retainRoutes(Set.of("route2"));
+        assertFalse(filter.hasClient("route1"));
+        Route renamed = route("route2", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 20));
+        HttpClient renamedClient = filter.getHttpClient(renamed, exchange);
+
+        assertNotSame(client, renamedClient);
+        assertSame(registry.get("orders:8080").getClient(), renamedClient);
+        assertEquals(20, registry.get("orders:8080").getProvider().maxConnections());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRoutingFilterResolvesClientPerRoute() {
+        HttpClient global = HttpClient.create();
+        PooledNettyRoutingFilter filter = new PooledNettyRoutingFilter(global, mock(ObjectProvider.class), new HttpClientProperties(), registry);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+        Route plain = route("route1", "http://users:8080", Map.of());
+        Route pooled = route("route2", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 50));
+
+        HttpClient client = filter.getHttpClient(pooled, exchange);
+
+        assertSame(global, filter.getHttpClient(plain, exchange));
+        assertSame(registry.get("orders:8080").getClient(), client);
+        assertSame(client, filter.getHttpClient(pooled, exchange));
+
+        Route rebuilt = route("route2", "http://orders:8080", Map.of(UpstreamPoolRegistry.MAX_CONNECTIONS_METADATA, 20));
+        HttpClient rebuiltClient = filter.getHttpClient(rebuilt, exchange);
+        assertNotSame(client, rebuiltClient);
+        assertSame(rebuiltClient, filter.getHttpClient(rebuilt, exchange));
+    }
+
+    private static Route route(String id, String uri, Map<String, Object> metadata) {
+        return Route.async()
+                .id(id)
+                .uri(uri)
+                .predicate(exchange -> true)
+                .metadata(metadata)
+                .build();
+    }
+}